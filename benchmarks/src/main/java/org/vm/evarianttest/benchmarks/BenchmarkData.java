@@ -0,0 +1,122 @@
+package org.vm.evarianttest.benchmarks;
+
+import org.vm.evarianttest.entity.census.USAStatisticalAreaType;
+import org.vm.evarianttest.loader.DataLoaderException;
+import org.vm.evarianttest.precipitationcalc.RainFallStatsCalculator;
+import org.vm.evarianttest.util.Util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * This class provides the inputs of the benchmarks: the context files of the project and rainfall records generated with a fixed seed, so that every
+ * run of a benchmark measures the same input.
+ *
+ * The context files are read from ../src/main/resources, or from the directory given by -Drainfall.resources=...
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+final class BenchmarkData {
+    static final long SEED = 20150501L;
+
+    private BenchmarkData() {
+    }
+
+    static Path resources() {
+        return Paths.get(System.getProperty("rainfall.resources", "../src/main/resources")).toAbsolutePath().normalize();
+    }
+
+    static URI censusFile() {
+        return resources().resolve("CPH-T-5.xls").toUri();
+    }
+
+    static URI countyMSALinkFile() {
+        return resources().resolve("MSA-County-Census-List1.xls").toUri();
+    }
+
+    static URI wbanMasterFile() {
+        return resources().resolve("wbanmasterlist.psv").toUri();
+    }
+
+    static URI stations201505File() {
+        return resources().resolve("201505station.txt").toUri();
+    }
+
+    static List<USAStatisticalAreaType> typesToLoad() {
+        return Collections.singletonList(USAStatisticalAreaType.METROPOLITAN_STATISTICAL_AREA);
+    }
+
+    /**
+     * This method returns a calculator with all of the Context Data loaded.
+     */
+    static RainFallStatsCalculator loadedCalculator() throws DataLoaderException {
+        RainFallStatsCalculator calc = new RainFallStatsCalculator(censusFile(), countyMSALinkFile(), wbanMasterFile(), stations201505File(), typesToLoad());
+        calc.load();
+        return calc;
+    }
+
+    /**
+     * This method returns the WBAN ids of the WBAN master list, so the generated records belong to real stations.
+     */
+    static List<String> wbanIds() throws IOException {
+        List<String> wbanIds = new ArrayList<>();
+        for(String line : Files.readAllLines(Paths.get(wbanMasterFile()), StandardCharsets.ISO_8859_1)) {
+            String[] columns = Util.splitPSVLine(line);
+            if(columns.length > 1 && !columns[1].contains("WBAN_ID"))
+                wbanIds.add(Util.cleanString(columns[1]));
+        }
+        return wbanIds;
+    }
+
+    /**
+     * This method generates rainfall lines in the QCLCD layout over the days of May 2015 and its neighbouring days, with blank, trace and measured
+     * precipitation in roughly the proportions of the real files.
+     *
+     * @param count - Number of lines
+     * @return - Lines without the file header
+     */
+    static List<String> rainfallLines(int count) throws IOException {
+        List<String> wbanIds = wbanIds();
+        Random random = new Random(SEED);
+        List<String> lines = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+            String wbanId = wbanIds.get(random.nextInt(wbanIds.size()));
+            int day = 20150425 + random.nextInt(14);
+            if(day > 20150430)
+                day += 70;
+            int hour = 1 + random.nextInt(24);
+            int kind = random.nextInt(10);
+            String precipitation = kind < 6 ? " " : kind < 8 ? " T" : String.format(Locale.ROOT, " %.2f", random.nextInt(150) / 100.0d);
+            lines.add(wbanId + "," + day + "," + (hour < 10 ? "0" + hour : String.valueOf(hour)) + "," + precipitation + "," + (kind == 9 ? "s" : " "));
+        }
+        return lines;
+    }
+
+    /**
+     * This method writes generated rainfall lines to a temporary file, with the file header.
+     *
+     * @param count - Number of lines
+     * @return - Temporary file, deleted on exit
+     */
+    static Path rainfallFile(int count) throws IOException {
+        Path file = Files.createTempFile("benchmark" + count, "precip.txt");
+        file.toFile().deleteOnExit();
+        try(BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            out.write("Wban,YearMonthDay,Hour,Precipitation,PrecipitationFlag\n");
+            for(String line : rainfallLines(count))
+                out.write(line + "\n");
+        }
+        return file;
+    }
+}
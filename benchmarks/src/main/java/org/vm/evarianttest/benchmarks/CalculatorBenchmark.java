@@ -0,0 +1,85 @@
+package org.vm.evarianttest.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vm.evarianttest.calc.ScanningCalculator;
+import org.vm.evarianttest.entity.Key;
+import org.vm.evarianttest.loader.DataLoaderException;
+import org.vm.evarianttest.precipitationcalc.RainFallStatsCalculator;
+import org.vm.evarianttest.store.RainfallSources;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class benchmarks the calculate() of both Calculators, and of both off one shared scan, on a generated rainfall file of the given number of
+ * records. The Context Data is loaded once, so only the scan and the aggregation are measured, with the file in the page cache after the warm-up.
+ *
+ * The file is scanned on a fork-join pool of the given number of threads.
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@Fork(1)
+public class CalculatorBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int records;
+
+    @Param({"1", "2", "4"})
+    public int threads;
+
+    private RainFallStatsCalculator calc;
+    private Path rainfallFile;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setup() throws IOException, DataLoaderException {
+        calc = BenchmarkData.loadedCalculator();
+        rainfallFile = BenchmarkData.rainfallFile(records);
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        pool.shutdown();
+        Files.deleteIfExists(rainfallFile);
+    }
+
+    @Benchmark
+    public Map<Key, BigDecimal> populationWetnessByMSA() {
+        return calc.calculatePopulationWetnessByMSA(RainfallSources.open(rainfallFile, pool), null);
+    }
+
+    @Benchmark
+    public Map<Key, BigDecimal> rainfallByState() {
+        return calc.calculateRainfallByState(RainfallSources.open(rainfallFile, pool), null);
+    }
+
+    @Benchmark
+    public Map<ScanningCalculator<?>, Map<Key, BigDecimal>> sharedScan() {
+        return calc.calculateAll(RainfallSources.open(rainfallFile, pool), null, null);
+    }
+}
@@ -0,0 +1,166 @@
+package org.vm.evarianttest.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vm.evarianttest.entity.Entity;
+import org.vm.evarianttest.entity.Key;
+import org.vm.evarianttest.loader.CensusPopXLSFileDataLoader;
+import org.vm.evarianttest.loader.CitiesInMSAXLSFileDataLoader;
+import org.vm.evarianttest.loader.ContextDataLoader;
+import org.vm.evarianttest.loader.ContextSnapshotDataLoader;
+import org.vm.evarianttest.loader.CountyXLSFileDataLoader;
+import org.vm.evarianttest.loader.DataLoader;
+import org.vm.evarianttest.loader.DataLoaderException;
+import org.vm.evarianttest.loader.StationsFile2015DataLoader;
+import org.vm.evarianttest.loader.WBANpsvFileDataLoader;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class benchmarks every DataLoader on the context files of the project. A load is a one time cost, so every load is timed on its own (single
+ * shot) after warm-up loads, instead of looping over a load that would then be measured with warm caches of its own.
+ *  load - one loader, with the Context Data it links to loaded before the timed load
+ *  contextDataLoader - all the loaders, parsed concurrently on a fork-join pool of the given number of threads
+ *  contextSnapshot - the snapshot of the loaded Context Data
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Threads(1)
+@Fork(1)
+public class DataLoaderBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SingleLoader {
+        @Param({"CensusPopXLSFileDataLoader", "CountyXLSFileDataLoader", "CitiesInMSAXLSFileDataLoader", "WBANpsvFileDataLoader",
+                "StationsFile2015DataLoader"})
+        public String loader;
+
+        DataLoader<Key, Entity> dataLoader;
+
+        /**
+         * Loads the Context Data the loader links to, and a new loader, before every timed load as a load changes the Context Data.
+         */
+        @Setup(Level.Iteration)
+        public void setup() throws DataLoaderException {
+            // The loaders link in the order Census, County (or Cities), WBAN, Stations, every loader needing the ones before it
+            ContextDataLoader prerequisites = new ContextDataLoader();
+            Map<String, Map<Key, Entity>> maps = new LinkedHashMap<>();
+            if(!loader.equals("CensusPopXLSFileDataLoader"))
+                prerequisites.register(new CensusPopXLSFileDataLoader(BenchmarkData.censusFile(), BenchmarkData.typesToLoad()));
+            if(loader.equals("WBANpsvFileDataLoader") || loader.equals("StationsFile2015DataLoader"))
+                prerequisites.register(new CountyXLSFileDataLoader(BenchmarkData.countyMSALinkFile(), maps));
+            if(loader.equals("StationsFile2015DataLoader"))
+                prerequisites.register(new WBANpsvFileDataLoader(BenchmarkData.wbanMasterFile(), maps));
+            prerequisites.load();
+            maps.putAll(prerequisites.getDataMaps());
+
+            switch (loader) {
+                case "CensusPopXLSFileDataLoader":
+                    dataLoader = new CensusPopXLSFileDataLoader(BenchmarkData.censusFile(), BenchmarkData.typesToLoad());
+                    break;
+                case "CountyXLSFileDataLoader":
+                    dataLoader = new CountyXLSFileDataLoader(BenchmarkData.countyMSALinkFile(), maps);
+                    break;
+                case "CitiesInMSAXLSFileDataLoader":
+                    dataLoader = new CitiesInMSAXLSFileDataLoader(BenchmarkData.countyMSALinkFile(), maps);
+                    break;
+                case "WBANpsvFileDataLoader":
+                    dataLoader = new WBANpsvFileDataLoader(BenchmarkData.wbanMasterFile(), maps);
+                    break;
+                case "StationsFile2015DataLoader":
+                    dataLoader = new StationsFile2015DataLoader(BenchmarkData.stations201505File(), maps);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown Data Loader " + loader);
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ContextLoad {
+        @Param({"1", "2", "4"})
+        public int threads;
+
+        ForkJoinPool pool;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            pool = new ForkJoinPool(threads);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            pool.shutdown();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Snapshot {
+        Path snapshotFile;
+        List<URI> sourceFiles = Arrays.asList(BenchmarkData.censusFile(), BenchmarkData.countyMSALinkFile(), BenchmarkData.wbanMasterFile(),
+                BenchmarkData.stations201505File());
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException, DataLoaderException {
+            snapshotFile = Files.createTempFile("context", ".snapshot");
+            new ContextSnapshotDataLoader(snapshotFile, sourceFiles, String.valueOf(BenchmarkData.typesToLoad()))
+                    .write(BenchmarkData.loadedCalculator().getResult());
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(snapshotFile);
+        }
+    }
+
+    @Benchmark
+    public Map<String, Map<Key, Entity>> load(SingleLoader state) throws DataLoaderException {
+        state.dataLoader.load();
+        return state.dataLoader.getDataMaps();
+    }
+
+    @Benchmark
+    public Map<String, Map<Key, Entity>> contextDataLoader(ContextLoad state) throws DataLoaderException {
+        Map<String, Map<Key, Entity>> maps = new LinkedHashMap<>();
+        ContextDataLoader loader = new ContextDataLoader(state.pool)
+                .register(new CensusPopXLSFileDataLoader(BenchmarkData.censusFile(), BenchmarkData.typesToLoad()))
+                .register(new CountyXLSFileDataLoader(BenchmarkData.countyMSALinkFile(), maps))
+                .register(new WBANpsvFileDataLoader(BenchmarkData.wbanMasterFile(), maps))
+                .register(new StationsFile2015DataLoader(BenchmarkData.stations201505File(), maps));
+        loader.load();
+        return loader.getDataMaps();
+    }
+
+    @Benchmark
+    public Map<String, Map<Key, Entity>> contextSnapshot(Snapshot state) throws DataLoaderException {
+        ContextSnapshotDataLoader loader = new ContextSnapshotDataLoader(state.snapshotFile, state.sourceFiles, String.valueOf(BenchmarkData.typesToLoad()));
+        loader.load();
+        return loader.getDataMaps();
+    }
+}
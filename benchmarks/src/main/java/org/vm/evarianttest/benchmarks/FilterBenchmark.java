@@ -0,0 +1,189 @@
+package org.vm.evarianttest.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vm.evarianttest.calc.PopulationWetnessCalculator;
+import org.vm.evarianttest.entity.Key;
+import org.vm.evarianttest.entity.weather.WBANRainfallRecord;
+import org.vm.evarianttest.filters.CompiledRainfallFilter;
+import org.vm.evarianttest.filters.RainFallExcludeFileHeaderFilter;
+import org.vm.evarianttest.filters.RainFallFileMay2015PeriodIncludeFilter;
+import org.vm.evarianttest.filters.RainFallFileMidNightTo7AMHourWindowExcludeFilter;
+import org.vm.evarianttest.filters.RainfallFileWBANIncludeFilter;
+import org.vm.evarianttest.filters.RainfallFilterSpec;
+import org.vm.evarianttest.reader.RainfallRecordCursor;
+import org.vm.evarianttest.reader.RainfallRecordParser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class benchmarks the filters of org.vm.evarianttest.filters over a batch of records, records being the size of the batch. Every condition is
+ * measured twice: with the deprecated filter class on the raw lines or the built WBANRainfallRecords it was written for, and with a
+ * CompiledRainfallFilter of the same condition on the parsed cursors, as in the readers. Every benchmark returns the number of accepted records.
+ *
+ * The state is per thread, so running with more JMH threads (-t) measures how the filtering scales across cores.
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("deprecation")
+public class FilterBenchmark {
+
+    @Param({"1000", "100000"})
+    public int records;
+
+    private String[] lines;
+    private WBANRainfallRecord[] rainfallRecords;
+    private RainfallRecordCursor[] cursors;
+
+    private RainFallExcludeFileHeaderFilter headerFilter = new RainFallExcludeFileHeaderFilter();
+    private RainFallFileMay2015PeriodIncludeFilter periodFilter = new RainFallFileMay2015PeriodIncludeFilter();
+    private RainFallFileMidNightTo7AMHourWindowExcludeFilter hourFilter = new RainFallFileMidNightTo7AMHourWindowExcludeFilter();
+    private RainfallFileWBANIncludeFilter wbanFilter;
+    private CompiledRainfallFilter compiledFilter = RainfallFilterSpec.parse(PopulationWetnessCalculator.DEFAULT_FILTER).compile();
+    private CompiledRainfallFilter compiledDays = RainfallFilterSpec.parse("days=20150501-20150531").compile();
+    private CompiledRainfallFilter compiledHours = RainfallFilterSpec.parse("hours=8-99").compile();
+    private CompiledRainfallFilter compiledStations;
+
+    @Setup
+    public void setup() throws IOException {
+        List<String> generated = new ArrayList<>(BenchmarkData.rainfallLines(records));
+        // One header per batch, as there is one per file
+        generated.set(0, WBANRainfallRecord.FILE_HEADER);
+        lines = generated.toArray(new String[0]);
+
+        List<WBANRainfallRecord> built = new ArrayList<>();
+        List<RainfallRecordCursor> parsed = new ArrayList<>();
+        for(String line : lines) {
+            if(line.equals(WBANRainfallRecord.FILE_HEADER))
+                continue;
+            built.add(WBANRainfallRecord.build(line));
+            byte[] bytes = line.getBytes(StandardCharsets.US_ASCII);
+            RainfallRecordCursor cursor = new RainfallRecordCursor();
+            if(RainfallRecordParser.parse(ByteBuffer.wrap(bytes), 0, bytes.length, cursor))
+                parsed.add(cursor);
+        }
+        rainfallRecords = built.toArray(new WBANRainfallRecord[0]);
+        cursors = parsed.toArray(new RainfallRecordCursor[0]);
+
+        // Every other station of the master list is linked
+        Map<Key, List<Key>> wbansToInclude = new HashMap<>();
+        RainfallFilterSpec stations = new RainfallFilterSpec();
+        List<String> wbanIds = BenchmarkData.wbanIds();
+        for(int i = 0; i < wbanIds.size(); i += 2) {
+            wbansToInclude.put(new Key(wbanIds.get(i)), Collections.<Key>emptyList());
+            if(RainfallRecordParser.parseWbanId(wbanIds.get(i)) >= 0)
+                stations.addStation(wbanIds.get(i));
+        }
+        wbanFilter = new RainfallFileWBANIncludeFilter(wbansToInclude);
+        compiledStations = stations.compile();
+    }
+
+    @Benchmark
+    public int excludeFileHeader() {
+        int accepted = 0;
+        for(String line : lines) {
+            if(headerFilter.test(line))
+                accepted++;
+        }
+        return accepted;
+    }
+
+    @Benchmark
+    public int includeWBANs() {
+        int accepted = 0;
+        for(String line : lines) {
+            if(wbanFilter.test(line))
+                accepted++;
+        }
+        return accepted;
+    }
+
+    @Benchmark
+    public int includeMay2015Record() {
+        int accepted = 0;
+        for(WBANRainfallRecord record : rainfallRecords) {
+            if(periodFilter.test(record))
+                accepted++;
+        }
+        return accepted;
+    }
+
+    @Benchmark
+    public int includeWBANsCompiled() {
+        int accepted = 0;
+        for(RainfallRecordCursor cursor : cursors) {
+            if(compiledStations.test(cursor))
+                accepted++;
+        }
+        return accepted;
+    }
+
+    @Benchmark
+    public int includeMay2015Compiled() {
+        int accepted = 0;
+        for(RainfallRecordCursor cursor : cursors) {
+            if(compiledDays.test(cursor))
+                accepted++;
+        }
+        return accepted;
+    }
+
+    @Benchmark
+    public int excludeMidNightTo7AMRecord() {
+        int accepted = 0;
+        for(WBANRainfallRecord record : rainfallRecords) {
+            if(hourFilter.test(record))
+                accepted++;
+        }
+        return accepted;
+    }
+
+    @Benchmark
+    public int excludeMidNightTo7AMCompiled() {
+        int accepted = 0;
+        for(RainfallRecordCursor cursor : cursors) {
+            if(compiledHours.test(cursor))
+                accepted++;
+        }
+        return accepted;
+    }
+
+    @Benchmark
+    public int compiledFilter() {
+        int accepted = 0;
+        for(RainfallRecordCursor cursor : cursors) {
+            if(compiledFilter.test(cursor))
+                accepted++;
+        }
+        return accepted;
+    }
+
+    @Benchmark
+    public CompiledRainfallFilter compileFilterSpec() {
+        return RainfallFilterSpec.parse(PopulationWetnessCalculator.DEFAULT_FILTER).compile();
+    }
+}
@@ -0,0 +1,63 @@
+package org.vm.evarianttest.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.NoBenchmarksException;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * This class runs the benchmarks once per thread count and writes the results of every run as JSON, so that the results of a change can be
+ * compared with the results of a baseline run, like with the JMH Visualizer or by diffing the scores.
+ *  -Dthreads=1,2,4 - Thread counts: the JMH threads of the per thread benchmarks, the pool size of the Calculator and ContextDataLoader benchmarks
+ *  -Dbenchmarks=Filter - Regular expression of the benchmarks to run, all by default
+ *  -Dresults=target/jmh - Directory of the JSON results
+ *
+ * Example usage:
+ *
+ * java -Dthreads=1,4 -Dbenchmarks=CalculatorBenchmark -jar target/benchmarks.jar
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+public class RainfallBenchmarks {
+    /** Benchmarks whose state is per thread, scaled with JMH threads */
+    private static final String PER_THREAD_BENCHMARKS = "(RecordParsingBenchmark|FilterBenchmark)";
+    /** Benchmarks that scale through the size of their own thread pool */
+    private static final String POOLED_BENCHMARKS = "(CalculatorBenchmark|DataLoaderBenchmark)";
+
+    public static void main(String[] args) throws RunnerException {
+        String[] threadCounts = System.getProperty("threads", "1").split(",");
+        String benchmarks = System.getProperty("benchmarks", ".*");
+        File results = new File(System.getProperty("results", "target/jmh"));
+        results.mkdirs();
+
+        for(String threadCount : threadCounts) {
+            int threads = Integer.parseInt(threadCount.trim());
+            ChainedOptionsBuilder perThread = new OptionsBuilder()
+                    .include(PER_THREAD_BENCHMARKS + ".*" + benchmarks)
+                    .threads(threads)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(results, "per-thread-" + threads + "t.json").getPath());
+            run(perThread);
+
+            ChainedOptionsBuilder pooled = new OptionsBuilder()
+                    .include(POOLED_BENCHMARKS + ".*" + benchmarks)
+                    .param("threads", String.valueOf(threads))
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(results, "pooled-" + threads + "t.json").getPath());
+            run(pooled);
+        }
+    }
+
+    private static void run(ChainedOptionsBuilder options) throws RunnerException {
+        try {
+            new Runner(options.build()).run();
+        } catch (NoBenchmarksException e) {
+            // The benchmarks asked for are all of the other kind
+        }
+    }
+}
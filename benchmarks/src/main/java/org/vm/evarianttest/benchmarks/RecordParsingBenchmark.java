@@ -0,0 +1,92 @@
+package org.vm.evarianttest.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.vm.evarianttest.entity.weather.WBANRainfallRecord;
+import org.vm.evarianttest.util.Util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class benchmarks the String parsing of the records: WBANRainfallRecord.build() on rainfall lines, and the Util helpers the Data Loaders
+ * parse their rows with. Every operation goes over a batch of records, records being the size of the batch.
+ *
+ * The state is per thread, so running with more JMH threads (-t) measures how the parsing scales across cores.
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordParsingBenchmark {
+    private static final String[] STAT_AREA_NAMES = {"Austin-Round Rock, TX", "New York-Newark-Jersey City, NY-NJ-PA", "Boise City, ID",
+            "\"Dallas-Fort Worth-Arlington\", TX", " Kansas City, MO-KS "};
+
+    @Param({"1000", "100000"})
+    public int records;
+
+    private String[] rainfallLines;
+    private String[] psvLines;
+    private String[] statAreaNames;
+
+    @Setup
+    public void setup() throws IOException {
+        rainfallLines = BenchmarkData.rainfallLines(records).toArray(new String[0]);
+
+        List<String> wbanLines = Files.readAllLines(Paths.get(BenchmarkData.wbanMasterFile()), StandardCharsets.ISO_8859_1);
+        List<String> psv = new ArrayList<>(records);
+        for(int i = 0; psv.size() < records; i++)
+            psv.add(wbanLines.get(1 + i % (wbanLines.size() - 1)));
+        psvLines = psv.toArray(new String[0]);
+
+        Random random = new Random(BenchmarkData.SEED);
+        statAreaNames = new String[records];
+        for(int i = 0; i < records; i++)
+            statAreaNames[i] = STAT_AREA_NAMES[random.nextInt(STAT_AREA_NAMES.length)];
+    }
+
+    @Benchmark
+    public void buildRainfallRecord(Blackhole blackhole) {
+        for(String line : rainfallLines)
+            blackhole.consume(WBANRainfallRecord.build(line));
+    }
+
+    @Benchmark
+    public void splitPSVLine(Blackhole blackhole) {
+        for(String line : psvLines)
+            blackhole.consume(Util.splitPSVLine(line));
+    }
+
+    @Benchmark
+    public void cleanString(Blackhole blackhole) {
+        for(String name : statAreaNames)
+            blackhole.consume(Util.cleanString(name));
+    }
+
+    @Benchmark
+    public void cleanSAName(Blackhole blackhole) {
+        for(String name : statAreaNames)
+            blackhole.consume(Util.cleanSAName(name));
+    }
+}
@@ -0,0 +1,92 @@
+package org.vm.evarianttest.aggregation;
+
+import org.vm.evarianttest.filters.CompiledRainfallFilter;
+import org.vm.evarianttest.metrics.PipelineMetrics;
+import org.vm.evarianttest.reader.RainfallRecordCursor;
+import org.vm.evarianttest.reader.RainfallRecordHandler;
+
+import java.util.List;
+
+/**
+ * This class is the base of the record handlers that sum the precipitation of the records they accept into their own PrecipitationAccumulator. One
+ * handler is created per part of the scan, so the accumulator is never shared between threads.
+ *
+ * The records the handler rejects and the records summed into its accumulator are counted in plain fields and published to the PipelineMetrics once
+ * the part is scanned, so a record costs no shared write.
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+public abstract class AccumulatingRecordHandler implements RainfallRecordHandler {
+    protected final PrecipitationAccumulator accumulator;
+    private long rejectedByContext = 0;
+    private long rejectedByStations = 0;
+    private long rejectedByDays = 0;
+    private long rejectedByHours = 0;
+    private long rejectedByFlags = 0;
+
+    protected AccumulatingRecordHandler(PrecipitationAccumulator accumulator) {
+        this.accumulator = accumulator;
+    }
+
+    public PrecipitationAccumulator getAccumulator() {
+        return accumulator;
+    }
+
+    /**
+     * This method tests a record against a filter, counting the condition that rejected it.
+     *
+     * @param filter - Filter of the calculation
+     * @param cursor - Current record
+     * @return - true if the record is accepted
+     */
+    protected boolean accept(CompiledRainfallFilter filter, RainfallRecordCursor cursor) {
+        if(filter.test(cursor))
+            return true;
+        if(!filter.acceptWban(cursor.getWbanId()))
+            rejectedByStations++;
+        else if(!filter.acceptDay(cursor.getYearMonthDay()))
+            rejectedByDays++;
+        else if(!filter.acceptHour(cursor.getHour()))
+            rejectedByHours++;
+        else
+            rejectedByFlags++;
+        return false;
+    }
+
+    /**
+     * This method counts a record dropped because its WBAN is not linked to the Context Data of the calculation.
+     */
+    protected void rejectUnlinked() {
+        rejectedByContext++;
+    }
+
+    /**
+     * This method publishes the rejected records and the records summed into the accumulator by the part. It is called once per part, before the
+     * accumulator is merged with any other.
+     */
+    @Override
+    public void onPartScanned() {
+        PipelineMetrics metrics = PipelineMetrics.get();
+        metrics.addRejectedByContext(rejectedByContext);
+        metrics.addRejected(rejectedByStations, rejectedByDays, rejectedByHours, rejectedByFlags);
+        metrics.addAggregationUpdates(accumulator.getRecordCount());
+        rejectedByContext = rejectedByStations = rejectedByDays = rejectedByHours = rejectedByFlags = 0;
+    }
+
+    /**
+     * This method merges the accumulators of all the handlers of a scan. The time of the merge is counted in the PipelineMetrics.
+     *
+     * @param target - Empty accumulator to merge into
+     * @param handlers - Handlers of the parts of the scan
+     * @return - target, holding the totals of the scan
+     */
+    public static PrecipitationAccumulator mergeInto(PrecipitationAccumulator target, List<? extends AccumulatingRecordHandler> handlers) {
+        long started = System.nanoTime();
+        for(AccumulatingRecordHandler handler : handlers)
+            target.merge(handler.getAccumulator());
+        PipelineMetrics metrics = PipelineMetrics.get();
+        metrics.mergeStage().add(System.nanoTime() - started, handlers.size());
+        return target;
+    }
+}
@@ -0,0 +1,36 @@
+package org.vm.evarianttest.aggregation;
+
+/**
+ * This enum lists the ways the precipitation can be summed by the Calculators.
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+public enum AggregationMode {
+    /** Compensated sums of doubles, as parsed by Double.parseDouble() */
+    DOUBLE {
+        @Override
+        public PrecipitationAccumulator newAccumulator(int slots) {
+            return new DoublePrecipitationAccumulator(slots);
+        }
+    },
+
+    /** Exact sums of fixed-point longs in thousandths of an inch, converted to BigDecimal only when the results are read */
+    FIXED_POINT {
+        @Override
+        public PrecipitationAccumulator newAccumulator(int slots) {
+            return new FixedPointPrecipitationAccumulator(slots);
+        }
+    };
+
+    /** Mode used by the Calculators unless they are told otherwise */
+    public static final AggregationMode DEFAULT = FIXED_POINT;
+
+    /**
+     * This method creates an empty accumulator of this mode.
+     *
+     * @param slots - Number of slots
+     * @return - New accumulator
+     */
+    public abstract PrecipitationAccumulator newAccumulator(int slots);
+}
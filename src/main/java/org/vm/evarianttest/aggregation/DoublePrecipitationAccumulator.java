@@ -0,0 +1,79 @@
+package org.vm.evarianttest.aggregation;
+
+import org.vm.evarianttest.reader.RainfallRecordCursor;
+
+import java.math.BigDecimal;
+
+/**
+ * This class accumulates the precipitation as primitive doubles, as parsed by Double.parseDouble().
+ *
+ * A plain double sum drifts (ten times 0.1 is 0.9999999999999999), where summing the amounts as BigDecimals gave the exact total. The sums are
+ * therefore compensated (Neumaier summation): the rounding error of every addition is kept in a second double and added back at the end, which
+ * keeps the total within a few ulps of the exact one. The last bits can still differ with the number of parts and their merge order, so use
+ * AggregationMode.FIXED_POINT where the totals must be the same from one run to the next.
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+public class DoublePrecipitationAccumulator implements PrecipitationAccumulator {
+    private final double[] sums;
+    private final double[] compensations;
+    private final long[] counts;
+
+    public DoublePrecipitationAccumulator(int slots) {
+        this.sums = new double[slots];
+        this.compensations = new double[slots];
+        this.counts = new long[slots];
+    }
+
+    @Override
+    public void add(int slot, RainfallRecordCursor record) {
+        add(slot, record.getPrecipitation());
+        counts[slot]++;
+    }
+
+    private void add(int slot, double value) {
+        double sum = sums[slot];
+        double total = sum + value;
+        if(Math.abs(sum) >= Math.abs(value))
+            compensations[slot] += (sum - total) + value;
+        else
+            compensations[slot] += (value - total) + sum;
+        sums[slot] = total;
+    }
+
+    @Override
+    public void merge(PrecipitationAccumulator other) {
+        DoublePrecipitationAccumulator that = (DoublePrecipitationAccumulator) other;
+        if(that.sums.length != sums.length)
+            throw new IllegalArgumentException("Cannot merge " + that.sums.length + " slots into " + sums.length);
+        for(int slot = 0; slot < sums.length; slot++) {
+            add(slot, that.sums[slot]);
+            compensations[slot] += that.compensations[slot];
+            counts[slot] += that.counts[slot];
+        }
+    }
+
+    @Override
+    public boolean isSet(int slot) {
+        return counts[slot] > 0;
+    }
+
+    @Override
+    public BigDecimal get(int slot) {
+        return new BigDecimal(sums[slot] + compensations[slot]);
+    }
+
+    @Override
+    public long getRecordCount() {
+        long total = 0;
+        for(long count : counts)
+            total += count;
+        return total;
+    }
+
+    @Override
+    public int size() {
+        return sums.length;
+    }
+}
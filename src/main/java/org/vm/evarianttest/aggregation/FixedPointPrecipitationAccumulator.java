@@ -0,0 +1,85 @@
+package org.vm.evarianttest.aggregation;
+
+import org.vm.evarianttest.reader.RainfallRecordCursor;
+
+import java.math.BigDecimal;
+
+/**
+ * This class accumulates the precipitation as fixed-point longs, in thousandths of an inch (RainfallRecordCursor.PRECIPITATION_SCALE). The amounts
+ * are taken from the parsed digits without going through a double, so the sums are plain long additions and the totals are exact and the same
+ * whatever the number of parts and their merge order. A BigDecimal is only created when the total of a slot is read.
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+public class FixedPointPrecipitationAccumulator implements PrecipitationAccumulator {
+    private final long[] sums;
+    private final long[] counts;
+
+    public FixedPointPrecipitationAccumulator(int slots) {
+        this.sums = new long[slots];
+        this.counts = new long[slots];
+    }
+
+    @Override
+    public void add(int slot, RainfallRecordCursor record) {
+        sums[slot] += record.getScaledPrecipitation();
+        counts[slot]++;
+    }
+
+    /**
+     * This method adds records that are already summed, like the difference of two prefix sums.
+     *
+     * @param slot - Slot
+     * @param scaledSum - Sum of the precipitation of the records in thousandths of an inch
+     * @param count - Number of records
+     */
+    public void add(int slot, long scaledSum, long count) {
+        sums[slot] += scaledSum;
+        counts[slot] += count;
+    }
+
+    @Override
+    public void merge(PrecipitationAccumulator other) {
+        FixedPointPrecipitationAccumulator that = (FixedPointPrecipitationAccumulator) other;
+        if(that.sums.length != sums.length)
+            throw new IllegalArgumentException("Cannot merge " + that.sums.length + " slots into " + sums.length);
+        for(int slot = 0; slot < sums.length; slot++) {
+            sums[slot] += that.sums[slot];
+            counts[slot] += that.counts[slot];
+        }
+    }
+
+    @Override
+    public boolean isSet(int slot) {
+        return counts[slot] > 0;
+    }
+
+    @Override
+    public BigDecimal get(int slot) {
+        return BigDecimal.valueOf(sums[slot], RainfallRecordCursor.PRECIPITATION_SCALE);
+    }
+
+    /**
+     * This method returns the sum of a slot without converting it.
+     *
+     * @param slot - Slot
+     * @return - Sum of the precipitation in thousandths of an inch
+     */
+    public long getScaled(int slot) {
+        return sums[slot];
+    }
+
+    @Override
+    public long getRecordCount() {
+        long total = 0;
+        for(long count : counts)
+            total += count;
+        return total;
+    }
+
+    @Override
+    public int size() {
+        return sums.length;
+    }
+}
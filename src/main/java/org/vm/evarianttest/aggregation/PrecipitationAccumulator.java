@@ -0,0 +1,61 @@
+package org.vm.evarianttest.aggregation;
+
+import org.vm.evarianttest.reader.RainfallRecordCursor;
+
+import java.math.BigDecimal;
+
+/**
+ * This interface defines a set of precipitation sums, one per slot, where a slot is the dense index of whatever is aggregated on (a Statistical
+ * Area, a State...).
+ *
+ * An accumulator is confined to the thread scanning one part of the rainfall dataset, so adding to it takes no lock and creates no object. The
+ * accumulators of all the parts are merged once at the end of the scan, which gives the same totals whatever the parallelism.
+ *
+ * @author vivekm
+ * @since 1.0
+ * @see AggregationMode
+ */
+public interface PrecipitationAccumulator {
+    /**
+     * This method adds the precipitation of a record to a slot.
+     *
+     * @param slot - Slot to add to
+     * @param record - Rainfall record
+     */
+    public void add(int slot, RainfallRecordCursor record);
+
+    /**
+     * This method adds the sums of another accumulator of the same mode and size into this one.
+     *
+     * @param other - Accumulator to merge
+     */
+    public void merge(PrecipitationAccumulator other);
+
+    /**
+     * This method tells whether any record was added to a slot, even one with no precipitation.
+     *
+     * @param slot - Slot
+     * @return - true if the slot has a sum
+     */
+    public boolean isSet(int slot);
+
+    /**
+     * This method returns the sum of a slot.
+     *
+     * @param slot - Slot
+     * @return - Sum of the precipitation in inches
+     */
+    public BigDecimal get(int slot);
+
+    /**
+     * This method returns the number of records added over all the slots, a record added to several slots counting once per slot.
+     *
+     * @return - Number of records added
+     */
+    public long getRecordCount();
+
+    /**
+     * This method returns the number of slots.
+     */
+    public int size();
+}
@@ -0,0 +1,103 @@
+package org.vm.evarianttest.cache;
+
+import org.vm.evarianttest.loader.ContextSnapshotDataLoader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * This class identifies the content of an input file by its size, its last modified time and the CRC32 checksum of its content. Two fingerprints
+ * are equal only when the file is the same and was not changed in between, so results keyed by the fingerprint of their input are invalidated as
+ * soon as the input changes.
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+public final class InputFingerprint {
+    private final Path path;
+    private final long size;
+    private final long lastModified;
+    private final long checksum;
+
+    /**
+     * Constructor
+     *
+     * @param path - Absolute path of the input file
+     * @param size - Size in bytes
+     * @param lastModified - Last modified time in milliseconds
+     * @param checksum - CRC32 of the content
+     */
+    public InputFingerprint(Path path, long size, long lastModified, long checksum) {
+        this.path = path;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.checksum = checksum;
+    }
+
+    /**
+     * This method fingerprints a file, reading all of its content.
+     *
+     * @param path - Input file
+     * @return - Fingerprint of the file
+     * @throws IOException
+     */
+    public static InputFingerprint of(Path path) throws IOException {
+        Path absolute = path.toAbsolutePath().normalize();
+        long size = Files.size(absolute);
+        long lastModified = Files.getLastModifiedTime(absolute).toMillis();
+        return new InputFingerprint(absolute, size, lastModified, ContextSnapshotDataLoader.checksum(absolute));
+    }
+
+    /**
+     * This method tells whether the size and the last modified time of the file are the ones of this fingerprint, which is how a fingerprint is
+     * reused without reading the file again.
+     *
+     * @param size - Current size of the file
+     * @param lastModified - Current last modified time of the file
+     * @return - true if neither changed
+     */
+    public boolean isSameFile(long size, long lastModified) {
+        return this.size == size && this.lastModified == lastModified;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public long getChecksum() {
+        return checksum;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        InputFingerprint that = (InputFingerprint) o;
+
+        return size == that.size && lastModified == that.lastModified && checksum == that.checksum && path.equals(that.path);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = path.hashCode();
+        result = 31 * result + Long.hashCode(size);
+        result = 31 * result + Long.hashCode(lastModified);
+        result = 31 * result + Long.hashCode(checksum);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return path + "@" + size + "/" + lastModified + "/" + Long.toHexString(checksum);
+    }
+}
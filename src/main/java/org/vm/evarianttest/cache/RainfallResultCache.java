@@ -0,0 +1,340 @@
+package org.vm.evarianttest.cache;
+
+import org.vm.evarianttest.entity.Key;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class implements a cache of calculated results, so that asking again for a result of the same inputs with the same parameters costs a lookup
+ * instead of a scan of the rainfall file.
+ *
+ * A result is keyed by the fingerprint (size, last modified time and CRC32 of the content) of every input file and by a description of the
+ * calculation, like the Calculator type, its filter and its aggregation mode. The checksum of a file is only computed again when its size or its
+ * last modified time changes, so a lookup costs a stat of the inputs and a hash lookup. When an input is seen changed, the results of its previous
+ * content are dropped.
+ *
+ * The results are kept in memory in least recently used order, within a bound of estimated bytes. With a directory, every result is also written to
+ * disk, so the results survive a restart and the results evicted from memory are read back instead of calculated again.
+ *
+ * Disk entry layout:
+ *  int    MAGIC
+ *  int    FORMAT_VERSION
+ *  UTF    cache key
+ *  bytes  serialized result
+ *
+ * Example usage:
+ *
+ * RainfallResultCache cache = new RainfallResultCache(16 * 1024 * 1024, Paths.get("./src/main/out/results"));
+ * Map result = cache.get(Arrays.asList(rainfallFile), "PopulationWetness|days=20150501-20150531", () -> calc.calculate());
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+public class RainfallResultCache {
+    public static final int MAGIC = 0x52465243;
+    public static final int FORMAT_VERSION = 1;
+
+    /** Estimated bytes held by one entry of a result: the map node, the Key with its String and the BigDecimal */
+    static final long RESULT_ENTRY_BYTES = 160;
+    /** Estimated bytes held by a cached result besides its entries */
+    static final long RESULT_BYTES = 128;
+
+    private Logger log = Logger.getLogger(this.getClass().getName());
+
+    private final long maxBytes;
+    private final Path directory;
+    private final Map<Path, InputFingerprint> fingerprints = new ConcurrentHashMap<>();
+    private final LinkedHashMap<String, Map<Key, BigDecimal>> results = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+    private long hitCount = 0;
+    private long diskHitCount = 0;
+    private long missCount = 0;
+
+    /**
+     * Constructor for a cache held in memory only.
+     *
+     * @param maxBytes - Estimated bytes of results kept in memory
+     */
+    public RainfallResultCache(long maxBytes) {
+        this(maxBytes, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maxBytes - Estimated bytes of results kept in memory
+     * @param directory - Directory the results are also written to, or null to keep them in memory only
+     */
+    public RainfallResultCache(long maxBytes, Path directory) {
+        if(maxBytes < 0)
+            throw new IllegalArgumentException("Max bytes should not be negative but was " + maxBytes);
+        this.maxBytes = maxBytes;
+        this.directory = directory;
+    }
+
+    /**
+     * This method returns the cached result of a calculation on the inputs, calculating it when it is not cached. The returned result is not
+     * modifiable, as it is shared by every caller asking for it.
+     *
+     * @param inputs - Files the result is calculated from, the first one being the rainfall file
+     * @param calculation - Description of everything else the result depends on
+     * @param calculator - Calculates the result on a miss
+     * @return - Cached or calculated result
+     */
+    public Map<Key, BigDecimal> get(List<Path> inputs, String calculation, Supplier<Map<Key, BigDecimal>> calculator) {
+        String key = key(inputs, calculation);
+        Map<Key, BigDecimal> result = memoryGet(key);
+        if(result != null)
+            return result;
+
+        result = diskGet(inputs.get(0), key);
+        if(result == null) {
+            synchronized (this) {
+                missCount++;
+            }
+            result = Collections.unmodifiableMap(new LinkedHashMap<>(calculator.get()));
+            diskPut(inputs.get(0), key, result);
+        } else {
+            synchronized (this) {
+                diskHitCount++;
+            }
+        }
+        memoryPut(key, result);
+        return result;
+    }
+
+    /**
+     * This method returns the fingerprint of a file, checksumming the file again only if it has changed since it was last seen. When it has changed,
+     * the cached results of its previous content are dropped.
+     *
+     * @param path - Input file
+     * @return - Current fingerprint of the file
+     */
+    public InputFingerprint fingerprint(Path path) {
+        Path absolute = path.toAbsolutePath().normalize();
+        try {
+            InputFingerprint known = fingerprints.get(absolute);
+            if(known != null && known.isSameFile(Files.size(absolute), Files.getLastModifiedTime(absolute).toMillis()))
+                return known;
+            InputFingerprint current = InputFingerprint.of(absolute);
+            fingerprints.put(absolute, current);
+            if(known != null && !known.equals(current))
+                invalidate(known);
+            return current;
+        } catch (IOException e) {
+            log.log(Level.SEVERE, "Error occurred while processing " + absolute, e);
+            throw new RuntimeException("Error occurred while processing " + absolute, e);
+        }
+    }
+
+    /**
+     * This method drops the results kept in memory, the results on disk are kept.
+     */
+    public synchronized void clear() {
+        results.clear();
+        bytes = 0;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return - Number of results kept in memory
+     */
+    public synchronized int getSize() {
+        return results.size();
+    }
+
+    /**
+     * @return - Estimated bytes of the results kept in memory
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return - Number of results found in memory
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return - Number of results read back from disk
+     */
+    public synchronized long getDiskHitCount() {
+        return diskHitCount;
+    }
+
+    /**
+     * @return - Number of results calculated
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    private String key(List<Path> inputs, String calculation) {
+        if(inputs.isEmpty())
+            throw new IllegalArgumentException("A cached result should have at least one input");
+        StringBuilder key = new StringBuilder();
+        for(Path input : inputs)
+            key.append(fingerprint(input)).append('|');
+        return key.append(calculation).toString();
+    }
+
+    private synchronized Map<Key, BigDecimal> memoryGet(String key) {
+        Map<Key, BigDecimal> result = results.get(key);
+        if(result != null)
+            hitCount++;
+        return result;
+    }
+
+    private synchronized void memoryPut(String key, Map<Key, BigDecimal> result) {
+        long size = estimate(key, result);
+        if(size > maxBytes)
+            return;
+        Map<Key, BigDecimal> replaced = results.put(key, result);
+        if(replaced != null)
+            bytes -= estimate(key, replaced);
+        bytes += size;
+
+        // The least recently used results are evicted first
+        Iterator<Map.Entry<String, Map<Key, BigDecimal>>> eldest = results.entrySet().iterator();
+        while(bytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Map<Key, BigDecimal>> entry = eldest.next();
+            bytes -= estimate(entry.getKey(), entry.getValue());
+            eldest.remove();
+        }
+    }
+
+    private static long estimate(String key, Map<Key, BigDecimal> result) {
+        return RESULT_BYTES + 2L * key.length() + RESULT_ENTRY_BYTES * result.size();
+    }
+
+    /**
+     * This method drops the results of the previous content of an input, in memory and on disk.
+     */
+    private void invalidate(InputFingerprint previous) {
+        String stale = previous.toString() + '|';
+        synchronized (this) {
+            Iterator<Map.Entry<String, Map<Key, BigDecimal>>> entries = results.entrySet().iterator();
+            while(entries.hasNext()) {
+                Map.Entry<String, Map<Key, BigDecimal>> entry = entries.next();
+                if(entry.getKey().contains(stale)) {
+                    bytes -= estimate(entry.getKey(), entry.getValue());
+                    entries.remove();
+                }
+            }
+        }
+        if(directory == null || !Files.isDirectory(directory))
+            return;
+        // Only the entries of the rainfall file are found by name, the others are never read again as their key is stale
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, hash(previous.getPath().toString(), 8) + "-*")) {
+            for(Path file : files)
+                Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Could not delete the stale results of " + previous.getPath(), e);
+        }
+        log.fine("Dropped the results of " + previous);
+    }
+
+    private Path diskFile(Path input, String key) {
+        return directory.resolve(hash(input.toAbsolutePath().normalize().toString(), 8) + "-" + hash(key, 16) + ".result");
+    }
+
+    private Map<Key, BigDecimal> diskGet(Path input, String key) {
+        if(directory == null)
+            return null;
+        Path file = diskFile(input, key);
+        if(!Files.isRegularFile(file))
+            return null;
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if(in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !key.equals(in.readUTF()))
+                return null;
+            @SuppressWarnings("unchecked")
+            Map<Key, BigDecimal> result = (Map<Key, BigDecimal>) new ObjectInputStream(in).readObject();
+            return Collections.unmodifiableMap(result);
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            // A result that cannot be read is calculated again
+            log.log(Level.WARNING, "Cached result " + file + " cannot be used", e);
+            return null;
+        }
+    }
+
+    /**
+     * This method writes a result to a temporary file first and then moves it in place, so a failed write never leaves a truncated result behind.
+     */
+    private void diskPut(Path input, String key, Map<Key, BigDecimal> result) {
+        if(directory == null)
+            return;
+        Path file = diskFile(input, key);
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(key);
+                ObjectOutputStream objects = new ObjectOutputStream(out);
+                objects.writeObject(new LinkedHashMap<>(result));
+                objects.flush();
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The result is still kept in memory
+            log.log(Level.WARNING, "Could not write the result to " + file, e);
+        } finally {
+            if(temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    log.log(Level.FINE, "Could not delete " + temp, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return - First bytes of the SHA-256 of the text, in hex
+     */
+    private static String hash(String text, int byteCount) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for(int i = 0; i < byteCount; i++)
+                hex.append(String.format("%02x", digest[i]));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -1,8 +1,8 @@
 package org.vm.evarianttest.calc;
 
-import org.vm.evarianttest.entity.Key;
-
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * This interface defines some sort of computational operation in the system using system Entites, resulting in a computed value as a Map.
@@ -16,7 +16,7 @@ public interface Calculator <K, V> {
      *
      * @return Map containing results
      */
-    public Map<Key, Object> calculate();
+    public Map<K, V> calculate();
 
     /**
      * This method performs a calculation and retusn the result as a single Object. Example computing a sum of two integers.
@@ -31,4 +31,14 @@ public interface Calculator <K, V> {
      * @return
      */
     public StringBuilder getPrettyResult();
+
+    /**
+     * This method returns the names of the maps of Context Data the calculation reads, like Constants.WBAN_MASTER_MAP, so that only those maps need to
+     * be loaded.
+     *
+     * @return - Names of the maps of Context Data
+     */
+    default Set<String> getRequiredMaps() {
+        return Collections.emptySet();
+    }
 }
@@ -1,59 +1,132 @@
 package org.vm.evarianttest.calc;
 
+import org.vm.evarianttest.aggregation.AccumulatingRecordHandler;
+import org.vm.evarianttest.aggregation.AggregationMode;
+import org.vm.evarianttest.aggregation.PrecipitationAccumulator;
+import org.vm.evarianttest.context.ContextDictionary;
 import org.vm.evarianttest.entity.Entity;
 import org.vm.evarianttest.entity.Key;
 import org.vm.evarianttest.entity.census.USAStatAreaPopulationRecord;
-import org.vm.evarianttest.entity.census.USAStatisticalArea;
-import org.vm.evarianttest.entity.weather.WBANRainfallRecord;
-import org.vm.evarianttest.filters.RainFallExcludeFileHeaderFilter;
-import org.vm.evarianttest.filters.RainFallFileMay2015PeriodIncludeFilter;
-import org.vm.evarianttest.filters.RainFallFileMidNightTo7AMHourWindowExcludeFilter;
-import org.vm.evarianttest.filters.RainfallFileWBANIncludeFilter;
+import org.vm.evarianttest.filters.CompiledRainfallFilter;
+import org.vm.evarianttest.filters.RainfallFilterSpec;
 import org.vm.evarianttest.loader.Constants;
+import org.vm.evarianttest.query.RainfallTimeRangeIndex;
+import org.vm.evarianttest.query.TimeWindow;
+import org.vm.evarianttest.reader.RainfallKeyFilter;
+import org.vm.evarianttest.reader.RainfallRecordCursor;
+import org.vm.evarianttest.reader.RainfallRecordParser;
+import org.vm.evarianttest.reader.RainfallSource;
+import org.vm.evarianttest.store.RainfallSources;
 import org.vm.evarianttest.util.Util;
 
 import java.math.BigDecimal;
 import java.net.URI;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.function.BiConsumer;
-import java.util.function.Consumer;
-import java.util.function.Function;
+import java.util.function.IntFunction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Stream;
 
 /**
  * This Calculator implements the logic to compute the Population Wetness for a given set of Statistical Areas.
  * Formula to compute Population Wetness = population * (aggregated Railfall for that Statistical Area)
  *
  * Processor process:
- *  Open Stream
+ *  Scan the RainfallSource in parallel parts, by default the text file mapped in line aligned chunks (MappedRainfallFileReader) or its binary conversion (MappedRainfallBinaryReader)
+ *  Parse the lines in place into a RainfallRecordCursor
  *  Apply all Filters
- *  On filtered records -> Apply in parallel -> Reducers
+ *  Route the records to their Statistical Areas through the int arrays of the ContextDictionary
+ *  On filtered records -> Sum the rainfall per Statistical Area into the accumulator of the part, without any lock
+ *  Merge the accumulators of all the parts -> Reducers
  *  Return result
  *
  *  @author vivekm
  *  @since 1.0
  */
-public class PopulationWetnessCalculator implements Calculator{
+public class PopulationWetnessCalculator implements ScanningCalculator<AccumulatingRecordHandler> {
     private Logger log = Logger.getLogger(this.getClass().getName());
 
+    /** Statistical Areas with their population, and the WBANs linked to them */
+    public static final Set<String> REQUIRED_MAPS = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(Constants.STAT_AREA_MAP_NAME, Constants.WBAN_MASTER_MAP)));
+
     private Map<String, Map<Key, Entity>> maps;
     private URI absFilePath;
+    private RainfallSource source;
     private Map<Key, Entity> statAreaMap;
-    private Map<Key, BigDecimal> result = Collections.synchronizedMap(new TreeMap<>());
-    private Map<Key, List<Key>> wbanSAmap = Collections.synchronizedMap(new LinkedHashMap<>());
+    private Map<Key, BigDecimal> result = new TreeMap<>();
+    private AggregationMode aggregationMode = AggregationMode.DEFAULT;
+
+    /** Dense ids of the context data. The Statistical Areas of a WBAN are the WBAN include filter of the record handler. */
+    private ContextDictionary dictionary;
+
+    /** Records of May 2015, skipping the hours from midNight (0) to 7 AM */
+    public static final String DEFAULT_FILTER = "days=20150501-20150531;hours=8-" + RainfallRecordParser.MAX_HOUR;
+
+    private CompiledRainfallFilter filter = RainfallFilterSpec.parse(DEFAULT_FILTER).compile();
+
+    /**
+     * Record handler of one part of the rainfall file, summing the rainfall per Statistical Area. The header and malformed lines are already dropped
+     * by the parser. The handler is also its key filter, so the text reader drops the lines of other WBANs, periods and hours before parsing their
+     * precipitation.
+     */
+    private class AreaRainfallHandler extends AccumulatingRecordHandler implements RainfallKeyFilter {
+        private final ContextDictionary dictionary = PopulationWetnessCalculator.this.dictionary;
+        private final CompiledRainfallFilter filter = PopulationWetnessCalculator.this.filter;
+
+        AreaRainfallHandler() {
+            super(aggregationMode.newAccumulator(PopulationWetnessCalculator.this.dictionary.getAreaCount()));
+        }
+
+        @Override
+        public void onRecord(RainfallRecordCursor rec) {
+            // Filter WBANs that are attached to the Statistical Areas
+            int[] areaIds = dictionary.getAreaIds(rec.getWbanId());
+            if(areaIds == null) {
+                rejectUnlinked();
+                return;
+            }
+            // Filter the period, by default May 2015 skipping hours between midNight (0) and 7 AM
+            if(accept(filter, rec)) {
+                // Aggregate the rainfall data per SA
+                for(int areaId : areaIds)
+                    accumulator.add(areaId, rec);
+            }
+        }
+
+        @Override
+        public RainfallKeyFilter getKeyFilter() {
+            return this;
+        }
+
+        @Override
+        public boolean acceptWban(int wbanId) {
+            return dictionary.getAreaIds(wbanId) != null && filter.acceptWban(wbanId);
+        }
+
+        @Override
+        public boolean isLinkedWban(int wbanId) {
+            return dictionary.getAreaIds(wbanId) != null;
+        }
+
+        @Override
+        public boolean acceptDay(int yearMonthDay) {
+            return filter.acceptDay(yearMonthDay);
+        }
+
+        @Override
+        public boolean acceptHour(int hour) {
+            return filter.acceptHour(hour);
+        }
+    }
 
     /**
      * Constructor
@@ -62,7 +135,18 @@ public class PopulationWetnessCalculator implements Calculator{
      * @param maps - Map of context data
      */
     public PopulationWetnessCalculator(URI absFilePath, Map<String, Map<Key, Entity>> maps){
+        this(RainfallSources.open(Paths.get(absFilePath)), maps);
         this.absFilePath = absFilePath;
+    }
+
+    /**
+     * Constructor for any source of rainfall records, like a ColumnarRainfallStore that is already loaded.
+     *
+     * @param source - Rainfall dataset
+     * @param maps - Map of context data
+     */
+    public PopulationWetnessCalculator(RainfallSource source, Map<String, Map<Key, Entity>> maps){
+        this.source = source;
         this.maps = maps;
         this.statAreaMap = maps.get(Constants.STAT_AREA_MAP_NAME);
     }
@@ -71,70 +155,124 @@ public class PopulationWetnessCalculator implements Calculator{
         return absFilePath;
     }
 
+    public RainfallSource getSource() {
+        return source;
+    }
+
+    public ContextDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * This method shares the dictionary of the context data with other Calculators. Without it the dictionary is built on the first calculation.
+     *
+     * @param dictionary - Dictionary built from the same context data
+     */
+    public void setDictionary(ContextDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    public AggregationMode getAggregationMode() {
+        return aggregationMode;
+    }
+
+    /**
+     * This method sets how the rainfall is summed, exactly in fixed point (AggregationMode.DEFAULT) unless told otherwise.
+     *
+     * @param aggregationMode - Aggregation mode
+     */
+    public void setAggregationMode(AggregationMode aggregationMode) {
+        this.aggregationMode = aggregationMode;
+    }
+
+    public CompiledRainfallFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * This method sets the records the rainfall is summed over, May 2015 after 7 AM (DEFAULT_FILTER) unless told otherwise.
+     *
+     * @param spec - Records to keep
+     */
+    public void setFilter(RainfallFilterSpec spec) {
+        this.filter = spec.compile();
+    }
+
+    @Override
+    public Set<String> getRequiredMaps() {
+        return REQUIRED_MAPS;
+    }
+
     @Override
     public Map<Key, BigDecimal> calculate() {
-        Path path = Paths.get(getAbsFilePath());
-
-        Util.validateInput(path);
-        log.fine("Input file: " + getAbsFilePath().toASCIIString());
-        buildWbanMSAmap();
-
-        try(Stream<String> lines = Files.lines(path)
-                .onClose(() -> log.fine("Rainfall DataFile closed"))){
-            lines.parallel()
-                    // Filter the Header record
-                    .filter(new RainFallExcludeFileHeaderFilter())
-                    .parallel()
-                    // Filter WBANs that are attached to the Statistical Areas
-                    .filter(new RainfallFileWBANIncludeFilter(wbanSAmap))
-                    .map(new Function<String, WBANRainfallRecord>() {
-                        @Override
-                        public WBANRainfallRecord apply(String s) {
-                            return WBANRainfallRecord.build(s);
-                        }
-                    })
-                    .parallel()
-                    // Filter the period of May 2015
-                    .filter(o -> {
-                        return new RainFallFileMay2015PeriodIncludeFilter().test(o);
-                    })
-                    .parallel()
-                    // Skip hours between midNight (0) and 7 AM
-                    .filter(o -> {
-                        return new RainFallFileMidNightTo7AMHourWindowExcludeFilter().test(o);
-                    })
-                    .parallel()
-                    .forEach(new Consumer<WBANRainfallRecord>() {
-                        @Override
-                        public void accept(WBANRainfallRecord rec) {
-                            Key wbanKey = new Key(rec.getWbanId());
-                            Optional<List<Key>> areaKeys = Optional.ofNullable(wbanSAmap.get(wbanKey));
-                            areaKeys.ifPresent(new Consumer<List<Key>>() {
-                                @Override
-                                public void accept(List<Key> keys) {
-                                    keys.stream().parallel().forEach(new Consumer<Key>() {
-                                        @Override
-                                        public void accept(Key key) {
-                                            // Aggregate the rainfall data per SA
-                                            if (!result.containsKey(key)) {
-                                                result.put(key, new BigDecimal(rec.getPrecipitation()));
-                                            } else {
-                                                BigDecimal value = result.get(key).add(new BigDecimal(rec.getPrecipitation()));
-                                                result.put(key, value);
-                                            }
-                                        }
-                                    });
-                                }
-                            });
-                        }
-                    })
-            ;
+        if(getAbsFilePath() != null)
+            Util.validateInput(Paths.get(getAbsFilePath()));
+        log.fine("Input: " + source);
+        prepare();
+
+        List<AccumulatingRecordHandler> handlers;
+        try{
+            handlers = source.scan(this::newHandler);
         } catch (Exception ex){
-            log.log(Level.SEVERE, "Error occurred while processing " + getAbsFilePath().toASCIIString(), ex);
-            throw new RuntimeException("Error occurred while processing " + getAbsFilePath().toASCIIString(), ex);
+            log.log(Level.SEVERE, "Error occurred while processing " + source, ex);
+            throw new RuntimeException("Error occurred while processing " + source, ex);
+        }
+        return complete(handlers);
+    }
+
+    /**
+     * This method calculates the statistic over a window of time from the prefix sums of the index, without scanning the records.
+     * The days and hours of the filter are replaced by the window, its stations are kept. The index does not keep the PrecipitationFlag, so a
+     * filter that excludes flags cannot be applied.
+     *
+     * @param index - Index of the rainfall dataset
+     * @param window - Time window
+     * @return - Computed results
+     * @throws IllegalStateException - If the filter excludes flags
+     */
+    public Map<Key, BigDecimal> calculate(RainfallTimeRangeIndex index, TimeWindow window) {
+        if(filter.excludesFlags())
+            throw new IllegalStateException("The index does not keep the PrecipitationFlag, the filter " + filter + " cannot be applied to it");
+        prepare();
+        CompiledRainfallFilter stations = filter;
+        return complete(index.aggregate(window, dictionary.getAreaCount(), new IntFunction<int[]>() {
+            @Override
+            public int[] apply(int wbanId) {
+                return stations.acceptWban(wbanId) ? dictionary.getAreaIds(wbanId) : null;
+            }
+        }));
+    }
+
+    @Override
+    public void prepare() {
+        if(dictionary == null)
+            dictionary = ContextDictionary.build(maps);
+    }
+
+    @Override
+    public AccumulatingRecordHandler newHandler() {
+        return new AreaRainfallHandler();
+    }
+
+    @Override
+    public Map<Key, BigDecimal> complete(List<AccumulatingRecordHandler> handlers) {
+        return complete(AccumulatingRecordHandler.mergeInto(aggregationMode.newAccumulator(dictionary.getAreaCount()), handlers));
+    }
+
+    /**
+     * This method computes the result from the rainfall summed per Statistical Area.
+     *
+     * @param rainfall - Rainfall per Statistical Area
+     * @return - Computed results
+     */
+    public Map<Key, BigDecimal> complete(PrecipitationAccumulator rainfall) {
+        Map<Key, BigDecimal> aggregated = new TreeMap<>();
+        for(int areaId = 0; areaId < dictionary.getAreaCount(); areaId++) {
+            if(rainfall.isSet(areaId))
+                aggregated.put(dictionary.getAreaKey(areaId), rainfall.get(areaId));
         }
-        computeWetness(result);
-        result = Util.sortByValue(result);
+        computeWetness(aggregated);
+        result = Util.sortByValue(aggregated);
         return result;
     }
 
@@ -155,27 +293,19 @@ public class PopulationWetnessCalculator implements Calculator{
     }
 
     /**
-     * This method builds a map of WBANs and associated List of Statistical Areas.
+     * This method returns the k Statistical Areas with the largest Population Wetness of the last calculation, from the largest value down. Equal values are ranked by key, so no
+     * result is dropped and the ranking is the same on every run.
+     *
+     * @param k - Number of results, the size of the result for the full ranking
+     * @return - Top results
      */
-    private void buildWbanMSAmap() {
-        this.statAreaMap.values().forEach(new Consumer<Entity>() {
-            @Override
-            public void accept(Entity entity) {
-                USAStatAreaPopulationRecord rec = (USAStatAreaPopulationRecord) entity;
-                USAStatisticalArea area = rec.getArea();
-                area.getWeatherStations().keySet().parallelStream().forEach(new Consumer<Key>() {
-                    @Override
-                    public void accept(Key wbanKey) {
-                        List<Key> areaKeys = wbanSAmap.get(wbanKey);
-                        if (areaKeys == null) {
-                            areaKeys = new LinkedList<Key>();
-                        }
-                        areaKeys.add(area.key());
-                        wbanSAmap.put(wbanKey, areaKeys);
-                    }
-                });
-            }});
-        log.log(Level.FINE, "WBAN - SA Map size " + wbanSAmap.size());
+    public List<Map.Entry<Key, BigDecimal>> getTopResults(int k) {
+        return Util.topByValue(result, k);
+    }
+
+    @Override
+    public void setResult(Map<Key, BigDecimal> result) {
+        this.result = result;
     }
 
     @Override
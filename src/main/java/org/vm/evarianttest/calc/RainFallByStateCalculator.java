@@ -1,32 +1,37 @@
 package org.vm.evarianttest.calc;
 
+import org.vm.evarianttest.aggregation.AccumulatingRecordHandler;
+import org.vm.evarianttest.aggregation.AggregationMode;
+import org.vm.evarianttest.aggregation.PrecipitationAccumulator;
+import org.vm.evarianttest.context.ContextDictionary;
 import org.vm.evarianttest.entity.Entity;
 import org.vm.evarianttest.entity.Key;
-import org.vm.evarianttest.entity.census.USACounty;
 import org.vm.evarianttest.entity.census.USAState;
-import org.vm.evarianttest.entity.weather.WBAN;
-import org.vm.evarianttest.entity.weather.WBANRainfallRecord;
-import org.vm.evarianttest.filters.RainFallExcludeFileHeaderFilter;
+import org.vm.evarianttest.filters.CompiledRainfallFilter;
+import org.vm.evarianttest.filters.RainfallFilterSpec;
 import org.vm.evarianttest.loader.Constants;
+import org.vm.evarianttest.query.RainfallTimeRangeIndex;
+import org.vm.evarianttest.query.TimeWindow;
+import org.vm.evarianttest.reader.RainfallKeyFilter;
+import org.vm.evarianttest.reader.RainfallRecordCursor;
+import org.vm.evarianttest.reader.RainfallSource;
+import org.vm.evarianttest.store.RainfallSources;
 import org.vm.evarianttest.util.Util;
 
 import java.math.BigDecimal;
 import java.net.URI;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.function.BiConsumer;
-import java.util.function.Consumer;
-import java.util.function.Function;
+import java.util.function.IntFunction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Stream;
 
 /**
  * This Calculator implements the logic to compute the Rainfall amount for all States.
@@ -34,21 +39,79 @@ import java.util.stream.Stream;
  * Formula to compute = Aaggregated Railfall for every State
  *
  * Processor process:
- *  Open Stream
+ *  Scan the RainfallSource in parallel parts, by default the text file mapped in line aligned chunks (MappedRainfallFileReader) or its binary conversion (MappedRainfallBinaryReader)
+ *  Parse the lines in place into a RainfallRecordCursor
  *  Apply all Filters
- *  On filtered records -> Apply in parallel -> Reducers
+ *  Route the records to the State of their WBAN through the int arrays of the ContextDictionary
+ *  On filtered records -> Sum the rainfall per State into the accumulator of the part, without any lock
+ *  Merge the accumulators of all the parts -> Reducers
  *  Return result
  *
  *  @author vivekm
  *  @since 1.0
  */
-public class RainFallByStateCalculator implements Calculator {
+public class RainFallByStateCalculator implements ScanningCalculator<AccumulatingRecordHandler> {
     private Logger log = Logger.getLogger(this.getClass().getName());
 
+    /** Only the WBANs with their County, which gives the State */
+    public static final Set<String> REQUIRED_MAPS = Collections.singleton(Constants.WBAN_MASTER_MAP);
+
     private Map<String, Map<Key, Entity>> maps;
     private URI absFilePath;
-    private Map<Key, Entity> wbanMap;
-    private Map<Key, BigDecimal> result = Collections.synchronizedMap(new TreeMap<>());
+    private RainfallSource source;
+    private Map<Key, BigDecimal> result = new TreeMap<>();
+    private AggregationMode aggregationMode = AggregationMode.DEFAULT;
+    private CompiledRainfallFilter filter;
+
+    /** Dense ids of the context data, routing every WBAN to the State of its County */
+    private ContextDictionary dictionary;
+
+    /**
+     * Record handler of one part of the rainfall file, summing the rainfall per State in the slot of the State ordinal. The header and malformed
+     * lines are already dropped by the parser, and so are the lines of WBANs without a State through the key filter.
+     */
+    private class StateRainfallHandler extends AccumulatingRecordHandler implements RainfallKeyFilter {
+        private final ContextDictionary dictionary = RainFallByStateCalculator.this.dictionary;
+        private final CompiledRainfallFilter filter = RainFallByStateCalculator.this.filter;
+
+        StateRainfallHandler() {
+            super(aggregationMode.newAccumulator(RainFallByStateCalculator.this.dictionary.getStateCount()));
+        }
+
+        @Override
+        public void onRecord(RainfallRecordCursor rec) {
+            int state = dictionary.getStateOfWban(rec.getWbanId());
+            if(state == ContextDictionary.NO_ID)
+                rejectUnlinked();
+            else if(filter == null || accept(filter, rec))
+                accumulator.add(state, rec);
+        }
+
+        @Override
+        public RainfallKeyFilter getKeyFilter() {
+            return this;
+        }
+
+        @Override
+        public boolean acceptWban(int wbanId) {
+            return dictionary.getStateOfWban(wbanId) != ContextDictionary.NO_ID && (filter == null || filter.acceptWban(wbanId));
+        }
+
+        @Override
+        public boolean isLinkedWban(int wbanId) {
+            return dictionary.getStateOfWban(wbanId) != ContextDictionary.NO_ID;
+        }
+
+        @Override
+        public boolean acceptDay(int yearMonthDay) {
+            return filter == null || filter.acceptDay(yearMonthDay);
+        }
+
+        @Override
+        public boolean acceptHour(int hour) {
+            return filter == null || filter.acceptHour(hour);
+        }
+    }
 
     /**
      * Constructor
@@ -57,68 +120,164 @@ public class RainFallByStateCalculator implements Calculator {
      * @param maps - Maps of Context data
      */
     public RainFallByStateCalculator(URI absFilePath, Map<String, Map<Key, Entity>> maps) {
+        this(RainfallSources.open(Paths.get(absFilePath)), maps);
         this.absFilePath = absFilePath;
+    }
+
+    /**
+     * Constructor for any source of rainfall records, like a ColumnarRainfallStore that is already loaded.
+     *
+     * @param source - Rainfall dataset
+     * @param maps - Maps of Context data
+     */
+    public RainFallByStateCalculator(RainfallSource source, Map<String, Map<Key, Entity>> maps) {
+        this.source = source;
         this.maps = maps;
-        this.wbanMap = maps.get(Constants.WBAN_MASTER_MAP);
     }
 
     public URI getAbsFilePath() {
         return absFilePath;
     }
 
+    public RainfallSource getSource() {
+        return source;
+    }
+
+    public ContextDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * This method shares the dictionary of the context data with other Calculators. Without it the dictionary is built on the first calculation.
+     *
+     * @param dictionary - Dictionary built from the same context data
+     */
+    public void setDictionary(ContextDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    public AggregationMode getAggregationMode() {
+        return aggregationMode;
+    }
+
+    /**
+     * This method sets how the rainfall is summed, exactly in fixed point (AggregationMode.DEFAULT) unless told otherwise.
+     *
+     * @param aggregationMode - Aggregation mode
+     */
+    public void setAggregationMode(AggregationMode aggregationMode) {
+        this.aggregationMode = aggregationMode;
+    }
+
+    public CompiledRainfallFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * This method sets the records the rainfall is summed over, all of them unless told otherwise.
+     *
+     * @param spec - Records to keep, or null for all the records
+     */
+    public void setFilter(RainfallFilterSpec spec) {
+        this.filter = spec == null ? null : spec.compile();
+    }
+
+    @Override
+    public Set<String> getRequiredMaps() {
+        return REQUIRED_MAPS;
+    }
+
     @Override
     public Map<Key, BigDecimal> calculate() {
-        Path path = Paths.get(getAbsFilePath());
-
-        Util.validateInput(path);
-        log.fine("Input file: " + getAbsFilePath().toASCIIString());
-
-        try(Stream<String> lines = Files.lines(path)
-                .onClose(() -> log.fine("Rainfall DataFile closed"))){
-            lines.parallel()
-                    //Filter the header record
-                    .filter(new RainFallExcludeFileHeaderFilter())
-                    .parallel()
-                    .map(new Function<String, WBANRainfallRecord>() {
-                        @Override
-                        public WBANRainfallRecord apply(String s) {
-                            return WBANRainfallRecord.build(s);
-                        }
-                    })
-                    .parallel()
-                    .forEach(new Consumer<WBANRainfallRecord>() {
-                        @Override
-                        public void accept(WBANRainfallRecord rec) {
-                            Key wbanKey = new Key(rec.getWbanId());
-                            Optional<WBAN> wban = Optional.ofNullable((WBAN) wbanMap.get(wbanKey));
-                            wban.ifPresent(new Consumer<WBAN>() {
-                                @Override
-                                public void accept(WBAN wban) {
-                                    Optional<USACounty> county = Optional.ofNullable(wban.getCounty());
-                                    county.ifPresent(new Consumer<USACounty>() {
-                                        @Override
-                                        public void accept(USACounty usaCounty) {
-                                            USAState state = wban.getCounty().getState();
-                                            if (!result.containsKey(state.key())) {
-                                                result.put(state.key(), new BigDecimal(rec.getPrecipitation()));
-                                            } else {
-                                                BigDecimal value = result.get(state.key()).add(new BigDecimal(rec.getPrecipitation()));
-                                                result.put(state.key(), value);
-                                            }
-                                        }
-                                    });
-                                }
-                            });
-                        }
-                    })
-            ;
+        if(getAbsFilePath() != null)
+            Util.validateInput(Paths.get(getAbsFilePath()));
+        log.fine("Input: " + source);
+        prepare();
+
+        List<AccumulatingRecordHandler> handlers;
+        try{
+            handlers = source.scan(this::newHandler);
         }catch (Exception e){
-            log.log(Level.SEVERE, "Error occurred while processing RainfallByStateCalculator" + getAbsFilePath().toASCIIString(), e);
-            throw new RuntimeException("Error occurred while processing RainfallByStateCalculator" + getAbsFilePath().toASCIIString(), e);
+            log.log(Level.SEVERE, "Error occurred while processing RainfallByStateCalculator" + source, e);
+            throw new RuntimeException("Error occurred while processing RainfallByStateCalculator" + source, e);
         }
+        return complete(handlers);
+    }
+
+    /**
+     * This method calculates the statistic over a window of time from the prefix sums of the index, without scanning the records.
+     * Only the records inside the window are summed: the days and hours of the filter are replaced by the window, its stations are kept. The index
+     * does not keep the PrecipitationFlag, so a filter that excludes flags cannot be applied.
+     *
+     * @param index - Index of the rainfall dataset
+     * @param window - Time window
+     * @return - Computed results
+     * @throws IllegalStateException - If the filter excludes flags
+     */
+    public Map<Key, BigDecimal> calculate(RainfallTimeRangeIndex index, TimeWindow window) {
+        if(filter != null && filter.excludesFlags())
+            throw new IllegalStateException("The index does not keep the PrecipitationFlag, the filter " + filter + " cannot be applied to it");
+        prepare();
+        CompiledRainfallFilter stations = filter;
+        return complete(index.aggregate(window, dictionary.getStateCount(), new IntFunction<int[]>() {
+            @Override
+            public int[] apply(int wbanId) {
+                int state = dictionary.getStateOfWban(wbanId);
+                if(state == ContextDictionary.NO_ID || (stations != null && !stations.acceptWban(wbanId)))
+                    return null;
+                return new int[]{state};
+            }
+        }));
+    }
+
+    @Override
+    public void prepare() {
+        if(dictionary == null)
+            dictionary = ContextDictionary.build(maps);
+    }
+
+    @Override
+    public AccumulatingRecordHandler newHandler() {
+        return new StateRainfallHandler();
+    }
+
+    @Override
+    public Map<Key, BigDecimal> complete(List<AccumulatingRecordHandler> handlers) {
+        return complete(AccumulatingRecordHandler.mergeInto(aggregationMode.newAccumulator(dictionary.getStateCount()), handlers));
+    }
+
+    /**
+     * This method computes the result from the rainfall summed per State.
+     *
+     * @param rainfall - Rainfall per State
+     * @return - Computed results
+     */
+    public Map<Key, BigDecimal> complete(PrecipitationAccumulator rainfall) {
+        Map<Key, BigDecimal> aggregated = new TreeMap<>();
+        for(int state = 0; state < dictionary.getStateCount(); state++) {
+            if(rainfall.isSet(state))
+                aggregated.put(dictionary.getState(state).key(), rainfall.get(state));
+        }
+        result = aggregated;
         return result;
     }
 
+    /**
+     * This method returns the k States with the most rainfall of the last calculation, from the largest value down. Equal values are ranked by key, so no
+     * result is dropped and the ranking is the same on every run.
+     *
+     * @param k - Number of results, the size of the result for the full ranking
+     * @return - Top results
+     */
+    public List<Map.Entry<Key, BigDecimal>> getTopResults(int k) {
+        return Util.topByValue(result, k);
+    }
+
+    @Override
+    public void setResult(Map<Key, BigDecimal> result) {
+        this.result = result;
+    }
+
     @Override
     public Object calculateSingleValue() {
         return null;
@@ -0,0 +1,119 @@
+package org.vm.evarianttest.calc;
+
+import org.vm.evarianttest.entity.Key;
+import org.vm.evarianttest.reader.RainfallRecordCursor;
+import org.vm.evarianttest.reader.RainfallRecordHandler;
+import org.vm.evarianttest.store.MultiFileRainfallSource;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+
+/**
+ * This class runs ScanningCalculators over a batch of rainfall files, like the monthly files of a yearly or multi-year study. The files are scanned
+ * concurrently within the budgets of the MultiFileRainfallSource, so a batch takes about as long as its largest file when the budgets allow it.
+ *
+ * Every Calculator gets a result per file and an overall result off the same scan. The parts of a file are merged as soon as the file is scanned
+ * when the Calculators sum into a PrecipitationAccumulator, so the memory held is one accumulator per file.
+ *
+ * Example usage:
+ *
+ * RainfallBatchRunner batch = new RainfallBatchRunner(MultiFileRainfallSource.of(directory, "*precip.txt")).register(populationWetness);
+ * Map overall = batch.execute();
+ * Map perFile = batch.getFileResults();
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+public class RainfallBatchRunner {
+    private Logger log = Logger.getLogger(this.getClass().getName());
+
+    private final MultiFileRainfallSource files;
+    private final SharedScanExecutor executor;
+    private Map<Path, Map<ScanningCalculator<?>, Map<Key, BigDecimal>>> fileResults = Collections.emptyMap();
+
+    /**
+     * Constructor
+     *
+     * @param files - Rainfall files of the batch
+     */
+    public RainfallBatchRunner(MultiFileRainfallSource files) {
+        this.files = files;
+        this.executor = new SharedScanExecutor(files);
+    }
+
+    /**
+     * This method registers a Calculator that sees every record of the files.
+     *
+     * @param calculator - Calculator to run
+     * @return - this runner
+     */
+    public <H extends RainfallRecordHandler> RainfallBatchRunner register(ScanningCalculator<H> calculator) {
+        return register(calculator, null);
+    }
+
+    /**
+     * This method registers a Calculator that only sees the records accepted by the filter.
+     *
+     * @param calculator - Calculator to run
+     * @param filter - Thread safe record filter, or null for all the records
+     * @return - this runner
+     */
+    public <H extends RainfallRecordHandler> RainfallBatchRunner register(ScanningCalculator<H> calculator, Predicate<RainfallRecordCursor> filter) {
+        executor.register(calculator, filter);
+        return this;
+    }
+
+    public MultiFileRainfallSource getFiles() {
+        return files;
+    }
+
+    /**
+     * This method scans all the files once for all the registered Calculators.
+     *
+     * @return - Overall result of every Calculator, in registration order
+     */
+    public Map<ScanningCalculator<?>, Map<Key, BigDecimal>> execute() {
+        executor.prepare();
+        List<List<SharedScanExecutor.CompositeHandler>> scans = files.scanFiles(executor::newHandler);
+
+        Map<Path, Map<ScanningCalculator<?>, Map<Key, BigDecimal>>> perFile = new LinkedHashMap<>();
+        List<SharedScanExecutor.CompositeHandler> parts = new ArrayList<>();
+        for(int i = 0; i < scans.size(); i++) {
+            List<SharedScanExecutor.CompositeHandler> fileParts = fold(scans.get(i));
+            perFile.put(files.getFiles().get(i), executor.complete(fileParts));
+            parts.addAll(fileParts);
+        }
+        fileResults = Collections.unmodifiableMap(perFile);
+        log.fine("Calculated " + files.getFiles().size() + " files");
+        // The overall results are completed last, so that the Calculators are left with them for their pretty results
+        return executor.complete(parts);
+    }
+
+    /**
+     * This method returns the result of every Calculator for every file of the last execution.
+     *
+     * @return - Results per file, in the order of the files
+     */
+    public Map<Path, Map<ScanningCalculator<?>, Map<Key, BigDecimal>>> getFileResults() {
+        return fileResults;
+    }
+
+    /**
+     * This method merges the parts of a file into the first one when the Calculators allow it.
+     */
+    private static List<SharedScanExecutor.CompositeHandler> fold(List<SharedScanExecutor.CompositeHandler> parts) {
+        List<SharedScanExecutor.CompositeHandler> folded = new ArrayList<>();
+        for(SharedScanExecutor.CompositeHandler part : parts) {
+            if(folded.isEmpty() || !folded.get(0).fold(part))
+                folded.add(part);
+        }
+        return folded;
+    }
+}
@@ -0,0 +1,172 @@
+package org.vm.evarianttest.calc;
+
+import org.vm.evarianttest.entity.Key;
+import org.vm.evarianttest.reader.MappedRainfallFileReader;
+import org.vm.evarianttest.reader.RainfallRecordCursor;
+import org.vm.evarianttest.reader.RainfallRecordHandler;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class follows a QCLCD rainfall file that is appended to during the month. It remembers the offset of the last line it processed and keeps the
+ * totals of every registered Calculator, so a refresh only scans the lines appended since the previous one and costs as much as the new data. A line
+ * that is still being written (no line terminator yet) is left for the next refresh.
+ *
+ * The parts of every refresh are merged into the totals kept so far when the Calculators sum into a PrecipitationAccumulator, so the memory held does
+ * not grow with the number of refreshes. If the file shrinks, it has been replaced and is followed again from the start.
+ *
+ * Example usage:
+ *
+ * RainfallFileFollower follower = new RainfallFileFollower(path).register(populationWetness).register(rainfallByState);
+ * Map results = follower.refresh();          // once, or
+ * follower.follow(60000, results -> ...);    // until the thread is interrupted
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+public class RainfallFileFollower {
+    private Logger log = Logger.getLogger(this.getClass().getName());
+
+    private final Path path;
+    private final MappedRainfallFileReader reader;
+    private final SharedScanExecutor executor;
+    private final List<SharedScanExecutor.CompositeHandler> parts = new ArrayList<>();
+    private boolean prepared = false;
+    private long offset = 0;
+
+    /**
+     * Constructor
+     *
+     * @param path - Path of the rainfall file to follow
+     */
+    public RainfallFileFollower(Path path) {
+        this(new MappedRainfallFileReader(path));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param reader - Reader of the rainfall file to follow
+     */
+    public RainfallFileFollower(MappedRainfallFileReader reader) {
+        this.path = reader.getPath();
+        this.reader = reader;
+        this.executor = new SharedScanExecutor(reader);
+    }
+
+    /**
+     * This method registers a Calculator that sees every record of the file. The Calculators must be registered before the first refresh.
+     *
+     * @param calculator - Calculator to keep up to date
+     * @return - this follower
+     */
+    public <H extends RainfallRecordHandler> RainfallFileFollower register(ScanningCalculator<H> calculator) {
+        return register(calculator, null);
+    }
+
+    /**
+     * This method registers a Calculator that only sees the records accepted by the filter.
+     *
+     * @param calculator - Calculator to keep up to date
+     * @param filter - Thread safe record filter, or null for all the records
+     * @return - this follower
+     */
+    public synchronized <H extends RainfallRecordHandler> RainfallFileFollower register(ScanningCalculator<H> calculator, Predicate<RainfallRecordCursor> filter) {
+        if(prepared)
+            throw new IllegalStateException("Calculators should be registered before the first refresh of " + path);
+        executor.register(calculator, filter);
+        return this;
+    }
+
+    /**
+     * @return - Offset after the last line processed
+     */
+    public synchronized long getOffset() {
+        return offset;
+    }
+
+    /**
+     * This method scans the lines appended since the last refresh and returns the results over the whole file.
+     *
+     * @return - Result of every Calculator, in registration order
+     */
+    public synchronized Map<ScanningCalculator<?>, Map<Key, BigDecimal>> refresh() {
+        if(!prepared) {
+            executor.prepare();
+            prepared = true;
+        }
+
+        long size;
+        try {
+            size = Files.size(path);
+        } catch (IOException e) {
+            log.log(Level.SEVERE, "Error occurred while processing " + path, e);
+            throw new RuntimeException("Error occurred while processing " + path, e);
+        }
+        if(size < offset) {
+            log.info(path + " shrank from " + offset + " to " + size + " bytes, following it again from the start");
+            parts.clear();
+            offset = 0;
+        }
+
+        long end = reader.lastLineEnd(offset, size);
+        if(end > offset) {
+            for(SharedScanExecutor.CompositeHandler part : executor.scan(reader.range(offset, end))) {
+                if(parts.isEmpty() || !parts.get(0).fold(part))
+                    parts.add(part);
+            }
+            log.fine("Refreshed " + path + " from " + offset + " to " + end);
+            offset = end;
+        }
+        return executor.complete(parts);
+    }
+
+    /**
+     * This method keeps refreshing until the calling thread is interrupted. The file is refreshed when its directory reports a change, and at least
+     * every pollMillis in case the change is not reported (like on network file systems). The listener is called once at the start and after every
+     * refresh that found new lines.
+     *
+     * @param pollMillis - Longest wait between two refreshes, in milliseconds
+     * @param listener - Receives the results of every Calculator
+     */
+    public void follow(long pollMillis, Consumer<Map<ScanningCalculator<?>, Map<Key, BigDecimal>>> listener) {
+        Path directory = path.toAbsolutePath().getParent();
+        try(WatchService watcher = FileSystems.getDefault().newWatchService()) {
+            directory.register(watcher, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+            listener.accept(refresh());
+
+            while(!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watcher.poll(pollMillis, TimeUnit.MILLISECONDS);
+                if(key != null) {
+                    key.pollEvents();
+                    key.reset();
+                }
+
+                long before = getOffset();
+                Map<ScanningCalculator<?>, Map<Key, BigDecimal>> results = refresh();
+                if(getOffset() != before)
+                    listener.accept(results);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.log(Level.SEVERE, "Error occurred while following " + path, e);
+            throw new RuntimeException("Error occurred while following " + path, e);
+        }
+    }
+}
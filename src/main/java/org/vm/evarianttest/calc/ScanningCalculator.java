@@ -0,0 +1,49 @@
+package org.vm.evarianttest.calc;
+
+import org.vm.evarianttest.entity.Key;
+import org.vm.evarianttest.reader.RainfallRecordHandler;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This interface defines a Calculator that computes its result from one scan of a RainfallSource. The scan is split in three steps, so that the
+ * scan itself can be run by the Calculator or shared with other Calculators by a SharedScanExecutor:
+ *  prepare() - builds the lookups needed by the record handlers, once before the scan
+ *  newHandler() - returns the handler of one part of the scan, called once per part
+ *  complete() - reduces the handlers of all the parts into the result
+ *
+ * @author vivekm
+ * @since 1.0
+ * @see SharedScanExecutor
+ */
+public interface ScanningCalculator<H extends RainfallRecordHandler> extends Calculator<Key, BigDecimal> {
+    /**
+     * This method prepares the Calculator for a scan.
+     */
+    public void prepare();
+
+    /**
+     * This method returns the record handler of one part of the scan. The parts are scanned in parallel, a handler that is shared between parts
+     * must be thread safe.
+     *
+     * @return - Record handler
+     */
+    public H newHandler();
+
+    /**
+     * This method computes the result once all the parts are scanned.
+     *
+     * @param handlers - Handlers of the parts in source order
+     * @return - Map containing results
+     */
+    public Map<Key, BigDecimal> complete(List<H> handlers);
+
+    /**
+     * This method sets a result calculated before, like one kept by a RainfallResultCache, so that it is printed without scanning again.
+     *
+     * @param result - Result of an earlier calculation with the same source and parameters
+     */
+    public void setResult(Map<Key, BigDecimal> result);
+}
@@ -0,0 +1,264 @@
+package org.vm.evarianttest.calc;
+
+import org.vm.evarianttest.aggregation.AccumulatingRecordHandler;
+import org.vm.evarianttest.entity.Key;
+import org.vm.evarianttest.reader.RainfallKeyFilter;
+import org.vm.evarianttest.reader.RainfallRecordCursor;
+import org.vm.evarianttest.reader.RainfallRecordHandler;
+import org.vm.evarianttest.reader.RainfallSource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class runs any number of ScanningCalculators off a single scan of a RainfallSource. Every record is read and parsed once and then handed to
+ * the handler of every registered Calculator, so N reports on the same month cost one scan instead of N.
+ *
+ * A Calculator can be registered with its own filter, which is applied before the record reaches its handler. The filters are shared by all the
+ * parts of the scan and must be thread safe, the stateless filters of org.vm.evarianttest.filters are.
+ *
+ * Example usage:
+ *
+ * SharedScanExecutor executor = new SharedScanExecutor(source);
+ * executor.register(new PopulationWetnessCalculator(source, maps));
+ * executor.register(new RainFallByStateCalculator(source, maps), rec -> rec.getHour() > 7);
+ * Map results = executor.execute();
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+public class SharedScanExecutor {
+    private Logger log = Logger.getLogger(this.getClass().getName());
+
+    private final RainfallSource source;
+    private final List<Query<?>> queries = new ArrayList<>();
+
+    /**
+     * Constructor
+     *
+     * @param source - Rainfall dataset scanned for all the Calculators
+     */
+    public SharedScanExecutor(RainfallSource source) {
+        this.source = source;
+    }
+
+    /**
+     * This method registers a Calculator that sees every record of the source.
+     *
+     * @param calculator - Calculator to run
+     * @return - this executor
+     */
+    public <H extends RainfallRecordHandler> SharedScanExecutor register(ScanningCalculator<H> calculator) {
+        return register(calculator, null);
+    }
+
+    /**
+     * This method registers a Calculator that only sees the records accepted by the filter.
+     *
+     * @param calculator - Calculator to run
+     * @param filter - Thread safe record filter, or null for all the records
+     * @return - this executor
+     */
+    public <H extends RainfallRecordHandler> SharedScanExecutor register(ScanningCalculator<H> calculator, Predicate<RainfallRecordCursor> filter) {
+        queries.add(new Query<>(calculator, filter));
+        return this;
+    }
+
+    /**
+     * This method scans the source once for all the registered Calculators.
+     *
+     * @return - Result of every Calculator, in registration order
+     */
+    public Map<ScanningCalculator<?>, Map<Key, BigDecimal>> execute() {
+        if(queries.isEmpty())
+            return new LinkedHashMap<>();
+
+        prepare();
+        return complete(scan(source));
+    }
+
+    /**
+     * This method prepares all the registered Calculators for their scans.
+     */
+    void prepare() {
+        queries.forEach(Query::prepare);
+    }
+
+    /**
+     * This method scans a source once for all the registered Calculators, without completing them. The parts of several scans can be completed
+     * together, like the parts of the lines appended to a file since the last scan.
+     *
+     * @param source - Rainfall records to scan
+     * @return - Parts of the scan in source order
+     */
+    List<CompositeHandler> scan(RainfallSource source) {
+        List<CompositeHandler> parts;
+        try{
+            parts = source.scan(CompositeHandler::new);
+        } catch (Exception ex){
+            log.log(Level.SEVERE, "Error occurred while processing " + source, ex);
+            throw new RuntimeException("Error occurred while processing " + source, ex);
+        }
+        log.fine("Scanned " + source + " in " + parts.size() + " parts for " + queries.size() + " calculators");
+        return parts;
+    }
+
+    /**
+     * This method returns a new handler of one part of a scan, for sources that are scanned without scan(), like the files of a batch.
+     *
+     * @return - Handler dispatching to a new handler of every Calculator
+     */
+    CompositeHandler newHandler() {
+        return new CompositeHandler();
+    }
+
+    /**
+     * This method completes all the registered Calculators from the parts of their scans.
+     *
+     * @param parts - Parts of the scans
+     * @return - Result of every Calculator, in registration order
+     */
+    Map<ScanningCalculator<?>, Map<Key, BigDecimal>> complete(List<CompositeHandler> parts) {
+        Map<ScanningCalculator<?>, Map<Key, BigDecimal>> results = new LinkedHashMap<>();
+        for(int i = 0; i < queries.size(); i++) {
+            Query<?> query = queries.get(i);
+            results.put(query.calculator, query.complete(parts, i));
+        }
+        return results;
+    }
+
+    /**
+     * A registered Calculator with its filter.
+     */
+    private static class Query<H extends RainfallRecordHandler> {
+        private final ScanningCalculator<H> calculator;
+        private final Predicate<RainfallRecordCursor> filter;
+
+        Query(ScanningCalculator<H> calculator, Predicate<RainfallRecordCursor> filter) {
+            this.calculator = calculator;
+            this.filter = filter;
+        }
+
+        void prepare() {
+            calculator.prepare();
+        }
+
+        Map<Key, BigDecimal> complete(List<CompositeHandler> parts, int index) {
+            List<H> handlers = new ArrayList<>(parts.size());
+            for(CompositeHandler part : parts) {
+                @SuppressWarnings("unchecked")
+                H handler = (H) part.handlers[index];
+                handlers.add(handler);
+            }
+            return calculator.complete(handlers);
+        }
+    }
+
+    /**
+     * Record handler of one part of the scan, dispatching every record to the handlers of all the Calculators. When every handler has a key filter,
+     * a line is kept while at least one of them still accepts its key fields, the handlers still accepting it being tracked in a bit set.
+     */
+    class CompositeHandler implements RainfallRecordHandler, RainfallKeyFilter {
+        private final RainfallRecordHandler[] handlers;
+        private final List<Predicate<RainfallRecordCursor>> filters;
+        private final RainfallKeyFilter[] keyFilters;
+        private long accepting;
+
+        CompositeHandler() {
+            handlers = new RainfallRecordHandler[queries.size()];
+            filters = new ArrayList<>(queries.size());
+            RainfallKeyFilter[] keyFilters = handlers.length <= Long.SIZE ? new RainfallKeyFilter[queries.size()] : null;
+            for(int i = 0; i < handlers.length; i++) {
+                handlers[i] = queries.get(i).calculator.newHandler();
+                filters.add(queries.get(i).filter);
+                if(keyFilters != null && (keyFilters[i] = handlers[i].getKeyFilter()) == null)
+                    keyFilters = null;
+            }
+            this.keyFilters = keyFilters;
+        }
+
+        @Override
+        public RainfallKeyFilter getKeyFilter() {
+            return keyFilters == null ? null : this;
+        }
+
+        @Override
+        public boolean acceptWban(int wbanId) {
+            accepting = 0;
+            for(int i = 0; i < keyFilters.length; i++) {
+                if(keyFilters[i].acceptWban(wbanId))
+                    accepting |= 1L << i;
+            }
+            return accepting != 0;
+        }
+
+        @Override
+        public boolean acceptDay(int yearMonthDay) {
+            for(long remaining = accepting; remaining != 0; remaining &= remaining - 1) {
+                int i = Long.numberOfTrailingZeros(remaining);
+                if(!keyFilters[i].acceptDay(yearMonthDay))
+                    accepting &= ~(1L << i);
+            }
+            return accepting != 0;
+        }
+
+        @Override
+        public boolean acceptHour(int hour) {
+            for(long remaining = accepting; remaining != 0; remaining &= remaining - 1) {
+                int i = Long.numberOfTrailingZeros(remaining);
+                if(!keyFilters[i].acceptHour(hour))
+                    accepting &= ~(1L << i);
+            }
+            return accepting != 0;
+        }
+
+        /**
+         * A WBAN is linked when the Context Data of one of the Calculators knows it.
+         */
+        @Override
+        public boolean isLinkedWban(int wbanId) {
+            for(RainfallKeyFilter keyFilter : keyFilters) {
+                if(keyFilter.isLinkedWban(wbanId))
+                    return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void onRecord(RainfallRecordCursor cursor) {
+            for(int i = 0; i < handlers.length; i++) {
+                Predicate<RainfallRecordCursor> filter = filters.get(i);
+                if(filter == null || filter.test(cursor))
+                    handlers[i].onRecord(cursor);
+            }
+        }
+
+        @Override
+        public void onPartScanned() {
+            for(RainfallRecordHandler handler : handlers)
+                handler.onPartScanned();
+        }
+
+        /**
+         * This method merges the totals of another part into this one, when all the handlers sum into a PrecipitationAccumulator.
+         *
+         * @param other - Part of the same Calculators
+         * @return - false if a handler cannot be merged, leaving this part unchanged
+         */
+        boolean fold(CompositeHandler other) {
+            for(RainfallRecordHandler handler : handlers) {
+                if(!(handler instanceof AccumulatingRecordHandler))
+                    return false;
+            }
+            for(int i = 0; i < handlers.length; i++)
+                ((AccumulatingRecordHandler) handlers[i]).getAccumulator().merge(((AccumulatingRecordHandler) other.handlers[i]).getAccumulator());
+            return true;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package org.vm.evarianttest.context;
+
+import org.vm.evarianttest.entity.Entity;
+import org.vm.evarianttest.entity.Key;
+import org.vm.evarianttest.entity.census.USACounty;
+import org.vm.evarianttest.entity.census.USAStatAreaPopulationRecord;
+import org.vm.evarianttest.entity.census.USAState;
+import org.vm.evarianttest.entity.census.USAStatisticalArea;
+import org.vm.evarianttest.entity.weather.WBAN;
+import org.vm.evarianttest.loader.Constants;
+import org.vm.evarianttest.reader.RainfallRecordParser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * This class assigns dense int ids to the WBANs, Statistical Areas, Counties and States of the loaded context data, and precomputes the routing of
+ * a WBAN to its Statistical Areas, County and State as arrays indexed by the numeric WBAN id of the rainfall records.
+ *
+ * With it a Calculator aggregates into plain arrays indexed by the dense ids, with no Key created, hashed or boxed per record. The Keys are only
+ * looked up again when the results are presented.
+ *
+ * Ids:
+ *  WBAN - WBAN master list order, then the WBANs only known through a Statistical Area
+ *  Statistical Area - order of the STAT_AREA_MAP
+ *  County - order in which the Counties are found on the Statistical Areas, then on the WBANs
+ *  State - USAState ordinal
+ *
+ * The dictionary is built once the context data is loaded and never changes, so it can be shared between threads.
+ *
+ * Example usage:
+ *
+ * ContextDictionary dictionary = ContextDictionary.build(maps);
+ * int[] areaIds = dictionary.getAreaIds(cursor.getWbanId());
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+public class ContextDictionary {
+    public static final int NO_ID = -1;
+
+    private static Logger log = Logger.getLogger(ContextDictionary.class.getName());
+
+    private final Key[] wbanKeys;
+    private final Map<Key, Integer> wbanIds;
+    private final USAStatAreaPopulationRecord[] areas;
+    private final Map<Key, Integer> areaIds;
+    private final USACounty[] counties;
+    private final Map<Key, Integer> countyIds;
+
+    /** Dense WBAN id of each numeric WBAN id */
+    private final int[] wbanIdByNumber;
+    /** Statistical Area ids of each numeric WBAN id, null when the WBAN is in no Statistical Area */
+    private final int[][] areaIdsByWban;
+    /** County id of each numeric WBAN id */
+    private final int[] countyIdByWban;
+    /** USAState ordinal of each numeric WBAN id */
+    private final int[] stateByWban;
+
+    private ContextDictionary(Builder builder) {
+        this.wbanKeys = builder.wbans.keySet().toArray(new Key[builder.wbans.size()]);
+        this.wbanIds = builder.wbans;
+        this.areas = builder.areaRecords.toArray(new USAStatAreaPopulationRecord[builder.areaRecords.size()]);
+        this.areaIds = builder.areas;
+        this.counties = builder.countyEntities.toArray(new USACounty[builder.countyEntities.size()]);
+        this.countyIds = builder.counties;
+        this.wbanIdByNumber = builder.wbanIdByNumber;
+        this.areaIdsByWban = builder.areaIdsByWban;
+        this.countyIdByWban = builder.countyIdByWban;
+        this.stateByWban = builder.stateByWban;
+    }
+
+    /**
+     * This method builds the dictionary of the loaded context data.
+     *
+     * @param maps - Maps of context data, as returned by the DataLoaders
+     * @return - Dictionary
+     */
+    public static ContextDictionary build(Map<String, Map<Key, Entity>> maps) {
+        Builder builder = new Builder();
+        Map<Key, Entity> wbanMap = maps.get(Constants.WBAN_MASTER_MAP);
+        Map<Key, Entity> statAreaMap = maps.get(Constants.STAT_AREA_MAP_NAME);
+
+        if(wbanMap != null) {
+            for(Key wbanKey : wbanMap.keySet())
+                builder.addWban(wbanKey);
+        }
+        if(statAreaMap != null) {
+            for(Entity entity : statAreaMap.values())
+                builder.addArea((USAStatAreaPopulationRecord) entity);
+        }
+        if(wbanMap != null) {
+            for(Entity entity : wbanMap.values())
+                builder.addWbanCounty((WBAN) entity);
+        }
+        ContextDictionary dictionary = new ContextDictionary(builder);
+        log.fine("Context dictionary of " + dictionary.getWbanCount() + " WBANs, " + dictionary.getAreaCount() + " Statistical Areas, "
+                + dictionary.getCountyCount() + " Counties");
+        return dictionary;
+    }
+
+    public int getWbanCount() {
+        return wbanKeys.length;
+    }
+
+    public int getAreaCount() {
+        return areas.length;
+    }
+
+    public int getCountyCount() {
+        return counties.length;
+    }
+
+    public int getStateCount() {
+        return USAState.values().length;
+    }
+
+    /**
+     * This method returns the dense id of a WBAN.
+     *
+     * @param wbanKey - Key of the WBAN
+     * @return - Id, or NO_ID if the WBAN is unknown
+     */
+    public int getWbanId(Key wbanKey) {
+        Integer id = wbanIds.get(wbanKey);
+        return id == null ? NO_ID : id;
+    }
+
+    /**
+     * This method returns the dense id of a WBAN from the numeric WBAN id of a rainfall record.
+     *
+     * @param wbanNumber - Numeric WBAN id
+     * @return - Id, or NO_ID if the WBAN is unknown
+     */
+    public int getWbanIdByNumber(int wbanNumber) {
+        return wbanNumber >= 0 && wbanNumber < wbanIdByNumber.length ? wbanIdByNumber[wbanNumber] : NO_ID;
+    }
+
+    public Key getWbanKey(int wbanId) {
+        return wbanKeys[wbanId];
+    }
+
+    public int getAreaId(Key areaKey) {
+        Integer id = areaIds.get(areaKey);
+        return id == null ? NO_ID : id;
+    }
+
+    public Key getAreaKey(int areaId) {
+        return areas[areaId].key();
+    }
+
+    public USAStatAreaPopulationRecord getArea(int areaId) {
+        return areas[areaId];
+    }
+
+    public int getCountyId(Key countyKey) {
+        Integer id = countyIds.get(countyKey);
+        return id == null ? NO_ID : id;
+    }
+
+    public USACounty getCounty(int countyId) {
+        return counties[countyId];
+    }
+
+    public USAState getState(int stateId) {
+        return USAState.values()[stateId];
+    }
+
+    /**
+     * This method routes a rainfall record to the Statistical Areas its WBAN is attached to.
+     *
+     * @param wbanNumber - Numeric WBAN id of the record
+     * @return - Statistical Area ids, or null if the WBAN is in no Statistical Area
+     */
+    public int[] getAreaIds(int wbanNumber) {
+        return wbanNumber >= 0 && wbanNumber < areaIdsByWban.length ? areaIdsByWban[wbanNumber] : null;
+    }
+
+    /**
+     * This method routes a rainfall record to the County of its WBAN in the WBAN master list.
+     *
+     * @param wbanNumber - Numeric WBAN id of the record
+     * @return - County id, or NO_ID if the County of the WBAN is unknown
+     */
+    public int getCountyIdOfWban(int wbanNumber) {
+        return wbanNumber >= 0 && wbanNumber < countyIdByWban.length ? countyIdByWban[wbanNumber] : NO_ID;
+    }
+
+    /**
+     * This method routes a rainfall record to the State of the County of its WBAN in the WBAN master list.
+     *
+     * @param wbanNumber - Numeric WBAN id of the record
+     * @return - USAState ordinal, or NO_ID if the State of the WBAN is unknown
+     */
+    public int getStateOfWban(int wbanNumber) {
+        return wbanNumber >= 0 && wbanNumber < stateByWban.length ? stateByWban[wbanNumber] : NO_ID;
+    }
+
+    /**
+     * Collects the ids while the context data is walked.
+     */
+    private static class Builder {
+        private final Map<Key, Integer> wbans = new LinkedHashMap<>();
+        private final Map<Key, Integer> areas = new HashMap<>();
+        private final List<USAStatAreaPopulationRecord> areaRecords = new ArrayList<>();
+        private final Map<Key, Integer> counties = new HashMap<>();
+        private final List<USACounty> countyEntities = new ArrayList<>();
+
+        private final int[] wbanIdByNumber = filled(RainfallRecordParser.WBAN_ID_LIMIT);
+        private final int[][] areaIdsByWban = new int[RainfallRecordParser.WBAN_ID_LIMIT][];
+        private final int[] countyIdByWban = filled(RainfallRecordParser.WBAN_ID_LIMIT);
+        private final int[] stateByWban = filled(RainfallRecordParser.WBAN_ID_LIMIT);
+
+        private static int[] filled(int size) {
+            int[] values = new int[size];
+            Arrays.fill(values, NO_ID);
+            return values;
+        }
+
+        private int addWban(Key wbanKey) {
+            Integer id = wbans.get(wbanKey);
+            if(id == null) {
+                id = wbans.size();
+                wbans.put(wbanKey, id);
+                int wbanNumber = RainfallRecordParser.parseWbanId(String.valueOf(wbanKey.getKey()));
+                if(wbanNumber >= 0)
+                    wbanIdByNumber[wbanNumber] = id;
+            }
+            return id;
+        }
+
+        private int addCounty(USACounty county) {
+            Integer id = counties.get(county.key());
+            if(id == null) {
+                id = countyEntities.size();
+                counties.put(county.key(), id);
+                countyEntities.add(county);
+            }
+            return id;
+        }
+
+        private void addArea(USAStatAreaPopulationRecord record) {
+            int areaId = areaRecords.size();
+            areas.put(record.key(), areaId);
+            areaRecords.add(record);
+
+            USAStatisticalArea area = record.getArea();
+            for(USACounty county : area.getCounties().values())
+                addCounty(county);
+            for(Key wbanKey : area.getWeatherStations().keySet()) {
+                addWban(wbanKey);
+                int wbanNumber = RainfallRecordParser.parseWbanId(String.valueOf(wbanKey.getKey()));
+                if(wbanNumber < 0)
+                    continue;
+                int[] areaIds = areaIdsByWban[wbanNumber];
+                areaIds = areaIds == null ? new int[1] : Arrays.copyOf(areaIds, areaIds.length + 1);
+                areaIds[areaIds.length - 1] = areaId;
+                areaIdsByWban[wbanNumber] = areaIds;
+            }
+        }
+
+        private void addWbanCounty(WBAN wban) {
+            USACounty county = wban.getCounty();
+            int wbanNumber = RainfallRecordParser.parseWbanId(String.valueOf(wban.key().getKey()));
+            if(county == null || wbanNumber < 0)
+                return;
+            countyIdByWban[wbanNumber] = addCounty(county);
+            if(county.getState() != null)
+                stateByWban[wbanNumber] = county.getState().ordinal();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package org.vm.evarianttest.entity;
 
+import java.io.Serializable;
+
 /**
  * This class represents a Key to an entity that the system uses. It is merely an object that can uniquely
  * identify that entity in the given context. We could add a key type to make it context aware, but not now. Also keys
@@ -8,7 +10,9 @@ package org.vm.evarianttest.entity;
  * @author vivekm
  * @since 1.0
  */
-public class Key implements Comparable{
+public class Key implements Comparable, Serializable{
+    private static final long serialVersionUID = 1L;
+
     /** Immutable key object */
     private Object key;
 
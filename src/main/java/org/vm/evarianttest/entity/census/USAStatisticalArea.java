@@ -75,6 +75,10 @@ public class USAStatisticalArea implements KeyAware, Entity, Comparable {
         return type;
     }
 
+    public boolean isPuertoRicoArea() {
+        return isPuertoRicoArea;
+    }
+
     public Map<Key, USACity> getCities() {
         return cities;
     }
@@ -0,0 +1,100 @@
+package org.vm.evarianttest.filters;
+
+import org.vm.evarianttest.reader.RainfallKeyFilter;
+import org.vm.evarianttest.reader.RainfallRecordCursor;
+
+import java.util.function.Predicate;
+
+/**
+ * This class is a RainfallFilterSpec compiled into primitive arrays and bit masks, checking every condition of the spec with one call and no
+ * allocation:
+ *  days - sorted ranges that do not overlap, null for every day
+ *  hours - 128 bit mask, bit h for hour h
+ *  stations - bit set indexed by the numeric WBAN id, null for every station
+ *  flags - 128 bit mask of the excluded PrecipitationFlag characters
+ *
+ * It is also the key filter of a record handler, so the days, hours and stations are checked by the text reader before the rest of the line is
+ * parsed. It is immutable and can be shared by all the parts of a scan, so it counts nothing itself: the handler of a part counts the records it
+ * rejects, by the condition that rejected them, and publishes them to the PipelineMetrics once the part is scanned.
+ *
+ * @author vivekm
+ * @since 1.0
+ * @see RainfallFilterSpec#compile()
+ */
+public final class CompiledRainfallFilter implements Predicate<RainfallRecordCursor>, RainfallKeyFilter {
+    private final int[] fromDays;
+    private final int[] toDays;
+    private final long hoursLow;
+    private final long hoursHigh;
+    private final long[] stations;
+    private final long excludedFlagsLow;
+    private final long excludedFlagsHigh;
+    private final String spec;
+
+    CompiledRainfallFilter(int[] fromDays, int[] toDays, long hoursLow, long hoursHigh, long[] stations, long excludedFlagsLow, long excludedFlagsHigh,
+                           String spec) {
+        this.fromDays = fromDays;
+        this.toDays = toDays;
+        this.hoursLow = hoursLow;
+        this.hoursHigh = hoursHigh;
+        this.stations = stations;
+        this.excludedFlagsLow = excludedFlagsLow;
+        this.excludedFlagsHigh = excludedFlagsHigh;
+        this.spec = spec;
+    }
+
+    @Override
+    public boolean test(RainfallRecordCursor cursor) {
+        return acceptWban(cursor.getWbanId()) && acceptDay(cursor.getYearMonthDay()) && acceptHour(cursor.getHour()) && acceptFlag(cursor.getFlag());
+    }
+
+    @Override
+    public boolean acceptWban(int wbanId) {
+        return stations == null || (wbanId >= 0 && (wbanId >>> 6) < stations.length && (stations[wbanId >>> 6] & (1L << wbanId)) != 0);
+    }
+
+    @Override
+    public boolean acceptDay(int yearMonthDay) {
+        if(fromDays == null)
+            return true;
+        for(int i = 0; i < fromDays.length; i++) {
+            if(yearMonthDay < fromDays[i])
+                return false;
+            if(yearMonthDay <= toDays[i])
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean acceptHour(int hour) {
+        if(hour < 0 || hour >= 128)
+            return false;
+        return ((hour < 64 ? hoursLow : hoursHigh) & (1L << hour)) != 0;
+    }
+
+    /**
+     * @param flag - Upper cased PrecipitationFlag, or RainfallRecordCursor.NO_FLAG
+     * @return - false if the flag is excluded
+     */
+    public boolean acceptFlag(byte flag) {
+        if(flag < 0)
+            return true;
+        return ((flag < 64 ? excludedFlagsLow : excludedFlagsHigh) & (1L << flag)) == 0;
+    }
+
+    /**
+     * @return - true if the filter drops the records of some PrecipitationFlag
+     */
+    public boolean excludesFlags() {
+        return (excludedFlagsLow | excludedFlagsHigh) != 0;
+    }
+
+    /**
+     * @return - Spec this filter was compiled from
+     */
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
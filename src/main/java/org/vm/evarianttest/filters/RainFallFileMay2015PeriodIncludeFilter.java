@@ -9,7 +9,9 @@ import java.util.function.Predicate;
  *
  * @author vivekm
  * @since 1.0
+ * @deprecated Replaced by the days condition of RainfallFilterSpec, like "days=20150501-20150531"
  */
+@Deprecated
 public class RainFallFileMay2015PeriodIncludeFilter implements Predicate<WBANRainfallRecord> {
     //TODO: Use Data instead of String
     private static final String MAY_2015_INDICATOR = "201505";
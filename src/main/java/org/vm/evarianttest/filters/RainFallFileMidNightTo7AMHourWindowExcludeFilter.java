@@ -10,7 +10,9 @@ import java.util.function.Predicate;
  *
  * @author vivekm
  * @since 1.0
+ * @deprecated Replaced by the hours condition of RainfallFilterSpec, like "hours=8-99"
  */
+@Deprecated
 public class RainFallFileMidNightTo7AMHourWindowExcludeFilter implements Predicate<WBANRainfallRecord>{
     @Override
     public boolean test(WBANRainfallRecord wbanRainfallRecord) {
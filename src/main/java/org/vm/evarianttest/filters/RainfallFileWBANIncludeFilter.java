@@ -12,7 +12,9 @@ import java.util.function.Predicate;
  *
  * @author vivekm
  * @since 1.0
+ * @deprecated Replaced by the stations condition of RainfallFilterSpec, checked on the numeric WBAN id without splitting the line
  */
+@Deprecated
 public class RainfallFileWBANIncludeFilter implements Predicate<String> {
     private Map<Key, List<Key>> wbansToInclude;
     public RainfallFileWBANIncludeFilter(Map<Key, List<Key>> wbansToInclude){
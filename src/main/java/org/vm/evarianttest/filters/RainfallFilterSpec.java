@@ -0,0 +1,287 @@
+package org.vm.evarianttest.filters;
+
+import org.vm.evarianttest.query.TimeWindow;
+import org.vm.evarianttest.reader.RainfallRecordParser;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * This class describes the records an analysis keeps, so the analysis window can be changed without code changes. It is compiled into one
+ * CompiledRainfallFilter that checks all the conditions on the primitive fields of a record.
+ *
+ * A spec is a list of conditions separated by ';', every condition holding comma separated values. A condition that is left out keeps every record:
+ *  days - inclusive date ranges as yyyymmdd numbers, like 20150501-20150531, or single days
+ *  hours - inclusive hour of the day ranges, like 8-23, or single hours
+ *  stations - WBAN ids, like 03013
+ *  excludeFlags - PrecipitationFlag characters of the records to drop, like A
+ *
+ * Example usage:
+ *
+ * RainfallFilterSpec spec = RainfallFilterSpec.parse("days=20150501-20150531;hours=8-99;excludeFlags=A");
+ * CompiledRainfallFilter filter = spec.compile();
+ *
+ * @author vivekm
+ * @since 1.0
+ * @see CompiledRainfallFilter
+ */
+public class RainfallFilterSpec {
+    public static final String DAYS = "days";
+    public static final String HOURS = "hours";
+    public static final String STATIONS = "stations";
+    public static final String EXCLUDE_FLAGS = "excludeFlags";
+
+    private final List<int[]> days = new ArrayList<>();
+    private final List<int[]> hours = new ArrayList<>();
+    private final TreeSet<String> stations = new TreeSet<>();
+    private final TreeSet<Character> excludedFlags = new TreeSet<>();
+
+    /**
+     * This method parses a spec like "days=20150501-20150531;hours=8-99".
+     *
+     * @param spec - Spec text, an empty text keeps every record
+     * @return - Parsed spec
+     * @throws IllegalArgumentException - If a condition is not valid
+     */
+    public static RainfallFilterSpec parse(String spec) {
+        RainfallFilterSpec result = new RainfallFilterSpec();
+        for(String condition : spec.split(";")) {
+            if(condition.trim().isEmpty())
+                continue;
+            int equals = condition.indexOf('=');
+            if(equals < 0)
+                throw new IllegalArgumentException("Condition " + condition + " should be name=values");
+            String name = condition.substring(0, equals).trim();
+            for(String value : condition.substring(equals + 1).split(",")) {
+                value = value.trim();
+                if(value.isEmpty())
+                    continue;
+                switch (name) {
+                    case DAYS:
+                        int[] dayRange = range(value);
+                        result.addDays(dayRange[0], dayRange[1]);
+                        break;
+                    case HOURS:
+                        int[] hourRange = range(value);
+                        result.addHours(hourRange[0], hourRange[1]);
+                        break;
+                    case STATIONS:
+                        result.addStation(value);
+                        break;
+                    case EXCLUDE_FLAGS:
+                        if(value.length() != 1)
+                            throw new IllegalArgumentException("Flag " + value + " should be a single character");
+                        result.excludeFlag(value.charAt(0));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown condition " + name);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static int[] range(String value) {
+        int dash = value.indexOf('-');
+        try {
+            if(dash < 0) {
+                int single = Integer.parseInt(value);
+                return new int[]{single, single};
+            }
+            return new int[]{Integer.parseInt(value.substring(0, dash).trim()), Integer.parseInt(value.substring(dash + 1).trim())};
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid range " + value, e);
+        }
+    }
+
+    /**
+     * This method keeps the records of an inclusive range of days, on top of the ranges already added.
+     *
+     * @param fromDay - First day as a yyyymmdd number
+     * @param toDay - Last day as a yyyymmdd number
+     * @return - this spec
+     */
+    public RainfallFilterSpec addDays(int fromDay, int toDay) {
+        if(fromDay > toDay)
+            throw new IllegalArgumentException("First day " + fromDay + " is after last day " + toDay);
+        days.add(new int[]{fromDay, toDay});
+        return this;
+    }
+
+    /**
+     * This method keeps the records of an inclusive range of hours of the day, on top of the ranges already added.
+     *
+     * @param fromHour - First hour
+     * @param toHour - Last hour, up to RainfallRecordParser.MAX_HOUR
+     * @return - this spec
+     */
+    public RainfallFilterSpec addHours(int fromHour, int toHour) {
+        if(fromHour < 0 || toHour > RainfallRecordParser.MAX_HOUR || fromHour > toHour)
+            throw new IllegalArgumentException("Invalid hour range " + fromHour + " to " + toHour);
+        hours.add(new int[]{fromHour, toHour});
+        return this;
+    }
+
+    /**
+     * This method keeps the records of a station, on top of the stations already added.
+     *
+     * @param wbanId - WBAN id like 03013
+     * @return - this spec
+     */
+    public RainfallFilterSpec addStation(String wbanId) {
+        if(RainfallRecordParser.parseWbanId(wbanId) < 0)
+            throw new IllegalArgumentException("Invalid WBAN id " + wbanId);
+        stations.add(wbanId.trim());
+        return this;
+    }
+
+    /**
+     * This method drops the records with a PrecipitationFlag, compared ignoring case.
+     *
+     * @param flag - PrecipitationFlag character
+     * @return - this spec
+     */
+    public RainfallFilterSpec excludeFlag(char flag) {
+        if(flag <= ' ' || flag > '~')
+            throw new IllegalArgumentException("Invalid flag " + (int) flag);
+        excludedFlags.add(Character.toUpperCase(flag));
+        return this;
+    }
+
+    /**
+     * This method compiles the spec into a filter. The spec can still be changed afterwards, without changing the filter.
+     *
+     * @return - Filter keeping the records of the spec
+     */
+    public CompiledRainfallFilter compile() {
+        int[][] dayRanges = merge(days);
+
+        long hoursLow = hours.isEmpty() ? -1L : 0, hoursHigh = hours.isEmpty() ? -1L : 0;
+        for(int[] range : hours) {
+            for(int hour = range[0]; hour <= range[1]; hour++) {
+                if(hour < 64)
+                    hoursLow |= 1L << hour;
+                else
+                    hoursHigh |= 1L << (hour - 64);
+            }
+        }
+
+        long[] stationBits = null;
+        if(!stations.isEmpty()) {
+            stationBits = new long[(RainfallRecordParser.WBAN_ID_LIMIT + 63) / 64];
+            for(String station : stations) {
+                int id = RainfallRecordParser.parseWbanId(station);
+                stationBits[id >>> 6] |= 1L << id;
+            }
+        }
+
+        long flagsLow = 0, flagsHigh = 0;
+        for(char flag : excludedFlags) {
+            if(flag < 64)
+                flagsLow |= 1L << flag;
+            else
+                flagsHigh |= 1L << (flag - 64);
+        }
+        return new CompiledRainfallFilter(dayRanges[0], dayRanges[1], hoursLow, hoursHigh, stationBits, flagsLow, flagsHigh, toString());
+    }
+
+    /**
+     * This method returns the days and hours of the spec as a TimeWindow, so an index is queried over the records a scan with this spec would
+     * keep. The stations and flags are not part of a window.
+     *
+     * @return - Window of the days and hours, every day and hour for a condition that is left out
+     * @throws IllegalArgumentException - If the days of the spec are not one range
+     */
+    public TimeWindow toTimeWindow() {
+        int[][] dayRanges = merge(days);
+        TimeWindow window;
+        if(dayRanges[0] == null)
+            window = TimeWindow.days(0, Integer.MAX_VALUE);
+        else if(dayRanges[0].length == 1)
+            window = TimeWindow.days(dayRanges[0][0], dayRanges[1][0]);
+        else
+            throw new IllegalArgumentException("The days of " + this + " are not one range of days");
+        if(hours.isEmpty())
+            return window;
+        window = new TimeWindow(window.getFromDay(), window.getToDay(), 0, 0);
+        for(int[] range : hours)
+            window = window.plusHours(range[0], range[1]);
+        return window;
+    }
+
+    /**
+     * This method sorts the day ranges and merges the overlapping ones, and the ones where a range starts on the calendar day after the last day of
+     * another, like 20150531 and 20150601.
+     *
+     * @return - First days and last days of the merged ranges, or nulls for every day
+     */
+    private static int[][] merge(List<int[]> ranges) {
+        if(ranges.isEmpty())
+            return new int[2][];
+        List<int[]> sorted = new ArrayList<>(ranges);
+        sorted.sort((a, b) -> Integer.compare(a[0], b[0]));
+        int[] from = new int[sorted.size()];
+        int[] to = new int[sorted.size()];
+        int count = 0;
+        for(int[] range : sorted) {
+            if(count > 0 && range[0] <= nextDay(to[count - 1]))
+                to[count - 1] = Math.max(to[count - 1], range[1]);
+            else {
+                from[count] = range[0];
+                to[count] = range[1];
+                count++;
+            }
+        }
+        return new int[][]{Arrays.copyOf(from, count), Arrays.copyOf(to, count)};
+    }
+
+    /**
+     * This method returns the calendar day after a day. A number that is not a date is followed by the next number.
+     *
+     * @param day - Day as a yyyymmdd number
+     * @return - Next day as a yyyymmdd number
+     */
+    private static long nextDay(int day) {
+        try {
+            LocalDate next = LocalDate.of(day / 10000, day / 100 % 100, day % 100).plusDays(1);
+            return next.getYear() * 10000L + next.getMonthValue() * 100 + next.getDayOfMonth();
+        } catch (DateTimeException e) {
+            return day + 1L;
+        }
+    }
+
+    /**
+     * @return - Spec text, parsed back into the same spec
+     */
+    @Override
+    public String toString() {
+        StringBuilder sbr = new StringBuilder();
+        appendRanges(sbr, DAYS, days);
+        appendRanges(sbr, HOURS, hours);
+        appendValues(sbr, STATIONS, stations);
+        appendValues(sbr, EXCLUDE_FLAGS, excludedFlags);
+        return sbr.toString();
+    }
+
+    private static void appendRanges(StringBuilder sbr, String name, List<int[]> ranges) {
+        List<String> values = new ArrayList<>();
+        for(int[] range : ranges)
+            values.add(range[0] == range[1] ? String.valueOf(range[0]) : range[0] + "-" + range[1]);
+        appendValues(sbr, name, values);
+    }
+
+    private static void appendValues(StringBuilder sbr, String name, Iterable<?> values) {
+        StringBuilder joined = new StringBuilder();
+        for(Object value : values)
+            joined.append(joined.length() == 0 ? "" : ",").append(value);
+        if(joined.length() == 0)
+            return;
+        if(sbr.length() > 0)
+            sbr.append(';');
+        sbr.append(name).append('=').append(joined);
+    }
+}
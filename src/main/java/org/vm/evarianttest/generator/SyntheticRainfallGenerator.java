@@ -0,0 +1,310 @@
+package org.vm.evarianttest.generator;
+
+import org.vm.evarianttest.entity.weather.WBANRainfallRecord;
+import org.vm.evarianttest.reader.RainfallRecordParser;
+import org.vm.evarianttest.util.Util;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * This class generates QCLCD precipitation files of any size for scale testing, in the Wban,YearMonthDay,Hour,Precipitation,PrecipitationFlag
+ * layout of the NOAA files, with the WBAN ids of real stations so that the records link to the Context Data like real ones.
+ *
+ * Every station reports every hour (01 to 24) of every day of the months, in WBAN, day and hour order as in the NOAA files. An hour is wet with the
+ * wet hour ratio, with an amount from 0.01 to 3.00 inches mostly under a quarter of an inch, and one wet hour in a hundred is flagged as suspect (s).
+ * An hour is a trace (T) with the trace ratio, and blank otherwise. A line is malformed with the malformed line ratio, in a way the readers skip.
+ *
+ * The generator sums the expected aggregates while it writes, so the results calculated from the file can be checked against them. The same seed and
+ * settings generate the same file.
+ *
+ * Example usage:
+ *
+ * SyntheticRainfallSummary expected = SyntheticRainfallGenerator.fromContextFiles(wbanMasterFile, stationsFile)
+ *          .months(YearMonth.of(2005, 1), 120).stations(500).wetHourRatio(0.1).generate(Paths.get("decade_precip.txt"));
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+public class SyntheticRainfallGenerator {
+    public static final double DEFAULT_WET_HOUR_RATIO = 0.08;
+    public static final double DEFAULT_TRACE_RATIO = 0.03;
+    public static final long DEFAULT_SEED = 20150501L;
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final int MAX_HUNDREDTHS = 300;
+
+    private Logger log = Logger.getLogger(this.getClass().getName());
+
+    private final List<String> wbanIds;
+    private YearMonth firstMonth = YearMonth.of(2015, 5);
+    private int monthCount = 1;
+    private int stationCount;
+    private double wetHourRatio = DEFAULT_WET_HOUR_RATIO;
+    private double traceRatio = DEFAULT_TRACE_RATIO;
+    private double malformedLineRatio = 0.0d;
+    private long seed = DEFAULT_SEED;
+
+    /**
+     * Constructor
+     *
+     * @param wbanIds - WBAN ids the stations are picked from, in order of preference
+     */
+    public SyntheticRainfallGenerator(List<String> wbanIds) {
+        List<String> valid = new ArrayList<>();
+        Set<Integer> seen = new HashSet<>();
+        for(String wbanId : wbanIds) {
+            int id = RainfallRecordParser.parseWbanId(wbanId);
+            if(id >= 0 && seen.add(id))
+                valid.add(wbanId.trim());
+        }
+        if(valid.isEmpty())
+            throw new IllegalArgumentException("No valid WBAN id to generate the records of");
+        this.wbanIds = valid;
+        this.stationCount = valid.size();
+    }
+
+    /**
+     * This method returns a generator over the WBAN ids of the stations file and of the WBAN master list. The stations that reported in the month
+     * of the stations file come first, so a generator limited to fewer stations keeps the stations most likely to be linked.
+     *
+     * @param wbanMasterFile - wbanmasterlist.psv
+     * @param stationsFile - Stations file like 201505station.txt
+     * @return - Generator of all the stations
+     * @throws IOException
+     */
+    public static SyntheticRainfallGenerator fromContextFiles(Path wbanMasterFile, Path stationsFile) throws IOException {
+        Set<String> wbanIds = new LinkedHashSet<>();
+        for(String line : Files.readAllLines(stationsFile, StandardCharsets.ISO_8859_1)) {
+            String[] columns = Util.splitPSVLine(line);
+            if(columns.length > 0)
+                wbanIds.add(Util.cleanString(columns[0]));
+        }
+        for(String line : Files.readAllLines(wbanMasterFile, StandardCharsets.ISO_8859_1)) {
+            String[] columns = Util.splitPSVLine(line);
+            if(columns.length > 1)
+                wbanIds.add(Util.cleanString(columns[1]));
+        }
+        return new SyntheticRainfallGenerator(new ArrayList<>(wbanIds));
+    }
+
+    /**
+     * This method sets the months of the file.
+     *
+     * @param firstMonth - First month
+     * @param monthCount - Number of months, like 120 for a decade
+     * @return - this generator
+     */
+    public SyntheticRainfallGenerator months(YearMonth firstMonth, int monthCount) {
+        if(monthCount <= 0)
+            throw new IllegalArgumentException("Month count should be positive but was " + monthCount);
+        this.firstMonth = firstMonth;
+        this.monthCount = monthCount;
+        return this;
+    }
+
+    /**
+     * This method limits the number of stations, every station adding 24 lines per day.
+     *
+     * @param stationCount - Number of stations, at most the number of WBAN ids
+     * @return - this generator
+     */
+    public SyntheticRainfallGenerator stations(int stationCount) {
+        if(stationCount <= 0 || stationCount > wbanIds.size())
+            throw new IllegalArgumentException("Station count should be between 1 and " + wbanIds.size() + " but was " + stationCount);
+        this.stationCount = stationCount;
+        return this;
+    }
+
+    public SyntheticRainfallGenerator wetHourRatio(double wetHourRatio) {
+        this.wetHourRatio = ratio("Wet hour ratio", wetHourRatio);
+        return this;
+    }
+
+    public SyntheticRainfallGenerator traceRatio(double traceRatio) {
+        this.traceRatio = ratio("Trace ratio", traceRatio);
+        return this;
+    }
+
+    public SyntheticRainfallGenerator malformedLineRatio(double malformedLineRatio) {
+        this.malformedLineRatio = ratio("Malformed line ratio", malformedLineRatio);
+        return this;
+    }
+
+    public SyntheticRainfallGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    private static double ratio(String name, double ratio) {
+        if(!(ratio >= 0.0d && ratio <= 1.0d))
+            throw new IllegalArgumentException(name + " should be between 0 and 1 but was " + ratio);
+        return ratio;
+    }
+
+    /**
+     * @return - Number of lines the settings generate, without the file header
+     */
+    public long getLineCount() {
+        long days = 0;
+        for(int month = 0; month < monthCount; month++)
+            days += firstMonth.plusMonths(month).lengthOfMonth();
+        return days * 24 * stationCount;
+    }
+
+    /**
+     * This method writes the file.
+     *
+     * @param file - Rainfall file to write
+     * @return - Expected aggregates of the file
+     * @throws IOException
+     */
+    public SyntheticRainfallSummary generate(Path file) throws IOException {
+        if(wetHourRatio + traceRatio > 1.0d)
+            throw new IllegalArgumentException("Wet hour and trace ratios should add up to at most 1 but were " + wetHourRatio + " and " + traceRatio);
+        int[] stationIds = new int[stationCount];
+        for(int station = 0; station < stationCount; station++)
+            stationIds[station] = RainfallRecordParser.parseWbanId(wbanIds.get(station));
+        Arrays.sort(stationIds);
+
+        SyntheticRainfallSummary summary = new SyntheticRainfallSummary(stationIds, firstMonth, monthCount);
+        Random random = new Random(seed);
+        byte[] line = new byte[64];
+        try(OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE)) {
+            out.write((WBANRainfallRecord.FILE_HEADER + "\n").getBytes(StandardCharsets.US_ASCII));
+            for(int station = 0; station < stationIds.length; station++) {
+                for(int month = 0; month < monthCount; month++) {
+                    YearMonth yearMonth = firstMonth.plusMonths(month);
+                    int yearMonthDay = yearMonth.getYear() * 10000 + yearMonth.getMonthValue() * 100;
+                    for(int day = 1; day <= yearMonth.lengthOfMonth(); day++) {
+                        for(int hour = 1; hour <= 24; hour++) {
+                            int length = writeLine(line, stationIds[station], yearMonthDay + day, hour, random, summary, station, month);
+                            out.write(line, 0, length);
+                        }
+                    }
+                }
+            }
+        }
+        log.info("Generated " + summary.getLineCount() + " lines of " + stationIds.length + " stations over " + monthCount + " months into " + file);
+        return summary;
+    }
+
+    /**
+     * This method writes one line into the buffer and adds it to the expected aggregates.
+     *
+     * @return - Length of the line
+     */
+    private int writeLine(byte[] line, int wbanId, int yearMonthDay, int hour, Random random, SyntheticRainfallSummary summary, int station, int month) {
+        int length = 0;
+        if(malformedLineRatio > 0 && random.nextDouble() < malformedLineRatio) {
+            summary.addMalformedLine();
+            switch (random.nextInt(3)) {
+                case 0:
+                    // Cut after the date
+                    length = digits(line, length, wbanId, 5);
+                    line[length++] = ',';
+                    length = digits(line, length, yearMonthDay, 8);
+                    break;
+                case 1:
+                    // Not a number of hours
+                    length = ascii(line, length, wbanId, yearMonthDay, "XX, 0.10, ");
+                    break;
+                default:
+                    // Not an amount
+                    length = ascii(line, length, wbanId, yearMonthDay, (hour < 10 ? "0" : "") + hour + ", 0.1.0, ");
+                    break;
+            }
+            line[length++] = '\n';
+            return length;
+        }
+
+        length = digits(line, length, wbanId, 5);
+        line[length++] = ',';
+        length = digits(line, length, yearMonthDay, 8);
+        line[length++] = ',';
+        length = digits(line, length, hour, 2);
+        line[length++] = ',';
+        line[length++] = ' ';
+
+        double kind = random.nextDouble();
+        byte flag = ' ';
+        if(kind < wetHourRatio) {
+            // Mostly light rain, like the real hourly amounts
+            int hundredths = Math.min(MAX_HUNDREDTHS, 1 + (int) (-Math.log(1.0d - random.nextDouble()) * 8));
+            length = digits(line, length, hundredths / 100, 1);
+            line[length++] = '.';
+            length = digits(line, length, hundredths % 100, 2);
+            if(random.nextInt(100) == 0)
+                flag = 's';
+            summary.addRecord(station, month, hour, hundredths * 10L, false);
+        } else if(kind < wetHourRatio + traceRatio) {
+            line[length++] = 'T';
+            summary.addRecord(station, month, hour, 0, true);
+        } else {
+            summary.addRecord(station, month, hour, 0, false);
+        }
+        line[length++] = ',';
+        line[length++] = flag;
+        line[length++] = '\n';
+        return length;
+    }
+
+    private static int ascii(byte[] line, int from, int wbanId, int yearMonthDay, String rest) {
+        int length = digits(line, from, wbanId, 5);
+        line[length++] = ',';
+        length = digits(line, length, yearMonthDay, 8);
+        line[length++] = ',';
+        for(int i = 0; i < rest.length(); i++)
+            line[length++] = (byte) rest.charAt(i);
+        return length;
+    }
+
+    /**
+     * This method writes a non negative number left padded with zeros to the given number of digits.
+     */
+    private static int digits(byte[] line, int from, int value, int width) {
+        for(int i = width - 1; i >= 0; i--) {
+            line[from + i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return from + width;
+    }
+
+    /**
+     * This method generates a file from the bundled context files: [output file] [first month yyyy-mm] [month count] [station count]
+     * [wet hour ratio] [trace ratio] [malformed line ratio]. The expected aggregates are written next to it, as [output file].expected.csv
+     */
+    public static void main(String[] args) throws IOException {
+        Path file = Paths.get(args.length > 0 ? args[0] : "./src/main/out/synthetic_precip.txt");
+        SyntheticRainfallGenerator generator = fromContextFiles(Paths.get("./src/main/resources/wbanmasterlist.psv"),
+                Paths.get("./src/main/resources/201505station.txt"));
+        generator.months(args.length > 1 ? YearMonth.parse(args[1]) : YearMonth.of(2015, 5), args.length > 2 ? Integer.parseInt(args[2]) : 1);
+        if(args.length > 3)
+            generator.stations(Integer.parseInt(args[3]));
+        if(args.length > 4)
+            generator.wetHourRatio(Double.parseDouble(args[4]));
+        if(args.length > 5)
+            generator.traceRatio(Double.parseDouble(args[5]));
+        if(args.length > 6)
+            generator.malformedLineRatio(Double.parseDouble(args[6]));
+
+        System.out.println("Generating " + generator.getLineCount() + " lines into " + file);
+        SyntheticRainfallSummary summary = generator.generate(file);
+        summary.writeCsv(Paths.get(file + ".expected.csv"));
+        System.out.println("Records : " + summary.getRecordCount() + ", malformed lines : " + summary.getMalformedLineCount());
+    }
+}
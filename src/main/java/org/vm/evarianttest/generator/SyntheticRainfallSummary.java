@@ -0,0 +1,220 @@
+package org.vm.evarianttest.generator;
+
+import org.vm.evarianttest.aggregation.FixedPointPrecipitationAccumulator;
+import org.vm.evarianttest.query.TimeWindow;
+import org.vm.evarianttest.reader.RainfallRecordCursor;
+import org.vm.evarianttest.reader.RainfallRecordParser;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * This class holds the expected aggregates of a generated rainfall file, summed while the file is written, so that the results calculated from the
+ * file can be checked for correctness. The precipitation is summed exactly, in thousandths of an inch, per station, month and hour of the day.
+ *
+ * The aggregates take 16 bytes per station, month and hour slot, so 25 slots per month.
+ *
+ * Example usage:
+ *
+ * SyntheticRainfallSummary expected = generator.generate(file);
+ * Map result = rainfallByState.complete(expected.aggregate(TimeWindow.days(20150501, 20150531), stateCount, stateOfWban));
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+public class SyntheticRainfallSummary {
+    /** Hours of the day 0 to 24, as the QCLCD hours run from 01 to 24 */
+    public static final int HOUR_SLOTS = 25;
+
+    private final int[] stationIds;
+    private final int[] stationOfWban = new int[RainfallRecordParser.WBAN_ID_LIMIT];
+    private final YearMonth firstMonth;
+    private final int monthCount;
+    private final long[] sums;
+    private final int[] counts;
+    private final int[] traceCounts;
+    private long lineCount = 0;
+    private long malformedLineCount = 0;
+
+    SyntheticRainfallSummary(int[] stationIds, YearMonth firstMonth, int monthCount) {
+        this.stationIds = stationIds;
+        Arrays.fill(stationOfWban, -1);
+        for(int station = 0; station < stationIds.length; station++)
+            stationOfWban[stationIds[station]] = station;
+        this.firstMonth = firstMonth;
+        this.monthCount = monthCount;
+        int cells = Math.multiplyExact(Math.multiplyExact(stationIds.length, monthCount), HOUR_SLOTS);
+        this.sums = new long[cells];
+        this.counts = new int[cells];
+        this.traceCounts = new int[cells];
+    }
+
+    void addRecord(int station, int month, int hour, long scaledPrecipitation, boolean trace) {
+        int cell = cell(station, month, hour);
+        sums[cell] += scaledPrecipitation;
+        counts[cell]++;
+        if(trace)
+            traceCounts[cell]++;
+        lineCount++;
+    }
+
+    void addMalformedLine() {
+        malformedLineCount++;
+        lineCount++;
+    }
+
+    private int cell(int station, int month, int hour) {
+        return (station * monthCount + month) * HOUR_SLOTS + hour;
+    }
+
+    /**
+     * @return - Numeric WBAN ids of the generated stations, in file order
+     */
+    public int[] getStationIds() {
+        return stationIds.clone();
+    }
+
+    public YearMonth getFirstMonth() {
+        return firstMonth;
+    }
+
+    public int getMonthCount() {
+        return monthCount;
+    }
+
+    /**
+     * @return - Number of lines, without the file header
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return - Number of lines a reader should skip as malformed
+     */
+    public long getMalformedLineCount() {
+        return malformedLineCount;
+    }
+
+    /**
+     * @return - Number of valid records, blank and trace ones included
+     */
+    public long getRecordCount() {
+        return lineCount - malformedLineCount;
+    }
+
+    /**
+     * @return - Number of valid records of a station
+     */
+    public long getCount(int wbanId) {
+        long count = 0;
+        int station = station(wbanId);
+        for(int cell = cell(station, 0, 0); cell < cell(station + 1, 0, 0); cell++)
+            count += counts[cell];
+        return count;
+    }
+
+    /**
+     * @return - Number of trace records of a station
+     */
+    public long getTraceCount(int wbanId) {
+        long count = 0;
+        int station = station(wbanId);
+        for(int cell = cell(station, 0, 0); cell < cell(station + 1, 0, 0); cell++)
+            count += traceCounts[cell];
+        return count;
+    }
+
+    /**
+     * @return - Precipitation of a station in thousandths of an inch
+     */
+    public long getScaledTotal(int wbanId) {
+        long total = 0;
+        int station = station(wbanId);
+        for(int cell = cell(station, 0, 0); cell < cell(station + 1, 0, 0); cell++)
+            total += sums[cell];
+        return total;
+    }
+
+    private int station(int wbanId) {
+        if(wbanId >= 0 && wbanId < stationOfWban.length && stationOfWban[wbanId] >= 0)
+            return stationOfWban[wbanId];
+        throw new IllegalArgumentException("WBAN " + wbanId + " is not a generated station");
+    }
+
+    /**
+     * This method sums the expected rainfall of the window into slots, the same way RainfallTimeRangeIndex.aggregate() does, so the result of a
+     * Calculator's complete() on it is the result expected from the file. As the aggregates are per month, the window should hold whole months.
+     *
+     * @param window - Time window of whole months
+     * @param slots - Number of slots
+     * @param slotsOfStation - Slots of a numeric WBAN id, or null if the station is left out
+     * @return - Expected rainfall per slot
+     */
+    public FixedPointPrecipitationAccumulator aggregate(TimeWindow window, int slots, IntFunction<int[]> slotsOfStation) {
+        boolean[] months = new boolean[monthCount];
+        for(int month = 0; month < monthCount; month++) {
+            YearMonth yearMonth = firstMonth.plusMonths(month);
+            int firstDay = yearMonth.getYear() * 10000 + yearMonth.getMonthValue() * 100 + 1;
+            int lastDay = firstDay + yearMonth.lengthOfMonth() - 1;
+            if(lastDay < window.getFromDay() || firstDay > window.getToDay())
+                continue;
+            if(firstDay < window.getFromDay() || lastDay > window.getToDay())
+                throw new IllegalArgumentException("The expected aggregates are per month, " + window + " should hold whole months");
+            months[month] = true;
+        }
+
+        FixedPointPrecipitationAccumulator accumulator = new FixedPointPrecipitationAccumulator(slots);
+        for(int station = 0; station < stationIds.length; station++) {
+            int[] stationSlots = slotsOfStation.apply(stationIds[station]);
+            if(stationSlots == null || stationSlots.length == 0)
+                continue;
+            long total = 0, count = 0;
+            for(int month = 0; month < monthCount; month++) {
+                if(!months[month])
+                    continue;
+                for(int hour = 0; hour < HOUR_SLOTS; hour++) {
+                    if(window.containsHour(hour)) {
+                        total += sums[cell(station, month, hour)];
+                        count += counts[cell(station, month, hour)];
+                    }
+                }
+            }
+            if(count == 0)
+                continue;
+            for(int slot : stationSlots)
+                accumulator.add(slot, total, count);
+        }
+        return accumulator;
+    }
+
+    /**
+     * This method writes the aggregates as CSV, one line per station and month: Wban,YearMonth,Records,TraceRecords,Precipitation
+     *
+     * @param file - CSV file
+     * @throws IOException
+     */
+    public void writeCsv(Path file) throws IOException {
+        try(BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            out.write("Wban,YearMonth,Records,TraceRecords,Precipitation\n");
+            for(int station = 0; station < stationIds.length; station++) {
+                for(int month = 0; month < monthCount; month++) {
+                    int from = cell(station, month, 0);
+                    long total = Arrays.stream(sums, from, from + HOUR_SLOTS).sum();
+                    long count = Arrays.stream(counts, from, from + HOUR_SLOTS).sum();
+                    long traces = Arrays.stream(traceCounts, from, from + HOUR_SLOTS).sum();
+                    YearMonth yearMonth = firstMonth.plusMonths(month);
+                    out.write(String.format("%05d,%d%02d,%d,%d,%s\n", stationIds[station], yearMonth.getYear(), yearMonth.getMonthValue(), count, traces,
+                            BigDecimal.valueOf(total, RainfallRecordCursor.PRECIPITATION_SCALE).toPlainString()));
+                }
+            }
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package org.vm.evarianttest.loader;
 
-import org.apache.poi.ss.usermodel.*;
 import org.vm.evarianttest.entity.Entity;
 import org.vm.evarianttest.entity.Key;
 import org.vm.evarianttest.entity.census.USAStatAreaPopulationRecord;
@@ -8,9 +7,7 @@ import org.vm.evarianttest.entity.census.USAState;
 import org.vm.evarianttest.entity.census.USAStatisticalArea;
 import org.vm.evarianttest.entity.census.USAStatisticalAreaType;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStream;
+
 import java.net.URI;
 import java.time.Year;
 import java.util.*;
@@ -26,7 +23,7 @@ import java.util.logging.Logger;
  * @author vivekm
  * @since 1.0
  */
-public class CensusPopXLSFileDataLoader implements DataLoader{
+public class CensusPopXLSFileDataLoader implements DataLoader<Key, Entity> {
 
     public static final int CENSUS_USA_STARTING_ROW = 7;
     public static final int CENSUS_TITLE_COL = 0;
@@ -51,60 +48,83 @@ public class CensusPopXLSFileDataLoader implements DataLoader{
 
     @Override
     public void load() throws DataLoaderException{
+        parse();
+        link(result);
+    }
+
+    /**
+     * This method reads the Statistical Areas of the workbook. The census workbook has no input, so this is the whole load.
+     *
+     * @throws DataLoaderException
+     */
+    @Override
+    public void parse() throws DataLoaderException {
         statAreaMap = new LinkedHashMap<>();
-        USAStatisticalAreaType currentType = null;
-        boolean isPuertoRicoArea = false;
-        int counter = 0;
-
-        try(InputStream in = new FileInputStream(new File(censusFile))) {
-            Workbook wb = WorkbookFactory.create(in);
-            Sheet firstSheet = wb.getSheetAt(0);
-
-            Iterator<Row> rowIter = firstSheet.rowIterator();
-
-            rowReader:
-            while(rowIter.hasNext()){
-                boolean isMetaData = false;
-                boolean isSkipRow = true;
-
-                Row row = rowIter.next();
-                if(row.getRowNum() < CENSUS_USA_STARTING_ROW)
-                    continue rowReader;
-
-                Cell cell = row.getCell(CENSUS_TITLE_COL);
-                String title = cell.toString().trim();
-                if(!title.isEmpty()){
-                    if(USAState.PUERTO_RICO.getName().equalsIgnoreCase(title)){
-                        isPuertoRicoArea = true;
-                        isMetaData = true;
-                        continue rowReader;
-                    }
 
-                    if(USAStatisticalAreaType.isValid(title)){
-                        currentType = USAStatisticalAreaType.findByName(title);
-                        isMetaData = true;
-                        continue rowReader;
+        try {
+            // Only the title, 2010 population and change columns are read, row by row
+            new SpreadsheetRowReader(censusFile, CENSUS_TITLE_COL, CENSUS_2010_POP_COL, CENSUS_POP_CHANGE_PERCENT_COL).read(new SpreadsheetRowReader.RowHandler() {
+                private USAStatisticalAreaType currentType = null;
+                private boolean isPuertoRicoArea = false;
+                private int counter = 0;
+
+                @Override
+                public void onRow(SpreadsheetRowReader.SheetRow row) {
+                    boolean isMetaData = false;
+                    boolean isSkipRow = true;
+
+                    if(row.getRowNum() < CENSUS_USA_STARTING_ROW)
+                        return;
+
+                    String title = row.getText(CENSUS_TITLE_COL).trim();
+                    if(!title.isEmpty()){
+                        if(USAState.PUERTO_RICO.getName().equalsIgnoreCase(title)){
+                            isPuertoRicoArea = true;
+                            isMetaData = true;
+                            return;
+                        }
+
+                        if(USAStatisticalAreaType.isValid(title)){
+                            currentType = USAStatisticalAreaType.findByName(title);
+                            isMetaData = true;
+                            return;
+                        }
+
+                        //Apply the input filter
+                        if(typesToLoad.contains(currentType)) {
+                            isSkipRow = false;
+                        }
                     }
 
-                    //Apply the input filter
-                    if(typesToLoad.contains(currentType)) {
-                        isSkipRow = false;
+                    if(!isMetaData && !isSkipRow){
+                        USAStatAreaPopulationRecord rec = buildPopulationRec(++counter, title, isPuertoRicoArea, currentType, row.getNumericCellValue(CENSUS_2010_POP_COL), row.getNumericCellValue(CENSUS_POP_CHANGE_PERCENT_COL));
+                        if(log.isLoggable(Level.FINE)) log.fine("Loaded - " + rec.toString());
+                        statAreaMap.put(rec.getArea().key(), rec);
                     }
                 }
-
-                if(!isMetaData && !isSkipRow){
-                    USAStatAreaPopulationRecord rec = buildPopulationRec(++counter, title, isPuertoRicoArea, currentType, row.getCell(CENSUS_2010_POP_COL).getNumericCellValue(), row.getCell(CENSUS_POP_CHANGE_PERCENT_COL).getNumericCellValue());
-                    if(log.isLoggable(Level.FINE)) log.fine("Loaded - " + rec.toString());
-                    statAreaMap.put(rec.getArea().key(), rec);
-                }
-            }
+            });
         } catch (Exception e) {
             log.log(Level.SEVERE, "Error occurred while loading Census XLS File", e);
         }
-        result.put(Constants.STAT_AREA_MAP_NAME, statAreaMap);
         System.out.println("Total MSA records loaded : " + statAreaMap.size());
     }
 
+    @Override
+    public void link(Map<String, Map<Key, Entity>> maps) throws DataLoaderException {
+        maps.put(Constants.STAT_AREA_MAP_NAME, statAreaMap);
+        result = maps;
+    }
+
+    @Override
+    public Set<String> getOutputs() {
+        return Collections.singleton(Constants.STAT_AREA_MAP_NAME);
+    }
+
+    @Override
+    public long getRowCount() {
+        return statAreaMap == null ? 0 : statAreaMap.size();
+    }
+
     @Override
     public Map<String, Map<Key, Entity>> getDataMaps() throws DataLoaderException {
         return this.result;
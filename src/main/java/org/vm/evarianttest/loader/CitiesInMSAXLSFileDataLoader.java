@@ -1,6 +1,6 @@
 package org.vm.evarianttest.loader;
 
-import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.usermodel.Cell;
 import org.vm.evarianttest.entity.Entity;
 import org.vm.evarianttest.entity.Key;
 import org.vm.evarianttest.entity.census.USAStatAreaPopulationRecord;
@@ -8,12 +8,8 @@ import org.vm.evarianttest.entity.census.USACounty;
 import org.vm.evarianttest.entity.census.USAState;
 import org.vm.evarianttest.util.Util;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStream;
 import java.net.URI;
 import java.util.*;
-import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -45,41 +41,32 @@ public class CitiesInMSAXLSFileDataLoader implements DataLoader {
     @Override
     public void load() throws DataLoaderException {
 
-        try(InputStream in = new FileInputStream(new File(countyMSALinkFile))) {
-            Workbook wb = WorkbookFactory.create(in);
-            Sheet firstSheet = wb.getSheetAt(0);
+        try {
+            // Only the Statistical Area, County and State columns are read, row by row
+            new SpreadsheetRowReader(countyMSALinkFile, CENSUS_CITY_FILE_STAT_AREA_COL, CENSUS_CITY_FILE_COUNTY_NAME_COL, CENSUS_CITY_FILE_STATE_NAME_COL).read(new SpreadsheetRowReader.RowHandler() {
+                @Override
+                public void onRow(SpreadsheetRowReader.SheetRow row) {
+                    if(row.getRowNum() < CENSUS_CITY_FILE_STARTING_ROW || !row.hasCell(CENSUS_CITY_FILE_STAT_AREA_COL))
+                        return;
 
-            Iterator<Row> rowIter = firstSheet.rowIterator();
-            rowReader:
-            while(rowIter.hasNext()){
+                    if(row.getCellType(CENSUS_CITY_FILE_STAT_AREA_COL) == Cell.CELL_TYPE_STRING){
+                        String statAreaName = Util.cleanSAName(row.getStringCellValue(CENSUS_CITY_FILE_STAT_AREA_COL)).toUpperCase();
+                        USAStatAreaPopulationRecord rec = (USAStatAreaPopulationRecord) statAreaMap.get(new Key(statAreaName));
 
-                Row row = rowIter.next();
-                if(row.getRowNum() < CENSUS_CITY_FILE_STARTING_ROW)
-                    continue rowReader;
-
-                Optional<Cell> cellValue = Optional.ofNullable(row.getCell(CENSUS_CITY_FILE_STAT_AREA_COL));
-                cellValue.ifPresent(new Consumer<Cell>() {
-                    @Override
-                    public void accept(Cell cell) {
-                        if(cell.getCellType() == Cell.CELL_TYPE_STRING){
-                            String statAreaName = cell != null? Util.cleanSAName(cell.getStringCellValue()).toUpperCase(): "";
-                            USAStatAreaPopulationRecord rec = (USAStatAreaPopulationRecord) statAreaMap.get(new Key(statAreaName));
-
-                            if(rec != null){
-                                String countyName = Util.cleanString(row.getCell(CENSUS_CITY_FILE_COUNTY_NAME_COL).getStringCellValue());
-                                String stateName = Util.cleanString(row.getCell(CENSUS_CITY_FILE_STATE_NAME_COL).getStringCellValue());
-                                USAState state = USAState.findByName(stateName);
-                                if(rec.getArea().getStates().values().contains(state)) {
-                                    counter++;
-                                    log.log(Level.FINE, " Rec ---> " + countyName + " - " + stateName + " added.");
-                                    USACounty county = new USACounty(countyName, state);
-                                    rec.getArea().addCounty(county);
-                                }
+                        if(rec != null){
+                            String countyName = Util.cleanString(row.getStringCellValue(CENSUS_CITY_FILE_COUNTY_NAME_COL));
+                            String stateName = Util.cleanString(row.getStringCellValue(CENSUS_CITY_FILE_STATE_NAME_COL));
+                            USAState state = USAState.findByName(stateName);
+                            if(rec.getArea().getStates().values().contains(state)) {
+                                counter++;
+                                log.log(Level.FINE, " Rec ---> " + countyName + " - " + stateName + " added.");
+                                USACounty county = new USACounty(countyName, state);
+                                rec.getArea().addCounty(county);
                             }
                         }
                     }
-                });
-            }
+                }
+            });
         } catch (Exception e) {
             e.printStackTrace();
             log.log(Level.SEVERE, "Error occurred while loading County-SA XLS File", e);
@@ -88,6 +75,11 @@ public class CitiesInMSAXLSFileDataLoader implements DataLoader {
         System.out.println("Total Number of Counties updated : " + counter);
     }
 
+    @Override
+    public long getRowCount() {
+        return counter;
+    }
+
     @Override
     public Map<String, Map<Key, Entity>> getDataMaps() throws DataLoaderException {
         return result;
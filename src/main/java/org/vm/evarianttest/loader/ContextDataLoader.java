@@ -0,0 +1,201 @@
+package org.vm.evarianttest.loader;
+
+import org.vm.evarianttest.entity.Entity;
+import org.vm.evarianttest.entity.Key;
+import org.vm.evarianttest.metrics.PipelineMetrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class implements a Data Loader that runs other Data Loaders as one load of the Context Data. The parse phase of every loader is started at
+ * once on the executor, and the link phase of a loader runs as soon as its own parse is done and every loader registered before it that writes one
+ * of its inputs or outputs is linked. The load takes about as long as the slowest file plus the links.
+ *
+ * The loaders must be registered in dependency order: a loader whose input is only written by a loader registered after it is rejected. Loaders
+ * writing the same map are linked in the order they are registered, so the Context Data is the same on every run. The parse and link times and the
+ * rows of every loader are published in the PipelineMetrics.
+ *
+ * Example usage:
+ *
+ * ContextDataLoader context = new ContextDataLoader();
+ * context.register(new CensusPopXLSFileDataLoader(...)).register(new CountyXLSFileDataLoader(...));
+ * context.load();
+ * Map maps = context.getDataMaps();
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+public class ContextDataLoader implements DataLoader<Key, Entity> {
+    private Logger log = Logger.getLogger(this.getClass().getName());
+
+    private final Executor executor;
+    private final List<DataLoader<Key, Entity>> loaders = new ArrayList<>();
+    private Map<String, Map<Key, Entity>> maps = new LinkedHashMap<>();
+
+    /**
+     * Constructor, parsing on the common fork join pool.
+     */
+    public ContextDataLoader() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param executor - Executor running the parse and link phases
+     */
+    public ContextDataLoader(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * This method adds a loader to the load.
+     *
+     * @param loader - Data Loader, registered after the loaders writing its inputs
+     * @return - This loader
+     */
+    public ContextDataLoader register(DataLoader<Key, Entity> loader) {
+        loaders.add(loader);
+        return this;
+    }
+
+    /**
+     * This method returns a loader of only the given maps. A loader is kept when it writes one of the maps and all of its inputs are among the maps,
+     * so a loader that only enriches a map from maps that are not asked for is left out.
+     *
+     * @param maps - Names of the maps to load
+     * @return - Loader of the given maps, sharing the executor
+     * @throws DataLoaderException - If no loader writes one of the maps
+     */
+    public ContextDataLoader forMaps(Set<String> maps) throws DataLoaderException {
+        ContextDataLoader selected = new ContextDataLoader(executor);
+        Set<String> missing = new LinkedHashSet<>(maps);
+        for(DataLoader<Key, Entity> loader : loaders) {
+            if(!Collections.disjoint(loader.getOutputs(), maps) && maps.containsAll(loader.getInputs())) {
+                selected.register(loader);
+                missing.removeAll(loader.getOutputs());
+            }
+        }
+        if(!missing.isEmpty())
+            throw new DataLoaderException("No Data Loader loads " + missing);
+        return selected;
+    }
+
+    @Override
+    public void load() throws DataLoaderException {
+        List<List<Integer>> dependencies = new ArrayList<>();
+        for(int i = 0; i < loaders.size(); i++)
+            dependencies.add(dependencies(i));
+
+        Map<String, Map<Key, Entity>> linked = Collections.synchronizedMap(new LinkedHashMap<>());
+        long[] parseNanos = new long[loaders.size()];
+        List<CompletableFuture<Void>> links = new ArrayList<>();
+        for(int i = 0; i < loaders.size(); i++) {
+            int position = i;
+            List<CompletableFuture<Void>> waitFor = new ArrayList<>();
+            waitFor.add(CompletableFuture.runAsync(() -> run(position, null, parseNanos), executor));
+            for(int dependency : dependencies.get(i))
+                waitFor.add(links.get(dependency));
+
+            links.add(CompletableFuture.allOf(waitFor.toArray(new CompletableFuture<?>[waitFor.size()]))
+                    .thenRunAsync(() -> run(position, linked, parseNanos), executor));
+        }
+
+        try {
+            CompletableFuture.allOf(links.toArray(new CompletableFuture<?>[links.size()])).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof DataLoaderException)
+                throw (DataLoaderException) cause;
+            log.log(Level.SEVERE, "Error occurred while loading the Context Data", cause);
+            throw new DataLoaderException("Error occurred while loading the Context Data", cause);
+        }
+        maps = new LinkedHashMap<>(linked);
+    }
+
+    /**
+     * This method returns the positions of the loaders whose link phase the loader at the given position has to wait for.
+     */
+    private List<Integer> dependencies(int position) throws DataLoaderException {
+        DataLoader<Key, Entity> loader = loaders.get(position);
+        Set<String> touched = new LinkedHashSet<>(loader.getInputs());
+        touched.addAll(loader.getOutputs());
+
+        Set<String> written = new LinkedHashSet<>();
+        List<Integer> dependencies = new ArrayList<>();
+        for(int i = 0; i < position; i++) {
+            Set<String> outputs = loaders.get(i).getOutputs();
+            written.addAll(outputs);
+            if(!Collections.disjoint(outputs, touched))
+                dependencies.add(i);
+        }
+
+        for(String input : loader.getInputs()) {
+            if(!written.contains(input))
+                throw new DataLoaderException("No Data Loader registered before " + loader.getClass().getSimpleName() + " loads " + input);
+        }
+        return dependencies;
+    }
+
+    /**
+     * This method runs the parse phase of a loader, or its link phase when the maps are given. The load of the loader is added to the
+     * PipelineMetrics once it is linked.
+     *
+     * @param position - Position of the loader
+     * @param linked - Maps of Context Data linked so far, null for the parse phase
+     * @param parseNanos - Time of the parse phase of every loader
+     */
+    private void run(int position, Map<String, Map<Key, Entity>> linked, long[] parseNanos) {
+        DataLoader<Key, Entity> loader = loaders.get(position);
+        long started = System.nanoTime();
+        try {
+            if(linked == null)
+                loader.parse();
+            else
+                loader.link(linked);
+        } catch (DataLoaderException e) {
+            throw new CompletionException(e);
+        }
+        long nanos = System.nanoTime() - started;
+        if(linked == null)
+            parseNanos[position] = nanos;
+        else
+            PipelineMetrics.get().loader(loader.getClass()).addLoad(parseNanos[position], nanos, loader.getRowCount());
+    }
+
+    @Override
+    public Set<String> getOutputs() {
+        Set<String> outputs = new LinkedHashSet<>();
+        for(DataLoader<Key, Entity> loader : loaders)
+            outputs.addAll(loader.getOutputs());
+        return outputs;
+    }
+
+    /**
+     * @return - Rows read by all the loaders
+     */
+    @Override
+    public long getRowCount() {
+        long rows = 0;
+        for(DataLoader<Key, Entity> loader : loaders)
+            rows += loader.getRowCount();
+        return rows;
+    }
+
+    @Override
+    public Map<String, Map<Key, Entity>> getDataMaps() throws DataLoaderException {
+        return this.maps;
+    }
+}
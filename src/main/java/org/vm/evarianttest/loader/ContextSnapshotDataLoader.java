@@ -0,0 +1,615 @@
+package org.vm.evarianttest.loader;
+
+import org.vm.evarianttest.entity.Entity;
+import org.vm.evarianttest.entity.Key;
+import org.vm.evarianttest.entity.KeyAware;
+import org.vm.evarianttest.entity.census.USACounty;
+import org.vm.evarianttest.entity.census.USAStatAreaPopulationRecord;
+import org.vm.evarianttest.entity.census.USAState;
+import org.vm.evarianttest.entity.census.USAStatisticalArea;
+import org.vm.evarianttest.entity.census.USAStatisticalAreaType;
+import org.vm.evarianttest.entity.weather.WBAN;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * This class implements a Data Loader for a snapshot of the fully loaded and linked Context Data. The snapshot is written once the other DataLoaders
+ * are done, and read back on later starts instead of parsing the Excel workbooks and the WBAN files and linking them again.
+ *
+ * The snapshot records the size, last modified time and CRC32 checksum of every source file and a tag describing the load options, so a snapshot is
+ * only used while none of the sources has changed. Only the size and time are compared on start, the sources are read for their checksum only when
+ * their time has changed, like after a copy.
+ *
+ * The Context Data is a graph: Statistical Areas, Counties and WBANs refer to each other. The snapshot stores it as tables of plain fields, one per
+ * kind of entity, where an entity refers to another by its index in that table, followed by the links between them. The Keys, and the Cities and
+ * States of an area, are derived from the names by the entity constructors and are not stored. Every String is stored once in a string table. The
+ * file is memory-mapped and decoded field by field, so no class is instantiated from the content of the file other than the entities themselves,
+ * and every count and index is checked against the size of its table.
+ *
+ * Snapshot layout, big endian:
+ *  int    MAGIC
+ *  int    FORMAT_VERSION
+ *  short  length of the tag, followed by the tag in UTF-8
+ *  int    number of source files, followed by long size, long last modified time in milliseconds and long CRC32 of every source file
+ *  int    number of strings, followed by the int end offset of every string and the UTF-8 bytes of all the strings
+ *  int    number of areas, followed by AREA_SIZE bytes per area:
+ *           int areaId, int name, int type, byte Puerto Rico area, long base population, int base year, long current population,
+ *           int current population year, double average yearly population change rate
+ *  int    number of counties, followed by COUNTY_SIZE bytes per county: int name, int state
+ *  int    number of WBANs, followed by WBAN_SIZE bytes per WBAN: int WBAN id, int station name, int located at, int county, int area
+ *  links  counties of the areas, areas of the counties, WBANs of the areas, WBANs of the counties. Each is an int number of links followed by the
+ *         int index of the entity linked from and the int index of the entity linked to, in the order the links were made.
+ *  int    number of maps, followed by the int name of every map, the int number of its entities and their int indexes
+ *
+ * The type of an area and the state of a County are stored as the names of their enum constants. Strings and entities are referred to by
+ * their index, NO_INDEX for none, and a missing year is NO_INDEX as well.
+ *
+ * Example usage:
+ *
+ * ContextSnapshotDataLoader snapshot = new ContextSnapshotDataLoader(snapshotPath, sources, tag);
+ * if(snapshot.isUpToDate()) { snapshot.load(); maps = snapshot.getDataMaps(); }
+ * else { maps = ...full load...; snapshot.write(maps); }
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+public class ContextSnapshotDataLoader implements DataLoader<Key, Entity> {
+    public static final int MAGIC = 0x52464358;
+    public static final int FORMAT_VERSION = 4;
+    public static final int NO_INDEX = -1;
+
+    static final int AREA_SIZE = 4 + 4 + 4 + 1 + 8 + 4 + 8 + 4 + 8;
+    static final int COUNTY_SIZE = 4 + 4;
+    static final int WBAN_SIZE = 4 * 5;
+    private static final int SOURCE_SIZE = 8 * 3;
+
+    private Logger log = Logger.getLogger(this.getClass().getName());
+
+    private Path snapshotFile;
+    private List<URI> sourceFiles;
+    private String tag;
+    private Map<String, Map<Key, Entity>> maps = null;
+
+    /**
+     * Constructor
+     *
+     * @param snapshotFile - Path of the snapshot
+     * @param sourceFiles - URIs of all the files the Context Data is loaded from
+     * @param tag - Load options the Context Data depends on, like the Statistical Area types that are loaded
+     */
+    public ContextSnapshotDataLoader(Path snapshotFile, List<URI> sourceFiles, String tag) {
+        this.snapshotFile = snapshotFile;
+        this.sourceFiles = sourceFiles;
+        this.tag = tag;
+    }
+
+    /**
+     * This method tells whether the snapshot exists and was written from the current source files with the same tag.
+     *
+     * @return - true if the snapshot can be loaded
+     */
+    public boolean isUpToDate() {
+        if(!Files.isRegularFile(snapshotFile))
+            return false;
+        try(FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return readHeader(buffer);
+        } catch (IOException | RuntimeException e) {
+            log.log(Level.FINE, "Snapshot " + snapshotFile + " cannot be used", e);
+            return false;
+        }
+    }
+
+    /**
+     * This method loads the Context Data from the snapshot, which is memory-mapped and decoded in place.
+     *
+     * @throws DataLoaderException - If the snapshot is missing, stale, unreadable or corrupt
+     */
+    @Override
+    public void load() throws DataLoaderException {
+        log.fine("Input file: " + snapshotFile);
+        try(FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if(!readHeader(buffer))
+                throw new DataLoaderException("Snapshot " + snapshotFile + " is out of date with its source files");
+            maps = new SnapshotReader(buffer).read();
+        } catch (DataLoaderException ex) {
+            throw ex;
+        } catch (IOException | RuntimeException ex) {
+            log.log(Level.SEVERE, "Error occurred while processing " + snapshotFile, ex);
+            throw new DataLoaderException("Error occurred while processing " + snapshotFile, ex);
+        }
+        log.fine("Total Number of context entities read from snapshot " + getRowCount());
+    }
+
+    /**
+     * This method writes the snapshot of the Context Data. The snapshot is written to a temporary file first and then moved in place, so a failed
+     * write never leaves a truncated snapshot behind.
+     *
+     * @param maps - Fully loaded and linked Context Data
+     * @throws DataLoaderException - If the snapshot cannot be written
+     */
+    public void write(Map<String, Map<Key, Entity>> maps) throws DataLoaderException {
+        Path parent = snapshotFile.toAbsolutePath().getParent();
+        Path temp = null;
+        try {
+            SnapshotWriter content = new SnapshotWriter(maps);
+            Files.createDirectories(parent);
+            temp = Files.createTempFile(parent, snapshotFile.getFileName().toString(), ".tmp");
+            try(OutputStream file = new BufferedOutputStream(Files.newOutputStream(temp));
+                DataOutputStream out = new DataOutputStream(file)) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                byte[] tagBytes = tag.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(tagBytes.length);
+                out.write(tagBytes);
+                out.writeInt(sourceFiles.size());
+                for(URI source : sourceFiles) {
+                    Path path = Paths.get(source);
+                    out.writeLong(Files.size(path));
+                    out.writeLong(Files.getLastModifiedTime(path).toMillis());
+                    out.writeLong(checksum(path));
+                }
+                content.writeTo(out);
+            }
+            Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.fine("Snapshot written to " + snapshotFile + " (" + Files.size(snapshotFile) + " bytes)");
+        } catch (IOException ex) {
+            log.log(Level.SEVERE, "Error occurred while writing " + snapshotFile, ex);
+            throw new DataLoaderException("Error occurred while writing " + snapshotFile, ex);
+        } finally {
+            if(temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    log.log(Level.FINE, "Could not delete " + temp, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Set<String> getOutputs() {
+        return new LinkedHashSet<>(Arrays.asList(Constants.STAT_AREA_MAP_NAME, Constants.WBAN_MASTER_MAP));
+    }
+
+    /**
+     * @return - Entities read from the snapshot, over all the maps
+     */
+    @Override
+    public long getRowCount() {
+        long rows = 0;
+        if(maps != null) {
+            for(Map<Key, Entity> map : maps.values())
+                rows += map.size();
+        }
+        return rows;
+    }
+
+    @Override
+    public Map<String, Map<Key, Entity>> getDataMaps() throws DataLoaderException {
+        return this.maps;
+    }
+
+    /**
+     * This method reads and checks the header, leaving the buffer at the start of the string table. A source file whose size and last modified
+     * time are those of the header is taken as unchanged, the others are read for their checksum.
+     */
+    private boolean readHeader(ByteBuffer buffer) throws IOException {
+        if(buffer.remaining() < 10 || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION)
+            return false;
+        int tagLength = buffer.getShort() & 0xFFFF;
+        if(buffer.remaining() < tagLength + 4)
+            return false;
+        byte[] tagBytes = new byte[tagLength];
+        buffer.get(tagBytes);
+        if(!tag.equals(new String(tagBytes, StandardCharsets.UTF_8)))
+            return false;
+        if(buffer.getInt() != sourceFiles.size() || buffer.remaining() < (long) sourceFiles.size() * SOURCE_SIZE)
+            return false;
+        boolean upToDate = true;
+        for(URI source : sourceFiles) {
+            long size = buffer.getLong(), lastModified = buffer.getLong(), checksum = buffer.getLong();
+            if(!upToDate)
+                continue;
+            Path path = Paths.get(source);
+            if(Files.size(path) != size)
+                upToDate = false;
+            else if(Files.getLastModifiedTime(path).toMillis() != lastModified)
+                upToDate = checksum(path) == checksum;
+        }
+        return upToDate;
+    }
+
+    /**
+     * This method computes the CRC32 checksum of a file, reading it through a memory mapping.
+     *
+     * @param path - File to checksum
+     * @return - CRC32 of the content
+     * @throws IOException
+     */
+    public static long checksum(Path path) throws IOException {
+        CRC32 crc = new CRC32();
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for(long position = 0; position < size; position += Integer.MAX_VALUE) {
+                long length = Math.min(Integer.MAX_VALUE, size - position);
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Numbers the Strings and the entities of the Context Data by identity, in the order they are found, and writes the tables and the links.
+     * Identity matters: every WBAN of the WBAN master list has its own County instance, distinct from the equal County of an area.
+     */
+    private static class SnapshotWriter {
+        private final Map<String, Integer> strings = new LinkedHashMap<>();
+        private final Map<USAStatisticalArea, Integer> areaIndexes = new IdentityHashMap<>();
+        private final List<USAStatAreaPopulationRecord> areas = new ArrayList<>();
+        private final Map<USACounty, Integer> countyIndexes = new IdentityHashMap<>();
+        private final List<USACounty> counties = new ArrayList<>();
+        private final Map<WBAN, Integer> wbanIndexes = new IdentityHashMap<>();
+        private final List<WBAN> wbans = new ArrayList<>();
+        private final Map<String, int[]> mapIndexes = new LinkedHashMap<>();
+
+        SnapshotWriter(Map<String, Map<Key, Entity>> maps) throws DataLoaderException {
+            Map<Key, Entity> statAreaMap = maps.get(Constants.STAT_AREA_MAP_NAME);
+            if(statAreaMap != null) {
+                for(Entity entity : statAreaMap.values()) {
+                    USAStatAreaPopulationRecord record = (USAStatAreaPopulationRecord) entity;
+                    areaIndexes.put(record.getArea(), areas.size());
+                    areas.add(record);
+                }
+            }
+            for(Map.Entry<String, Map<Key, Entity>> map : maps.entrySet()) {
+                int[] indexes = new int[map.getValue().size()];
+                int i = 0;
+                for(Map.Entry<Key, Entity> entry : map.getValue().entrySet()) {
+                    if(!entry.getKey().equals(((KeyAware) entry.getValue()).key()))
+                        throw new DataLoaderException("Entity " + entry.getValue() + " is not mapped by its own key in " + map.getKey());
+                    if(Constants.STAT_AREA_MAP_NAME.equals(map.getKey()))
+                        indexes[i++] = areaIndexes.get(((USAStatAreaPopulationRecord) entry.getValue()).getArea());
+                    else if(Constants.WBAN_MASTER_MAP.equals(map.getKey()))
+                        indexes[i++] = wban((WBAN) entry.getValue());
+                    else
+                        throw new DataLoaderException("Map " + map.getKey() + " cannot be kept in a snapshot");
+                }
+                mapIndexes.put(map.getKey(), indexes);
+            }
+            // The Counties and WBANs only reachable through the areas
+            for(USAStatAreaPopulationRecord record : areas) {
+                for(USACounty county : record.getArea().getCounties().values())
+                    county(county);
+                for(WBAN wban : record.getArea().getWeatherStations().values())
+                    wban(wban);
+            }
+            // A County brings its WBANs and a WBAN its County, until no new one is found
+            int nextCounty = 0, nextWban = 0;
+            while(nextCounty < counties.size() || nextWban < wbans.size()) {
+                for(; nextCounty < counties.size(); nextCounty++) {
+                    for(WBAN wban : counties.get(nextCounty).getWeatherStations().values())
+                        wban(wban);
+                }
+                for(; nextWban < wbans.size(); nextWban++)
+                    county(wbans.get(nextWban).getCounty());
+            }
+            for(USAStatAreaPopulationRecord record : areas) {
+                USAStatisticalArea area = record.getArea();
+                string(area.getName());
+                string(area.getType().name());
+            }
+            for(USACounty county : counties)
+                string(county.getName());
+            for(WBAN wban : wbans)
+                string(wban.getStationLocatedAt());
+            for(String name : mapIndexes.keySet())
+                string(name);
+        }
+
+        private int county(USACounty county) {
+            if(county == null)
+                return NO_INDEX;
+            Integer index = countyIndexes.get(county);
+            if(index == null) {
+                index = counties.size();
+                countyIndexes.put(county, index);
+                counties.add(county);
+                string(county.getName());
+                string(county.getState().name());
+            }
+            return index;
+        }
+
+        private int wban(WBAN wban) {
+            Integer index = wbanIndexes.get(wban);
+            if(index == null) {
+                index = wbans.size();
+                wbanIndexes.put(wban, index);
+                wbans.add(wban);
+                string(String.valueOf(wban.key().getKey()));
+                string(wban.getWbanStationName());
+            }
+            return index;
+        }
+
+        private int area(USAStatisticalArea area) throws DataLoaderException {
+            if(area == null)
+                return NO_INDEX;
+            Integer index = areaIndexes.get(area);
+            if(index == null)
+                throw new DataLoaderException("Statistical Area " + area.key() + " is linked but not in the " + Constants.STAT_AREA_MAP_NAME);
+            return index;
+        }
+
+        private int string(String value) {
+            if(value == null)
+                return NO_INDEX;
+            Integer index = strings.get(value);
+            if(index == null) {
+                index = strings.size();
+                strings.put(value, index);
+            }
+            return index;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException, DataLoaderException {
+            List<byte[]> encoded = new ArrayList<>(strings.size());
+            for(String value : strings.keySet())
+                encoded.add(value.getBytes(StandardCharsets.UTF_8));
+            out.writeInt(encoded.size());
+            int end = 0;
+            for(byte[] bytes : encoded) {
+                end = Math.addExact(end, bytes.length);
+                out.writeInt(end);
+            }
+            for(byte[] bytes : encoded)
+                out.write(bytes);
+
+            out.writeInt(areas.size());
+            for(USAStatAreaPopulationRecord record : areas) {
+                USAStatisticalArea area = record.getArea();
+                out.writeInt(area.getAreaId());
+                out.writeInt(string(area.getName()));
+                out.writeInt(string(area.getType().name()));
+                out.writeByte(area.isPuertoRicoArea() ? 1 : 0);
+                out.writeLong(record.getBasePopulation());
+                out.writeInt(year(record.getBaseYear()));
+                out.writeLong(record.getCurrentPopulation());
+                out.writeInt(year(record.getCurrentPopYear()));
+                out.writeDouble(record.getAverageYearlyPopChangeRate());
+            }
+            out.writeInt(counties.size());
+            for(USACounty county : counties) {
+                out.writeInt(string(county.getName()));
+                out.writeInt(string(county.getState().name()));
+            }
+            out.writeInt(wbans.size());
+            for(WBAN wban : wbans) {
+                out.writeInt(string(String.valueOf(wban.key().getKey())));
+                out.writeInt(string(wban.getWbanStationName()));
+                out.writeInt(string(wban.getStationLocatedAt()));
+                out.writeInt(county(wban.getCounty()));
+                out.writeInt(area(wban.getArea()));
+            }
+
+            Links areaCounties = new Links(), countyAreas = new Links(), areaStations = new Links(), countyStations = new Links();
+            for(int i = 0; i < areas.size(); i++) {
+                for(USACounty county : areas.get(i).getArea().getCounties().values())
+                    areaCounties.add(i, county(county));
+                for(WBAN wban : areas.get(i).getArea().getWeatherStations().values())
+                    areaStations.add(i, wban(wban));
+            }
+            for(int i = 0; i < counties.size(); i++) {
+                for(USAStatisticalArea area : counties.get(i).getPartOfAreas().values())
+                    countyAreas.add(i, area(area));
+                for(WBAN wban : counties.get(i).getWeatherStations().values())
+                    countyStations.add(i, wban(wban));
+            }
+            for(Links links : new Links[]{areaCounties, countyAreas, areaStations, countyStations})
+                links.writeTo(out);
+
+            out.writeInt(mapIndexes.size());
+            for(Map.Entry<String, int[]> map : mapIndexes.entrySet()) {
+                out.writeInt(string(map.getKey()));
+                out.writeInt(map.getValue().length);
+                for(int index : map.getValue())
+                    out.writeInt(index);
+            }
+        }
+
+        private static int year(Year year) {
+            return year == null ? NO_INDEX : year.getValue();
+        }
+    }
+
+    /**
+     * Links from the entities of one table to those of another, in the order they are made.
+     */
+    private static class Links {
+        private int[] from = new int[64];
+        private int[] to = new int[64];
+        private int size;
+
+        void add(int fromIndex, int toIndex) {
+            if(size == from.length) {
+                from = Arrays.copyOf(from, size * 2);
+                to = Arrays.copyOf(to, size * 2);
+            }
+            from[size] = fromIndex;
+            to[size] = toIndex;
+            size++;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(size);
+            for(int i = 0; i < size; i++) {
+                out.writeInt(from[i]);
+                out.writeInt(to[i]);
+            }
+        }
+    }
+
+    /**
+     * Decodes the tables of a snapshot from the mapped buffer and rebuilds the entities and their links. Every count is checked against the bytes
+     * left and every index against the size of its table, so a corrupt snapshot fails with a DataLoaderException.
+     */
+    private class SnapshotReader {
+        private final ByteBuffer buffer;
+        private String[] strings;
+
+        SnapshotReader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        Map<String, Map<Key, Entity>> read() throws DataLoaderException {
+            try {
+                readStrings();
+
+                USAStatAreaPopulationRecord[] areas = new USAStatAreaPopulationRecord[count(AREA_SIZE)];
+                for(int i = 0; i < areas.length; i++) {
+                    int areaId = buffer.getInt();
+                    String name = string(buffer.getInt());
+                    USAStatisticalAreaType type = USAStatisticalAreaType.valueOf(string(buffer.getInt()));
+                    boolean isPuertoRicoArea = buffer.get() != 0;
+                    USAStatAreaPopulationRecord record = new USAStatAreaPopulationRecord();
+                    record.setArea(new USAStatisticalArea(areaId, name, type, isPuertoRicoArea));
+                    record.setBasePopulation(buffer.getLong());
+                    record.setBaseYear(year(buffer.getInt()));
+                    record.setCurrentPopulation(buffer.getLong());
+                    record.setCurrentPopYear(year(buffer.getInt()));
+                    record.setAverageYearlyPopChangeRate(buffer.getDouble());
+                    areas[i] = record;
+                }
+
+                USACounty[] counties = new USACounty[count(COUNTY_SIZE)];
+                for(int i = 0; i < counties.length; i++) {
+                    String name = string(buffer.getInt());
+                    counties[i] = new USACounty(name, USAState.valueOf(string(buffer.getInt())));
+                }
+
+                WBAN[] wbans = new WBAN[count(WBAN_SIZE)];
+                for(int i = 0; i < wbans.length; i++) {
+                    WBAN wban = new WBAN(string(buffer.getInt()), string(buffer.getInt()));
+                    wban.setStationLocatedAt(string(buffer.getInt()));
+                    int county = index(buffer.getInt(), counties.length);
+                    int area = index(buffer.getInt(), areas.length);
+                    wban.setCounty(county == NO_INDEX ? null : counties[county]);
+                    wban.setArea(area == NO_INDEX ? null : areas[area].getArea());
+                    wbans[i] = wban;
+                }
+
+                for(int i = count(8); i > 0; i--)
+                    areas[link(areas.length)].getArea().addCounty(counties[link(counties.length)]);
+                for(int i = count(8); i > 0; i--)
+                    counties[link(counties.length)].addPartOfArea(areas[link(areas.length)].getArea());
+                for(int i = count(8); i > 0; i--)
+                    areas[link(areas.length)].getArea().addWeatherStation(wbans[link(wbans.length)]);
+                for(int i = count(8); i > 0; i--)
+                    counties[link(counties.length)].addWeatherStation(wbans[link(wbans.length)]);
+
+                Map<String, Map<Key, Entity>> maps = new LinkedHashMap<>();
+                for(int i = count(8); i > 0; i--) {
+                    String name = string(buffer.getInt());
+                    Map<Key, Entity> map = new LinkedHashMap<>();
+                    for(int j = count(4); j > 0; j--) {
+                        if(Constants.STAT_AREA_MAP_NAME.equals(name)) {
+                            USAStatAreaPopulationRecord record = areas[link(areas.length)];
+                            map.put(record.key(), record);
+                        } else if(Constants.WBAN_MASTER_MAP.equals(name)) {
+                            WBAN wban = wbans[link(wbans.length)];
+                            map.put(wban.key(), wban);
+                        } else {
+                            throw new DataLoaderException("Snapshot " + snapshotFile + " holds the unknown map " + name);
+                        }
+                    }
+                    maps.put(name, map);
+                }
+                if(buffer.hasRemaining())
+                    throw new DataLoaderException("Snapshot " + snapshotFile + " has " + buffer.remaining() + " bytes after its last map");
+                return maps;
+            } catch (BufferUnderflowException | IllegalArgumentException | NullPointerException e) {
+                throw new DataLoaderException("Snapshot " + snapshotFile + " is corrupt", e);
+            }
+        }
+
+        private void readStrings() throws DataLoaderException {
+            int[] ends = new int[count(4)];
+            for(int i = 0; i < ends.length; i++)
+                ends[i] = buffer.getInt();
+            int base = buffer.position();
+            int start = 0;
+            strings = new String[ends.length];
+            byte[] bytes = new byte[256];
+            for(int i = 0; i < ends.length; i++) {
+                int length = ends[i] - start;
+                if(length < 0 || ends[i] > buffer.limit() - base)
+                    throw new DataLoaderException("Snapshot " + snapshotFile + " has a corrupt string table");
+                if(length > bytes.length)
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                buffer.get(bytes, 0, length);
+                strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+                start = ends[i];
+            }
+        }
+
+        /**
+         * This method reads the number of entries of a table, checking that the buffer holds them.
+         */
+        private int count(int entrySize) throws DataLoaderException {
+            int count = buffer.getInt();
+            if(count < 0 || (long) count * entrySize > buffer.remaining())
+                throw new DataLoaderException("Snapshot " + snapshotFile + " has a corrupt table of " + count + " entries");
+            return count;
+        }
+
+        private int index(int index, int tableSize) throws DataLoaderException {
+            if(index < NO_INDEX || index >= tableSize)
+                throw new DataLoaderException("Snapshot " + snapshotFile + " refers to entry " + index + " of a table of " + tableSize);
+            return index;
+        }
+
+        private int link(int tableSize) throws DataLoaderException {
+            int index = buffer.getInt();
+            if(index < 0 || index >= tableSize)
+                throw new DataLoaderException("Snapshot " + snapshotFile + " refers to entry " + index + " of a table of " + tableSize);
+            return index;
+        }
+
+        private String string(int index) throws DataLoaderException {
+            return index(index, strings.length) == NO_INDEX ? null : strings[index];
+        }
+
+        private Year year(int year) {
+            return year == NO_INDEX ? null : Year.of(year);
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package org.vm.evarianttest.loader;
 
-import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.usermodel.Cell;
 import org.vm.evarianttest.entity.Entity;
 import org.vm.evarianttest.entity.Key;
 import org.vm.evarianttest.entity.census.USAStatAreaPopulationRecord;
@@ -8,12 +8,8 @@ import org.vm.evarianttest.entity.census.USACounty;
 import org.vm.evarianttest.entity.census.USAState;
 import org.vm.evarianttest.util.Util;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStream;
 import java.net.URI;
 import java.util.*;
-import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -24,7 +20,7 @@ import java.util.logging.Logger;
  * @author vivekm
  * @since 1.0
  */
-public class CountyXLSFileDataLoader implements DataLoader {
+public class CountyXLSFileDataLoader implements DataLoader<Key, Entity> {
     private Logger log = Logger.getLogger(this.getClass().getName());
 
     /**
@@ -55,6 +51,23 @@ public class CountyXLSFileDataLoader implements DataLoader {
     public static final int CENSUS_COUNTY_FILE_COUNTY_NAME_COL = 7;
     public static final int CENSUS_COUNTY_FILE_STATE_NAME_COL = 8;
 
+    /**
+     * County row of the workbook, kept between the parse and the link.
+     */
+    private static class CountyRow {
+        private final Key statAreaKey;
+        private final String countyName;
+        private final String stateName;
+
+        CountyRow(Key statAreaKey, String countyName, String stateName) {
+            this.statAreaKey = statAreaKey;
+            this.countyName = countyName;
+            this.stateName = stateName;
+        }
+    }
+
+    private List<CountyRow> rows = new ArrayList<>();
+
     /**
      * Constructor
      *
@@ -64,57 +77,104 @@ public class CountyXLSFileDataLoader implements DataLoader {
     public CountyXLSFileDataLoader(URI countyMSALinkFile, Map<String, Map<Key, Entity>> maps) {
         this.countyMSALinkFile = countyMSALinkFile;
         this.maps = maps;
-        this.statAreaMap = maps.get(Constants.STAT_AREA_MAP_NAME);
     }
 
     @Override
     public void load() throws DataLoaderException {
+        parse();
+        link(maps);
+    }
 
-        try(InputStream in = new FileInputStream(new File(countyMSALinkFile))) {
-            Workbook wb = WorkbookFactory.create(in);
-            Sheet firstSheet = wb.getSheetAt(0);
-
-            Iterator<Row> rowIter = firstSheet.rowIterator();
-            rowReader:
-            while(rowIter.hasNext()){
-
-                Row row = rowIter.next();
-                if(row.getRowNum() < CENSUS_COUNTY_FILE_STARTING_ROW)
-                    continue rowReader;
-
-                Optional<Cell> cellValue = Optional.ofNullable(row.getCell(CENSUS_COUNTY_FILE_STAT_AREA_COL));
-                cellValue.ifPresent(new Consumer<Cell>() {
-                    @Override
-                    public void accept(Cell cell) {
-                        if(cell.getCellType() == Cell.CELL_TYPE_STRING){
-                            String statAreaName = cell != null? Util.cleanSAName(cell.getStringCellValue()).toUpperCase(): "";
-                            USAStatAreaPopulationRecord rec = (USAStatAreaPopulationRecord) statAreaMap.get(new Key(statAreaName));
-
-                            if(rec != null){
-                                //Strip common county terms for match quality
-                                String countyName = removeCommonCountySuffix(Util.cleanString(row.getCell(CENSUS_COUNTY_FILE_COUNTY_NAME_COL).getStringCellValue()));
-                                String stateName = Util.cleanString(row.getCell(CENSUS_COUNTY_FILE_STATE_NAME_COL).getStringCellValue());
-                                USAState state = USAState.findByName(stateName);
-                                if(rec.getArea().getStates().values().contains(state)) {
-                                    counter++;
-                                    log.log(Level.FINE, " Rec ---> " + countyName + " - " + stateName + " added.");
-                                    USACounty county = new USACounty(countyName, state);
-                                    county.addPartOfArea(rec.getArea());
-                                    rec.getArea().addCounty(county);
-                                }
-                            }
-                        }
+    /**
+     * This method reads the Statistical Area, County and State of every row of the workbook.
+     *
+     * @throws DataLoaderException
+     */
+    @Override
+    public void parse() throws DataLoaderException {
+        rows = new ArrayList<>();
+        try {
+            // Only the Statistical Area, County and State columns are read, row by row
+            new SpreadsheetRowReader(countyMSALinkFile, CENSUS_COUNTY_FILE_STAT_AREA_COL, CENSUS_COUNTY_FILE_COUNTY_NAME_COL, CENSUS_COUNTY_FILE_STATE_NAME_COL).read(new SpreadsheetRowReader.RowHandler() {
+                @Override
+                public void onRow(SpreadsheetRowReader.SheetRow row) {
+                    if(row.getRowNum() < CENSUS_COUNTY_FILE_STARTING_ROW || !row.hasCell(CENSUS_COUNTY_FILE_STAT_AREA_COL))
+                        return;
+
+                    if(row.getCellType(CENSUS_COUNTY_FILE_STAT_AREA_COL) == Cell.CELL_TYPE_STRING){
+                        String statAreaName = Util.cleanSAName(row.getStringCellValue(CENSUS_COUNTY_FILE_STAT_AREA_COL)).toUpperCase();
+                        //Strip common county terms for match quality
+                        String countyName = readString(row, CENSUS_COUNTY_FILE_COUNTY_NAME_COL);
+                        if(countyName != null)
+                            countyName = removeCommonCountySuffix(countyName);
+                        rows.add(new CountyRow(new Key(statAreaName), countyName, readString(row, CENSUS_COUNTY_FILE_STATE_NAME_COL)));
                     }
-                });
-            }
+                }
+            });
         } catch (Exception e) {
             e.printStackTrace();
             log.log(Level.SEVERE, "Error occurred while loading County-SA XLS File", e);
             throw new DataLoaderException("Error occurred while loading County-SA XLS File", e);
         }
+    }
+
+    /**
+     * This method returns the cleaned text of a cell, or null if the cell is missing or not a text cell. A row of a loaded Statistical Area needs both
+     * its County and State.
+     */
+    private String readString(SpreadsheetRowReader.SheetRow row, int column) {
+        if(!row.hasCell(column))
+            return null;
+        int type = row.getCellType(column);
+        if(type != Cell.CELL_TYPE_STRING && type != Cell.CELL_TYPE_BLANK)
+            return null;
+        return Util.cleanString(row.getStringCellValue(column));
+    }
+
+    /**
+     * This method adds the Counties of the parsed rows to the loaded Statistical Areas of the same State.
+     *
+     * @param maps - Maps of Context data with the STAT_AREA_MAP
+     * @throws DataLoaderException - If a row of a loaded Statistical Area has no County or State
+     */
+    @Override
+    public void link(Map<String, Map<Key, Entity>> maps) throws DataLoaderException {
+        this.maps = maps;
+        this.statAreaMap = maps.get(Constants.STAT_AREA_MAP_NAME);
+        for(CountyRow row : rows) {
+            USAStatAreaPopulationRecord rec = (USAStatAreaPopulationRecord) statAreaMap.get(row.statAreaKey);
+            if(rec == null)
+                continue;
+            if(row.countyName == null || row.stateName == null)
+                throw new DataLoaderException("Error occurred while loading County-SA XLS File, no County or State for " + row.statAreaKey);
+
+            USAState state = USAState.findByName(row.stateName);
+            if(rec.getArea().getStates().values().contains(state)) {
+                counter++;
+                log.log(Level.FINE, " Rec ---> " + row.countyName + " - " + row.stateName + " added.");
+                USACounty county = new USACounty(row.countyName, state);
+                county.addPartOfArea(rec.getArea());
+                rec.getArea().addCounty(county);
+            }
+        }
         System.out.println("Total Number of Counties updated : " + counter);
     }
 
+    @Override
+    public Set<String> getInputs() {
+        return Collections.singleton(Constants.STAT_AREA_MAP_NAME);
+    }
+
+    @Override
+    public Set<String> getOutputs() {
+        return Collections.singleton(Constants.STAT_AREA_MAP_NAME);
+    }
+
+    @Override
+    public long getRowCount() {
+        return rows.size();
+    }
+
     @Override
     public Map<String, Map<Key, Entity>> getDataMaps() throws DataLoaderException {
         return maps;
@@ -126,7 +186,7 @@ public class CountyXLSFileDataLoader implements DataLoader {
      * @param input - County name like Travis County
      * @return - County name like Travis.
      */
-    private String removeCommonCountySuffix(String input) {
+    static String removeCommonCountySuffix(String input) {
         for (COMMON_COUNTY_TYPES type : COMMON_COUNTY_TYPES.values()) {
             input = input.replaceAll(type.getName(),"");
         }
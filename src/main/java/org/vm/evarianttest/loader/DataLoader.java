@@ -4,7 +4,13 @@ import org.vm.evarianttest.entity.Entity;
 import org.vm.evarianttest.entity.Key;
 import org.vm.evarianttest.entity.KeyAware;
 
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 /**
  * This interface defines the contract for a Data Load operation. Instead of load() returning the loaded the data, we are defining a separate method
@@ -16,6 +22,11 @@ import java.util.Map;
  * loader.load()
  * List maps = loader.getDataMaps();
  *
+ * A loader that links its records to the Context Data loaded by other loaders declares the maps it reads (getInputs()) and the maps it adds or updates
+ * (getOutputs()), and splits its load into parse(), which only reads its own source, and link(), which updates the Context Data. This lets the
+ * ContextDataLoader parse all the sources concurrently and run only the link phases in dependency order. A loader that is not split does all of its
+ * work in link().
+ *
  * @author vivekm
  * @since 1.0
  * @see KeyAware
@@ -37,4 +48,74 @@ public interface DataLoader <K extends Key,V extends Entity> {
      * @throws DataLoaderException - In case of any load failures
      */
     public Map<String, Map<K ,V>> getDataMaps() throws DataLoaderException;
-}
\ No newline at end of file
+
+    /**
+     * This method returns the names of the maps of Context Data that must be loaded before link() is called, like Constants.STAT_AREA_MAP_NAME.
+     *
+     * @return - Names of the maps read by this loader
+     */
+    default Set<String> getInputs() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * This method returns the names of the maps of Context Data that this loader adds or updates.
+     *
+     * @return - Names of the maps written by this loader
+     */
+    default Set<String> getOutputs() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * This method reads the source of the loader without touching the Context Data, so it can run at the same time as the other loaders.
+     *
+     * @throws DataLoaderException - In case of any load failures
+     */
+    default void parse() throws DataLoaderException {
+    }
+
+    /**
+     * This method links the parsed records to the Context Data and adds the maps of this loader to it. It is called once every loader writing one
+     * of the inputs is linked.
+     *
+     * @param maps - Maps of Context Data loaded so far
+     * @throws DataLoaderException - In case of any load failures
+     */
+    default void link(Map<String, Map<K, V>> maps) throws DataLoaderException {
+        load();
+        Map<String, Map<K, V>> loaded = getDataMaps();
+        if(loaded != maps)
+            maps.putAll(loaded);
+    }
+
+    /**
+     * This method returns the number of rows of its source the loader read in its last load, like the Statistical Areas of the census workbook.
+     * It is published with the load times in the PipelineMetrics.
+     *
+     * @return - Rows read, 0 if the loader does not count them
+     */
+    default long getRowCount() {
+        return 0;
+    }
+
+    /**
+     * This method runs load() on the executor.
+     *
+     * @param executor - Executor to load on
+     * @return - Future of the loaded maps, completed exceptionally with the DataLoaderException of a failed load
+     */
+    default CompletableFuture<Map<String, Map<K, V>>> loadAsync(Executor executor) {
+        return CompletableFuture.supplyAsync(new Supplier<Map<String, Map<K, V>>>() {
+            @Override
+            public Map<String, Map<K, V>> get() {
+                try {
+                    load();
+                    return getDataMaps();
+                } catch (DataLoaderException e) {
+                    throw new CompletionException(e);
+                }
+            }
+        }, executor);
+    }
+}
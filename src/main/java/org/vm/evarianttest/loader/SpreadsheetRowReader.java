@@ -0,0 +1,525 @@
+package org.vm.evarianttest.loader;
+
+import org.apache.poi.hssf.eventusermodel.AbortableHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BlankRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.DateWindow1904Record;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.ExtendedFormatRecord;
+import org.apache.poi.hssf.record.FormatRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.MulBlankRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RowRecord;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.SAXParserFactory;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.text.SimpleDateFormat;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+/**
+ * This class streams the rows of the first sheet of an Excel workbook without building the workbook in memory, through the HSSF event model for
+ * .xls files and a SAX parse of the sheet XML for .xlsx files. Only the requested columns of every row are kept, so the heap stays flat whatever the
+ * size of the workbook.
+ *
+ * The rows are handed over in row order, including the rows that have no cell at all, like Sheet.rowIterator() does. The SheetRow accessors follow
+ * the Cell accessors of the usermodel, so a loader reads a SheetRow as it would read a Row.
+ *
+ * Example usage:
+ *
+ * new SpreadsheetRowReader(file, TITLE_COL, POP_COL).read(new SpreadsheetRowReader.RowHandler() {
+ *     public void onRow(SheetRow row) { ... row.getStringCellValue(TITLE_COL) ... }
+ * });
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+public class SpreadsheetRowReader {
+    private Logger log = Logger.getLogger(this.getClass().getName());
+
+    private static final int NO_CELL = -1;
+
+    private URI file;
+    private boolean[] wanted;
+
+    /**
+     * Handler of the rows of the sheet, called on the reading thread.
+     */
+    public interface RowHandler {
+        void onRow(SheetRow row) throws Exception;
+    }
+
+    /**
+     * Constructor
+     *
+     * @param file - URI for the .xls or .xlsx workbook
+     * @param columns - Zero based indexes of the columns to read, all other cells are skipped
+     */
+    public SpreadsheetRowReader(URI file, int... columns) {
+        this.file = file;
+        int maxColumn = 0;
+        for(int column : columns)
+            maxColumn = Math.max(maxColumn, column);
+        this.wanted = new boolean[maxColumn + 1];
+        for(int column : columns)
+            wanted[column] = true;
+    }
+
+    /**
+     * This method reads the first sheet and hands every row to the handler. An exception thrown by the handler stops the reading and is thrown back
+     * from this method.
+     *
+     * @param handler - Row handler
+     * @throws Exception - If the workbook cannot be read or the handler failed
+     */
+    public void read(RowHandler handler) throws Exception {
+        File workbook = new File(file);
+        byte[] header = new byte[8];
+        try(InputStream in = Files.newInputStream(Paths.get(file))) {
+            int read = in.read(header);
+            if(read < header.length)
+                throw new IOException("Not an Excel workbook " + file);
+        }
+        log.fine("Input file: " + file);
+        if(POIFSFileSystem.hasPOIFSHeader(header))
+            readHSSF(workbook, handler);
+        else
+            readXSSF(workbook, handler);
+    }
+
+    private boolean isWanted(int column) {
+        return column < wanted.length && wanted[column];
+    }
+
+    private void readHSSF(File workbook, RowHandler handler) throws Exception {
+        HSSFRowListener listener = new HSSFRowListener(handler);
+        HSSFRequest request = new HSSFRequest();
+        request.addListenerForAllRecords(listener);
+        try(NPOIFSFileSystem fs = new NPOIFSFileSystem(workbook, true)) {
+            new HSSFEventFactory().abortableProcessWorkbookEvents(request, fs.getRoot());
+        }
+        if(listener.failure != null)
+            throw listener.failure;
+    }
+
+    private void readXSSF(File workbook, RowHandler handler) throws Exception {
+        try(OPCPackage pkg = OPCPackage.open(workbook.getPath(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if(!sheets.hasNext())
+                return;
+
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            XMLReader parser = factory.newSAXParser().getXMLReader();
+            WorkbookPropertiesHandler properties = new WorkbookPropertiesHandler();
+            parser.setContentHandler(properties);
+            try(InputStream workbookData = reader.getWorkbookData()) {
+                parser.parse(new InputSource(workbookData));
+            }
+            XSSFRowHandler rows = new XSSFRowHandler(handler, strings, styles, properties.date1904);
+            parser.setContentHandler(rows);
+            try(InputStream sheet = sheets.next()) {
+                parser.parse(new InputSource(sheet));
+            } catch (SAXException e) {
+                if(rows.failure != null)
+                    throw rows.failure;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Requested cells of one row of the sheet.
+     */
+    public class SheetRow {
+        private final int rowNum;
+        private final int[] types = new int[wanted.length];
+        private final String[] strings = new String[wanted.length];
+        private final double[] numbers = new double[wanted.length];
+        private final boolean[] dates = new boolean[wanted.length];
+        private final boolean date1904;
+
+        SheetRow(int rowNum, boolean date1904) {
+            this.date1904 = date1904;
+            this.rowNum = rowNum;
+            Arrays.fill(types, NO_CELL);
+        }
+
+        private void set(int column, int type, String string, double number) {
+            if(!isWanted(column))
+                return;
+            types[column] = type;
+            strings[column] = string;
+            numbers[column] = number;
+        }
+
+        /**
+         * This method marks a numeric cell whose format is a date format.
+         */
+        private void setDate(int column, int formatIndex, String formatString) {
+            if(isWanted(column) && formatString != null && DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(numbers[column]))
+                dates[column] = true;
+        }
+
+        public int getRowNum() {
+            return rowNum;
+        }
+
+        /**
+         * @return - true if the row has a cell, even a blank one, in the column
+         */
+        public boolean hasCell(int column) {
+            return column < types.length && types[column] != NO_CELL;
+        }
+
+        /**
+         * @return - Cell type of the column as in Cell.CELL_TYPE_*
+         */
+        public int getCellType(int column) {
+            return cellType(column);
+        }
+
+        /**
+         * This method returns the text of a string cell, or an empty string for a blank cell, like Cell.getStringCellValue().
+         */
+        public String getStringCellValue(int column) {
+            int type = cellType(column);
+            if(type == Cell.CELL_TYPE_BLANK)
+                return "";
+            if(type == Cell.CELL_TYPE_STRING || (type == Cell.CELL_TYPE_FORMULA && strings[column] != null))
+                return strings[column];
+            throw new IllegalStateException("Cannot get a text value from a cell of type " + type + " at row " + rowNum + ", column " + column);
+        }
+
+        /**
+         * This method returns the value of a numeric cell, or 0 for a blank cell, like Cell.getNumericCellValue().
+         */
+        public double getNumericCellValue(int column) {
+            int type = cellType(column);
+            if(type == Cell.CELL_TYPE_BLANK)
+                return 0;
+            if(type == Cell.CELL_TYPE_NUMERIC || (type == Cell.CELL_TYPE_FORMULA && strings[column] == null))
+                return numbers[column];
+            throw new IllegalStateException("Cannot get a numeric value from a cell of type " + type + " at row " + rowNum + ", column " + column);
+        }
+
+        /**
+         * This method returns the cell as text whatever its type, like Cell.toString(): a date as dd-MMM-yyyy and other numbers as a double. A
+         * formula cell gives its cached value, where Cell.toString() gives the formula.
+         */
+        public String getText(int column) {
+            int type = cellType(column);
+            switch (type) {
+                case Cell.CELL_TYPE_BLANK:
+                    return "";
+                case Cell.CELL_TYPE_NUMERIC:
+                    if(dates[column])
+                        return new SimpleDateFormat("dd-MMM-yyyy").format(DateUtil.getJavaDate(numbers[column], date1904));
+                    return String.valueOf(numbers[column]);
+                default:
+                    return strings[column] != null ? strings[column] : String.valueOf(numbers[column]);
+            }
+        }
+
+        private int cellType(int column) {
+            if(!hasCell(column))
+                throw new IllegalStateException("No cell at row " + rowNum + ", column " + column);
+            return types[column];
+        }
+    }
+
+    /**
+     * Collects the cells of the first worksheet from the HSSF records. The row records of a block of rows come before its cells, and the cells come
+     * in row order, so a row is complete as soon as a cell of a later row shows up.
+     */
+    private class HSSFRowListener extends AbortableHSSFListener {
+        private final RowHandler handler;
+        private final TreeMap<Integer, SheetRow> pending = new TreeMap<>();
+        private SSTRecord sst;
+        private int worksheets = 0;
+        private int depth = 0;
+        private boolean inFirstSheet = false;
+        private FormulaRecord stringFormula;
+        private final Map<Integer, String> formats = new HashMap<>();
+        private final List<Integer> cellFormats = new ArrayList<>();
+        private boolean date1904 = false;
+        private Exception failure;
+
+        HSSFRowListener(RowHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public short abortableProcessRecord(Record record) {
+            try {
+                return process(record);
+            } catch (Exception e) {
+                failure = e;
+                return 1;
+            }
+        }
+
+        private short process(Record record) throws Exception {
+            switch (record.getSid()) {
+                case SSTRecord.sid:
+                    sst = (SSTRecord) record;
+                    return 0;
+                case FormatRecord.sid:
+                    formats.put(((FormatRecord) record).getIndexCode(), ((FormatRecord) record).getFormatString());
+                    return 0;
+                case ExtendedFormatRecord.sid:
+                    cellFormats.add((int) ((ExtendedFormatRecord) record).getFormatIndex());
+                    return 0;
+                case DateWindow1904Record.sid:
+                    date1904 = ((DateWindow1904Record) record).getWindowing() == 1;
+                    return 0;
+                case BOFRecord.sid:
+                    // Charts embedded in a sheet have their own BOF and EOF records
+                    if(++depth == 1 && ((BOFRecord) record).getType() == BOFRecord.TYPE_WORKSHEET)
+                        inFirstSheet = worksheets++ == 0;
+                    return 0;
+                case EOFRecord.sid:
+                    if(--depth == 0 && inFirstSheet) {
+                        flush(Integer.MAX_VALUE);
+                        // The other sheets are not read
+                        return 1;
+                    }
+                    return 0;
+                default:
+            }
+            if(!inFirstSheet || depth != 1)
+                return 0;
+
+            if(record instanceof RowRecord) {
+                row(((RowRecord) record).getRowNumber());
+            } else if(record instanceof MulBlankRecord) {
+                MulBlankRecord blanks = (MulBlankRecord) record;
+                flush(blanks.getRow());
+                SheetRow row = row(blanks.getRow());
+                for(int column = blanks.getFirstColumn(); column <= blanks.getLastColumn(); column++)
+                    row.set(column, Cell.CELL_TYPE_BLANK, null, 0);
+            } else if(record instanceof StringRecord) {
+                // Cached text result of the previous formula
+                if(stringFormula != null)
+                    row(stringFormula.getRow()).set(stringFormula.getColumn(), Cell.CELL_TYPE_FORMULA, ((StringRecord) record).getString(), 0);
+                stringFormula = null;
+            } else if(record instanceof CellValueRecordInterface) {
+                flush(((CellValueRecordInterface) record).getRow());
+                cell((CellValueRecordInterface) record);
+            }
+            return 0;
+        }
+
+        private void cell(CellValueRecordInterface record) {
+            SheetRow row = row(record.getRow());
+            int column = record.getColumn();
+            if(record instanceof LabelSSTRecord) {
+                row.set(column, Cell.CELL_TYPE_STRING, sst.getString(((LabelSSTRecord) record).getSSTIndex()).getString(), 0);
+            } else if(record instanceof LabelRecord) {
+                row.set(column, Cell.CELL_TYPE_STRING, ((LabelRecord) record).getValue(), 0);
+            } else if(record instanceof NumberRecord) {
+                row.set(column, Cell.CELL_TYPE_NUMERIC, null, ((NumberRecord) record).getValue());
+                int xf = record.getXFIndex();
+                if(xf < cellFormats.size()) {
+                    int formatIndex = cellFormats.get(xf);
+                    String formatString = formats.get(formatIndex);
+                    row.setDate(column, formatIndex, formatString != null ? formatString : BuiltinFormats.getBuiltinFormat(formatIndex));
+                }
+            } else if(record instanceof BlankRecord) {
+                row.set(column, Cell.CELL_TYPE_BLANK, null, 0);
+            } else if(record instanceof BoolErrRecord) {
+                BoolErrRecord boolErr = (BoolErrRecord) record;
+                if(boolErr.isBoolean())
+                    row.set(column, Cell.CELL_TYPE_BOOLEAN, boolErr.getBooleanValue() ? "TRUE" : "FALSE", 0);
+                else
+                    row.set(column, Cell.CELL_TYPE_ERROR, "#ERR" + boolErr.getErrorValue(), 0);
+            } else if(record instanceof FormulaRecord) {
+                FormulaRecord formula = (FormulaRecord) record;
+                row.set(column, Cell.CELL_TYPE_FORMULA, null, formula.getValue());
+                if(formula.hasCachedResultString())
+                    stringFormula = formula;
+            }
+        }
+
+        private SheetRow row(int rowNum) {
+            SheetRow row = pending.get(rowNum);
+            if(row == null) {
+                row = new SheetRow(rowNum, date1904);
+                pending.put(rowNum, row);
+            }
+            return row;
+        }
+
+        private void flush(int beforeRow) throws Exception {
+            Map<Integer, SheetRow> complete = pending.headMap(beforeRow);
+            Iterator<SheetRow> rows = complete.values().iterator();
+            while(rows.hasNext()) {
+                SheetRow row = rows.next();
+                rows.remove();
+                handler.onRow(row);
+            }
+        }
+    }
+
+    /**
+     * Collects the cells of the sheet XML of an .xlsx workbook, one row element at a time.
+     */
+    private class XSSFRowHandler extends DefaultHandler {
+        private final RowHandler handler;
+        private final ReadOnlySharedStringsTable strings;
+        private final StylesTable styles;
+        private final boolean date1904;
+        private final StringBuilder value = new StringBuilder();
+        private SheetRow row;
+        private int nextRowNum = 0;
+        private int column;
+        private String type;
+        private String style;
+        private boolean hasFormula;
+        private boolean inValue;
+        private Exception failure;
+
+        XSSFRowHandler(RowHandler handler, ReadOnlySharedStringsTable strings, StylesTable styles, boolean date1904) {
+            this.handler = handler;
+            this.strings = strings;
+            this.styles = styles;
+            this.date1904 = date1904;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "row":
+                    String r = attributes.getValue("r");
+                    row = new SheetRow(r != null ? Integer.parseInt(r) - 1 : nextRowNum, date1904);
+                    nextRowNum = row.getRowNum() + 1;
+                    break;
+                case "c":
+                    String ref = attributes.getValue("r");
+                    column = ref != null ? new CellReference(ref).getCol() : column + 1;
+                    type = attributes.getValue("t");
+                    style = attributes.getValue("s");
+                    hasFormula = false;
+                    value.setLength(0);
+                    break;
+                case "f":
+                    hasFormula = true;
+                    break;
+                case "v":
+                case "t":
+                    inValue = true;
+                    break;
+                default:
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if(inValue)
+                value.append(ch, start, length);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            switch (localName) {
+                case "v":
+                case "t":
+                    inValue = false;
+                    break;
+                case "c":
+                    if(row != null && isWanted(column))
+                        cell();
+                    break;
+                case "row":
+                    try {
+                        handler.onRow(row);
+                    } catch (Exception e) {
+                        failure = e;
+                        throw new SAXException(e);
+                    }
+                    row = null;
+                    break;
+                default:
+            }
+        }
+
+        private void cell() {
+            String text = value.toString();
+            if("s".equals(type)) {
+                row.set(column, hasFormula ? Cell.CELL_TYPE_FORMULA : Cell.CELL_TYPE_STRING, strings.getEntryAt(Integer.parseInt(text)), 0);
+            } else if("inlineStr".equals(type)) {
+                row.set(column, Cell.CELL_TYPE_STRING, text, 0);
+            } else if("str".equals(type)) {
+                row.set(column, Cell.CELL_TYPE_FORMULA, text, 0);
+            } else if("b".equals(type)) {
+                row.set(column, Cell.CELL_TYPE_BOOLEAN, "1".equals(text) ? "TRUE" : "FALSE", 0);
+            } else if("e".equals(type)) {
+                row.set(column, Cell.CELL_TYPE_ERROR, text, 0);
+            } else if(text.isEmpty()) {
+                row.set(column, Cell.CELL_TYPE_BLANK, null, 0);
+            } else {
+                row.set(column, hasFormula ? Cell.CELL_TYPE_FORMULA : Cell.CELL_TYPE_NUMERIC, null, Double.parseDouble(text));
+                if(!hasFormula && style != null && styles != null) {
+                    XSSFCellStyle cellStyle = styles.getStyleAt(Integer.parseInt(style));
+                    row.setDate(column, cellStyle.getDataFormat(), cellStyle.getDataFormatString());
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the date system of an .xlsx workbook from its workbook properties.
+     */
+    private static class WorkbookPropertiesHandler extends DefaultHandler {
+        private boolean date1904 = false;
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if("workbookPr".equals(localName)) {
+                String value = attributes.getValue("date1904");
+                date1904 = "1".equals(value) || "true".equals(value);
+            }
+        }
+    }
+}
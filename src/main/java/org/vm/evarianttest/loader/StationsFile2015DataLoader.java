@@ -11,21 +11,34 @@ import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
  * This class implements a Data Loader for 2015Stations.txt file which contains the list of all WBANs that had measurements for the period of 2015 May. This data links the
  * WBANs to Statistical area by using matching State, Location Name and Name.
  *
+ * The Statistical Areas are indexed once by the tokens of their names, so each station line is only matched against the few areas holding the
+ * tokens of its location and state. The lines are matched in parallel and the links are then applied in file order on a single thread, which keeps
+ * the context data the same from run to run.
+ *
  * @author vivekm
  * @since 1.0
  */
-public class StationsFile2015DataLoader implements DataLoader{
+public class StationsFile2015DataLoader implements DataLoader<Key, Entity> {
     private Logger log = Logger.getLogger(this.getClass().getName());
 
     // Filter column references
@@ -40,6 +53,7 @@ public class StationsFile2015DataLoader implements DataLoader{
     private Map<Key, Entity> statAreaMap;
     private Map<Key, Entity> wbanMap;
     private Map<String, Map<Key, Entity>> maps;
+    private List<String[]> stations = new ArrayList<>();
 
     /**
      * Constructor
@@ -50,76 +64,237 @@ public class StationsFile2015DataLoader implements DataLoader{
     public StationsFile2015DataLoader(URI stations2015File, Map<String, Map<Key, Entity>> maps){
         this.stations2015File = stations2015File;
         this.maps = maps;
-        this.statAreaMap = maps.get(Constants.STAT_AREA_MAP_NAME);
-        this.wbanMap = maps.get(Constants.WBAN_MASTER_MAP);
     }
 
     @Override
     public void load() throws DataLoaderException {
+        parse();
+        link(maps);
+    }
+
+    /**
+     * This method reads the fields of all the station lines.
+     *
+     * @throws DataLoaderException
+     */
+    @Override
+    public void parse() throws DataLoaderException {
         Path path = Paths.get(stations2015File);
         Util.validateInput(path);
         log.fine("Input file: " + stations2015File.toASCIIString());
 
         try(Stream<String> lines = Files.lines(path)
                 .onClose(() -> log.fine("Stations 2015 File closed"))){
-            lines.parallel()
-                    .forEach(new Consumer<String>() {
+            stations = lines.map(new Function<String, String[]>() {
                         @Override
-                        public void accept(String line) {
+                        public String[] apply(String line) {
                             recRead.getAndIncrement();
-
-                            String[] inputArr = Util.splitPSVLine(line);
-                            Key wbanProspect = makeWBANKey(inputArr);
-                            if (wbanMap.containsKey(wbanProspect)) {
-                                WBAN wbanFound = (WBAN) wbanMap.get(wbanProspect);
-                                wbanFound.setStationLocatedAt(Util.cleanString(inputArr[STN_2015_FILE_CITY_NAME_COL_IDX]) + "," + Util.cleanString(inputArr[STN_2015_FILE_STATE_COL_IDX]));
-                                wbanFound.getCounty().addWeatherStation(wbanFound);
-
-                                statAreaMap.values().forEach(new Consumer<Entity>() {
-                                    @Override
-                                    public void accept(Entity entity) {
-                                        boolean linkWBAN = false;
-                                        USAStatAreaPopulationRecord rec = (USAStatAreaPopulationRecord) entity;
-                                        USAStatisticalArea area = rec.getArea();
-                                        if (area.getWeatherStations().containsKey(wbanFound)) {
-                                            if (wbanFound.getArea() == null) {
-                                                linkWBAN = true;
-                                            }
-                                        }
-
-                                        if (!wbanFound.getStationLocatedAt().isEmpty()) {
-                                            String locationName = Util.cleanString(inputArr[STN_2015_FILE_CITY_NAME_COL_IDX]);
-                                            String stateAbbr = Util.cleanString(inputArr[STN_2015_FILE_STATE_COL_IDX]);
-                                            String cleanedSAName = String.valueOf(area.key().getKey());
-
-                                            if (cleanedSAName.contains(locationName) && cleanedSAName.contains(stateAbbr)) {
-                                                linkWBAN = true;
-                                                area.addWeatherStation(wbanFound);
-                                            }
-                                        }
-                                        if (linkWBAN) {
-                                            wbansFound.getAndIncrement();
-                                            wbanFound.setArea(rec.getArea());
-                                        }
-                                    }
-                                });
-                            }
+                            return Util.splitPSVLine(line);
                         }
-                    });
+                    })
+                    .collect(Collectors.toList());
         } catch (Exception ex){
             ex.printStackTrace();
             log.log(Level.SEVERE, "Error occurred while processing " + stations2015File.toASCIIString(), ex);
             throw new DataLoaderException("Error occurred while processing " + stations2015File.toASCIIString(), ex);
         }
+    }
+
+    /**
+     * This method links the WBANs of the station lines to the Statistical Areas.
+     *
+     * @param maps - Maps of Context Data with the STAT_AREA_MAP and the WBAN_MASTER_MAP
+     * @throws DataLoaderException
+     */
+    @Override
+    public void link(Map<String, Map<Key, Entity>> maps) throws DataLoaderException {
+        this.maps = maps;
+        this.statAreaMap = maps.get(Constants.STAT_AREA_MAP_NAME);
+        this.wbanMap = maps.get(Constants.WBAN_MASTER_MAP);
+
+        StationAreaIndex index = new StationAreaIndex(statAreaMap);
+        // The lines are matched in parallel without touching the context data, and collected in file order
+        List<StationLink> links = stations.parallelStream()
+                .map(new Function<String[], StationLink>() {
+                    @Override
+                    public StationLink apply(String[] inputArr) {
+                        return link(inputArr, index);
+                    }
+                })
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        // The links are applied on one thread in file order, so the context data is the same on every run
+        links.forEach(new Consumer<StationLink>() {
+            @Override
+            public void accept(StationLink link) {
+                WBAN wbanFound = link.wban;
+                wbanFound.setStationLocatedAt(link.locatedAt);
+                if(wbanFound.getCounty() != null)
+                    wbanFound.getCounty().addWeatherStation(wbanFound);
+                for(USAStatisticalArea area : link.areas) {
+                    area.addWeatherStation(wbanFound);
+                    wbansFound.getAndIncrement();
+                    wbanFound.setArea(area);
+                }
+            }
+        });
         System.out.println("Total Number of WBAN records read " + recRead + " === linked : " + wbansFound);
     }
 
+    /**
+     * This method finds the Statistical Areas of a station line. A WBAN is linked to every Statistical Area whose cleaned name contains the location
+     * name and the state of the station.
+     *
+     * @param inputArr - Fields of the station line
+     * @param index - Index of the Statistical Areas
+     * @return - Link to apply, or null if the WBAN is not in the WBAN master list
+     */
+    private StationLink link(String[] inputArr, StationAreaIndex index) {
+        Key wbanProspect = makeWBANKey(inputArr);
+        WBAN wbanFound = (WBAN) wbanMap.get(wbanProspect);
+        if(wbanFound == null)
+            return null;
+
+        String locationName = Util.cleanString(inputArr[STN_2015_FILE_CITY_NAME_COL_IDX]);
+        String stateAbbr = Util.cleanString(inputArr[STN_2015_FILE_STATE_COL_IDX]);
+        return new StationLink(wbanFound, locationName + "," + stateAbbr, index.find(locationName, stateAbbr));
+    }
+
     private Key makeWBANKey(String[] inputArr) {
         return new Key(Util.cleanString(inputArr[STN_2015_FILE_WBAN_ID_COL_IDX]));
     }
 
+    @Override
+    public Set<String> getInputs() {
+        return new LinkedHashSet<>(Arrays.asList(Constants.STAT_AREA_MAP_NAME, Constants.WBAN_MASTER_MAP));
+    }
+
+    @Override
+    public Set<String> getOutputs() {
+        return new LinkedHashSet<>(Arrays.asList(Constants.STAT_AREA_MAP_NAME, Constants.WBAN_MASTER_MAP));
+    }
+
+    @Override
+    public long getRowCount() {
+        return stations.size();
+    }
+
     @Override
     public Map<String, Map<Key, Entity>> getDataMaps() throws DataLoaderException {
         return this.maps;
     }
-}
\ No newline at end of file
+
+    /**
+     * Matched station line, applied to the context data once all the lines are read.
+     */
+    private static class StationLink {
+        private final WBAN wban;
+        private final String locatedAt;
+        private final List<USAStatisticalArea> areas;
+
+        StationLink(WBAN wban, String locatedAt, List<USAStatisticalArea> areas) {
+            this.wban = wban;
+            this.locatedAt = locatedAt;
+            this.areas = areas;
+        }
+    }
+
+    /**
+     * Inverted index of the Statistical Areas by the tokens of their cleaned names. Every 2 character token of a name (AU, US, ST, ... in
+     * AUSTIN-ROUNDROCK,TX) lists the areas whose name holds it, so the areas of a station are found by intersecting the lists of the tokens of its
+     * location name and state, and only those few candidates are checked with the matching rule of the full scan: the name contains both the location
+     * name and the state. The lists keep the order of the STAT_AREA_MAP and are built once, the index can be used from many threads.
+     */
+    static class StationAreaIndex {
+        static final int TOKEN_LENGTH = 2;
+        private static final int[] NO_AREAS = new int[0];
+
+        private final List<USAStatisticalArea> areas = new ArrayList<>();
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, int[]> areasByToken = new HashMap<>();
+        private final int[] allAreas;
+
+        StationAreaIndex(Map<Key, Entity> statAreaMap) {
+            Map<String, List<Integer>> lists = new HashMap<>();
+            statAreaMap.values().forEach(new Consumer<Entity>() {
+                @Override
+                public void accept(Entity entity) {
+                    USAStatisticalArea area = ((USAStatAreaPopulationRecord) entity).getArea();
+                    String name = String.valueOf(area.key().getKey());
+                    for(String token : tokens(name))
+                        lists.computeIfAbsent(token, key -> new ArrayList<>()).add(areas.size());
+                    areas.add(area);
+                    names.add(name);
+                }
+            });
+            lists.forEach((token, list) -> areasByToken.put(token, list.stream().mapToInt(Integer::intValue).toArray()));
+            allAreas = new int[areas.size()];
+            for(int i = 0; i < allAreas.length; i++)
+                allAreas[i] = i;
+        }
+
+        /**
+         * This method returns the distinct tokens of a text: every substring of TOKEN_LENGTH characters. A text shorter than that has no token.
+         *
+         * @param text - Cleaned name
+         * @return - Tokens, like AU, US, ST, TI and IN for AUSTIN
+         */
+        static Set<String> tokens(String text) {
+            Set<String> tokens = new LinkedHashSet<>();
+            for(int i = 0; i + TOKEN_LENGTH <= text.length(); i++)
+                tokens.add(text.substring(i, i + TOKEN_LENGTH));
+            return tokens;
+        }
+
+        /**
+         * This method returns the Statistical Areas whose cleaned name contains both the location name and the state abbreviation.
+         *
+         * @param locationName - Cleaned location name of the station
+         * @param stateAbbr - Cleaned state abbreviation of the station
+         * @return - Matching areas in STAT_AREA_MAP order
+         */
+        List<USAStatisticalArea> find(String locationName, String stateAbbr) {
+            Set<String> tokens = tokens(locationName);
+            tokens.addAll(tokens(stateAbbr));
+            int[] candidates = allAreas;
+            for(String token : tokens) {
+                candidates = intersect(candidates, areasByToken.getOrDefault(token, NO_AREAS));
+                if(candidates.length == 0)
+                    break;
+            }
+
+            List<USAStatisticalArea> found = new ArrayList<>(1);
+            for(int candidate : candidates) {
+                String name = names.get(candidate);
+                if(name.contains(locationName) && name.contains(stateAbbr))
+                    found.add(areas.get(candidate));
+            }
+            return found;
+        }
+
+        /**
+         * This method intersects two sorted lists of areas.
+         *
+         * @param left - Sorted areas
+         * @param right - Sorted areas
+         * @return - Areas of both lists, sorted
+         */
+        private static int[] intersect(int[] left, int[] right) {
+            int[] both = new int[Math.min(left.length, right.length)];
+            int count = 0;
+            for(int i = 0, j = 0; i < left.length && j < right.length; ) {
+                if(left[i] < right[j])
+                    i++;
+                else if(left[i] > right[j])
+                    j++;
+                else {
+                    both[count++] = left[i];
+                    i++;
+                    j++;
+                }
+            }
+            return count == both.length ? both : Arrays.copyOf(both, count);
+        }
+    }
+}
@@ -47,6 +47,7 @@ public class WBANpsvFileDataLoader implements DataLoader<Key,Entity> {
     private URI wbanMasterFile;
     private Map<Key, Entity> statAreaMap;
     private Map<Key, Entity> wbanMap = new LinkedHashMap<>();
+    private List<WBAN> wbans = new ArrayList<>();
     private Map<String, Map<Key, Entity>> maps;
 
     /**
@@ -58,15 +59,25 @@ public class WBANpsvFileDataLoader implements DataLoader<Key,Entity> {
     public WBANpsvFileDataLoader(URI wbanMasterFile, Map<String, Map<Key, Entity>> maps){
         this.wbanMasterFile = wbanMasterFile;
         this.maps = maps;
-        this.statAreaMap = maps.get(Constants.STAT_AREA_MAP_NAME);
     }
 
     @Override
     public void load() throws DataLoaderException {
+        parse();
+        link(maps);
+    }
+
+    /**
+     * This method reads all the WBANs of the file with their Counties.
+     *
+     * @throws DataLoaderException
+     */
+    @Override
+    public void parse() throws DataLoaderException {
         Path path = Paths.get(wbanMasterFile);
         Util.validateInput(path);
-
-        Map<Key, List<Key>> countySAmap = getCountySAmap();
+        wbanMap = new LinkedHashMap<>();
+        wbans = new ArrayList<>();
 
         // Took the traditional approach instead of Stream as the WBAN Master File has some special non-UTF-8 characters and Stream apis
         // don't have the ability to set the decoder. When I read as Stream, it resulted in MalformedInputException.
@@ -92,24 +103,7 @@ public class WBANpsvFileDataLoader implements DataLoader<Key,Entity> {
                     // Build WBAN Object and link County.
                     WBAN wban = getWBAN(inputArr);
                     wbanMap.put(wban.key(), wban);
-
-                    if(wban.getCounty() != null){
-                        // Link the USAStatisticalArea if the County is available. This filters the WBANs that we are not concerned with. Since population record in this case is smaller
-                        // looping is not an issue
-                        //System.out.println("Checking WBAN : " + wban.toString() + " County ===> " + wban.getCounty().key().toString());
-                        List<Key> areaKeys = countySAmap.get(wban.getCounty().key());
-                        if(areaKeys != null){
-                            if(log.isLoggable(Level.FINE)) log.fine("Hit found : " + wban.toString() + " County ===> " + wban.getCounty().key().toString());
-                            areaKeys = countySAmap.get(wban.getCounty().key());
-                            areaKeys.forEach(areaKey -> {
-                                USAStatAreaPopulationRecord rec = (USAStatAreaPopulationRecord) statAreaMap.get(areaKey);
-                                USAStatisticalArea area = rec.getArea();
-                                area.addWeatherStation(wban);
-                                wban.setArea(area);
-                                updatedPopulationRecsCounter.getAndIncrement();
-                            });
-                        }
-                    }
+                    wbans.add(wban);
                 }else{
                     log.log(Level.FINE, "Skipping WBAN Master file record " + line);
                 }
@@ -121,11 +115,57 @@ public class WBANpsvFileDataLoader implements DataLoader<Key,Entity> {
             throw new DataLoaderException("Error occurred while processing " + wbanMasterFile.toASCIIString(), e);
         }
         System.out.println("Total Number of WBANs added into Map : " + wbanMap.size());
+    }
+
+    /**
+     * This method links the WBANs to the Statistical Areas of their County, in the order of the file.
+     *
+     * @param maps - Maps of Context Data with the STAT_AREA_MAP
+     * @throws DataLoaderException
+     */
+    @Override
+    public void link(Map<String, Map<Key, Entity>> maps) throws DataLoaderException {
+        this.maps = maps;
+        this.statAreaMap = maps.get(Constants.STAT_AREA_MAP_NAME);
+        Map<Key, List<Key>> countySAmap = getCountySAmap();
+
+        for(WBAN wban : wbans) {
+            if(wban.getCounty() != null){
+                // Link the USAStatisticalArea if the County is available. This filters the WBANs that we are not concerned with. Since population record in this case is smaller
+                // looping is not an issue
+                List<Key> areaKeys = countySAmap.get(wban.getCounty().key());
+                if(areaKeys != null){
+                    if(log.isLoggable(Level.FINE)) log.fine("Hit found : " + wban.toString() + " County ===> " + wban.getCounty().key().toString());
+                    areaKeys.forEach(areaKey -> {
+                        USAStatAreaPopulationRecord rec = (USAStatAreaPopulationRecord) statAreaMap.get(areaKey);
+                        USAStatisticalArea area = rec.getArea();
+                        area.addWeatherStation(wban);
+                        wban.setArea(area);
+                        updatedPopulationRecsCounter.getAndIncrement();
+                    });
+                }
+            }
+        }
         System.out.println("Total Number of MSA records linked by WBAN Counties : " + updatedPopulationRecsCounter);
 
         this.maps.put(Constants.WBAN_MASTER_MAP, wbanMap);
     }
 
+    /**
+     * The WBANs are linked to the Statistical Areas only when the STAT_AREA_MAP is loaded, so the WBAN Master file can be loaded on its own.
+     *
+     * @return - No required input
+     */
+    @Override
+    public Set<String> getInputs() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public Set<String> getOutputs() {
+        return new LinkedHashSet<>(Arrays.asList(Constants.WBAN_MASTER_MAP, Constants.STAT_AREA_MAP_NAME));
+    }
+
     /**
      * This method builds a map of County keys and list of corresponding Statistical Area keys for lookup purpose.
      *
@@ -133,6 +173,8 @@ public class WBANpsvFileDataLoader implements DataLoader<Key,Entity> {
      */
     private Map<Key, List<Key>> getCountySAmap() {
         Map<Key, List<Key>> countySAmap = Collections.synchronizedMap(new LinkedHashMap<>());
+        if(statAreaMap == null)
+            return countySAmap;
         statAreaMap.values().forEach(new Consumer<Entity>() {
             @Override
             public void accept(Entity entity) {
@@ -153,6 +195,11 @@ public class WBANpsvFileDataLoader implements DataLoader<Key,Entity> {
         return countySAmap;
     }
 
+    @Override
+    public long getRowCount() {
+        return wbans.size();
+    }
+
     @Override
     public Map<String, Map<Key, Entity>> getDataMaps() throws DataLoaderException {
         return this.maps;
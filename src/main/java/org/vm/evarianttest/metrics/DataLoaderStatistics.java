@@ -0,0 +1,113 @@
+package org.vm.evarianttest.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class sums the loads of one Data Loader class: the time of its parse and link phases and the rows it read. A loader that is not split
+ * into phases spends all of its load in the link phase.
+ *
+ * @author vivekm
+ * @since 1.0
+ * @see org.vm.evarianttest.loader.DataLoader
+ */
+public class DataLoaderStatistics implements DataLoaderStatisticsMXBean {
+    private static final double NANOS_PER_MILLI = 1000000d;
+
+    private final String name;
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder parseNanos = new LongAdder();
+    private final LongAdder linkNanos = new LongAdder();
+    private final LongAccumulator maxLoadNanos = new LongAccumulator(Math::max, 0);
+    private volatile long lastLoadNanos;
+    private volatile long lastRowCount;
+
+    /**
+     * Constructor
+     *
+     * @param name - Simple class name of the Data Loader
+     */
+    public DataLoaderStatistics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * This method adds one completed load.
+     *
+     * @param parseNanos - Time of the parse phase in nanoseconds
+     * @param linkNanos - Time of the link phase in nanoseconds
+     * @param rowCount - Rows read by the load
+     */
+    public void addLoad(long parseNanos, long linkNanos, long rowCount) {
+        loads.increment();
+        rows.add(rowCount);
+        this.parseNanos.add(parseNanos);
+        this.linkNanos.add(linkNanos);
+        maxLoadNanos.accumulate(parseNanos + linkNanos);
+        lastLoadNanos = parseNanos + linkNanos;
+        lastRowCount = rowCount;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    @Override
+    public long getRowCount() {
+        return lastRowCount;
+    }
+
+    @Override
+    public long getTotalRowCount() {
+        return rows.sum();
+    }
+
+    @Override
+    public double getParseMillis() {
+        return parseNanos.sum() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getLinkMillis() {
+        return linkNanos.sum() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getLastLoadMillis() {
+        return lastLoadNanos / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMaxLoadMillis() {
+        return maxLoadNanos.get() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getRowsPerSecond() {
+        long total = parseNanos.sum() + linkNanos.sum();
+        return total == 0 ? 0 : rows.sum() * 1e9 / total;
+    }
+
+    @Override
+    public void reset() {
+        loads.reset();
+        rows.reset();
+        parseNanos.reset();
+        linkNanos.reset();
+        maxLoadNanos.reset();
+        lastLoadNanos = 0;
+        lastRowCount = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d loads, %d rows in %.1f ms", name, getLoadCount(), getTotalRowCount(), getParseMillis() + getLinkMillis());
+    }
+}
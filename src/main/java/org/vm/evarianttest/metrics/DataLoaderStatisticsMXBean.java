@@ -0,0 +1,60 @@
+package org.vm.evarianttest.metrics;
+
+/**
+ * This interface defines the JMX view of the loads of one Data Loader.
+ *
+ * @author vivekm
+ * @since 1.0
+ * @see DataLoaderStatistics
+ */
+public interface DataLoaderStatisticsMXBean {
+    /**
+     * @return - Simple class name of the Data Loader
+     */
+    public String getName();
+
+    /**
+     * @return - Number of completed loads
+     */
+    public long getLoadCount();
+
+    /**
+     * @return - Rows read by the last load, see DataLoader.getRowCount()
+     */
+    public long getRowCount();
+
+    /**
+     * @return - Rows read by all the loads
+     */
+    public long getTotalRowCount();
+
+    /**
+     * @return - Time spent parsing the source in milliseconds, over all the loads
+     */
+    public double getParseMillis();
+
+    /**
+     * @return - Time spent linking to the Context Data in milliseconds, over all the loads
+     */
+    public double getLinkMillis();
+
+    /**
+     * @return - Time of the last load in milliseconds, parse and link
+     */
+    public double getLastLoadMillis();
+
+    /**
+     * @return - Longest load in milliseconds, parse and link
+     */
+    public double getMaxLoadMillis();
+
+    /**
+     * @return - Rows loaded per second of load time
+     */
+    public double getRowsPerSecond();
+
+    /**
+     * This operation resets the statistics to zero.
+     */
+    public void reset();
+}
@@ -0,0 +1,279 @@
+package org.vm.evarianttest.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class collects the metrics of the rainfall pipeline of the process and publishes them as MXBeans on the platform MBean server, so they can
+ * be watched with JConsole or any JMX client while a run is slow:
+ *  org.vm.evarianttest:type=PipelineMetrics - lines and bytes read, records parsed, parse failures, rejections per filter condition and of the WBANs
+ *      not linked to the Context Data, aggregation updates
+ *  org.vm.evarianttest:type=PipelineStage,name=read - reading the chunks, with the page faults of a mapped file or the inflation of a compressed one
+ *  org.vm.evarianttest:type=PipelineStage,name=parse - parsing the lines, with the key filters applied on the raw bytes
+ *  org.vm.evarianttest:type=PipelineStage,name=aggregate - the record handlers, the record filters and the aggregation
+ *  org.vm.evarianttest:type=PipelineStage,name=merge - merging the accumulators of the parts of a scan
+ *  org.vm.evarianttest:type=DataLoaderMetrics,name=XXXDataLoader - the loads of the Context Data, per Data Loader class
+ *
+ * The metrics are cheap enough to be always on: the readers and the record handlers count in plain fields of the handler of a chunk and add their
+ * counts to the striped counters (LongAdder) once per chunk, so a line costs no shared write. Timing every line would cost more than parsing it, so
+ * only one line in SAMPLED_LINES is timed, and the time of a chunk is split between the read, parse and aggregate stages in the proportions measured
+ * on its sampled lines.
+ *
+ * Example usage:
+ *
+ * PipelineMetrics metrics = PipelineMetrics.get();
+ * long lines = metrics.getLinesRead();
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+public final class PipelineMetrics implements PipelineMetricsMXBean {
+    public static final String DOMAIN = "org.vm.evarianttest";
+
+    /** One line in this many is timed, a power of 2 */
+    public static final int SAMPLED_LINES = 64;
+
+    private static final Logger log = Logger.getLogger(PipelineMetrics.class.getName());
+
+    private static final PipelineMetrics INSTANCE = new PipelineMetrics();
+
+    private final LongAdder linesRead = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder recordsParsed = new LongAdder();
+    private final LongAdder parseFailures = new LongAdder();
+    private final LongAdder rejectedByContext = new LongAdder();
+    private final LongAdder rejectedByStations = new LongAdder();
+    private final LongAdder rejectedByDays = new LongAdder();
+    private final LongAdder rejectedByHours = new LongAdder();
+    private final LongAdder rejectedByFlags = new LongAdder();
+    private final LongAdder aggregationUpdates = new LongAdder();
+
+    private final StageStatistics read = new StageStatistics("read", "bytes");
+    private final StageStatistics parse = new StageStatistics("parse", "lines");
+    private final StageStatistics aggregate = new StageStatistics("aggregate", "records");
+    private final StageStatistics merge = new StageStatistics("merge", "parts");
+    private final ConcurrentMap<String, DataLoaderStatistics> loaders = new ConcurrentHashMap<>();
+
+    /** Cost of a System.nanoTime() call, taken off every sampled time */
+    private final long timerNanos = measureTimer();
+
+    private PipelineMetrics() {
+        register("type=PipelineMetrics", this);
+        for(StageStatistics stage : new StageStatistics[]{read, parse, aggregate, merge})
+            register("type=PipelineStage,name=" + stage.getName(), stage);
+    }
+
+    /**
+     * @return - Metrics of the process, registered on the platform MBean server
+     */
+    public static PipelineMetrics get() {
+        return INSTANCE;
+    }
+
+    private static void register(String name, Object mxBean) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(DOMAIN + ":" + name);
+            if(!server.isRegistered(objectName))
+                server.registerMBean(mxBean, objectName);
+        } catch (JMException | SecurityException e) {
+            // The metrics are still collected, only not published
+            log.log(Level.WARNING, "Could not register the MXBean " + name, e);
+        }
+    }
+
+    private static long measureTimer() {
+        long fastest = Long.MAX_VALUE;
+        for(int i = 0; i < 1000; i++) {
+            long start = System.nanoTime();
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+        return fastest;
+    }
+
+    /**
+     * @return - Cost of a System.nanoTime() call in nanoseconds, to take off the times of the sampled lines
+     */
+    public long getTimerNanos() {
+        return timerNanos;
+    }
+
+    /**
+     * This method adds the lines of a chunk. The lines rejected by the key filters are neither records nor failures.
+     *
+     * @param lines - Non empty lines of the chunk
+     * @param bytes - Bytes of the chunk
+     * @param records - Lines handed to the record handler
+     * @param failures - Lines that are not valid records
+     */
+    public void addLines(long lines, long bytes, long records, long failures) {
+        linesRead.add(lines);
+        bytesRead.add(bytes);
+        recordsParsed.add(records);
+        if(failures != 0)
+            parseFailures.add(failures);
+    }
+
+    /**
+     * This method adds rejected lines or records, by the filter condition that rejected them.
+     *
+     * @param byStations - Rejected on the WBAN
+     * @param byDays - Rejected on the day
+     * @param byHours - Rejected on the hour
+     * @param byFlags - Rejected on the PrecipitationFlag
+     */
+    public void addRejected(long byStations, long byDays, long byHours, long byFlags) {
+        if(byStations != 0)
+            rejectedByStations.add(byStations);
+        if(byDays != 0)
+            rejectedByDays.add(byDays);
+        if(byHours != 0)
+            rejectedByHours.add(byHours);
+        if(byFlags != 0)
+            rejectedByFlags.add(byFlags);
+    }
+
+    /**
+     * This method adds lines or records dropped because their WBAN is not linked to the Context Data of the calculation, like the stations outside
+     * of every Statistical Area. They are not rejected by a filter condition.
+     *
+     * @param rejected - Rejected on the WBAN
+     */
+    public void addRejectedByContext(long rejected) {
+        if(rejected != 0)
+            rejectedByContext.add(rejected);
+    }
+
+    /**
+     * This method adds the records summed into the slots of an accumulator.
+     *
+     * @param updates - Records added, once per slot
+     */
+    public void addAggregationUpdates(long updates) {
+        aggregationUpdates.add(updates);
+    }
+
+    public StageStatistics readStage() {
+        return read;
+    }
+
+    public StageStatistics parseStage() {
+        return parse;
+    }
+
+    public StageStatistics aggregateStage() {
+        return aggregate;
+    }
+
+    public StageStatistics mergeStage() {
+        return merge;
+    }
+
+    /**
+     * This method returns the statistics of a Data Loader class, registering them on first use.
+     *
+     * @param loaderClass - Class of the Data Loader
+     * @return - Statistics of the loads
+     */
+    public DataLoaderStatistics loader(Class<?> loaderClass) {
+        String name = loaderClass.getSimpleName().isEmpty() ? loaderClass.getName() : loaderClass.getSimpleName();
+        DataLoaderStatistics statistics = loaders.get(name);
+        if(statistics != null)
+            return statistics;
+        statistics = new DataLoaderStatistics(name);
+        DataLoaderStatistics previous = loaders.putIfAbsent(name, statistics);
+        if(previous != null)
+            return previous;
+        register("type=DataLoaderMetrics,name=" + name, statistics);
+        return statistics;
+    }
+
+    /**
+     * @return - Statistics of every Data Loader class that loaded, by name
+     */
+    public Map<String, DataLoaderStatistics> loaders() {
+        return loaders;
+    }
+
+    @Override
+    public long getLinesRead() {
+        return linesRead.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getRecordsParsed() {
+        return recordsParsed.sum();
+    }
+
+    @Override
+    public long getParseFailures() {
+        return parseFailures.sum();
+    }
+
+    @Override
+    public long getRejectedByContext() {
+        return rejectedByContext.sum();
+    }
+
+    @Override
+    public long getRejectedByStations() {
+        return rejectedByStations.sum();
+    }
+
+    @Override
+    public long getRejectedByDays() {
+        return rejectedByDays.sum();
+    }
+
+    @Override
+    public long getRejectedByHours() {
+        return rejectedByHours.sum();
+    }
+
+    @Override
+    public long getRejectedByFlags() {
+        return rejectedByFlags.sum();
+    }
+
+    @Override
+    public long getAggregationUpdates() {
+        return aggregationUpdates.sum();
+    }
+
+    @Override
+    public void reset() {
+        for(LongAdder counter : new LongAdder[]{linesRead, bytesRead, recordsParsed, parseFailures, rejectedByContext, rejectedByStations, rejectedByDays,
+                rejectedByHours, rejectedByFlags, aggregationUpdates})
+            counter.reset();
+        for(StageStatistics stage : new StageStatistics[]{read, parse, aggregate, merge})
+            stage.reset();
+        loaders.values().forEach(DataLoaderStatistics::reset);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sbr = new StringBuilder();
+        sbr.append(String.format("Lines read : %d (%d bytes), records parsed : %d, parse failures : %d", getLinesRead(), getBytesRead(),
+                getRecordsParsed(), getParseFailures())).append("\n");
+        sbr.append(String.format("Rejected by context : %d, stations : %d, days : %d, hours : %d, flags : %d", getRejectedByContext(),
+                getRejectedByStations(), getRejectedByDays(), getRejectedByHours(), getRejectedByFlags())).append("\n");
+        sbr.append("Aggregation updates : ").append(getAggregationUpdates()).append("\n");
+        for(StageStatistics stage : new StageStatistics[]{read, parse, aggregate, merge})
+            sbr.append(stage).append("\n");
+        loaders.values().forEach(loader -> sbr.append(loader).append("\n"));
+        return sbr.toString();
+    }
+}
@@ -0,0 +1,66 @@
+package org.vm.evarianttest.metrics;
+
+/**
+ * This interface defines the JMX view of the counters of the rainfall pipeline. The time of every stage is published by its own
+ * StageStatisticsMXBean.
+ *
+ * @author vivekm
+ * @since 1.0
+ * @see PipelineMetrics
+ */
+public interface PipelineMetricsMXBean {
+    /**
+     * @return - Non empty lines read from the rainfall text files
+     */
+    public long getLinesRead();
+
+    /**
+     * @return - Bytes read from the rainfall text files, after decompression
+     */
+    public long getBytesRead();
+
+    /**
+     * @return - Lines parsed into records and handed to the record handlers
+     */
+    public long getRecordsParsed();
+
+    /**
+     * @return - Lines that are not valid records, like the file headers
+     */
+    public long getParseFailures();
+
+    /**
+     * @return - Lines and records dropped because their WBAN is not linked to the Context Data of the calculation
+     */
+    public long getRejectedByContext();
+
+    /**
+     * @return - Lines and records dropped on their WBAN, outside the stations of the filter
+     */
+    public long getRejectedByStations();
+
+    /**
+     * @return - Lines and records dropped on their day
+     */
+    public long getRejectedByDays();
+
+    /**
+     * @return - Lines and records dropped on their hour
+     */
+    public long getRejectedByHours();
+
+    /**
+     * @return - Records dropped on their PrecipitationFlag
+     */
+    public long getRejectedByFlags();
+
+    /**
+     * @return - Records added to an aggregation slot, a record linked to several slots counting once per slot
+     */
+    public long getAggregationUpdates();
+
+    /**
+     * This operation resets the counters and the stage statistics to zero.
+     */
+    public void reset();
+}
@@ -0,0 +1,110 @@
+package org.vm.evarianttest.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class sums the time spent in one stage of the rainfall pipeline and the items it processed. It is updated once per run of the stage, like
+ * once per chunk of a scan, from any number of threads: the counters are striped (LongAdder), so the threads do not contend on a shared cache line.
+ *
+ * The statistics are read without stopping the updates, so a reading taken during a scan may mix counters from slightly different moments.
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+public class StageStatistics implements StageStatisticsMXBean {
+    private static final double NANOS_PER_MILLI = 1000000d;
+
+    private final String name;
+    private final String itemUnit;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder items = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Constructor
+     *
+     * @param name - Name of the stage
+     * @param itemUnit - Unit of the items of the stage
+     */
+    public StageStatistics(String name, String itemUnit) {
+        this.name = name;
+        this.itemUnit = itemUnit;
+    }
+
+    /**
+     * This method adds one run of the stage.
+     *
+     * @param nanos - Time of the run in nanoseconds
+     * @param items - Items processed by the run
+     */
+    public void add(long nanos, long items) {
+        count.increment();
+        this.items.add(items);
+        this.nanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getItemUnit() {
+        return itemUnit;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public long getItems() {
+        return items.sum();
+    }
+
+    /**
+     * @return - Time spent in the stage in nanoseconds, summed over all the threads
+     */
+    public long getTotalNanos() {
+        return nanos.sum();
+    }
+
+    @Override
+    public double getTotalMillis() {
+        return nanos.sum() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMeanMillis() {
+        long runs = count.sum();
+        return runs == 0 ? 0 : nanos.sum() / NANOS_PER_MILLI / runs;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return maxNanos.get() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getItemsPerSecond() {
+        long total = nanos.sum();
+        return total == 0 ? 0 : items.sum() * 1e9 / total;
+    }
+
+    @Override
+    public void reset() {
+        count.reset();
+        items.reset();
+        nanos.reset();
+        maxNanos.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d runs, %d %s in %.1f ms", name, getCount(), getItems(), itemUnit, getTotalMillis());
+    }
+}
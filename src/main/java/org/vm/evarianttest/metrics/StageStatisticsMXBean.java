@@ -0,0 +1,55 @@
+package org.vm.evarianttest.metrics;
+
+/**
+ * This interface defines the JMX view of the time spent in one stage of the rainfall pipeline.
+ *
+ * @author vivekm
+ * @since 1.0
+ * @see StageStatistics
+ */
+public interface StageStatisticsMXBean {
+    /**
+     * @return - Name of the stage, like read or parse
+     */
+    public String getName();
+
+    /**
+     * @return - Unit of the items of the stage, like bytes or lines
+     */
+    public String getItemUnit();
+
+    /**
+     * @return - Number of timed runs of the stage, like the chunks of a scan
+     */
+    public long getCount();
+
+    /**
+     * @return - Number of items processed by the stage
+     */
+    public long getItems();
+
+    /**
+     * @return - Time spent in the stage in milliseconds, summed over all the threads
+     */
+    public double getTotalMillis();
+
+    /**
+     * @return - Mean time of a run in milliseconds
+     */
+    public double getMeanMillis();
+
+    /**
+     * @return - Longest run in milliseconds
+     */
+    public double getMaxMillis();
+
+    /**
+     * @return - Items processed per second of time spent in the stage, by one thread
+     */
+    public double getItemsPerSecond();
+
+    /**
+     * This operation resets the statistics to zero.
+     */
+    public void reset();
+}
@@ -1,24 +1,48 @@
 package org.vm.evarianttest.precipitationcalc;
 
+import org.vm.evarianttest.aggregation.AggregationMode;
+import org.vm.evarianttest.cache.RainfallResultCache;
 import org.vm.evarianttest.calc.Calculator;
 import org.vm.evarianttest.calc.PopulationWetnessCalculator;
 import org.vm.evarianttest.calc.RainFallByStateCalculator;
+import org.vm.evarianttest.calc.RainfallBatchRunner;
+import org.vm.evarianttest.calc.RainfallFileFollower;
+import org.vm.evarianttest.calc.ScanningCalculator;
+import org.vm.evarianttest.calc.SharedScanExecutor;
+import org.vm.evarianttest.context.ContextDictionary;
 import org.vm.evarianttest.entity.Entity;
 import org.vm.evarianttest.entity.Key;
 import org.vm.evarianttest.entity.census.USAStatisticalAreaType;
+import org.vm.evarianttest.filters.RainfallFilterSpec;
 import org.vm.evarianttest.loader.*;
+import org.vm.evarianttest.metrics.PipelineMetrics;
+import org.vm.evarianttest.query.RainfallTimeRangeIndex;
+import org.vm.evarianttest.query.TimeWindow;
+import org.vm.evarianttest.reader.MappedRainfallFileReader;
+import org.vm.evarianttest.reader.RainfallSource;
+import org.vm.evarianttest.store.ColumnarRainfallStore;
+import org.vm.evarianttest.store.MultiFileRainfallSource;
+import org.vm.evarianttest.store.RainfallSources;
 
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * This is the entry to the Rainfall Analytics system.
@@ -27,6 +51,7 @@ import java.util.Map;
  * @since 1.0
  */
 public class RainFallStatsCalculator {
+    private Logger log = Logger.getLogger(this.getClass().getName());
 
     private Map<String, Map<Key, Entity>> result = null;
     private URI censusFile = null;
@@ -35,6 +60,13 @@ public class RainFallStatsCalculator {
     private URI stations201505File = null;
 
     private List<USAStatisticalAreaType> typeToLoad;
+    private AggregationMode aggregationMode = AggregationMode.DEFAULT;
+    private ContextDictionary dictionary = null;
+    private Path snapshotFile = null;
+    private Set<String> loadedMaps = Collections.emptySet();
+    private RainfallFilterSpec populationWetnessFilter = null;
+    private RainfallFilterSpec rainfallByStateFilter = null;
+    private RainfallResultCache resultCache = null;
 
     public RainFallStatsCalculator(URI censusFile, URI countyMSALinkFile, URI wbanMasterFile, URI stations201505File, List<USAStatisticalAreaType> typeToLoad){
         this.censusFile = censusFile;
@@ -45,19 +77,87 @@ public class RainFallStatsCalculator {
     }
 
     /**
-     * This method loads the context data
+     * This method loads all of the context data. When a snapshot file is set, the context data is read from the snapshot as long as none of the
+     * source files has changed, otherwise it is loaded from the source files and a new snapshot is written.
      *
      * @throws DataLoaderException
      */
     public void load() throws DataLoaderException {
-        result = loadFile(new CensusPopXLSFileDataLoader(censusFile, typeToLoad));
-        result = loadFile(new CountyXLSFileDataLoader(countyMSALinkFile, result));
-        result = loadFile(new WBANpsvFileDataLoader(wbanMasterFile, result));
-        result = loadFile(new StationsFile2015DataLoader(stations201505File, result));
+        loadedMaps = Collections.emptySet();
+        load(contextLoader().getOutputs());
+    }
+
+    /**
+     * This method makes sure the given maps of context data are loaded, loading them on first use. Only the loaders writing those maps are run, so a
+     * calculation that does not need the Statistical Areas does not read the census workbooks or the stations file. Asking for a map that is not
+     * loaded yet loads the context data again with every map asked for so far.
+     *
+     * @param requiredMaps - Names of the maps of context data, as returned by Calculator.getRequiredMaps()
+     * @throws DataLoaderException
+     */
+    public void require(Set<String> requiredMaps) throws DataLoaderException {
+        if(result != null && loadedMaps.containsAll(requiredMaps))
+            return;
+        Set<String> maps = new LinkedHashSet<>(loadedMaps);
+        maps.addAll(requiredMaps);
+        load(maps);
+    }
+
+    private void load(Set<String> maps) throws DataLoaderException {
+        ContextDataLoader sources = contextLoader();
+        ContextSnapshotDataLoader snapshot = null;
+        if(snapshotFile != null)
+            snapshot = new ContextSnapshotDataLoader(snapshotFile, Arrays.asList(censusFile, countyMSALinkFile, wbanMasterFile, stations201505File),
+                    String.valueOf(typeToLoad));
+
+        result = null;
+        if(snapshot != null && snapshot.isUpToDate()) {
+            try {
+                result = loadFile(snapshot);
+                loadedMaps = snapshot.getOutputs();
+            } catch (DataLoaderException e) {
+                log.log(Level.WARNING, "Snapshot " + snapshotFile + " could not be read, loading the source files", e);
+            }
+        }
+        if(result == null) {
+            // The files are parsed at the same time, only the links run one after the other
+            result = loadFile(sources.forMaps(maps));
+            loadedMaps = maps;
+            // Only the whole context data is kept as a snapshot
+            if(snapshot != null && maps.containsAll(sources.getOutputs()))
+                snapshot.write(result);
+        }
+        dictionary = ContextDictionary.build(result);
+    }
+
+    private ContextDataLoader contextLoader() {
+        Map<String, Map<Key, Entity>> maps = new LinkedHashMap<>();
+        return new ContextDataLoader()
+                .register(new CensusPopXLSFileDataLoader(censusFile, typeToLoad))
+                .register(new CountyXLSFileDataLoader(countyMSALinkFile, maps))
+                .register(new WBANpsvFileDataLoader(wbanMasterFile, maps))
+                .register(new StationsFile2015DataLoader(stations201505File, maps));
+    }
+
+    /**
+     * This method returns the context data with the given maps loaded.
+     */
+    private Map<String, Map<Key, Entity>> context(Set<String> requiredMaps) {
+        try {
+            require(requiredMaps);
+        } catch (DataLoaderException e) {
+            log.log(Level.SEVERE, "Error occurred while processing the context data " + requiredMaps, e);
+            throw new RuntimeException("Error occurred while processing the context data " + requiredMaps, e);
+        }
+        return result;
     }
 
     private Map<String, Map<Key, Entity>> loadFile(DataLoader loader) throws DataLoaderException {
+        long started = System.nanoTime();
         loader.load();
+        // A ContextDataLoader records the loads of the loaders it runs itself
+        if(!(loader instanceof ContextDataLoader))
+            PipelineMetrics.get().loader(loader.getClass()).addLoad(0, System.nanoTime() - started, loader.getRowCount());
         return loader.getDataMaps();
     }
 
@@ -69,7 +169,8 @@ public class RainFallStatsCalculator {
      * @return - Computed results
      */
     public Map<Key, BigDecimal> calculatePopulationWetnessByMSA(URI file, String outputFilePath){
-        return calculate(new PopulationWetnessCalculator(file, result), outputFilePath);
+        PopulationWetnessCalculator calc = populationWetness(new PopulationWetnessCalculator(file, context(PopulationWetnessCalculator.REQUIRED_MAPS)));
+        return calculate(file, calc, String.valueOf(calc.getFilter()), outputFilePath);
     }
 
     /**
@@ -80,16 +181,185 @@ public class RainFallStatsCalculator {
      * @return - Computed results
      */
     public Map<Key, BigDecimal> calculateRainfallByState(URI file, String outputFilePath){
-        return calculate(new RainFallByStateCalculator(file, result), outputFilePath);
+        RainFallByStateCalculator calc = rainfallByState(new RainFallByStateCalculator(file, context(RainFallByStateCalculator.REQUIRED_MAPS)));
+        return calculate(file, calc, String.valueOf(calc.getFilter()), outputFilePath);
+    }
+
+    /**
+     * This method calculates the PopulationWetnessByMSA statistic over any source of rainfall records, like a ColumnarRainfallStore that is reused
+     * across calculations.
+     *
+     * @param source - Rainfall Dataset
+     * @param outputFilePath - Output path to which the results will be written. Pass null if you wish to not write the output
+     * @return - Computed results
+     */
+    public Map<Key, BigDecimal> calculatePopulationWetnessByMSA(RainfallSource source, String outputFilePath){
+        return calculate(populationWetness(new PopulationWetnessCalculator(source, context(PopulationWetnessCalculator.REQUIRED_MAPS))), outputFilePath);
+    }
+
+    /**
+     * This method calculates the RainfallByState statistic over any source of rainfall records.
+     *
+     * @param source - Rainfall Dataset
+     * @param outputFilePath - Output path to which the results will be written. Pass null if you wish to not write the output
+     * @return - Computed results
+     */
+    public Map<Key, BigDecimal> calculateRainfallByState(RainfallSource source, String outputFilePath){
+        return calculate(rainfallByState(new RainFallByStateCalculator(source, context(RainFallByStateCalculator.REQUIRED_MAPS))), outputFilePath);
+    }
+
+    /**
+     * This method calculates the PopulationWetnessByMSA and RainfallByState statistics off a single scan of the rainfall dataset.
+     *
+     * @param source - Rainfall Dataset
+     * @param populationWetnessOutputFilePath - Output path of the PopulationWetnessByMSA results. Pass null if you wish to not write the output
+     * @param rainfallByStateOutputFilePath - Output path of the RainfallByState results. Pass null if you wish to not write the output
+     * @return - Computed results of every Calculator
+     */
+    public Map<ScanningCalculator<?>, Map<Key, BigDecimal>> calculateAll(RainfallSource source, String populationWetnessOutputFilePath, String rainfallByStateOutputFilePath){
+        Set<String> requiredMaps = new LinkedHashSet<>(PopulationWetnessCalculator.REQUIRED_MAPS);
+        requiredMaps.addAll(RainFallByStateCalculator.REQUIRED_MAPS);
+        Map<String, Map<Key, Entity>> context = context(requiredMaps);
+
+        PopulationWetnessCalculator populationWetness = populationWetness(new PopulationWetnessCalculator(source, context));
+        RainFallByStateCalculator rainfallByState = rainfallByState(new RainFallByStateCalculator(source, context));
+        Map<ScanningCalculator<?>, Map<Key, BigDecimal>> results = new SharedScanExecutor(source)
+                .register(populationWetness)
+                .register(rainfallByState)
+                .execute();
+        if(populationWetnessOutputFilePath != null)
+            writeResultToFile(populationWetness, populationWetnessOutputFilePath);
+        if(rainfallByStateOutputFilePath != null)
+            writeResultToFile(rainfallByState, rainfallByStateOutputFilePath);
+        return results;
+    }
+
+    /**
+     * This method returns a follower of a rainfall file that is still appended to, keeping the PopulationWetnessByMSA and RainfallByState statistics
+     * up to date by scanning only the new lines on every refresh.
+     *
+     * @param file - Rainfall Dataset in the QCLCD text format
+     * @return - Follower of the file, not refreshed yet
+     */
+    public RainfallFileFollower follow(URI file){
+        Set<String> requiredMaps = new LinkedHashSet<>(PopulationWetnessCalculator.REQUIRED_MAPS);
+        requiredMaps.addAll(RainFallByStateCalculator.REQUIRED_MAPS);
+        Map<String, Map<Key, Entity>> context = context(requiredMaps);
+
+        MappedRainfallFileReader reader = new MappedRainfallFileReader(Paths.get(file));
+        return new RainfallFileFollower(reader)
+                .register(populationWetness(new PopulationWetnessCalculator(reader, context)))
+                .register(rainfallByState(new RainFallByStateCalculator(reader, context)));
+    }
+
+    /**
+     * This method returns a batch runner of the PopulationWetnessByMSA and RainfallByState statistics over many rainfall files, like the monthly
+     * files of a year, giving the results of every file and of all of them off one concurrent scan.
+     *
+     * @param files - Rainfall files, see MultiFileRainfallSource.of()
+     * @return - Batch runner, not executed yet
+     */
+    public RainfallBatchRunner batch(MultiFileRainfallSource files){
+        Set<String> requiredMaps = new LinkedHashSet<>(PopulationWetnessCalculator.REQUIRED_MAPS);
+        requiredMaps.addAll(RainFallByStateCalculator.REQUIRED_MAPS);
+        Map<String, Map<Key, Entity>> context = context(requiredMaps);
+
+        return new RainfallBatchRunner(files)
+                .register(populationWetness(new PopulationWetnessCalculator(files, context)))
+                .register(rainfallByState(new RainFallByStateCalculator(files, context)));
+    }
+
+    /**
+     * This method loads a rainfall dataset into a columnar in-memory store, so that it can be calculated on many times without being read again.
+     *
+     * @param file - Rainfall Dataset
+     * @return - Loaded store
+     */
+    public ColumnarRainfallStore loadRainfallStore(URI file){
+        return ColumnarRainfallStore.load(RainfallSources.open(Paths.get(file)));
+    }
+
+    /**
+     * This method builds the prefix sum index of a rainfall dataset, so that the statistics of any window of time are calculated without a scan.
+     *
+     * @param file - Rainfall Dataset
+     * @return - Index of the dataset
+     */
+    public RainfallTimeRangeIndex buildTimeRangeIndex(URI file){
+        return RainfallTimeRangeIndex.build(RainfallSources.open(Paths.get(file)));
+    }
+
+    /**
+     * This method calculates the PopulationWetnessByMSA statistic over a window of time of an indexed dataset.
+     *
+     * @param index - Index of the Rainfall Dataset
+     * @param window - Days and hours of the day to sum the rainfall of
+     * @param outputFilePath - Output path to which the results will be written. Pass null if you wish to not write the output
+     * @return - Computed results
+     */
+    public Map<Key, BigDecimal> calculatePopulationWetnessByMSA(RainfallTimeRangeIndex index, TimeWindow window, String outputFilePath){
+        PopulationWetnessCalculator calc = populationWetness(new PopulationWetnessCalculator(index, context(PopulationWetnessCalculator.REQUIRED_MAPS)));
+        Map<Key, BigDecimal> result = calc.calculate(index, window);
+        if(outputFilePath != null)
+            writeResultToFile(calc, outputFilePath);
+        return result;
+    }
+
+    /**
+     * This method calculates the RainfallByState statistic over a window of time of an indexed dataset.
+     *
+     * @param index - Index of the Rainfall Dataset
+     * @param window - Days and hours of the day to sum the rainfall of
+     * @param outputFilePath - Output path to which the results will be written. Pass null if you wish to not write the output
+     * @return - Computed results
+     */
+    public Map<Key, BigDecimal> calculateRainfallByState(RainfallTimeRangeIndex index, TimeWindow window, String outputFilePath){
+        RainFallByStateCalculator calc = rainfallByState(new RainFallByStateCalculator(index, context(RainFallByStateCalculator.REQUIRED_MAPS)));
+        Map<Key, BigDecimal> result = calc.calculate(index, window);
+        if(outputFilePath != null)
+            writeResultToFile(calc, outputFilePath);
+        return result;
+    }
+
+    private PopulationWetnessCalculator populationWetness(PopulationWetnessCalculator calc){
+        calc.setAggregationMode(aggregationMode);
+        calc.setDictionary(dictionary);
+        if(populationWetnessFilter != null)
+            calc.setFilter(populationWetnessFilter);
+        return calc;
+    }
+
+    private RainFallByStateCalculator rainfallByState(RainFallByStateCalculator calc){
+        calc.setAggregationMode(aggregationMode);
+        calc.setDictionary(dictionary);
+        calc.setFilter(rainfallByStateFilter);
+        return calc;
     }
 
-    private Map<Key, BigDecimal> calculate(Calculator calc, String outputFilePath){
+    private Map<Key, BigDecimal> calculate(ScanningCalculator<?> calc, String outputFilePath){
         Map<Key, BigDecimal> result = calc.calculate();
         if(outputFilePath != null)
             writeResultToFile(calc, outputFilePath);
         return result;
     }
 
+    /**
+     * This method calculates the statistic of a rainfall file through the result cache when one is set. The result depends on the rainfall file,
+     * the context files, the Calculator with its filter and the aggregation mode, so it is calculated again when any of them changes.
+     */
+    private Map<Key, BigDecimal> calculate(URI file, ScanningCalculator<?> calc, String filter, String outputFilePath){
+        if(resultCache == null)
+            return calculate(calc, outputFilePath);
+        List<Path> inputs = Arrays.asList(Paths.get(file), Paths.get(censusFile), Paths.get(countyMSALinkFile), Paths.get(wbanMasterFile),
+                Paths.get(stations201505File));
+        String calculation = calc.getClass().getSimpleName() + "|" + filter + "|" + aggregationMode + "|" + typeToLoad;
+        Map<Key, BigDecimal> result = resultCache.get(inputs, calculation, () -> calc.calculate());
+        calc.setResult(result);
+        if(outputFilePath != null)
+            writeResultToFile(calc, outputFilePath);
+        return result;
+    }
+
     private void writeResultToFile(Calculator calc, String path){
         try {
             Files.write(Paths.get(path), calc.getPrettyResult().toString().getBytes(), StandardOpenOption.CREATE);
@@ -98,6 +368,81 @@ public class RainFallStatsCalculator {
         }
     }
 
+    /**
+     * This method returns the dense ids of the Context Data, built once it is loaded.
+     *
+     * @return - Dictionary of the Context Data
+     */
+    public ContextDictionary getDictionary() {
+        return dictionary;
+    }
+
+    public Path getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    /**
+     * This method sets the file in which the loaded context data is kept between runs. Pass null to always load the source files.
+     *
+     * @param snapshotFile - Path of the context snapshot
+     */
+    public void setSnapshotFile(Path snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    public AggregationMode getAggregationMode() {
+        return aggregationMode;
+    }
+
+    /**
+     * This method sets how the Calculators sum the rainfall, exactly in fixed point unless told otherwise.
+     *
+     * @param aggregationMode - Aggregation mode
+     */
+    public void setAggregationMode(AggregationMode aggregationMode) {
+        this.aggregationMode = aggregationMode;
+    }
+
+    public RainfallFilterSpec getPopulationWetnessFilter() {
+        return populationWetnessFilter;
+    }
+
+    /**
+     * This method sets the records the PopulationWetnessByMSA statistic is calculated on. Pass null for May 2015 after 7 AM.
+     *
+     * @param populationWetnessFilter - Filter spec, see PopulationWetnessCalculator.DEFAULT_FILTER
+     */
+    public void setPopulationWetnessFilter(RainfallFilterSpec populationWetnessFilter) {
+        this.populationWetnessFilter = populationWetnessFilter;
+    }
+
+    public RainfallFilterSpec getRainfallByStateFilter() {
+        return rainfallByStateFilter;
+    }
+
+    /**
+     * This method sets the records the RainfallByState statistic is calculated on. Pass null for all the records.
+     *
+     * @param rainfallByStateFilter - Filter spec
+     */
+    public void setRainfallByStateFilter(RainfallFilterSpec rainfallByStateFilter) {
+        this.rainfallByStateFilter = rainfallByStateFilter;
+    }
+
+    public RainfallResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * This method sets the cache of the results calculated from rainfall files, so that asking again for the statistics of an unchanged file costs a
+     * lookup. Pass null to always calculate.
+     *
+     * @param resultCache - Result cache
+     */
+    public void setResultCache(RainfallResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
     /**
      * This method returns the Context Data.
      *
@@ -120,19 +465,22 @@ public class RainFallStatsCalculator {
 
         Instant startLoad = Instant.now();
         RainFallStatsCalculator rfsCalc = new RainFallStatsCalculator(censusFile, countyMSALinkFile, wbanMasterFile, stations201505File, typeToLoad);
+        rfsCalc.setSnapshotFile(Paths.get("./src/main/out/context.snapshot"));
+        // The analysis windows can be changed like -DpopulationWetnessFilter="days=20150515-20150531;hours=8-20"
+        if(System.getProperty("populationWetnessFilter") != null)
+            rfsCalc.setPopulationWetnessFilter(RainfallFilterSpec.parse(System.getProperty("populationWetnessFilter")));
+        if(System.getProperty("rainfallByStateFilter") != null)
+            rfsCalc.setRainfallByStateFilter(RainfallFilterSpec.parse(System.getProperty("rainfallByStateFilter")));
         rfsCalc.load();
         Instant endLoad = Instant.now();
 
-        Instant startFirstCalc = Instant.now();
-        Map<Key, BigDecimal> resultOne = rfsCalc.calculatePopulationWetnessByMSA(rainfall201505DataFile, "./src/main/out/PopulationWetnessByMSAResult.txt");
-        Instant endFirstCalc = Instant.now();
-
-        Instant startSecondCalc = Instant.now();
-        Map<Key, BigDecimal> resultTwo = rfsCalc.calculateRainfallByState(rainfall201505DataFile, "./src/main/out/RainfallByStateResult.txt");
-        Instant endSecondCalc = Instant.now();
+        // Both statistics are computed off one scan of the rainfall file
+        Instant startCalc = Instant.now();
+        rfsCalc.calculateAll(RainfallSources.open(Paths.get(rainfall201505DataFile)), "./src/main/out/PopulationWetnessByMSAResult.txt",
+                "./src/main/out/RainfallByStateResult.txt");
+        Instant endCalc = Instant.now();
 
         System.out.println("Context Data Load Time :" + (endLoad.toEpochMilli() - startLoad.toEpochMilli()) + " ms");
-        System.out.println("PopulationWetnessByMSA Calculation Time :" + (endFirstCalc.toEpochMilli() - startFirstCalc.toEpochMilli()) + " ms");
-        System.out.println("RainfallByState Calculation Time :" + (endSecondCalc.toEpochMilli() - startSecondCalc.toEpochMilli()) + " ms");
+        System.out.println("PopulationWetnessByMSA and RainfallByState Calculation Time :" + (endCalc.toEpochMilli() - startCalc.toEpochMilli()) + " ms");
     }
 }
\ No newline at end of file
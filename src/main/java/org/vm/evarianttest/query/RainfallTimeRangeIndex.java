@@ -0,0 +1,308 @@
+package org.vm.evarianttest.query;
+
+import org.vm.evarianttest.aggregation.FixedPointPrecipitationAccumulator;
+import org.vm.evarianttest.reader.RainfallRecordCursor;
+import org.vm.evarianttest.reader.RainfallRecordHandler;
+import org.vm.evarianttest.reader.RainfallSource;
+import org.vm.evarianttest.store.ColumnarRainfallStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * This class implements an index of a rainfall dataset that answers the total rainfall of any TimeWindow without scanning the records. It is built
+ * once and holds, for every station and every hour of the day, the cumulative rainfall and record count over the days of the dataset (prefix sums).
+ * The total of a station over a range of days is then the difference of two entries, so a query costs O(stations * hours in the window) whatever the
+ * number of records and the length of the range.
+ *
+ * The sums are fixed-point longs in thousandths of an inch, like the FixedPointPrecipitationAccumulator, so the totals are exactly the ones a scan
+ * would give. The record counts keep apart a station that reported no rainfall from a station that did not report in the window.
+ *
+ * The index is also a RainfallSource, replaying one record per station, day and hour with the rainfall of that hour summed, so that it can be given to
+ * the Calculators. The PrecipitationFlag and trace marks are not kept.
+ *
+ * Memory: 12 bytes per station, hour of the day and day of the dataset.
+ *
+ * Example usage:
+ *
+ * RainfallTimeRangeIndex index = RainfallTimeRangeIndex.build(new MappedRainfallFileReader(path));
+ * long total = index.getScaledTotal(3013, TimeWindow.days(20150501, 20150507).withHours(8, 23));
+ *
+ * @author vivekm
+ * @since 1.0
+ * @see TimeWindow
+ */
+public class RainfallTimeRangeIndex implements RainfallSource {
+    private static final int STATIONS_PER_SLICE = 64;
+
+    private static Logger log = Logger.getLogger(RainfallTimeRangeIndex.class.getName());
+
+    /** Sorted numeric WBAN ids, the position of an id is its station index */
+    private final int[] stationIds;
+    /** Sorted days of the dataset as yyyymmdd numbers, the position of a day is its day index */
+    private final int[] days;
+    private final int hourSlots;
+    /** Entry (station * hourSlots + hour) * (days + 1) + d holds the total of the first d days, entry 0 of a series is always 0 */
+    private final long[] sums;
+    private final int[] counts;
+
+    private RainfallTimeRangeIndex(int[] stationIds, int[] days, int hourSlots, long[] sums, int[] counts) {
+        this.stationIds = stationIds;
+        this.days = days;
+        this.hourSlots = hourSlots;
+        this.sums = sums;
+        this.counts = counts;
+    }
+
+    /**
+     * This method builds the index of all the records of the source. A source that is not a ColumnarRainfallStore is loaded into one first.
+     *
+     * @param source - Rainfall dataset
+     * @return - Index of the dataset
+     */
+    public static RainfallTimeRangeIndex build(RainfallSource source) {
+        if(source instanceof ColumnarRainfallStore)
+            return build((ColumnarRainfallStore) source);
+        return build(ColumnarRainfallStore.load(source));
+    }
+
+    /**
+     * This method builds the index of all the records of the store.
+     *
+     * @param store - Loaded rainfall dataset
+     * @return - Index of the dataset
+     */
+    public static RainfallTimeRangeIndex build(ColumnarRainfallStore store) {
+        int size = store.size();
+        int[] stationIds = new int[size];
+        int[] days = new int[size];
+        int maxHour = 0;
+        for(int row = 0; row < size; row++) {
+            stationIds[row] = store.getWbanId(row);
+            days[row] = store.getYearMonthDay(row);
+            maxHour = Math.max(maxHour, store.getHour(row));
+        }
+        stationIds = distinct(stationIds);
+        days = distinct(days);
+        int hourSlots = maxHour + 1;
+        int stride = days.length + 1;
+
+        long cells = (long) stationIds.length * hourSlots * stride;
+        if(cells > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException(stationIds.length + " stations over " + days.length + " days do not fit an index");
+        long[] sums = new long[(int) cells];
+        int[] counts = new int[(int) cells];
+
+        // Records are grouped by station and day, so this avoids most of the searches
+        int lastId = Integer.MIN_VALUE, station = -1;
+        int lastDay = Integer.MIN_VALUE, day = -1;
+        for(int row = 0; row < size; row++) {
+            if(store.getWbanId(row) != lastId) {
+                lastId = store.getWbanId(row);
+                station = Arrays.binarySearch(stationIds, lastId);
+            }
+            if(store.getYearMonthDay(row) != lastDay) {
+                lastDay = store.getYearMonthDay(row);
+                day = Arrays.binarySearch(days, lastDay);
+            }
+            int cell = (station * hourSlots + store.getHour(row)) * stride + day + 1;
+            sums[cell] += store.getScaledPrecipitation(row);
+            counts[cell]++;
+        }
+
+        IntStream.range(0, stationIds.length * hourSlots).parallel().forEach(series -> {
+            int base = series * stride;
+            for(int d = 1; d < stride; d++) {
+                sums[base + d] += sums[base + d - 1];
+                counts[base + d] += counts[base + d - 1];
+            }
+        });
+        log.fine("Indexed " + size + " records of " + stationIds.length + " stations over " + days.length + " days");
+        return new RainfallTimeRangeIndex(stationIds, days, hourSlots, sums, counts);
+    }
+
+    private static int[] distinct(int[] values) {
+        Arrays.sort(values);
+        int size = 0;
+        for(int i = 0; i < values.length; i++) {
+            if(size == 0 || values[size - 1] != values[i])
+                values[size++] = values[i];
+        }
+        return Arrays.copyOf(values, size);
+    }
+
+    public int getStationCount() {
+        return stationIds.length;
+    }
+
+    public int getDayCount() {
+        return days.length;
+    }
+
+    /**
+     * @return - Numeric WBAN ids of the indexed stations, sorted
+     */
+    public int[] getStationIds() {
+        return stationIds.clone();
+    }
+
+    /**
+     * This method returns the rainfall of a station in the window.
+     *
+     * @param wbanId - Numeric WBAN id
+     * @param window - Time window
+     * @return - Total rainfall in thousandths of an inch, 0 if the station has no record in the window
+     */
+    public long getScaledTotal(int wbanId, TimeWindow window) {
+        int station = Arrays.binarySearch(stationIds, wbanId);
+        if(station < 0)
+            return 0;
+        int from = firstDay(window), to = lastDay(window);
+        if(from >= to)
+            return 0;
+        long total = 0;
+        for(int hour : hours(window)) {
+            int base = series(station, hour);
+            total += sums[base + to] - sums[base + from];
+        }
+        return total;
+    }
+
+    /**
+     * This method returns the number of records of a station in the window.
+     *
+     * @param wbanId - Numeric WBAN id
+     * @param window - Time window
+     * @return - Number of records
+     */
+    public long getCount(int wbanId, TimeWindow window) {
+        int station = Arrays.binarySearch(stationIds, wbanId);
+        if(station < 0)
+            return 0;
+        int from = firstDay(window), to = lastDay(window);
+        if(from >= to)
+            return 0;
+        long count = 0;
+        for(int hour : hours(window)) {
+            int base = series(station, hour);
+            count += counts[base + to] - counts[base + from];
+        }
+        return count;
+    }
+
+    /**
+     * This method sums the rainfall of the window into slots, like a Calculator sums the records of a scan. Every station is routed to its slots
+     * once, so the cost does not depend on the number of records.
+     *
+     * @param window - Time window
+     * @param slots - Number of slots
+     * @param slotsOfStation - Slots of a numeric WBAN id, or null if the station is left out
+     * @return - Rainfall per slot
+     */
+    public FixedPointPrecipitationAccumulator aggregate(TimeWindow window, int slots, IntFunction<int[]> slotsOfStation) {
+        FixedPointPrecipitationAccumulator accumulator = new FixedPointPrecipitationAccumulator(slots);
+        int from = firstDay(window), to = lastDay(window);
+        int[] hours = hours(window);
+        if(from >= to || hours.length == 0)
+            return accumulator;
+
+        for(int station = 0; station < stationIds.length; station++) {
+            int[] stationSlots = slotsOfStation.apply(stationIds[station]);
+            if(stationSlots == null || stationSlots.length == 0)
+                continue;
+            long total = 0, count = 0;
+            for(int hour : hours) {
+                int base = series(station, hour);
+                total += sums[base + to] - sums[base + from];
+                count += counts[base + to] - counts[base + from];
+            }
+            if(count == 0)
+                continue;
+            for(int slot : stationSlots)
+                accumulator.add(slot, total, count);
+        }
+        return accumulator;
+    }
+
+    @Override
+    public <H extends RainfallRecordHandler> List<H> scan(Supplier<H> handlerFactory) {
+        int slices = Math.max(1, (stationIds.length + STATIONS_PER_SLICE - 1) / STATIONS_PER_SLICE);
+        Object[] handlers = new Object[slices];
+        IntStream.range(0, slices).parallel().forEach(slice -> {
+            RainfallRecordHandler handler = handlerFactory.get();
+            replay(slice * STATIONS_PER_SLICE, Math.min(stationIds.length, (slice + 1) * STATIONS_PER_SLICE), handler);
+            handler.onPartScanned();
+            handlers[slice] = handler;
+        });
+
+        List<H> result = new ArrayList<>(slices);
+        for(Object handler : handlers) {
+            @SuppressWarnings("unchecked")
+            H h = (H) handler;
+            result.add(h);
+        }
+        return result;
+    }
+
+    /**
+     * This method replays the stations of a range, one record per day and hour with at least one record.
+     */
+    private void replay(int fromStation, int toStation, RainfallRecordHandler handler) {
+        RainfallRecordCursor cursor = new RainfallRecordCursor();
+        for(int station = fromStation; station < toStation; station++) {
+            for(int day = 0; day < days.length; day++) {
+                for(int hour = 0; hour < hourSlots; hour++) {
+                    int cell = series(station, hour) + day;
+                    if(counts[cell + 1] == counts[cell])
+                        continue;
+                    cursor.set(stationIds[station], days[day], hour, sums[cell + 1] - sums[cell], RainfallRecordCursor.PRECIPITATION_SCALE,
+                            false, RainfallRecordCursor.NO_FLAG);
+                    handler.onRecord(cursor);
+                }
+            }
+        }
+    }
+
+    private int series(int station, int hour) {
+        return (station * hourSlots + hour) * (days.length + 1);
+    }
+
+    /**
+     * @return - Index of the first day of the dataset inside the window
+     */
+    private int firstDay(TimeWindow window) {
+        int position = Arrays.binarySearch(days, window.getFromDay());
+        return position >= 0 ? position : -position - 1;
+    }
+
+    /**
+     * @return - Index of the first day of the dataset after the window
+     */
+    private int lastDay(TimeWindow window) {
+        int position = Arrays.binarySearch(days, window.getToDay());
+        return position >= 0 ? position + 1 : -position - 1;
+    }
+
+    /**
+     * @return - Hours of the window that have a series in the index
+     */
+    private int[] hours(TimeWindow window) {
+        int[] hours = new int[hourSlots];
+        int size = 0;
+        for(int hour = 0; hour < hourSlots; hour++) {
+            if(window.containsHour(hour))
+                hours[size++] = hour;
+        }
+        return Arrays.copyOf(hours, size);
+    }
+
+    @Override
+    public String toString() {
+        return "RainfallTimeRangeIndex{stations=" + stationIds.length + ", days=" + days.length + ", hours=" + hourSlots + "}";
+    }
+}
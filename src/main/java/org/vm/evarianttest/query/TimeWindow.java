@@ -0,0 +1,170 @@
+package org.vm.evarianttest.query;
+
+import org.vm.evarianttest.reader.RainfallRecordParser;
+
+/**
+ * This class defines a window of time of the rainfall dataset: an inclusive range of days, as yyyymmdd numbers, and the hours of the day inside it.
+ * The hours run from 0 to RainfallRecordParser.MAX_HOUR, the hours the parser accepts, and are kept as a 128 bit mask like the hours of a
+ * CompiledRainfallFilter: bit h of the low long for hour h below 64, bit h - 64 of the high long for the others.
+ *
+ * Example usage:
+ *
+ * TimeWindow may2015After7AM = TimeWindow.days(20150501, 20150531).withHours(8, TimeWindow.MAX_HOUR);
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+public final class TimeWindow {
+    /** Last hour of the day a window can hold */
+    public static final int MAX_HOUR = RainfallRecordParser.MAX_HOUR;
+
+    /** Hours 0 to 63 */
+    private static final long ALL_HOURS_LOW = -1L;
+    /** Hours 64 to MAX_HOUR */
+    private static final long ALL_HOURS_HIGH = (1L << (MAX_HOUR - 63)) - 1;
+
+    private final int fromDay;
+    private final int toDay;
+    private final long hoursLow;
+    private final long hoursHigh;
+
+    /**
+     * Constructor
+     *
+     * @param fromDay - First day, as a yyyymmdd number
+     * @param toDay - Last day, as a yyyymmdd number
+     * @param hoursLow - Hours 0 to 63, bit h set for hour h
+     * @param hoursHigh - Hours 64 to MAX_HOUR, bit h - 64 set for hour h
+     */
+    public TimeWindow(int fromDay, int toDay, long hoursLow, long hoursHigh) {
+        if(fromDay > toDay)
+            throw new IllegalArgumentException("First day " + fromDay + " is after last day " + toDay);
+        if((hoursHigh & ~ALL_HOURS_HIGH) != 0)
+            throw new IllegalArgumentException("Hours after " + MAX_HOUR + " in " + Long.toHexString(hoursHigh));
+        this.fromDay = fromDay;
+        this.toDay = toDay;
+        this.hoursLow = hoursLow;
+        this.hoursHigh = hoursHigh;
+    }
+
+    /**
+     * This method returns the window of every hour of the given days.
+     *
+     * @param fromDay - First day, as a yyyymmdd number
+     * @param toDay - Last day, as a yyyymmdd number
+     * @return - Window
+     */
+    public static TimeWindow days(int fromDay, int toDay) {
+        return new TimeWindow(fromDay, toDay, ALL_HOURS_LOW, ALL_HOURS_HIGH);
+    }
+
+    /**
+     * This method returns the same days with only an inclusive range of hours.
+     *
+     * @param fromHour - First hour, from 0 to MAX_HOUR
+     * @param toHour - Last hour, from fromHour to MAX_HOUR
+     * @return - Window
+     */
+    public TimeWindow withHours(int fromHour, int toHour) {
+        return new TimeWindow(fromDay, toDay, 0, 0).plusHours(fromHour, toHour);
+    }
+
+    /**
+     * This method returns the same days with an inclusive range of hours added to the hours of this window.
+     *
+     * @param fromHour - First hour, from 0 to MAX_HOUR
+     * @param toHour - Last hour, from fromHour to MAX_HOUR
+     * @return - Window
+     */
+    public TimeWindow plusHours(int fromHour, int toHour) {
+        if(fromHour < 0 || toHour > MAX_HOUR || fromHour > toHour)
+            throw new IllegalArgumentException("Invalid hour range " + fromHour + " to " + toHour);
+        long low = hoursLow, high = hoursHigh;
+        for(int hour = fromHour; hour <= toHour; hour++) {
+            if(hour < 64)
+                low |= 1L << hour;
+            else
+                high |= 1L << (hour - 64);
+        }
+        return new TimeWindow(fromDay, toDay, low, high);
+    }
+
+    public int getFromDay() {
+        return fromDay;
+    }
+
+    public int getToDay() {
+        return toDay;
+    }
+
+    /**
+     * @return - Hours 0 to 63, bit h set for hour h
+     */
+    public long getHoursLow() {
+        return hoursLow;
+    }
+
+    /**
+     * @return - Hours 64 to MAX_HOUR, bit h - 64 set for hour h
+     */
+    public long getHoursHigh() {
+        return hoursHigh;
+    }
+
+    /**
+     * @return - true if the hour of the given day is inside the window
+     */
+    public boolean contains(int yearMonthDay, int hour) {
+        return yearMonthDay >= fromDay && yearMonthDay <= toDay && containsHour(hour);
+    }
+
+    /**
+     * @return - true if the hour is one of the hours of the window
+     */
+    public boolean containsHour(int hour) {
+        if(hour < 0 || hour > MAX_HOUR)
+            return false;
+        return ((hour < 64 ? hoursLow : hoursHigh) & (1L << hour)) != 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o)
+            return true;
+        if(!(o instanceof TimeWindow))
+            return false;
+        TimeWindow that = (TimeWindow) o;
+        return fromDay == that.fromDay && toDay == that.toDay && hoursLow == that.hoursLow && hoursHigh == that.hoursHigh;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = fromDay;
+        result = 31 * result + toDay;
+        result = 31 * result + Long.hashCode(hoursLow);
+        result = 31 * result + Long.hashCode(hoursHigh);
+        return result;
+    }
+
+    /**
+     * @return - Hours of the window as inclusive ranges, like 8-99 or 0,12
+     */
+    public String getHours() {
+        StringBuilder sbr = new StringBuilder();
+        for(int hour = 0; hour <= MAX_HOUR; hour++) {
+            if(!containsHour(hour))
+                continue;
+            int last = hour;
+            while(last < MAX_HOUR && containsHour(last + 1))
+                last++;
+            sbr.append(sbr.length() == 0 ? "" : ",").append(hour == last ? String.valueOf(hour) : hour + "-" + last);
+            hour = last;
+        }
+        return sbr.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "TimeWindow{" + fromDay + " to " + toDay + ", hours=" + getHours() + "}";
+    }
+}
@@ -0,0 +1,230 @@
+package org.vm.evarianttest.reader;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * This class implements a reader for the QCLCD rainfall files as NOAA ships them, in a zip archive or gzipped, without decompressing them to disk.
+ * The calling thread decompresses the file into line aligned blocks, and every block is parsed on the fork-join pool while the next one is being
+ * decompressed, so the decompression runs alongside the parsing instead of before it.
+ *
+ * At most blocksInFlight blocks are held at a time: the decompression waits for a block to be parsed when the parsing falls behind, which bounds the
+ * memory to blocksInFlight * blockSize bytes.
+ *
+ * In a zip archive, only the entries whose name ends with the entry suffix are read (the precipitation file, "precip.txt" by default), one after the
+ * other as one dataset.
+ *
+ * Example usage:
+ *
+ * RainfallSource source = new CompressedRainfallFileReader(Paths.get("QCLCD201505.zip"));
+ * List recordHandlers = source.scan(() -> new XXXRecordHandler());
+ *
+ * @author vivekm
+ * @since 1.0
+ * @see MappedRainfallFileReader
+ */
+public class CompressedRainfallFileReader implements RainfallSource {
+    public static final int DEFAULT_BLOCK_SIZE = 4 * 1024 * 1024;
+    public static final int DEFAULT_BLOCKS_IN_FLIGHT = 4;
+    public static final String DEFAULT_ENTRY_SUFFIX = "precip.txt";
+
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    private Logger log = Logger.getLogger(this.getClass().getName());
+
+    private final Path path;
+    private final int blockSize;
+    private final int blocksInFlight;
+    private final ForkJoinPool pool;
+    private String entrySuffix = DEFAULT_ENTRY_SUFFIX;
+
+    /**
+     * Constructor using the default block size and the common fork-join pool.
+     *
+     * @param path - Path of the .zip or .gz rainfall dataset
+     */
+    public CompressedRainfallFileReader(Path path) {
+        this(path, DEFAULT_BLOCK_SIZE, DEFAULT_BLOCKS_IN_FLIGHT, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param path - Path of the .zip or .gz rainfall dataset
+     * @param blockSize - Approximate size of a block in decompressed bytes, the actual block ends on the last line terminator
+     * @param blocksInFlight - Number of blocks decompressed ahead of the parsing
+     * @param pool - Fork-join pool on which the blocks are parsed
+     */
+    public CompressedRainfallFileReader(Path path, int blockSize, int blocksInFlight, ForkJoinPool pool) {
+        if(blockSize <= 0 || blockSize > MappedRainfallFileReader.MAX_CHUNK_SIZE)
+            throw new IllegalArgumentException("Block size should be between 1 and " + MappedRainfallFileReader.MAX_CHUNK_SIZE + " but was " + blockSize);
+        if(blocksInFlight <= 0)
+            throw new IllegalArgumentException("Blocks in flight should be positive but was " + blocksInFlight);
+        this.path = path;
+        this.blockSize = blockSize;
+        this.blocksInFlight = blocksInFlight;
+        this.pool = pool;
+    }
+
+    /**
+     * @return - true if the file is a zip archive or gzipped, judging by its extension
+     */
+    public static boolean isCompressedFile(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".zip") || name.endsWith(".gz");
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public String getEntrySuffix() {
+        return entrySuffix;
+    }
+
+    /**
+     * This method sets which entries of a zip archive are read.
+     *
+     * @param entrySuffix - End of the entry names, like "precip.txt"
+     */
+    public void setEntrySuffix(String entrySuffix) {
+        this.entrySuffix = entrySuffix;
+    }
+
+    @Override
+    public <H extends RainfallRecordHandler> List<H> scan(Supplier<H> handlerFactory) {
+        Semaphore inFlight = new Semaphore(blocksInFlight);
+        List<ForkJoinTask<H>> parts = new ArrayList<>();
+        try {
+            if(path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".zip")) {
+                try(ZipInputStream zip = new ZipInputStream(new BufferedInputStream(Files.newInputStream(path), STREAM_BUFFER_SIZE))) {
+                    for(ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                        if(!entry.isDirectory() && entry.getName().endsWith(entrySuffix))
+                            split(zip, handlerFactory, inFlight, parts);
+                    }
+                }
+            } else {
+                try(InputStream in = new GZIPInputStream(Files.newInputStream(path), STREAM_BUFFER_SIZE)) {
+                    split(in, handlerFactory, inFlight, parts);
+                }
+            }
+        } catch (IOException e) {
+            log.log(Level.SEVERE, "Error occurred while reading " + path, e);
+            throw new RuntimeException("Error occurred while reading " + path, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while reading " + path, e);
+        }
+
+        List<H> result = new ArrayList<>(parts.size());
+        for(ForkJoinTask<H> part : parts)
+            result.add(part.join());
+        log.fine("Read " + path + " in " + parts.size() + " blocks");
+        return result;
+    }
+
+    /**
+     * This method decompresses a stream into line aligned blocks and submits the parsing of every block.
+     */
+    private <H extends RainfallRecordHandler> void split(InputStream in, Supplier<H> handlerFactory, Semaphore inFlight, List<ForkJoinTask<H>> parts)
+            throws IOException, InterruptedException {
+        byte[] carry = new byte[0];
+        boolean end = false;
+        while(!end) {
+            inFlight.acquire();
+            byte[] block = new byte[Math.max(blockSize, carry.length * 2)];
+            System.arraycopy(carry, 0, block, 0, carry.length);
+            int length = carry.length;
+            int lineEnd = -1;
+            long inflating = System.nanoTime();
+            while(lineEnd < 0) {
+                if(length == block.length) {
+                    // A single line longer than the block
+                    byte[] larger = new byte[block.length * 2];
+                    System.arraycopy(block, 0, larger, 0, length);
+                    block = larger;
+                }
+                int read = fill(in, block, length);
+                if(read < 0) {
+                    end = true;
+                    lineEnd = length;
+                    break;
+                }
+                lineEnd = lastLineEnd(block, length, length + read);
+                length += read;
+            }
+
+            carry = new byte[length - lineEnd];
+            System.arraycopy(block, lineEnd, carry, 0, carry.length);
+            if(lineEnd == 0) {
+                inFlight.release();
+                continue;
+            }
+            byte[] lines = block;
+            int linesEnd = lineEnd;
+            long inflateNanos = System.nanoTime() - inflating;
+            parts.add(pool.submit(() -> {
+                try {
+                    H handler = handlerFactory.get();
+                    MappedRainfallFileReader.ParsingLineHandler<H> lineHandler = new MappedRainfallFileReader.ParsingLineHandler<>(handler);
+                    long started = System.nanoTime();
+                    MappedRainfallFileReader.forEachLine(ByteBuffer.wrap(lines), 0, linesEnd, lineHandler);
+                    // The inflation of the block is part of its read stage
+                    lineHandler.publish(inflateNanos + System.nanoTime() - started, linesEnd);
+                    return handler;
+                } finally {
+                    // Gives the place in flight of this block to the next one
+                    inFlight.release();
+                }
+            }));
+        }
+    }
+
+    /**
+     * This method reads until the block is full or the stream ends.
+     *
+     * @return - Number of bytes read, or -1 at the end of the stream
+     */
+    private static int fill(InputStream in, byte[] block, int from) throws IOException {
+        int position = from;
+        while(position < block.length) {
+            int read = in.read(block, position, block.length - position);
+            if(read < 0)
+                break;
+            position += read;
+        }
+        return position == from ? -1 : position - from;
+    }
+
+    /**
+     * @return - Offset after the last line terminator in [from, to) of the block, or -1 if there is none
+     */
+    private static int lastLineEnd(byte[] block, int from, int to) {
+        for(int i = to - 1; i >= from; i--) {
+            if(block[i] == '\n')
+                return i + 1;
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+}
@@ -0,0 +1,486 @@
+package org.vm.evarianttest.reader;
+
+import org.vm.evarianttest.metrics.PipelineMetrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class implements a parallel reader for the QCLCD rainfall files. Files.lines().parallel() splits poorly on Java 8 and decodes every byte into a String,
+ * so instead the file is cut into line aligned chunks, every chunk is memory-mapped on its own (which keeps files larger than 2 GB working, as a single
+ * mapping is limited to Integer.MAX_VALUE bytes) and the chunks are handed to fork-join tasks.
+ *
+ * Every chunk gets its own handler from the supplied factory, so the handler does not need to be thread safe. The handlers are returned in file order
+ * once all the chunks are processed.
+ *
+ * Example usage:
+ *
+ * MappedRainfallFileReader reader = new MappedRainfallFileReader(path);
+ * List handlers = reader.read(() -> new XXXLineHandler());
+ * List recordHandlers = reader.scan(() -> new XXXRecordHandler());
+ *
+ * @author vivekm
+ * @since 1.0
+ * @see RainfallSource
+ */
+public class MappedRainfallFileReader implements RainfallSource {
+    public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+    public static final int MAX_CHUNK_SIZE = 1024 * 1024 * 1024;
+
+    private static final int BOUNDARY_PROBE_SIZE = 4 * 1024;
+
+    private Logger log = Logger.getLogger(this.getClass().getName());
+
+    private final Path path;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor using the default chunk size and the common fork-join pool.
+     *
+     * @param path - Path of the rainfall dataset
+     */
+    public MappedRainfallFileReader(Path path) {
+        this(path, DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param path - Path of the rainfall dataset
+     * @param chunkSize - Approximate size of a chunk in bytes, the actual chunk is extended up to the end of the line
+     * @param pool - Fork-join pool on which the chunks are processed
+     */
+    public MappedRainfallFileReader(Path path, int chunkSize, ForkJoinPool pool) {
+        if(chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE)
+            throw new IllegalArgumentException("Chunk size should be between 1 and " + MAX_CHUNK_SIZE + " but was " + chunkSize);
+        this.path = path;
+        this.chunkSize = chunkSize;
+        this.pool = pool;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * This method reads the whole file, calling a handler created by the handlerFactory for each chunk.
+     *
+     * @param handlerFactory - Factory for the per chunk handlers
+     * @return - Handlers in file order, one per chunk
+     */
+    public <H extends RainfallLineHandler> List<H> read(Supplier<H> handlerFactory) {
+        return read(handlerFactory, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * This method reads a byte range of the file, calling a handler created by the handlerFactory for each chunk. The range should start and end on
+     * line boundaries, see nextLineStart().
+     *
+     * @param handlerFactory - Factory for the per chunk handlers
+     * @param from - Offset of the first byte to read
+     * @param to - Offset after the last byte to read, it is capped to the file size
+     * @return - Handlers in file order, one per chunk
+     */
+    public <H extends RainfallLineHandler> List<H> read(Supplier<H> handlerFactory, long from, long to) {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] bounds = splitIntoChunks(channel, from, Math.min(to, channel.size()));
+            Object[] handlers = new Object[bounds.length - 1];
+            if(handlers.length > 0)
+                pool.invoke(new ChunkTask(channel, bounds, 0, handlers.length, handlerFactory, handlers));
+            log.fine("Read " + path + " in " + handlers.length + " chunks");
+
+            List<H> result = new ArrayList<>(handlers.length);
+            for(Object handler : handlers) {
+                @SuppressWarnings("unchecked")
+                H h = (H) handler;
+                result.add(h);
+            }
+            return result;
+        } catch (IOException e) {
+            log.log(Level.SEVERE, "Error occurred while reading " + path, e);
+            throw new RuntimeException("Error occurred while reading " + path, e);
+        }
+    }
+
+    /**
+     * This method reads and parses the whole file, calling a record handler created by the handlerFactory for each chunk. Lines that are not valid
+     * records, like the header, are skipped.
+     *
+     * @param handlerFactory - Factory for the per chunk handlers
+     * @return - Handlers in file order, one per chunk
+     */
+    @Override
+    public <H extends RainfallRecordHandler> List<H> scan(Supplier<H> handlerFactory) {
+        return scan(handlerFactory, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * This method reads and parses a byte range of the file. The range should start and end on line boundaries, see nextLineStart().
+     *
+     * @param handlerFactory - Factory for the per chunk handlers
+     * @param from - Offset of the first byte to read
+     * @param to - Offset after the last byte to read, it is capped to the file size
+     * @return - Handlers in file order, one per chunk
+     */
+    public <H extends RainfallRecordHandler> List<H> scan(Supplier<H> handlerFactory, long from, long to) {
+        List<ParsingLineHandler<H>> lineHandlers = read(() -> new ParsingLineHandler<>(handlerFactory.get()), from, to);
+        List<H> result = new ArrayList<>(lineHandlers.size());
+        for(ParsingLineHandler<H> lineHandler : lineHandlers)
+            result.add(lineHandler.delegate);
+        return result;
+    }
+
+    /**
+     * This method returns the offset of the first line starting at or after the given offset.
+     *
+     * @param offset - Offset in the file
+     * @return - Offset of the line start, or the file size if there is no further line
+     */
+    public long nextLineStart(long offset) {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if(offset <= 0)
+                return 0;
+            if(offset >= size)
+                return size;
+            return nextLineStart(channel, offset - 1, size, ByteBuffer.allocate(BOUNDARY_PROBE_SIZE));
+        } catch (IOException e) {
+            throw new RuntimeException("Error occurred while reading " + path, e);
+        }
+    }
+
+    /**
+     * This method returns the offset right after the last line terminator in a byte range, so that a line that is still being appended to is left
+     * for later.
+     *
+     * @param from - Offset of the range start
+     * @param to - Offset of the range end, it is capped to the file size
+     * @return - Offset after the last complete line of the range, or from if the range holds no complete line
+     */
+    public long lastLineEnd(long from, long to) {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long end = Math.min(to, channel.size());
+            ByteBuffer probe = ByteBuffer.allocate(BOUNDARY_PROBE_SIZE);
+            while(end > from) {
+                long start = Math.max(from, end - BOUNDARY_PROBE_SIZE);
+                probe.clear();
+                probe.limit((int) (end - start));
+                int read = 0;
+                while(probe.hasRemaining()) {
+                    int count = channel.read(probe, start + read);
+                    if(count <= 0)
+                        break;
+                    read += count;
+                }
+                for(int i = read - 1; i >= 0; i--) {
+                    if(probe.get(i) == '\n')
+                        return start + i + 1;
+                }
+                end = start;
+            }
+            return from;
+        } catch (IOException e) {
+            throw new RuntimeException("Error occurred while reading " + path, e);
+        }
+    }
+
+    /**
+     * This method returns a RainfallSource scanning only a byte range of the file, like the lines appended since the last scan.
+     *
+     * @param from - Offset of the first byte, on a line boundary
+     * @param to - Offset after the last byte, on a line boundary
+     * @return - Source of the records of the range
+     */
+    public RainfallSource range(long from, long to) {
+        MappedRainfallFileReader reader = this;
+        return new RainfallSource() {
+            @Override
+            public <H extends RainfallRecordHandler> List<H> scan(Supplier<H> handlerFactory) {
+                return reader.scan(handlerFactory, from, to);
+            }
+
+            @Override
+            public String toString() {
+                return path + "[" + from + ", " + to + ")";
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+
+    /**
+     * This method computes the chunk boundaries. Each boundary other than the first and the last sits right after a line terminator.
+     *
+     * @param channel - Channel of the file
+     * @param from - Offset of the range start
+     * @param size - Offset of the range end
+     * @return - Array of n + 1 offsets for n chunks
+     * @throws IOException
+     */
+    private long[] splitIntoChunks(FileChannel channel, long from, long size) throws IOException {
+        long[] bounds = new long[16];
+        int count = 0;
+        bounds[count++] = from;
+
+        ByteBuffer probe = ByteBuffer.allocate(BOUNDARY_PROBE_SIZE);
+        long start = from;
+        while(size - start > chunkSize) {
+            long boundary = nextLineStart(channel, start + chunkSize, size, probe);
+            if(boundary >= size)
+                break;
+            if(count == bounds.length)
+                bounds = Arrays.copyOf(bounds, count * 2);
+            bounds[count++] = boundary;
+            start = boundary;
+        }
+        if(size > from) {
+            if(count == bounds.length)
+                bounds = Arrays.copyOf(bounds, count + 1);
+            bounds[count++] = size;
+        }
+        return Arrays.copyOf(bounds, count);
+    }
+
+    private long nextLineStart(FileChannel channel, long from, long size, ByteBuffer probe) throws IOException {
+        long position = from;
+        while(position < size) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            if(read <= 0)
+                break;
+            for(int i = 0; i < read; i++) {
+                if(probe.get(i) == '\n')
+                    return position + i + 1;
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * This method calls the handler for each non empty line in the range, stripping the line terminator (LF or CRLF). A last line without terminator
+     * is also handed over.
+     *
+     * @param buffer - Buffer holding the lines
+     * @param from - First byte of the range
+     * @param to - Byte after the range
+     * @param handler - Line handler
+     */
+    public static void forEachLine(ByteBuffer buffer, int from, int to, RainfallLineHandler handler) {
+        int lineStart = from;
+        for(int i = from; i < to; i++) {
+            if(buffer.get(i) == '\n') {
+                handleLine(buffer, lineStart, i, handler);
+                lineStart = i + 1;
+            }
+        }
+        if(lineStart < to)
+            handleLine(buffer, lineStart, to, handler);
+    }
+
+    private static void handleLine(ByteBuffer buffer, int start, int end, RainfallLineHandler handler) {
+        if(end > start && buffer.get(end - 1) == '\r')
+            end--;
+        if(end > start)
+            handler.onLine(buffer, start, end);
+    }
+
+    /**
+     * This method decodes a line into a String. Use it only where the String form is really needed, as it allocates.
+     *
+     * @param buffer - Buffer holding the line
+     * @param start - First byte of the line
+     * @param end - Byte after the line
+     * @return - Line as String
+     */
+    public static String decodeLine(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for(int i = 0; i < bytes.length; i++)
+            bytes[i] = buffer.get(start + i);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Line handler that parses every line into its own cursor and passes the valid records on. The key filter of the record handler is pushed down
+     * into the parser, so the lines it rejects are dropped on their raw bytes.
+     *
+     * The handler counts the lines of its chunk in plain fields and times one line in PipelineMetrics.SAMPLED_LINES, then publishes the chunk to the
+     * PipelineMetrics once it is read.
+     */
+    static class ParsingLineHandler<H extends RainfallRecordHandler> implements RainfallLineHandler {
+        private static final int SAMPLE_MASK = PipelineMetrics.SAMPLED_LINES - 1;
+
+        private final RainfallRecordCursor cursor = new RainfallRecordCursor();
+        private final H delegate;
+        private final CountingKeyFilter keyFilter;
+        private long lines = 0;
+        private long records = 0;
+        private long sampledLines = 0;
+        private long sampledParseNanos = 0;
+        private long sampledRecordNanos = 0;
+
+        ParsingLineHandler(H delegate) {
+            this.delegate = delegate;
+            RainfallKeyFilter filter = delegate.getKeyFilter();
+            this.keyFilter = filter == null ? null : new CountingKeyFilter(filter);
+        }
+
+        @Override
+        public void onLine(ByteBuffer buffer, int start, int end) {
+            if((lines++ & SAMPLE_MASK) != 0) {
+                if(RainfallRecordParser.parse(buffer, start, end, cursor, keyFilter)) {
+                    records++;
+                    delegate.onRecord(cursor);
+                }
+                return;
+            }
+
+            long started = System.nanoTime();
+            boolean valid = RainfallRecordParser.parse(buffer, start, end, cursor, keyFilter);
+            long parsed = System.nanoTime();
+            if(valid) {
+                records++;
+                delegate.onRecord(cursor);
+            }
+            sampledRecordNanos += System.nanoTime() - parsed;
+            sampledParseNanos += parsed - started;
+            sampledLines++;
+        }
+
+        /**
+         * This method adds the counts of the chunk to the PipelineMetrics, then lets the record handler publish its own. The time of the chunk is
+         * split between the parse and aggregate stages in the proportions of the sampled lines, the rest of it is the read stage.
+         *
+         * @param nanos - Time spent on the chunk, reading included
+         * @param bytes - Size of the chunk
+         */
+        void publish(long nanos, long bytes) {
+            PipelineMetrics metrics = PipelineMetrics.get();
+            long rejected = 0;
+            if(keyFilter != null) {
+                metrics.addRejectedByContext(keyFilter.byContext);
+                metrics.addRejected(keyFilter.byStations, keyFilter.byDays, keyFilter.byHours, 0);
+                rejected = keyFilter.byContext + keyFilter.byStations + keyFilter.byDays + keyFilter.byHours;
+            }
+            metrics.addLines(lines, bytes, records, lines - records - rejected);
+            delegate.onPartScanned();
+
+            long parseNanos = 0, recordNanos = 0;
+            if(sampledLines > 0) {
+                long timerNanos = sampledLines * metrics.getTimerNanos();
+                double scale = (double) lines / sampledLines;
+                parseNanos = Math.min(nanos, (long) (Math.max(0, sampledParseNanos - timerNanos) * scale));
+                recordNanos = Math.min(nanos - parseNanos, (long) (Math.max(0, sampledRecordNanos - timerNanos) * scale));
+            }
+            metrics.readStage().add(nanos - parseNanos - recordNanos, bytes);
+            metrics.parseStage().add(parseNanos, lines);
+            metrics.aggregateStage().add(recordNanos, records);
+        }
+    }
+
+    /**
+     * Key filter counting the lines rejected on every key field, for the chunk of a ParsingLineHandler. The WBANs that are not linked to the Context
+     * Data are counted apart from the ones outside the stations of the filter.
+     */
+    private static class CountingKeyFilter implements RainfallKeyFilter {
+        private final RainfallKeyFilter filter;
+        private long byContext = 0;
+        private long byStations = 0;
+        private long byDays = 0;
+        private long byHours = 0;
+
+        CountingKeyFilter(RainfallKeyFilter filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean acceptWban(int wbanId) {
+            if(filter.acceptWban(wbanId))
+                return true;
+            if(filter.isLinkedWban(wbanId))
+                byStations++;
+            else
+                byContext++;
+            return false;
+        }
+
+        @Override
+        public boolean acceptDay(int yearMonthDay) {
+            if(filter.acceptDay(yearMonthDay))
+                return true;
+            byDays++;
+            return false;
+        }
+
+        @Override
+        public boolean acceptHour(int hour) {
+            if(filter.acceptHour(hour))
+                return true;
+            byHours++;
+            return false;
+        }
+    }
+
+    /**
+     * Fork-join task that splits the chunk range in halves until a single chunk is left, which is then mapped and read.
+     */
+    private static class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long[] bounds;
+        private final int lo;
+        private final int hi;
+        private final Supplier<? extends RainfallLineHandler> handlerFactory;
+        private final Object[] handlers;
+
+        ChunkTask(FileChannel channel, long[] bounds, int lo, int hi, Supplier<? extends RainfallLineHandler> handlerFactory, Object[] handlers) {
+            this.channel = channel;
+            this.bounds = bounds;
+            this.lo = lo;
+            this.hi = hi;
+            this.handlerFactory = handlerFactory;
+            this.handlers = handlers;
+        }
+
+        @Override
+        protected void compute() {
+            if(hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new ChunkTask(channel, bounds, lo, mid, handlerFactory, handlers),
+                        new ChunkTask(channel, bounds, mid, hi, handlerFactory, handlers));
+                return;
+            }
+            long start = bounds[lo];
+            int length = (int) (bounds[lo + 1] - start);
+            RainfallLineHandler handler = handlerFactory.get();
+            try {
+                long started = System.nanoTime();
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                forEachLine(buffer, 0, length, handler);
+                if(handler instanceof ParsingLineHandler)
+                    ((ParsingLineHandler<?>) handler).publish(System.nanoTime() - started, length);
+            } catch (IOException e) {
+                throw new RuntimeException("Error occurred while mapping chunk at offset " + start, e);
+            }
+            handlers[lo] = handler;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package org.vm.evarianttest.reader;
+
+/**
+ * This interface defines a filter on the key fields of a rainfall record (Wban, YearMonthDay and Hour) that the text reader pushes down into the
+ * parser. The fields are checked on the raw line bytes one after the other, as soon as each of them is parsed, so a line rejected on its WBAN costs a
+ * scan of its first field and the rest of it is never parsed.
+ *
+ * The methods are called in field order for one line at a time, from the thread processing the chunk. They must not keep state across lines, as a
+ * source that cannot filter before parsing, like the columnar store, does not call them.
+ *
+ * @author vivekm
+ * @since 1.0
+ * @see RainfallRecordHandler#getKeyFilter()
+ */
+public interface RainfallKeyFilter {
+    /**
+     * @param wbanId - Numeric WBAN id
+     * @return - false if no record of the WBAN is needed
+     */
+    public default boolean acceptWban(int wbanId) {
+        return true;
+    }
+
+    /**
+     * @param yearMonthDay - Date as a yyyymmdd number
+     * @return - false if no record of the day is needed
+     */
+    public default boolean acceptDay(int yearMonthDay) {
+        return true;
+    }
+
+    /**
+     * @param hour - Hour of the day
+     * @return - false if no record of the hour is needed
+     */
+    public default boolean acceptHour(int hour) {
+        return true;
+    }
+
+    /**
+     * This method tells a WBAN the filter does not know from one it filters out, so the two are counted apart. It is only called for a rejected WBAN.
+     *
+     * @param wbanId - Numeric WBAN id
+     * @return - false if the WBAN is not linked to the Context Data the handler reads
+     */
+    public default boolean isLinkedWban(int wbanId) {
+        return true;
+    }
+}
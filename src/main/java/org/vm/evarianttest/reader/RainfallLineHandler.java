@@ -0,0 +1,24 @@
+package org.vm.evarianttest.reader;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This interface defines the callback used by the rainfall readers to hand over one line of the QCLCD file at a time. The line is passed as a byte range
+ * of the underlying buffer (without the line terminator) so that no String has to be decoded for lines that are not used.
+ *
+ * A handler instance is created per chunk and is only ever called from the thread processing that chunk.
+ *
+ * @author vivekm
+ * @since 1.0
+ * @see MappedRainfallFileReader
+ */
+public interface RainfallLineHandler {
+    /**
+     * This method is called for every non empty line of a chunk, in file order.
+     *
+     * @param buffer - Buffer holding the chunk
+     * @param start - Index of the first byte of the line
+     * @param end - Index after the last byte of the line, excluding the line terminator
+     */
+    public void onLine(ByteBuffer buffer, int start, int end);
+}
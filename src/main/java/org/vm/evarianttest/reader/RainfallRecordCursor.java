@@ -0,0 +1,111 @@
+package org.vm.evarianttest.reader;
+
+/**
+ * This class is a mutable view of one QCLCD rainfall record, holding the fields in primitive form. A cursor is reused for every line of a chunk, so
+ * reading a record does not allocate anything. It is the allocation free counterpart of WBANRainfallRecord and must not be shared between threads.
+ *
+ * Field formats:
+ *  wbanId - numeric WBAN id, 00230 is held as 230
+ *  yearMonthDay - date as a yyyymmdd number, 20150501
+ *  hour - hour of the day as found in the file
+ *  precipitation - decimal amount held as unscaled digits and number of decimals, 0.13 is held as 13 and 2. Blank and trace amounts are 0.
+ *  flag - first character of the PrecipitationFlag in upper case, 0 when blank
+ *
+ * @author vivekm
+ * @since 1.0
+ * @see RainfallRecordParser
+ * @see org.vm.evarianttest.entity.weather.WBANRainfallRecord
+ */
+public final class RainfallRecordCursor {
+    public static final byte NO_FLAG = 0;
+
+    /** Number of decimals of the fixed-point precipitation, amounts are held in thousandths of an inch */
+    public static final int PRECIPITATION_SCALE = 3;
+
+    private static final long[] LONG_POWERS_OF_TEN = {1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L, 10000000000L,
+            100000000000L, 1000000000000L, 10000000000000L, 100000000000000L, 1000000000000000L, 10000000000000000L, 100000000000000000L, 1000000000000000000L};
+    private static final double[] POWERS_OF_TEN = {1d, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18};
+
+    int wbanId;
+    int yearMonthDay;
+    int hour;
+    long precipitationDigits;
+    int precipitationDecimals;
+    boolean trace;
+    byte flag;
+
+    public int getWbanId() {
+        return wbanId;
+    }
+
+    public int getYearMonthDay() {
+        return yearMonthDay;
+    }
+
+    public int getHour() {
+        return hour;
+    }
+
+    /**
+     * This method returns the precipitation amount in inches. It gives the same value as Double.parseDouble() on the original text.
+     *
+     * @return - Precipitation, 0 for blank and trace amounts
+     */
+    public double getPrecipitation() {
+        if(precipitationDecimals == 0)
+            return precipitationDigits;
+        return precipitationDigits / POWERS_OF_TEN[precipitationDecimals];
+    }
+
+    /**
+     * This method returns the precipitation amount as a fixed-point number of thousandths of an inch. Amounts with more decimals than that are rounded
+     * half up, which does not happen with QCLCD data as it is reported in hundredths.
+     *
+     * @return - Precipitation in thousandths of an inch, 0 for blank and trace amounts
+     */
+    public long getScaledPrecipitation() {
+        int decimals = precipitationDecimals;
+        long digits = precipitationDigits;
+        if(decimals == PRECIPITATION_SCALE)
+            return digits;
+        if(decimals < PRECIPITATION_SCALE)
+            return digits * LONG_POWERS_OF_TEN[PRECIPITATION_SCALE - decimals];
+        long divisor = LONG_POWERS_OF_TEN[decimals - PRECIPITATION_SCALE];
+        long half = digits < 0 ? -divisor / 2 : divisor / 2;
+        return (digits + half) / divisor;
+    }
+
+    public boolean isTrace() {
+        return trace;
+    }
+
+    public byte getFlag() {
+        return flag;
+    }
+
+    /**
+     * This method sets all the fields at once. It is used by sources that do not parse text.
+     */
+    public void set(int wbanId, int yearMonthDay, int hour, long precipitationDigits, int precipitationDecimals, boolean trace, byte flag) {
+        this.wbanId = wbanId;
+        this.yearMonthDay = yearMonthDay;
+        this.hour = hour;
+        this.precipitationDigits = precipitationDigits;
+        this.precipitationDecimals = precipitationDecimals;
+        this.trace = trace;
+        this.flag = flag;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("RainfallRecordCursor{");
+        sb.append("wbanId=").append(wbanId);
+        sb.append(", yearMonthDay=").append(yearMonthDay);
+        sb.append(", hour=").append(hour);
+        sb.append(", precipitation=").append(getPrecipitation());
+        sb.append(", trace=").append(trace);
+        sb.append(", flag=").append(flag == NO_FLAG ? "" : String.valueOf((char) flag));
+        sb.append('}');
+        return sb.toString();
+    }
+}
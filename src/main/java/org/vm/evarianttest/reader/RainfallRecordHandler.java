@@ -0,0 +1,37 @@
+package org.vm.evarianttest.reader;
+
+/**
+ * This interface defines the callback used to hand over parsed rainfall records. The cursor is reused for the next record, so implementations should
+ * copy out the fields they need and never keep a reference to it.
+ *
+ * A handler instance is created per chunk and is only ever called from the thread processing that chunk.
+ *
+ * @author vivekm
+ * @since 1.0
+ * @see RainfallRecordCursor
+ */
+public interface RainfallRecordHandler {
+    /**
+     * This method is called for every valid record, in file order within a chunk.
+     *
+     * @param cursor - Current record
+     */
+    public void onRecord(RainfallRecordCursor cursor);
+
+    /**
+     * This method is called once the part of the handler is scanned, from the thread that scanned it, so the handler can publish what it counted in
+     * plain fields to the PipelineMetrics.
+     */
+    public default void onPartScanned() {
+    }
+
+    /**
+     * This method returns the filter that a source may apply to the key fields of a line before parsing the rest of it. The handler must still ignore
+     * the records the filter rejects on its own, because not every source filters before handing the records over.
+     *
+     * @return - Key filter, or null if the handler needs every record
+     */
+    public default RainfallKeyFilter getKeyFilter() {
+        return null;
+    }
+}
@@ -0,0 +1,219 @@
+package org.vm.evarianttest.reader;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class parses the QCLCD rainfall lines (Wban,YearMonthDay,Hour,Precipitation,PrecipitationFlag) straight from the bytes into a
+ * RainfallRecordCursor. It gives the same values as WBANRainfallRecord.build() without splitting the line, cleaning Strings or creating objects:
+ *  - blank spaces and double quotes around a field are skipped
+ *  - a blank precipitation or one containing the trace indicator "T" is 0
+ *  - the flag is upper cased
+ *
+ * Lines that cannot be parsed, like the file header or a WBAN that is not numeric, are rejected instead of failing the whole file.
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+public final class RainfallRecordParser {
+    /** WBAN ids have 5 digits, so arrays of this size can be indexed by the numeric WBAN id */
+    public static final int WBAN_ID_LIMIT = 100000;
+
+    /** Hours are 2 digit numbers, anything larger is a malformed line */
+    public static final int MAX_HOUR = 99;
+
+    private static final int MAX_INT_DIGITS = 9;
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private RainfallRecordParser() {
+    }
+
+    /**
+     * This method parses one line into the cursor.
+     *
+     * @param buffer - Buffer holding the line
+     * @param start - First byte of the line
+     * @param end - Byte after the line, excluding the line terminator
+     * @param cursor - Cursor to fill
+     * @return - true if the line is a valid record, false otherwise. The cursor content is undefined when false.
+     */
+    public static boolean parse(ByteBuffer buffer, int start, int end, RainfallRecordCursor cursor) {
+        return parse(buffer, start, end, cursor, null);
+    }
+
+    /**
+     * This method parses one line into the cursor, checking every key field against the filter as soon as it is parsed. The fields after the first
+     * rejected one are not parsed.
+     *
+     * @param buffer - Buffer holding the line
+     * @param start - First byte of the line
+     * @param end - Byte after the line, excluding the line terminator
+     * @param cursor - Cursor to fill
+     * @param filter - Key filter, or null to accept every valid record
+     * @return - true if the line is a valid record accepted by the filter, false otherwise. The cursor content is undefined when false.
+     */
+    public static boolean parse(ByteBuffer buffer, int start, int end, RainfallRecordCursor cursor, RainfallKeyFilter filter) {
+        int wbanEnd = indexOfComma(buffer, start, end);
+        if(wbanEnd < 0)
+            return false;
+        int wbanId = parseInt(buffer, start, wbanEnd);
+        if(wbanId < 0 || (filter != null && !filter.acceptWban(wbanId)))
+            return false;
+
+        int dateStart = wbanEnd + 1;
+        int dateEnd = indexOfComma(buffer, dateStart, end);
+        if(dateEnd < 0)
+            return false;
+        int yearMonthDay = parseInt(buffer, dateStart, dateEnd);
+        if(yearMonthDay < 0 || (filter != null && !filter.acceptDay(yearMonthDay)))
+            return false;
+
+        int hourStart = dateEnd + 1;
+        int hourEnd = indexOfComma(buffer, hourStart, end);
+        if(hourEnd < 0)
+            return false;
+        int hour = parseInt(buffer, hourStart, hourEnd);
+        if(hour < 0 || hour > MAX_HOUR || (filter != null && !filter.acceptHour(hour)))
+            return false;
+
+        cursor.wbanId = wbanId;
+        cursor.yearMonthDay = yearMonthDay;
+        cursor.hour = hour;
+        return parseAmountAndFlag(buffer, hourEnd + 1, end, cursor);
+    }
+
+    /**
+     * This method parses the Precipitation and PrecipitationFlag fields into the cursor.
+     */
+    private static boolean parseAmountAndFlag(ByteBuffer buffer, int amountStart, int end, RainfallRecordCursor cursor) {
+        int amountEnd = indexOfComma(buffer, amountStart, end);
+        int flagStart = amountEnd + 1;
+        if(amountEnd < 0) {
+            amountEnd = end;
+            flagStart = end;
+        }
+        if(!parseAmount(buffer, amountStart, amountEnd, cursor))
+            return false;
+
+        int flagEnd = indexOfComma(buffer, flagStart, end);
+        if(flagEnd < 0)
+            flagEnd = end;
+        cursor.flag = RainfallRecordCursor.NO_FLAG;
+        for(int i = flagStart; i < flagEnd; i++) {
+            byte b = buffer.get(i);
+            if(!isSkippable(b)) {
+                cursor.flag = (b >= 'a' && b <= 'z') ? (byte) (b - ('a' - 'A')) : b;
+                break;
+            }
+        }
+        return true;
+    }
+
+    private static boolean parseAmount(ByteBuffer buffer, int from, int to, RainfallRecordCursor cursor) {
+        while(from < to && isSkippable(buffer.get(from)))
+            from++;
+        while(to > from && isSkippable(buffer.get(to - 1)))
+            to--;
+
+        cursor.precipitationDigits = 0;
+        cursor.precipitationDecimals = 0;
+        cursor.trace = false;
+        if(from == to)
+            return true;
+
+        for(int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if(b == 'T' || b == 't') {
+                cursor.trace = true;
+                return true;
+            }
+        }
+
+        boolean negative = false;
+        byte first = buffer.get(from);
+        if(first == '-' || first == '+') {
+            negative = first == '-';
+            from++;
+        }
+
+        long digits = 0;
+        int digitCount = 0;
+        int decimals = 0;
+        boolean seenPoint = false;
+        for(int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if(b >= '0' && b <= '9') {
+                if(++digitCount > MAX_LONG_DIGITS)
+                    return false;
+                digits = digits * 10 + (b - '0');
+                if(seenPoint)
+                    decimals++;
+            } else if(b == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                return false;
+            }
+        }
+        if(digitCount == 0)
+            return false;
+        cursor.precipitationDigits = negative ? -digits : digits;
+        cursor.precipitationDecimals = decimals;
+        return true;
+    }
+
+    /**
+     * This method parses a non negative integer field, skipping blank spaces and double quotes around it.
+     *
+     * @return - Value, or -1 if the field is empty or not numeric
+     */
+    static int parseInt(ByteBuffer buffer, int from, int to) {
+        while(from < to && isSkippable(buffer.get(from)))
+            from++;
+        while(to > from && isSkippable(buffer.get(to - 1)))
+            to--;
+        if(from == to || to - from > MAX_INT_DIGITS)
+            return -1;
+
+        int value = 0;
+        for(int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if(b < '0' || b > '9')
+                return -1;
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    static int indexOfComma(ByteBuffer buffer, int from, int to) {
+        for(int i = from; i < to; i++) {
+            if(buffer.get(i) == ',')
+                return i;
+        }
+        return -1;
+    }
+
+    private static boolean isSkippable(byte b) {
+        return b == ' ' || b == '"' || b == '\t';
+    }
+
+    /**
+     * This method returns the numeric id of a WBAN as used by the cursor, for building lookup arrays from the WBAN keys of the context data.
+     *
+     * @param wbanId - WBAN id like 00230
+     * @return - Numeric id, or -1 if the id is not a WBAN_ID_LIMIT bound number
+     */
+    public static int parseWbanId(String wbanId) {
+        if(wbanId == null)
+            return -1;
+        String trimmed = wbanId.trim();
+        if(trimmed.isEmpty() || trimmed.length() > MAX_INT_DIGITS)
+            return -1;
+        int value = 0;
+        for(int i = 0; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+            if(c < '0' || c > '9')
+                return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value < WBAN_ID_LIMIT ? value : -1;
+    }
+}
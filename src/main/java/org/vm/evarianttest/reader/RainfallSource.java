@@ -0,0 +1,28 @@
+package org.vm.evarianttest.reader;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * This interface defines a source of rainfall records that can be scanned in parallel, like a QCLCD text file or an in-memory store. It is the input
+ * of the calculators, so they work the same way whatever the physical form of the dataset is.
+ *
+ * Example usage:
+ *
+ * RainfallSource source = new MappedRainfallFileReader(path);
+ * List handlers = source.scan(() -> new XXXRecordHandler());
+ *
+ * @author vivekm
+ * @since 1.0
+ * @see RainfallRecordHandler
+ */
+public interface RainfallSource {
+    /**
+     * This method scans all the records of the source. The records are split into parts processed in parallel, and every part gets its own handler
+     * from the handlerFactory.
+     *
+     * @param handlerFactory - Factory for the per part handlers
+     * @return - Handlers in source order, one per part
+     */
+    public <H extends RainfallRecordHandler> List<H> scan(Supplier<H> handlerFactory);
+}
@@ -0,0 +1,308 @@
+package org.vm.evarianttest.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.vm.evarianttest.calc.PopulationWetnessCalculator;
+import org.vm.evarianttest.entity.Entity;
+import org.vm.evarianttest.entity.Key;
+import org.vm.evarianttest.entity.census.USAStatAreaPopulationRecord;
+import org.vm.evarianttest.entity.census.USAState;
+import org.vm.evarianttest.entity.census.USAStatisticalAreaType;
+import org.vm.evarianttest.filters.RainfallFilterSpec;
+import org.vm.evarianttest.loader.Constants;
+import org.vm.evarianttest.precipitationcalc.RainFallStatsCalculator;
+import org.vm.evarianttest.query.RainfallTimeRangeIndex;
+import org.vm.evarianttest.query.TimeWindow;
+import org.vm.evarianttest.reader.RainfallRecordCursor;
+import org.vm.evarianttest.reader.RainfallRecordParser;
+import org.vm.evarianttest.util.Util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class implements a long running query server over the loaded Context Data and the prefix sum index of a rainfall dataset. The context is
+ * linked and the dataset indexed once at start up, and every query is then answered from memory over HTTP/JSON, without reading a file. The server
+ * only listens on the loopback address.
+ *
+ * Queries (GET), with an optional window of from and to days as yyyymmdd numbers and hours like 8-23 or 0,12. The days and hours that are left out
+ * are those of the filter of the statistic, like May 2015 after 7 AM for the Population Wetness, and every day and hour for a station:
+ *  /wetness?from=20150501&to=20150531&hours=8-23&k=10 - Population Wetness by MSA, ranked, the top k only if k is given
+ *  /rainfall/state?from=20150501&to=20150507&k=5 - Rainfall by State, ranked
+ *  /station?wban=03013&from=20150501&to=20150531 - Rainfall of a station
+ *
+ * Example usage:
+ *
+ * RainfallQueryServer server = new RainfallQueryServer(calc, calc.buildTimeRangeIndex(file), 8080, 4);
+ * server.start();
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+public class RainfallQueryServer {
+    /** Every day and hour */
+    private static final TimeWindow ALL_DAYS = TimeWindow.days(0, Integer.MAX_VALUE);
+
+    private Logger log = Logger.getLogger(this.getClass().getName());
+
+    private final RainFallStatsCalculator calc;
+    private final RainfallTimeRangeIndex index;
+    private final HttpServer server;
+    private final ExecutorService workers;
+
+    /**
+     * Constructor
+     *
+     * @param calc - Calculator with the Context Data loaded
+     * @param index - Index of the rainfall dataset
+     * @param port - Port on the loopback address, 0 for any free port
+     * @param workerCount - Number of threads answering the queries
+     * @throws IOException - If the port cannot be bound
+     */
+    public RainfallQueryServer(RainFallStatsCalculator calc, RainfallTimeRangeIndex index, int port, int workerCount) throws IOException {
+        if(workerCount <= 0)
+            throw new IllegalArgumentException("Worker count should be positive but was " + workerCount);
+        this.calc = calc;
+        this.index = index;
+        this.workers = Executors.newFixedThreadPool(workerCount);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.setExecutor(workers);
+        this.server.createContext("/wetness", new QueryHandler() {
+            @Override
+            String answer(Map<String, String> params) {
+                RainfallFilterSpec filter = calc.getPopulationWetnessFilter();
+                TimeWindow window = window(params, (filter != null ? filter : RainfallFilterSpec.parse(PopulationWetnessCalculator.DEFAULT_FILTER)).toTimeWindow());
+                return ranking(calc.calculatePopulationWetnessByMSA(index, window, null), window, params, true);
+            }
+        });
+        this.server.createContext("/rainfall/state", new QueryHandler() {
+            @Override
+            String answer(Map<String, String> params) {
+                RainfallFilterSpec filter = calc.getRainfallByStateFilter();
+                TimeWindow window = window(params, filter != null ? filter.toTimeWindow() : ALL_DAYS);
+                return ranking(calc.calculateRainfallByState(index, window, null), window, params, false);
+            }
+        });
+        this.server.createContext("/station", new QueryHandler() {
+            @Override
+            String answer(Map<String, String> params) {
+                return station(params);
+            }
+        });
+    }
+
+    public void start() {
+        server.start();
+        log.info("Answering rainfall queries on http://" + server.getAddress().getHostString() + ":" + getPort());
+    }
+
+    /**
+     * This method stops accepting queries, waiting up to a second for the ones being answered.
+     */
+    public void stop() {
+        server.stop(1);
+        workers.shutdown();
+    }
+
+    /**
+     * @return - Port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private String ranking(Map<Key, BigDecimal> result, TimeWindow window, Map<String, String> params, boolean statAreas) {
+        int k = params.containsKey("k") ? parseInt(params, "k") : result.size();
+        Map<Key, Entity> statAreaMap = statAreas ? calc.getResult().get(Constants.STAT_AREA_MAP_NAME) : null;
+
+        StringBuilder json = new StringBuilder("{\"window\":");
+        appendWindow(json, window);
+        json.append(",\"results\":[");
+        boolean isFirst = true;
+        for(Map.Entry<Key, BigDecimal> entry : Util.topByValue(result, k)) {
+            String key = String.valueOf(entry.getKey().getKey());
+            String name = statAreas ? areaName(statAreaMap, entry.getKey()) : stateName(key);
+            json.append(isFirst ? "" : ",").append("{\"key\":");
+            appendString(json, key);
+            json.append(",\"name\":");
+            appendString(json, name);
+            json.append(",\"value\":").append(entry.getValue().toPlainString()).append('}');
+            isFirst = false;
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * @return - Name of the Statistical Area, or its key if it is not in the Context Data
+     */
+    private static String areaName(Map<Key, Entity> statAreaMap, Key key) {
+        Entity rec = statAreaMap == null ? null : statAreaMap.get(key);
+        return rec instanceof USAStatAreaPopulationRecord ? ((USAStatAreaPopulationRecord) rec).getArea().getName() : String.valueOf(key.getKey());
+    }
+
+    /**
+     * @return - Name of the State, or its abbreviation if it is not a known State
+     */
+    static String stateName(String abbreviation) {
+        USAState state = USAState.findByAbbreviation(abbreviation);
+        return state == null || state == USAState.UNKNOWN || state.getName() == null ? abbreviation : state.getName();
+    }
+
+    private String station(Map<String, String> params) {
+        String wban = params.get("wban");
+        int wbanId = RainfallRecordParser.parseWbanId(wban);
+        if(wbanId < 0)
+            throw new IllegalArgumentException("Invalid WBAN id " + wban);
+        TimeWindow window = window(params, ALL_DAYS);
+
+        StringBuilder json = new StringBuilder("{\"wban\":");
+        appendString(json, wban);
+        json.append(",\"window\":");
+        appendWindow(json, window);
+        json.append(",\"records\":").append(index.getCount(wbanId, window));
+        json.append(",\"value\":").append(BigDecimal.valueOf(index.getScaledTotal(wbanId, window), RainfallRecordCursor.PRECIPITATION_SCALE).toPlainString());
+        return json.append('}').toString();
+    }
+
+    /**
+     * This method reads the window of a query, taking the days and hours that are left out from the default window.
+     */
+    private static TimeWindow window(Map<String, String> params, TimeWindow defaults) {
+        int from = params.containsKey("from") ? parseInt(params, "from") : defaults.getFromDay();
+        int to = params.containsKey("to") ? parseInt(params, "to") : defaults.getToDay();
+        TimeWindow window = new TimeWindow(from, to, defaults.getHoursLow(), defaults.getHoursHigh());
+        if(params.containsKey("hours")) {
+            window = new TimeWindow(from, to, 0, 0);
+            for(String range : params.get("hours").split(",")) {
+                String[] bounds = range.trim().split("-");
+                try {
+                    window = window.plusHours(Integer.parseInt(bounds[0].trim()), Integer.parseInt(bounds[bounds.length - 1].trim()));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid hours " + range, e);
+                }
+            }
+        }
+        return window;
+    }
+
+    private static int parseInt(Map<String, String> params, String name) {
+        try {
+            return Integer.parseInt(params.get(name).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + " " + params.get(name), e);
+        }
+    }
+
+    private static void appendWindow(StringBuilder json, TimeWindow window) {
+        json.append("{\"from\":").append(window.getFromDay()).append(",\"to\":").append(window.getToDay())
+                .append(",\"hours\":\"").append(window.getHours()).append("\"}");
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(c == '"' || c == '\\')
+                json.append('\\').append(c);
+            else if(c < ' ')
+                json.append(String.format("\\u%04x", (int) c));
+            else
+                json.append(c);
+        }
+        json.append('"');
+    }
+
+    /**
+     * Handler of one kind of query, writing the JSON answer or the error with its HTTP status.
+     */
+    private abstract class QueryHandler implements HttpHandler {
+
+        abstract String answer(Map<String, String> params);
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            int status = 200;
+            String body;
+            try {
+                if(!"GET".equals(exchange.getRequestMethod())) {
+                    status = 405;
+                    body = error("Only GET is supported");
+                } else if(!exchange.getRequestURI().getPath().equals(exchange.getHttpContext().getPath())) {
+                    status = 404;
+                    body = error("Unknown query " + exchange.getRequestURI().getPath());
+                } else {
+                    body = answer(params(exchange.getRequestURI()));
+                }
+            } catch (IllegalArgumentException e) {
+                status = 400;
+                body = error(e.getMessage());
+            } catch (RuntimeException e) {
+                log.log(Level.SEVERE, "Error occurred while answering " + exchange.getRequestURI(), e);
+                status = 500;
+                body = error("Error occurred while answering the query");
+            }
+
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try(OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+
+        private String error(String message) {
+            StringBuilder json = new StringBuilder("{\"error\":");
+            appendString(json, String.valueOf(message));
+            return json.append('}').toString();
+        }
+
+        private Map<String, String> params(URI uri) throws UnsupportedEncodingException {
+            Map<String, String> params = new HashMap<>();
+            String query = uri.getRawQuery();
+            if(query == null)
+                return params;
+            for(String pair : query.split("&")) {
+                int equals = pair.indexOf('=');
+                if(equals > 0)
+                    params.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"), URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+            }
+            return params;
+        }
+    }
+
+    /**
+     * This method starts a server over the bundled datasets: [port] [worker count] [rainfall file].
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        int workerCount = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        URI rainfallFile = Paths.get(args.length > 2 ? args[2] : "./src/main/resources/201505precip.txt").toUri();
+
+        List<USAStatisticalAreaType> typeToLoad = new ArrayList<>();
+        typeToLoad.add(USAStatisticalAreaType.METROPOLITAN_STATISTICAL_AREA);
+        RainFallStatsCalculator calc = new RainFallStatsCalculator(Paths.get("./src/main/resources/CPH-T-5.xls").toAbsolutePath().toUri(),
+                Paths.get("./src/main/resources/MSA-County-Census-List1.xls").toUri(), Paths.get("./src/main/resources/wbanmasterlist.psv").toUri(),
+                Paths.get("./src/main/resources/201505station.txt").toUri(), typeToLoad);
+        calc.setSnapshotFile(Paths.get("./src/main/out/context.snapshot"));
+        calc.load();
+
+        new RainfallQueryServer(calc, calc.buildTimeRangeIndex(rainfallFile), port, workerCount).start();
+    }
+}
@@ -0,0 +1,288 @@
+package org.vm.evarianttest.store;
+
+import org.vm.evarianttest.reader.RainfallRecordCursor;
+import org.vm.evarianttest.reader.RainfallRecordHandler;
+import org.vm.evarianttest.reader.RainfallSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * This class implements an in-memory columnar (struct-of-arrays) store of a rainfall dataset. It is loaded once from any RainfallSource and can then be
+ * scanned by any number of calculators without reading or parsing the file again.
+ *
+ * Each record takes 14 bytes of heap, held in one primitive array per field:
+ *  wbanIds - numeric WBAN id
+ *  days - date as a yyyymmdd number
+ *  hours - hour of the day
+ *  precipitation - fixed-point amount in thousandths of an inch
+ *  flags - PrecipitationFlag character, with TRACE_BIT set for trace amounts
+ *
+ * Example usage:
+ *
+ * ColumnarRainfallStore store = ColumnarRainfallStore.load(new MappedRainfallFileReader(path));
+ * Map result = new PopulationWetnessCalculator(store, maps).calculate();
+ *
+ * @author vivekm
+ * @since 1.0
+ * @see RainfallSource
+ */
+public class ColumnarRainfallStore implements RainfallSource {
+    public static final byte TRACE_BIT = (byte) 0x80;
+    public static final int DEFAULT_SLICE_SIZE = 256 * 1024;
+
+    private static final int BYTES_PER_RECORD = 4 + 4 + 1 + 4 + 1;
+
+    private static Logger log = Logger.getLogger(ColumnarRainfallStore.class.getName());
+
+    private final int[] wbanIds;
+    private final int[] days;
+    private final byte[] hours;
+    private final int[] precipitation;
+    private final byte[] flags;
+    private final int size;
+    private final long rejectedCount;
+
+    private int sliceSize = DEFAULT_SLICE_SIZE;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    ColumnarRainfallStore(int[] wbanIds, int[] days, byte[] hours, int[] precipitation, byte[] flags, int size, long rejectedCount) {
+        this.wbanIds = wbanIds;
+        this.days = days;
+        this.hours = hours;
+        this.precipitation = precipitation;
+        this.flags = flags;
+        this.size = size;
+        this.rejectedCount = rejectedCount;
+    }
+
+    /**
+     * This method loads all the records of the source into a new store. The parts of the source are loaded in parallel and appended in source order.
+     * A record whose amount does not fit the int precipitation column is rejected and counted, like a malformed line, instead of failing the load.
+     *
+     * @param source - Rainfall dataset
+     * @return - Loaded store
+     */
+    public static ColumnarRainfallStore load(RainfallSource source) {
+        List<Builder> parts = source.scan(Builder::new);
+        int total = 0;
+        for(Builder part : parts)
+            total = Math.addExact(total, part.size);
+
+        Builder all = new Builder(total);
+        for(Builder part : parts)
+            all.append(part);
+        log.fine("Loaded " + total + " records from " + source + " into the columnar store");
+        if(all.rejected > 0)
+            log.warning("Rejected " + all.rejected + " records of " + source + " with an amount out of the range of the columnar store");
+        return all.build();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return - Records of the source left out of the store because their amount does not fit the precipitation column
+     */
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * This method returns the heap taken by the columns.
+     *
+     * @return - Size in bytes
+     */
+    public long getHeapSize() {
+        return (long) wbanIds.length * BYTES_PER_RECORD;
+    }
+
+    public int getWbanId(int row) {
+        return wbanIds[row];
+    }
+
+    public int getYearMonthDay(int row) {
+        return days[row];
+    }
+
+    public int getHour(int row) {
+        return hours[row];
+    }
+
+    public int getScaledPrecipitation(int row) {
+        return precipitation[row];
+    }
+
+    public byte getFlag(int row) {
+        return (byte) (flags[row] & ~TRACE_BIT);
+    }
+
+    public boolean isTrace(int row) {
+        return (flags[row] & TRACE_BIT) != 0;
+    }
+
+    /**
+     * This method sets how the rows are split for a parallel scan.
+     *
+     * @param sliceSize - Number of rows per handler
+     * @param pool - Fork-join pool on which the slices are scanned
+     */
+    public void setScanParallelism(int sliceSize, ForkJoinPool pool) {
+        if(sliceSize <= 0)
+            throw new IllegalArgumentException("Slice size should be positive but was " + sliceSize);
+        this.sliceSize = sliceSize;
+        this.pool = pool;
+    }
+
+    @Override
+    public <H extends RainfallRecordHandler> List<H> scan(Supplier<H> handlerFactory) {
+        int slices = Math.max(1, (size + sliceSize - 1) / sliceSize);
+        Object[] handlers = new Object[slices];
+        pool.invoke(new SliceTask(0, slices, handlerFactory, handlers));
+
+        List<H> result = new ArrayList<>(slices);
+        for(Object handler : handlers) {
+            @SuppressWarnings("unchecked")
+            H h = (H) handler;
+            result.add(h);
+        }
+        return result;
+    }
+
+    /**
+     * This method scans a range of rows into the handler, through a cursor that is filled from the columns.
+     *
+     * @param from - First row
+     * @param to - Row after the range
+     * @param handler - Record handler
+     */
+    public void scan(int from, int to, RainfallRecordHandler handler) {
+        RainfallRecordCursor cursor = new RainfallRecordCursor();
+        final int[] wbanIds = this.wbanIds;
+        final int[] days = this.days;
+        final byte[] hours = this.hours;
+        final int[] precipitation = this.precipitation;
+        final byte[] flags = this.flags;
+        for(int row = from; row < to; row++) {
+            byte flag = flags[row];
+            cursor.set(wbanIds[row], days[row], hours[row], precipitation[row], RainfallRecordCursor.PRECIPITATION_SCALE,
+                    (flag & TRACE_BIT) != 0, (byte) (flag & ~TRACE_BIT));
+            handler.onRecord(cursor);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnarRainfallStore{size=" + size + "}";
+    }
+
+    /**
+     * Fork-join task that splits the slice range in halves until a single slice is left, which is then scanned.
+     */
+    private class SliceTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int lo;
+        private final int hi;
+        private final Supplier<? extends RainfallRecordHandler> handlerFactory;
+        private final Object[] handlers;
+
+        SliceTask(int lo, int hi, Supplier<? extends RainfallRecordHandler> handlerFactory, Object[] handlers) {
+            this.lo = lo;
+            this.hi = hi;
+            this.handlerFactory = handlerFactory;
+            this.handlers = handlers;
+        }
+
+        @Override
+        protected void compute() {
+            if(hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new SliceTask(lo, mid, handlerFactory, handlers), new SliceTask(mid, hi, handlerFactory, handlers));
+                return;
+            }
+            RainfallRecordHandler handler = handlerFactory.get();
+            scan(lo * sliceSize, (int) Math.min(size, (long) (lo + 1) * sliceSize), handler);
+            handler.onPartScanned();
+            handlers[lo] = handler;
+        }
+    }
+
+    /**
+     * Record handler that appends the records to growable columns. One builder is used per part of the source while loading.
+     */
+    static class Builder implements RainfallRecordHandler {
+        private int[] wbanIds;
+        private int[] days;
+        private byte[] hours;
+        private int[] precipitation;
+        private byte[] flags;
+        private int size;
+        private long rejected;
+
+        Builder() {
+            this(1024);
+        }
+
+        Builder(int capacity) {
+            capacity = Math.max(capacity, 1);
+            wbanIds = new int[capacity];
+            days = new int[capacity];
+            hours = new byte[capacity];
+            precipitation = new int[capacity];
+            flags = new byte[capacity];
+        }
+
+        @Override
+        public void onRecord(RainfallRecordCursor cursor) {
+            long precipitation = cursor.getScaledPrecipitation();
+            if(precipitation < Integer.MIN_VALUE || precipitation > Integer.MAX_VALUE) {
+                rejected++;
+                return;
+            }
+            add(cursor.getWbanId(), cursor.getYearMonthDay(), cursor.getHour(), (int) precipitation,
+                    cursor.isTrace() ? (byte) (cursor.getFlag() | TRACE_BIT) : cursor.getFlag());
+        }
+
+        void add(int wbanId, int day, int hour, int scaledPrecipitation, byte flag) {
+            if(size == wbanIds.length)
+                grow(size * 2);
+            wbanIds[size] = wbanId;
+            days[size] = day;
+            hours[size] = (byte) hour;
+            precipitation[size] = scaledPrecipitation;
+            flags[size] = flag;
+            size++;
+        }
+
+        void append(Builder other) {
+            if(size + other.size > wbanIds.length)
+                grow(size + other.size);
+            System.arraycopy(other.wbanIds, 0, wbanIds, size, other.size);
+            System.arraycopy(other.days, 0, days, size, other.size);
+            System.arraycopy(other.hours, 0, hours, size, other.size);
+            System.arraycopy(other.precipitation, 0, precipitation, size, other.size);
+            System.arraycopy(other.flags, 0, flags, size, other.size);
+            size += other.size;
+            rejected += other.rejected;
+        }
+
+        private void grow(int capacity) {
+            wbanIds = Arrays.copyOf(wbanIds, capacity);
+            days = Arrays.copyOf(days, capacity);
+            hours = Arrays.copyOf(hours, capacity);
+            precipitation = Arrays.copyOf(precipitation, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+        }
+
+        ColumnarRainfallStore build() {
+            return new ColumnarRainfallStore(wbanIds, days, hours, precipitation, flags, size, rejected);
+        }
+    }
+}
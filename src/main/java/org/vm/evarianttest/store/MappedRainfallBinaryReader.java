@@ -0,0 +1,246 @@
+package org.vm.evarianttest.store;
+
+import org.vm.evarianttest.reader.RainfallKeyFilter;
+import org.vm.evarianttest.reader.RainfallRecordCursor;
+import org.vm.evarianttest.reader.RainfallRecordHandler;
+import org.vm.evarianttest.reader.RainfallSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class reads the compact binary rainfall files written by RainfallBinaryConverter. The records have a fixed size, so the file is cut into chunks
+ * of whole records without looking at the content, every chunk is memory-mapped on its own and decoded by a fork-join task straight into a cursor.
+ * Nothing is parsed and nothing is allocated per record.
+ *
+ * As with MappedRainfallFileReader, every chunk gets its own handler and the handlers are returned in file order.
+ *
+ * Example usage:
+ *
+ * RainfallSource source = new MappedRainfallBinaryReader(Paths.get("201505precip.rfb"));
+ * Map result = new PopulationWetnessCalculator(source, maps).calculate();
+ *
+ * @author vivekm
+ * @since 1.0
+ * @see RainfallBinaryFormat
+ */
+public class MappedRainfallBinaryReader implements RainfallSource {
+    public static final int DEFAULT_CHUNK_RECORDS = 1024 * 1024;
+
+    private Logger log = Logger.getLogger(this.getClass().getName());
+
+    private final Path path;
+    private final int chunkRecords;
+    private final ForkJoinPool pool;
+
+    private final int[] stations;
+    private final int[] days;
+    private final long recordCount;
+    private final long recordsOffset;
+    private final boolean dryRowsDropped;
+
+    /**
+     * Constructor using the default chunk size and the common fork-join pool.
+     *
+     * @param path - Path of the binary rainfall file
+     */
+    public MappedRainfallBinaryReader(Path path) {
+        this(path, DEFAULT_CHUNK_RECORDS, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor. The header is read and checked right away.
+     *
+     * @param path - Path of the binary rainfall file
+     * @param chunkRecords - Number of records per chunk
+     * @param pool - Fork-join pool on which the chunks are processed
+     */
+    public MappedRainfallBinaryReader(Path path, int chunkRecords, ForkJoinPool pool) {
+        if(chunkRecords <= 0 || chunkRecords > Integer.MAX_VALUE / RainfallBinaryFormat.RECORD_SIZE)
+            throw new IllegalArgumentException("Chunk size should be between 1 and " + Integer.MAX_VALUE / RainfallBinaryFormat.RECORD_SIZE + " but was " + chunkRecords);
+        this.path = path;
+        this.chunkRecords = chunkRecords;
+        this.pool = pool;
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer fixed = readFully(channel, 0, RainfallBinaryFormat.FIXED_HEADER_SIZE);
+            if(fixed.getInt() != RainfallBinaryFormat.MAGIC)
+                throw new IllegalArgumentException(path + " is not a binary rainfall file");
+            short version = fixed.getShort();
+            if(version != RainfallBinaryFormat.VERSION)
+                throw new IllegalArgumentException(path + " has unsupported version " + version);
+            dryRowsDropped = (fixed.getShort() & RainfallBinaryFormat.FLAG_DRY_ROWS_DROPPED) != 0;
+            recordCount = fixed.getLong();
+
+            long position = RainfallBinaryFormat.FIXED_HEADER_SIZE;
+            stations = readDictionary(channel, position);
+            position += 4 + 4L * stations.length;
+            days = readDictionary(channel, position);
+            recordsOffset = RainfallBinaryFormat.headerSize(stations.length, days.length);
+
+            long expected = recordsOffset + recordCount * RainfallBinaryFormat.RECORD_SIZE;
+            if(channel.size() != expected)
+                throw new IllegalArgumentException(path + " is truncated or corrupt, expected " + expected + " bytes but found " + channel.size());
+            if(dryRowsDropped)
+                log.info(path + " was converted without its dry rows, its record counts are lower than those of the text file");
+        } catch (IOException e) {
+            log.log(Level.SEVERE, "Error occurred while reading " + path, e);
+            throw new RuntimeException("Error occurred while reading " + path, e);
+        }
+    }
+
+    /**
+     * This method tells whether a file is a binary rainfall file, by looking at its magic number.
+     *
+     * @param path - Path of the file
+     * @return - true if the file starts with RainfallBinaryFormat.MAGIC
+     */
+    public static boolean isBinaryFile(Path path) {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if(channel.size() < RainfallBinaryFormat.FIXED_HEADER_SIZE)
+                return false;
+            return readFully(channel, 0, 4).getInt() == RainfallBinaryFormat.MAGIC;
+        } catch (IOException e) {
+            throw new RuntimeException("Error occurred while reading " + path, e);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * This method tells whether the rows without any rainfall, trace or flag were left out of the file. Aggregates are not affected, but counts of
+     * records are.
+     */
+    public boolean isDryRowsDropped() {
+        return dryRowsDropped;
+    }
+
+    @Override
+    public <H extends RainfallRecordHandler> List<H> scan(Supplier<H> handlerFactory) {
+        int chunks = (int) Math.max(1, (recordCount + chunkRecords - 1) / chunkRecords);
+        Object[] handlers = new Object[chunks];
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            pool.invoke(new ChunkTask(channel, 0, chunks, handlerFactory, handlers));
+        } catch (IOException e) {
+            log.log(Level.SEVERE, "Error occurred while reading " + path, e);
+            throw new RuntimeException("Error occurred while reading " + path, e);
+        }
+        log.fine("Read " + recordCount + " records of " + path + " in " + chunks + " chunks");
+
+        List<H> result = new ArrayList<>(chunks);
+        for(Object handler : handlers) {
+            @SuppressWarnings("unchecked")
+            H h = (H) handler;
+            result.add(h);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+
+    private void decode(ByteBuffer buffer, int count, RainfallRecordHandler handler) {
+        RainfallRecordCursor cursor = new RainfallRecordCursor();
+        final int[] stations = this.stations;
+        final int[] days = this.days;
+        RainfallKeyFilter keyFilter = handler.getKeyFilter();
+        int position = 0;
+        for(int i = 0; i < count; i++, position += RainfallBinaryFormat.RECORD_SIZE) {
+            int station = buffer.getShort(position) & 0xFFFF;
+            int day = buffer.getShort(position + 2) & 0xFFFF;
+            int hour = buffer.get(position + 4) & 0xFF;
+            // The key fields sit at fixed offsets, so rejected records are skipped before the rest is decoded
+            if(keyFilter != null && !(keyFilter.acceptWban(stations[station]) && keyFilter.acceptDay(days[day]) && keyFilter.acceptHour(hour)))
+                continue;
+            byte flag = buffer.get(position + 5);
+            int precipitation = buffer.getShort(position + 6) & 0xFFFF;
+            cursor.set(stations[station], days[day], hour, precipitation, RainfallRecordCursor.PRECIPITATION_SCALE,
+                    (flag & RainfallBinaryFormat.TRACE_BIT) != 0, (byte) (flag & ~RainfallBinaryFormat.TRACE_BIT));
+            handler.onRecord(cursor);
+        }
+    }
+
+    private static int[] readDictionary(FileChannel channel, long position) throws IOException {
+        int size = readFully(channel, position, 4).getInt();
+        if(size < 0 || size > RainfallBinaryFormat.MAX_DICTIONARY_SIZE)
+            throw new IllegalArgumentException("Invalid dictionary size " + size);
+        ByteBuffer buffer = readFully(channel, position + 4, 4 * size);
+        int[] values = new int[size];
+        for(int i = 0; i < size; i++)
+            values[i] = buffer.getInt();
+        return values;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while(buffer.hasRemaining()) {
+            if(channel.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("Unexpected end of file at " + (position + buffer.position()));
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Fork-join task that splits the chunk range in halves until a single chunk is left, which is then mapped and decoded.
+     */
+    private class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final int lo;
+        private final int hi;
+        private final Supplier<? extends RainfallRecordHandler> handlerFactory;
+        private final Object[] handlers;
+
+        ChunkTask(FileChannel channel, int lo, int hi, Supplier<? extends RainfallRecordHandler> handlerFactory, Object[] handlers) {
+            this.channel = channel;
+            this.lo = lo;
+            this.hi = hi;
+            this.handlerFactory = handlerFactory;
+            this.handlers = handlers;
+        }
+
+        @Override
+        protected void compute() {
+            if(hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new ChunkTask(channel, lo, mid, handlerFactory, handlers), new ChunkTask(channel, mid, hi, handlerFactory, handlers));
+                return;
+            }
+            RainfallRecordHandler handler = handlerFactory.get();
+            long first = (long) lo * chunkRecords;
+            int count = (int) Math.min(chunkRecords, recordCount - first);
+            if(count > 0) {
+                try {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, recordsOffset + first * RainfallBinaryFormat.RECORD_SIZE,
+                            (long) count * RainfallBinaryFormat.RECORD_SIZE);
+                    decode(buffer, count, handler);
+                } catch (IOException e) {
+                    throw new RuntimeException("Error occurred while reading " + path, e);
+                }
+            }
+            handler.onPartScanned();
+            handlers[lo] = handler;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package org.vm.evarianttest.store;
+
+import org.vm.evarianttest.reader.RainfallRecordHandler;
+import org.vm.evarianttest.reader.RainfallSource;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class implements a RainfallSource over many rainfall files, like the monthly QCLCD files of a year, so that they are calculated on as one
+ * dataset. The files are scanned concurrently within two budgets:
+ *  filesInFlight - number of files read at the same time, the I/O budget
+ *  pool - fork-join pool on which the parts of all the files are processed, the CPU budget
+ *
+ * The parts of every file are kept apart by scanFiles(), so that a result per file can be computed from the same scan as the overall result.
+ *
+ * Example usage:
+ *
+ * MultiFileRainfallSource year = MultiFileRainfallSource.of(Paths.get("./data"), "2015*precip.txt");
+ * Map results = new SharedScanExecutor(year).register(calculator).execute();
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+public class MultiFileRainfallSource implements RainfallSource {
+    public static final int DEFAULT_FILES_IN_FLIGHT = 4;
+
+    private static Logger log = Logger.getLogger(MultiFileRainfallSource.class.getName());
+
+    private final List<Path> files;
+    private final int filesInFlight;
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor using the default budgets.
+     *
+     * @param files - Rainfall files, in the order of their handlers
+     */
+    public MultiFileRainfallSource(List<Path> files) {
+        this(files, DEFAULT_FILES_IN_FLIGHT, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param files - Rainfall files, in the order of their handlers
+     * @param filesInFlight - Number of files read at the same time
+     * @param pool - Fork-join pool on which the parts of the files are processed
+     */
+    public MultiFileRainfallSource(List<Path> files, int filesInFlight, ForkJoinPool pool) {
+        if(filesInFlight <= 0)
+            throw new IllegalArgumentException("Files in flight should be positive but was " + filesInFlight);
+        this.files = Collections.unmodifiableList(new ArrayList<>(files));
+        this.filesInFlight = filesInFlight;
+        this.pool = pool;
+    }
+
+    /**
+     * This method lists the files of a directory matching a glob, sorted by name.
+     *
+     * @param directory - Directory of the rainfall files
+     * @param glob - File name pattern like *precip.txt, see FileSystem.getPathMatcher()
+     * @return - Source over the matching files, using the default budgets
+     */
+    public static MultiFileRainfallSource of(Path directory, String glob) {
+        List<Path> files = new ArrayList<>();
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+            for(Path file : stream) {
+                if(Files.isRegularFile(file))
+                    files.add(file);
+            }
+        } catch (IOException e) {
+            log.log(Level.SEVERE, "Error occurred while listing " + directory, e);
+            throw new RuntimeException("Error occurred while listing " + directory, e);
+        }
+        Collections.sort(files);
+        return new MultiFileRainfallSource(files);
+    }
+
+    /**
+     * This method returns the same files scanned within other budgets.
+     *
+     * @param filesInFlight - Number of files read at the same time
+     * @param pool - Fork-join pool on which the parts of the files are processed
+     * @return - Source over the same files
+     */
+    public MultiFileRainfallSource withBudget(int filesInFlight, ForkJoinPool pool) {
+        return new MultiFileRainfallSource(files, filesInFlight, pool);
+    }
+
+    public List<Path> getFiles() {
+        return files;
+    }
+
+    /**
+     * This method scans all the files, the handlers of every file following the ones of the files before it.
+     */
+    @Override
+    public <H extends RainfallRecordHandler> List<H> scan(Supplier<H> handlerFactory) {
+        List<H> result = new ArrayList<>();
+        for(List<H> fileHandlers : scanFiles(handlerFactory))
+            result.addAll(fileHandlers);
+        return result;
+    }
+
+    /**
+     * This method scans all the files, keeping the handlers of every file apart.
+     *
+     * @param handlerFactory - Factory for the per part handlers
+     * @return - Handlers of every file, in the order of the files
+     */
+    public <H extends RainfallRecordHandler> List<List<H>> scanFiles(Supplier<H> handlerFactory) {
+        ExecutorService io = Executors.newFixedThreadPool(Math.min(filesInFlight, Math.max(1, files.size())));
+        try {
+            List<Future<List<H>>> scans = new ArrayList<>(files.size());
+            for(Path file : files)
+                scans.add(io.submit(() -> RainfallSources.open(file, pool).scan(handlerFactory)));
+
+            List<List<H>> result = new ArrayList<>(files.size());
+            for(int i = 0; i < scans.size(); i++) {
+                try {
+                    result.add(scans.get(i).get());
+                } catch (ExecutionException e) {
+                    log.log(Level.SEVERE, "Error occurred while processing " + files.get(i), e.getCause());
+                    throw new RuntimeException("Error occurred while processing " + files.get(i), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while processing " + files.get(i), e);
+                }
+            }
+            log.fine("Scanned " + files.size() + " files, " + filesInFlight + " at a time");
+            return result;
+        } finally {
+            io.shutdownNow();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MultiFileRainfallSource{files=" + files.size() + "}";
+    }
+}
@@ -0,0 +1,242 @@
+package org.vm.evarianttest.store;
+
+import org.vm.evarianttest.reader.MappedRainfallFileReader;
+import org.vm.evarianttest.reader.RainfallRecordCursor;
+import org.vm.evarianttest.reader.RainfallRecordHandler;
+import org.vm.evarianttest.reader.RainfallRecordParser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class converts a QCLCD rainfall text file (Wban,YearMonthDay,Hour,Precipitation,PrecipitationFlag) into the compact binary format described in
+ * RainfallBinaryFormat. It is a one time conversion, after which the calculators can read the binary file through MappedRainfallBinaryReader with
+ * no parsing at all.
+ *
+ * The conversion takes two parallel passes over the text file. The first one collects the station and day dictionaries, the second one encodes the
+ * records, one window of the file at a time so that memory use stays bounded whatever the file size. A record that does not fit the format, like a
+ * WBAN of more than 5 digits, is skipped and counted instead of failing the conversion.
+ *
+ * Example usage:
+ *
+ * new RainfallBinaryConverter().convert(Paths.get("201505precip.txt"), Paths.get("201505precip.rfb"));
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+public class RainfallBinaryConverter {
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+    private Logger log = Logger.getLogger(this.getClass().getName());
+
+    private final boolean dropDryRows;
+    private long skippedRecords;
+
+    /**
+     * Constructor. Every row is kept, so the binary file has the record counts of the text file.
+     */
+    public RainfallBinaryConverter() {
+        this(false);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param dropDryRows - true to leave out the rows without any rainfall, trace or flag. They make up most of a QCLCD file and add nothing to the
+     *                    aggregates, but the record counts of the binary file are then lower than those of the text file.
+     */
+    public RainfallBinaryConverter(boolean dropDryRows) {
+        this.dropDryRows = dropDryRows;
+    }
+
+    /**
+     * This method converts the text file into a binary file, replacing the output if it exists.
+     *
+     * @param input - QCLCD rainfall text file
+     * @param output - Binary file to write
+     * @return - Number of records written
+     */
+    public long convert(Path input, Path output) {
+        MappedRainfallFileReader reader = new MappedRainfallFileReader(input);
+
+        Dictionaries dictionaries = collectDictionaries(reader);
+        skippedRecords = dictionaries.skipped;
+        if(skippedRecords > 0)
+            log.warning("Skipped " + skippedRecords + " records of " + input + " that do not fit the binary format");
+        int[] stations = dictionaries.stations.stream().toArray();
+        int[] days = dictionaries.days.stream().mapToInt(Integer::intValue).toArray();
+        if(stations.length > RainfallBinaryFormat.MAX_DICTIONARY_SIZE || days.length > RainfallBinaryFormat.MAX_DICTIONARY_SIZE)
+            throw new IllegalStateException("Too many stations (" + stations.length + ") or days (" + days.length + ") for the binary format");
+
+        int[] stationIndex = new int[RainfallRecordParser.WBAN_ID_LIMIT];
+        for(int i = 0; i < stations.length; i++)
+            stationIndex[stations[i]] = i;
+
+        try(FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header(dictionaries.records, stations, days));
+
+            long written = 0;
+            long from = 0;
+            long size = input.toFile().length();
+            while(from < size) {
+                long to = reader.nextLineStart(from + WINDOW_SIZE);
+                List<Encoder> encoders = reader.scan(() -> new Encoder(stationIndex, days), from, to);
+                for(Encoder encoder : encoders) {
+                    writeFully(channel, ByteBuffer.wrap(encoder.bytes, 0, encoder.size));
+                    written += encoder.size / RainfallBinaryFormat.RECORD_SIZE;
+                }
+                from = to;
+            }
+            if(written != dictionaries.records)
+                throw new IllegalStateException(input + " changed during the conversion, " + dictionaries.records + " records counted but " + written + " written");
+            log.info("Converted " + written + " records of " + input + " into " + output + " (" + channel.size() + " bytes)");
+            return written;
+        } catch (IOException e) {
+            log.log(Level.SEVERE, "Error occurred while converting " + input, e);
+            throw new RuntimeException("Error occurred while converting " + input, e);
+        }
+    }
+
+    private Dictionaries collectDictionaries(MappedRainfallFileReader reader) {
+        Dictionaries all = new Dictionaries();
+        for(Dictionaries part : reader.scan(Dictionaries::new)) {
+            all.stations.or(part.stations);
+            all.days.addAll(part.days);
+            all.records += part.records;
+            all.skipped += part.skipped;
+        }
+        return all;
+    }
+
+    private ByteBuffer header(long records, int[] stations, int[] days) {
+        ByteBuffer header = ByteBuffer.allocate((int) RainfallBinaryFormat.headerSize(stations.length, days.length));
+        header.putInt(RainfallBinaryFormat.MAGIC);
+        header.putShort(RainfallBinaryFormat.VERSION);
+        header.putShort(dropDryRows ? RainfallBinaryFormat.FLAG_DRY_ROWS_DROPPED : 0);
+        header.putLong(records);
+        header.putInt(stations.length);
+        for(int station : stations)
+            header.putInt(station);
+        header.putInt(days.length);
+        for(int day : days)
+            header.putInt(day);
+        header.flip();
+        return header;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    /**
+     * @return - Records skipped by the last conversion because they do not fit the binary format
+     */
+    public long getSkippedRecords() {
+        return skippedRecords;
+    }
+
+    private boolean isKept(RainfallRecordCursor cursor) {
+        return !dropDryRows || cursor.getScaledPrecipitation() != 0 || cursor.isTrace() || cursor.getFlag() != RainfallRecordCursor.NO_FLAG;
+    }
+
+    /**
+     * @return - true if the WBAN and the amount of the record can be encoded
+     */
+    private static boolean fits(RainfallRecordCursor cursor) {
+        long precipitation = cursor.getScaledPrecipitation();
+        return cursor.getWbanId() < RainfallRecordParser.WBAN_ID_LIMIT && precipitation >= 0 && precipitation <= RainfallBinaryFormat.MAX_SCALED_PRECIPITATION;
+    }
+
+    /**
+     * First pass handler, collecting the stations, days and number of records of a chunk, and counting the records that do not fit the format.
+     */
+    private class Dictionaries implements RainfallRecordHandler {
+        private final BitSet stations = new BitSet();
+        private final TreeSet<Integer> days = new TreeSet<>();
+        private int lastDay = -1;
+        private long records;
+        private long skipped;
+
+        @Override
+        public void onRecord(RainfallRecordCursor cursor) {
+            if(!isKept(cursor))
+                return;
+            if(!fits(cursor)) {
+                skipped++;
+                return;
+            }
+            stations.set(cursor.getWbanId());
+            // Records are grouped by day, so this avoids most of the set lookups
+            if(cursor.getYearMonthDay() != lastDay) {
+                lastDay = cursor.getYearMonthDay();
+                days.add(lastDay);
+            }
+            records++;
+        }
+    }
+
+    /**
+     * Second pass handler, encoding the records of a chunk.
+     */
+    private class Encoder implements RainfallRecordHandler {
+        private final int[] stationIndex;
+        private final int[] days;
+        private byte[] bytes = new byte[64 * 1024];
+        private int size;
+        private int lastDay = -1;
+        private int lastDayIndex;
+
+        Encoder(int[] stationIndex, int[] days) {
+            this.stationIndex = stationIndex;
+            this.days = days;
+        }
+
+        @Override
+        public void onRecord(RainfallRecordCursor cursor) {
+            if(!isKept(cursor) || !fits(cursor))
+                return;
+            long precipitation = cursor.getScaledPrecipitation();
+            if(cursor.getYearMonthDay() != lastDay) {
+                lastDay = cursor.getYearMonthDay();
+                lastDayIndex = Arrays.binarySearch(days, lastDay);
+            }
+            if(size + RainfallBinaryFormat.RECORD_SIZE > bytes.length)
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+
+            int station = stationIndex[cursor.getWbanId()];
+            byte flag = cursor.isTrace() ? (byte) (cursor.getFlag() | RainfallBinaryFormat.TRACE_BIT) : cursor.getFlag();
+            bytes[size++] = (byte) (station >>> 8);
+            bytes[size++] = (byte) station;
+            bytes[size++] = (byte) (lastDayIndex >>> 8);
+            bytes[size++] = (byte) lastDayIndex;
+            bytes[size++] = (byte) cursor.getHour();
+            bytes[size++] = flag;
+            bytes[size++] = (byte) (precipitation >>> 8);
+            bytes[size++] = (byte) precipitation;
+        }
+    }
+
+    /**
+     * Converts a text file. Usage: RainfallBinaryConverter input.txt output.rfb [--drop-dry-rows]
+     */
+    public static void main(String[] args) {
+        if(args.length < 2) {
+            System.out.println("Usage: RainfallBinaryConverter <QCLCD precipitation file> <output" + RainfallBinaryFormat.FILE_EXTENSION + " file> [--drop-dry-rows]");
+            return;
+        }
+        boolean dropDryRows = args.length > 2 && "--drop-dry-rows".equals(args[2]);
+        long records = new RainfallBinaryConverter(dropDryRows).convert(Paths.get(args[0]), Paths.get(args[1]));
+        System.out.println("Records written : " + records);
+    }
+}
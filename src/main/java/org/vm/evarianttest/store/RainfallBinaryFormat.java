@@ -0,0 +1,54 @@
+package org.vm.evarianttest.store;
+
+/**
+ * This class defines the layout of the compact binary rainfall file (.rfb), written by RainfallBinaryConverter and read by MappedRainfallBinaryReader.
+ *
+ * Header (big endian):
+ *  int    MAGIC
+ *  short  VERSION
+ *  short  header flags, see FLAG_DRY_ROWS_DROPPED
+ *  long   number of records
+ *  int    number of stations, followed by the numeric WBAN id of every station in ascending order
+ *  int    number of days, followed by every yyyymmdd day in ascending order
+ *
+ * Records, RECORD_SIZE bytes each, in the order of the source file:
+ *  u16    index of the station in the station dictionary
+ *  u16    index of the day in the day dictionary
+ *  u8     hour
+ *  u8     PrecipitationFlag character, with TRACE_BIT set for trace amounts
+ *  u16    precipitation in thousandths of an inch
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+public final class RainfallBinaryFormat {
+    public static final int MAGIC = 0x52464231;
+    public static final short VERSION = 1;
+    public static final String FILE_EXTENSION = ".rfb";
+
+    /** Set when the rows without any rainfall, trace or flag were left out, as they add nothing to the aggregates */
+    public static final short FLAG_DRY_ROWS_DROPPED = 0x1;
+
+    public static final int RECORD_SIZE = 8;
+    public static final byte TRACE_BIT = ColumnarRainfallStore.TRACE_BIT;
+
+    public static final int MAX_DICTIONARY_SIZE = 0xFFFF + 1;
+    public static final int MAX_SCALED_PRECIPITATION = 0xFFFF;
+
+    /** Size of the fixed part of the header, before the dictionaries */
+    static final int FIXED_HEADER_SIZE = 4 + 2 + 2 + 8;
+
+    private RainfallBinaryFormat() {
+    }
+
+    /**
+     * This method returns the size of the header for the given dictionary sizes, which is also the offset of the first record.
+     *
+     * @param stationCount - Number of stations
+     * @param dayCount - Number of days
+     * @return - Header size in bytes
+     */
+    static long headerSize(int stationCount, int dayCount) {
+        return FIXED_HEADER_SIZE + 4 + 4L * stationCount + 4 + 4L * dayCount;
+    }
+}
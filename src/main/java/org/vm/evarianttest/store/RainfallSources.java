@@ -0,0 +1,51 @@
+package org.vm.evarianttest.store;
+
+import org.vm.evarianttest.reader.CompressedRainfallFileReader;
+import org.vm.evarianttest.reader.MappedRainfallFileReader;
+import org.vm.evarianttest.reader.RainfallSource;
+
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This class opens a rainfall dataset with the right RainfallSource for its format, so the callers can be given the QCLCD text file, its zip or gzip
+ * archive, or its binary conversion.
+ *
+ * @author vivekm
+ * @since 1.0
+ */
+public final class RainfallSources {
+
+    private RainfallSources() {
+    }
+
+    /**
+     * This method opens the rainfall dataset at the path. Compressed files are recognised by their extension and binary files by their magic number,
+     * anything else is read as QCLCD text.
+     *
+     * @param path - Path of the rainfall dataset
+     * @return - CompressedRainfallFileReader for .zip and .gz files, MappedRainfallBinaryReader for binary files, MappedRainfallFileReader otherwise
+     */
+    public static RainfallSource open(Path path) {
+        if(CompressedRainfallFileReader.isCompressedFile(path))
+            return new CompressedRainfallFileReader(path);
+        if(MappedRainfallBinaryReader.isBinaryFile(path))
+            return new MappedRainfallBinaryReader(path);
+        return new MappedRainfallFileReader(path);
+    }
+
+    /**
+     * This method opens the rainfall dataset at the path, scanning its parts on the given pool.
+     *
+     * @param path - Path of the rainfall dataset
+     * @param pool - Fork-join pool on which the parts are processed
+     * @return - CompressedRainfallFileReader for .zip and .gz files, MappedRainfallBinaryReader for binary files, MappedRainfallFileReader otherwise
+     */
+    public static RainfallSource open(Path path, ForkJoinPool pool) {
+        if(CompressedRainfallFileReader.isCompressedFile(path))
+            return new CompressedRainfallFileReader(path, CompressedRainfallFileReader.DEFAULT_BLOCK_SIZE, CompressedRainfallFileReader.DEFAULT_BLOCKS_IN_FLIGHT, pool);
+        if(MappedRainfallBinaryReader.isBinaryFile(path))
+            return new MappedRainfallBinaryReader(path, MappedRainfallBinaryReader.DEFAULT_CHUNK_RECORDS, pool);
+        return new MappedRainfallFileReader(path, MappedRainfallFileReader.DEFAULT_CHUNK_SIZE, pool);
+    }
+}
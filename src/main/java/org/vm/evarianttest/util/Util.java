@@ -194,9 +194,69 @@ public class Util {
         return String.format("%1$" + n + "s", s);
     }
 
-    public static Map sortByValue(Map unsortedMap) {
-        Map sortedMap = new TreeMap(new ValueComparator(unsortedMap));
-        sortedMap.putAll(unsortedMap);
+    /**
+     * This method returns the entries of the map from the largest value to the smallest, entries with equal values being ordered by key. No entry is
+     * dropped, whatever the number of equal values.
+     *
+     * @param unsortedMap - Map with Comparable keys
+     * @return - Map iterating in ranking order
+     */
+    public static <K, V extends Comparable<? super V>> Map<K, V> sortByValue(Map<K, V> unsortedMap) {
+        Map<K, V> sortedMap = new LinkedHashMap<>();
+        for(Map.Entry<K, V> entry : topByValue(unsortedMap, unsortedMap.size()))
+            sortedMap.put(entry.getKey(), entry.getValue());
         return sortedMap;
     }
+
+    /**
+     * This method returns the k entries of the map with the largest values, in ranking order: from the largest value to the smallest, entries with
+     * equal values being ordered by key so that the ranking is the same on every run. A bounded heap of k entries is used when k is smaller than the
+     * map, so ranking the top few of many entries costs O(n log k), otherwise all the entries are sorted in parallel.
+     *
+     * @param values - Map with Comparable keys and no null values
+     * @param k - Number of entries to return
+     * @return - Copies of the top entries
+     */
+    public static <K, V extends Comparable<? super V>> List<Map.Entry<K, V>> topByValue(Map<K, V> values, int k) {
+        Comparator<Map.Entry<K, V>> ranking = rankingOrder();
+        if(k <= 0)
+            return new ArrayList<>();
+        if(k >= values.size()) {
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            Map.Entry<K, V>[] entries = new Map.Entry[values.size()];
+            int i = 0;
+            for(Map.Entry<K, V> entry : values.entrySet())
+                entries[i++] = new AbstractMap.SimpleImmutableEntry<>(entry);
+            Arrays.parallelSort(entries, ranking);
+            return new ArrayList<>(Arrays.asList(entries));
+        }
+
+        // The heap keeps the worst of the top k entries at its head
+        PriorityQueue<Map.Entry<K, V>> heap = new PriorityQueue<>(k + 1, ranking.reversed());
+        for(Map.Entry<K, V> entry : values.entrySet()) {
+            if(heap.size() < k)
+                heap.add(new AbstractMap.SimpleImmutableEntry<>(entry));
+            else if(ranking.compare(entry, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(new AbstractMap.SimpleImmutableEntry<>(entry));
+            }
+        }
+        List<Map.Entry<K, V>> top = new ArrayList<>(heap);
+        top.sort(ranking);
+        return top;
+    }
+
+    /**
+     * @return - Order of the largest value first, then of the smallest key
+     */
+    private static <K, V extends Comparable<? super V>> Comparator<Map.Entry<K, V>> rankingOrder() {
+        return new Comparator<Map.Entry<K, V>>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public int compare(Map.Entry<K, V> a, Map.Entry<K, V> b) {
+                int byValue = b.getValue().compareTo(a.getValue());
+                return byValue != 0 ? byValue : ((Comparable<Object>) a.getKey()).compareTo(b.getKey());
+            }
+        };
+    }
 }
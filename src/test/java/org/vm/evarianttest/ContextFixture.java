@@ -0,0 +1,46 @@
+package org.vm.evarianttest;
+
+import org.vm.evarianttest.entity.census.USAStatisticalAreaType;
+import org.vm.evarianttest.loader.DataLoaderException;
+import org.vm.evarianttest.precipitationcalc.RainFallStatsCalculator;
+
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Context Data of the bundled source files, loaded once for all the test classes of a run.
+ */
+public final class ContextFixture {
+    public static final URI TEST_DATA = Paths.get("./src/test/resources/test_good_wban_bad_wban_one_each.txt").toUri();
+    public static final URI CENSUS_FILE = Paths.get("./src/main/resources/CPH-T-5.xls").toAbsolutePath().toUri();
+    public static final URI COUNTY_MSA_LINK_FILE = Paths.get("./src/main/resources/MSA-County-Census-List1.xls").toUri();
+    public static final URI WBAN_MASTER_FILE = Paths.get("./src/main/resources/wbanmasterlist.psv").toUri();
+    public static final URI STATIONS_201505_FILE = Paths.get("./src/main/resources/201505station.txt").toUri();
+    public static final List<USAStatisticalAreaType> TYPES_TO_LOAD = Collections.singletonList(USAStatisticalAreaType.METROPOLITAN_STATISTICAL_AREA);
+
+    private static RainFallStatsCalculator calculator;
+
+    private ContextFixture() {
+    }
+
+    /**
+     * @return - New calculator of the bundled source files, loading its context on first use
+     */
+    public static RainFallStatsCalculator newCalculator() {
+        return new RainFallStatsCalculator(CENSUS_FILE, COUNTY_MSA_LINK_FILE, WBAN_MASTER_FILE, STATIONS_201505_FILE, TYPES_TO_LOAD);
+    }
+
+    /**
+     * @return - Calculator with the whole Context Data loaded, shared by the test classes
+     */
+    public static synchronized RainFallStatsCalculator calculator() throws DataLoaderException {
+        if(calculator == null) {
+            RainFallStatsCalculator loaded = newCalculator();
+            loaded.load();
+            calculator = loaded;
+        }
+        return calculator;
+    }
+}
@@ -0,0 +1,79 @@
+package org.vm.evarianttest.aggregation;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.vm.evarianttest.generator.SyntheticRainfallGenerator;
+import org.vm.evarianttest.reader.MappedRainfallFileReader;
+import org.vm.evarianttest.reader.RainfallRecordCursor;
+import org.vm.evarianttest.reader.RainfallRecordParser;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tests that the compensated double sums of a scan stay next to the exact totals whatever the number of parts they are merged from.
+ */
+public class TestDoublePrecipitationAccumulator {
+    private static final List<String> WBANS = Arrays.asList("00230", "03013", "13904", "94846", "12960", "23174");
+
+    @Test
+    public void testManyPartsGiveTheSumsOfOnePart() throws IOException {
+        Path file = Files.createTempFile("rainfall", ".txt");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            new SyntheticRainfallGenerator(WBANS).months(YearMonth.of(2015, 1), 6).wetHourRatio(0.5).traceRatio(0.05).generate(file);
+            long[] exact = new long[WBANS.size()];
+            for(StationHandler handler : new MappedRainfallFileReader(file).scan(() -> new StationHandler(new FixedPointPrecipitationAccumulator(WBANS.size())))) {
+                for(int slot = 0; slot < exact.length; slot++)
+                    exact[slot] += ((FixedPointPrecipitationAccumulator) handler.getAccumulator()).getScaled(slot);
+            }
+
+            PrecipitationAccumulator onePart = sum(new MappedRainfallFileReader(file, MappedRainfallFileReader.MAX_CHUNK_SIZE, pool));
+            for(int chunkSize : new int[]{512, 4096, 64 * 1024}) {
+                PrecipitationAccumulator manyParts = sum(new MappedRainfallFileReader(file, chunkSize, pool));
+                Assert.assertEquals(onePart.getRecordCount(), manyParts.getRecordCount());
+                for(int slot = 0; slot < WBANS.size(); slot++) {
+                    double expected = BigDecimal.valueOf(exact[slot], RainfallRecordCursor.PRECIPITATION_SCALE).doubleValue();
+                    Assert.assertTrue(onePart.isSet(slot));
+                    // Within a few ulps of the exact total, not necessarily the same bits
+                    Assert.assertEquals(WBANS.get(slot), expected, onePart.get(slot).doubleValue(), 4 * Math.ulp(expected));
+                    Assert.assertEquals(WBANS.get(slot) + " chunk size " + chunkSize, expected, manyParts.get(slot).doubleValue(), 4 * Math.ulp(expected));
+                }
+            }
+        } finally {
+            pool.shutdown();
+            Files.delete(file);
+        }
+    }
+
+    private static PrecipitationAccumulator sum(MappedRainfallFileReader reader) {
+        List<StationHandler> handlers = reader.scan(() -> new StationHandler(new DoublePrecipitationAccumulator(WBANS.size())));
+        return AccumulatingRecordHandler.mergeInto(new DoublePrecipitationAccumulator(WBANS.size()), handlers);
+    }
+
+    private static class StationHandler extends AccumulatingRecordHandler {
+        private static final int[] SLOTS = new int[RainfallRecordParser.WBAN_ID_LIMIT];
+
+        static {
+            for(int slot = 0; slot < WBANS.size(); slot++)
+                SLOTS[RainfallRecordParser.parseWbanId(WBANS.get(slot))] = slot + 1;
+        }
+
+        StationHandler(PrecipitationAccumulator accumulator) {
+            super(accumulator);
+        }
+
+        @Override
+        public void onRecord(RainfallRecordCursor cursor) {
+            int slot = SLOTS[cursor.getWbanId()] - 1;
+            if(slot >= 0)
+                accumulator.add(slot, cursor);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.vm.evarianttest.aggregation;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.vm.evarianttest.generator.SyntheticRainfallGenerator;
+import org.vm.evarianttest.reader.MappedRainfallFileReader;
+import org.vm.evarianttest.reader.RainfallRecordCursor;
+import org.vm.evarianttest.reader.RainfallRecordParser;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tests that the fixed-point totals of a scan are the exact decimal totals, the same for any chunk size and number of threads.
+ */
+public class TestFixedPointPrecipitationAccumulator {
+    private static final List<String> WBANS = Arrays.asList("00230", "03013", "13904", "94846", "12960", "23174");
+
+    @Test
+    public void testTotalsAreExactForAnyChunkSizeAndThreadCount() throws IOException {
+        Path file = Files.createTempFile("rainfall", ".txt");
+        try {
+            new SyntheticRainfallGenerator(WBANS).months(YearMonth.of(2015, 1), 6).wetHourRatio(0.5).traceRatio(0.05).generate(file);
+            BigDecimal[] exact = decimalTotals(file);
+
+            for(int threads : new int[]{1, 2, 4}) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                try {
+                    for(int chunkSize : new int[]{512, 4096, 64 * 1024, MappedRainfallFileReader.MAX_CHUNK_SIZE}) {
+                        List<StationHandler> handlers = new MappedRainfallFileReader(file, chunkSize, pool).scan(StationHandler::new);
+                        PrecipitationAccumulator total = AccumulatingRecordHandler.mergeInto(AggregationMode.FIXED_POINT.newAccumulator(WBANS.size()), handlers);
+                        for(int slot = 0; slot < WBANS.size(); slot++) {
+                            // Same scale and digits, not only the same value
+                            Assert.assertEquals(threads + " threads, chunk size " + chunkSize + ", " + WBANS.get(slot),
+                                    exact[slot].setScale(RainfallRecordCursor.PRECIPITATION_SCALE), total.get(slot));
+                        }
+                    }
+                } finally {
+                    pool.shutdown();
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * This method sums the Precipitation column of the text file per station as BigDecimals, the way the results were computed before the
+     * accumulators.
+     */
+    private static BigDecimal[] decimalTotals(Path file) throws IOException {
+        BigDecimal[] totals = new BigDecimal[WBANS.size()];
+        Arrays.fill(totals, BigDecimal.ZERO);
+        for(String line : Files.readAllLines(file)) {
+            String[] columns = line.split(",", -1);
+            int slot = WBANS.indexOf(columns[0].trim());
+            String amount = columns[3].trim();
+            if(slot >= 0 && !amount.isEmpty() && !amount.contains("T"))
+                totals[slot] = totals[slot].add(new BigDecimal(amount));
+        }
+        return totals;
+    }
+
+    private static class StationHandler extends AccumulatingRecordHandler {
+        private static final int[] SLOTS = new int[RainfallRecordParser.WBAN_ID_LIMIT];
+
+        static {
+            for(int slot = 0; slot < WBANS.size(); slot++)
+                SLOTS[RainfallRecordParser.parseWbanId(WBANS.get(slot))] = slot + 1;
+        }
+
+        StationHandler() {
+            super(AggregationMode.FIXED_POINT.newAccumulator(WBANS.size()));
+        }
+
+        @Override
+        public void onRecord(RainfallRecordCursor cursor) {
+            int slot = SLOTS[cursor.getWbanId()] - 1;
+            if(slot >= 0)
+                accumulator.add(slot, cursor);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.vm.evarianttest.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.vm.evarianttest.entity.Key;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Tests that cached results are reused until their input changes, in memory and on disk.
+ */
+public class TestRainfallResultCache {
+
+    @Test
+    public void testResultIsCalculatedAgainOnlyWhenTheInputChanges() throws IOException {
+        Path input = Files.createTempFile("201505precip", ".txt");
+        try {
+            Files.write(input, "03013,20150501,01,0.01,\n".getBytes());
+            List<Path> inputs = Collections.singletonList(input);
+            AtomicInteger calculations = new AtomicInteger();
+            Supplier<Map<Key, BigDecimal>> calculator = () -> result("CO", calculations.incrementAndGet());
+
+            RainfallResultCache cache = new RainfallResultCache(1024 * 1024);
+            Assert.assertEquals(result("CO", 1), cache.get(inputs, "RainFallByStateCalculator|null", calculator));
+            Assert.assertEquals(result("CO", 1), cache.get(inputs, "RainFallByStateCalculator|null", calculator));
+            Assert.assertEquals(1, cache.getHitCount());
+            // Other parameters are another result
+            cache.get(inputs, "RainFallByStateCalculator|days=20150501-20150507", calculator);
+            Assert.assertEquals(2, calculations.get());
+
+            // Same size, new content and time
+            Files.write(input, "03013,20150501,01,0.02,\n".getBytes());
+            Files.setLastModifiedTime(input, FileTime.fromMillis(Files.getLastModifiedTime(input).toMillis() + 2000));
+            Assert.assertEquals(result("CO", 3), cache.get(inputs, "RainFallByStateCalculator|null", calculator));
+            Assert.assertEquals("The results of the previous content are dropped", 1, cache.getSize());
+        } finally {
+            Files.delete(input);
+        }
+    }
+
+    @Test
+    public void testEvictedResultsAreReadBackFromDisk() throws IOException {
+        Path input = Files.createTempFile("201505precip", ".txt");
+        Path directory = Files.createTempDirectory("results");
+        try {
+            Files.write(input, "03013,20150501,01,0.01,\n".getBytes());
+            List<Path> inputs = Collections.singletonList(input);
+            AtomicInteger calculations = new AtomicInteger();
+            Supplier<Map<Key, BigDecimal>> calculator = () -> result("TX", calculations.incrementAndGet());
+
+            // Room for a single result in memory
+            RainfallResultCache sizing = new RainfallResultCache(1024 * 1024);
+            sizing.get(inputs, "first", () -> result("TX", 0));
+            RainfallResultCache cache = new RainfallResultCache(sizing.getBytes() * 3 / 2, directory);
+            cache.get(inputs, "first", calculator);
+            cache.get(inputs, "second", calculator);
+            Assert.assertEquals(1, cache.getSize());
+            Assert.assertTrue(cache.getBytes() <= cache.getMaxBytes());
+            Assert.assertEquals(result("TX", 1), cache.get(inputs, "first", calculator));
+            Assert.assertEquals(1, cache.getDiskHitCount());
+
+            // A new cache on the same directory, like after a restart
+            Assert.assertEquals(result("TX", 2), new RainfallResultCache(cache.getMaxBytes(), directory).get(inputs, "second", calculator));
+            Assert.assertEquals(2, calculations.get());
+        } finally {
+            for(Path file : Files.newDirectoryStream(directory))
+                Files.delete(file);
+            Files.delete(directory);
+            Files.delete(input);
+        }
+    }
+
+    private static Map<Key, BigDecimal> result(String state, int value) {
+        Map<Key, BigDecimal> result = new TreeMap<>();
+        result.put(new Key(state), new BigDecimal(value));
+        return result;
+    }
+}
@@ -0,0 +1,57 @@
+package org.vm.evarianttest.calc;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.vm.evarianttest.ContextFixture;
+import org.vm.evarianttest.entity.Key;
+import org.vm.evarianttest.entity.census.USAState;
+import org.vm.evarianttest.loader.DataLoaderException;
+import org.vm.evarianttest.precipitationcalc.RainFallStatsCalculator;
+import org.vm.evarianttest.store.MultiFileRainfallSource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tests that a batch gives the results of every file and of all of them.
+ */
+public class TestRainfallBatchRunner {
+    private static RainFallStatsCalculator calc;
+
+    @BeforeClass
+    public static void setup() throws DataLoaderException {
+        calc = ContextFixture.calculator();
+    }
+
+    @Test
+    public void testBatchGivesResultsPerFileAndOverall() throws IOException {
+        Path directory = Files.createTempDirectory("rainfall");
+        try {
+            for(String month : new String[]{"201503", "201504", "201505"})
+                Files.copy(Paths.get(ContextFixture.TEST_DATA), directory.resolve(month + "precip.txt"));
+            Files.write(directory.resolve("201505station.txt"), "not a rainfall file".getBytes());
+
+            MultiFileRainfallSource files = MultiFileRainfallSource.of(directory, "*precip.txt").withBudget(2, ForkJoinPool.commonPool());
+            Assert.assertEquals(3, files.getFiles().size());
+            RainFallByStateCalculator rainfall = new RainFallByStateCalculator(files, calc.getResult());
+            RainfallBatchRunner batch = new RainfallBatchRunner(files).register(rainfall);
+            Map<Key, BigDecimal> overall = batch.execute().get(rainfall);
+
+            Map<Key, BigDecimal> single = calc.calculateRainfallByState(ContextFixture.TEST_DATA, null);
+            for(Map<ScanningCalculator<?>, Map<Key, BigDecimal>> fileResult : batch.getFileResults().values())
+                Assert.assertEquals(single, fileResult.get(rainfall));
+            Key texas = USAState.TEXAS.key();
+            Assert.assertEquals(single.get(texas).multiply(new BigDecimal(3)), overall.get(texas));
+        } finally {
+            for(Path file : Files.newDirectoryStream(directory))
+                Files.delete(file);
+            Files.delete(directory);
+        }
+    }
+}
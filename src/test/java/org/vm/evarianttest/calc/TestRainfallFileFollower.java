@@ -0,0 +1,53 @@
+package org.vm.evarianttest.calc;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.vm.evarianttest.ContextFixture;
+import org.vm.evarianttest.entity.Key;
+import org.vm.evarianttest.loader.DataLoaderException;
+import org.vm.evarianttest.precipitationcalc.RainFallStatsCalculator;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Tests that a followed file gives the results of a full scan once it is complete.
+ */
+public class TestRainfallFileFollower {
+    private static RainFallStatsCalculator calc;
+
+    @BeforeClass
+    public static void setup() throws DataLoaderException {
+        calc = ContextFixture.calculator();
+    }
+
+    @Test
+    public void testFollowedFileGivesSameResultsAsFullScan() throws IOException {
+        // A line is only processed once its terminator is written
+        byte[] content = (new String(Files.readAllBytes(Paths.get(ContextFixture.TEST_DATA))).trim() + "\n").getBytes();
+        Path growing = Files.createTempFile("rainfall", ".txt");
+        try {
+            // The first write ends in the middle of a line, which is left for the next refresh
+            int cut = content.length / 2;
+            Files.write(growing, Arrays.copyOf(content, cut));
+            RainFallByStateCalculator rainfall = new RainFallByStateCalculator(ContextFixture.TEST_DATA, calc.getResult());
+            RainfallFileFollower follower = new RainfallFileFollower(growing).register(rainfall);
+            follower.refresh();
+            Assert.assertTrue(follower.getOffset() < cut);
+
+            Files.write(growing, Arrays.copyOfRange(content, cut, content.length), StandardOpenOption.APPEND);
+            Map<ScanningCalculator<?>, Map<Key, BigDecimal>> results = follower.refresh();
+            Assert.assertEquals(content.length, follower.getOffset());
+            Assert.assertEquals(calc.calculateRainfallByState(ContextFixture.TEST_DATA, null), results.get(rainfall));
+        } finally {
+            Files.delete(growing);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.vm.evarianttest.calc;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.vm.evarianttest.ContextFixture;
+import org.vm.evarianttest.entity.Key;
+import org.vm.evarianttest.loader.DataLoaderException;
+import org.vm.evarianttest.precipitationcalc.RainFallStatsCalculator;
+import org.vm.evarianttest.store.RainfallSources;
+
+import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests that the calculators of a shared scan get the results of their own scans.
+ */
+public class TestSharedScanExecutor {
+    private static RainFallStatsCalculator calc;
+
+    @BeforeClass
+    public static void setup() throws DataLoaderException {
+        calc = ContextFixture.calculator();
+    }
+
+    @Test
+    public void testSharedScanGivesSameResultsAsSeparateScans(){
+        Map<Key, BigDecimal> wetness = calc.calculatePopulationWetnessByMSA(ContextFixture.TEST_DATA, null);
+        Map<Key, BigDecimal> rainfall = calc.calculateRainfallByState(ContextFixture.TEST_DATA, null);
+
+        Map<ScanningCalculator<?>, Map<Key, BigDecimal>> results = calc.calculateAll(RainfallSources.open(Paths.get(ContextFixture.TEST_DATA)), null, null);
+        Assert.assertEquals(2, results.size());
+        List<Map<Key, BigDecimal>> shared = new ArrayList<>(results.values());
+        Assert.assertEquals(wetness, shared.get(0));
+        Assert.assertEquals(rainfall, shared.get(1));
+    }
+}
@@ -0,0 +1,115 @@
+package org.vm.evarianttest.context;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.vm.evarianttest.ContextFixture;
+import org.vm.evarianttest.entity.Entity;
+import org.vm.evarianttest.entity.Key;
+import org.vm.evarianttest.entity.census.USACounty;
+import org.vm.evarianttest.entity.census.USAStatAreaPopulationRecord;
+import org.vm.evarianttest.entity.weather.WBAN;
+import org.vm.evarianttest.loader.Constants;
+import org.vm.evarianttest.loader.DataLoaderException;
+import org.vm.evarianttest.reader.RainfallRecordParser;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests the ids and the routing arrays of the dictionary of the bundled Context Data against its Key based maps.
+ */
+public class TestContextDictionary {
+    private static Map<String, Map<Key, Entity>> maps;
+    private static ContextDictionary dictionary;
+
+    @BeforeClass
+    public static void setup() throws DataLoaderException {
+        maps = ContextFixture.calculator().getResult();
+        dictionary = ContextDictionary.build(maps);
+    }
+
+    @Test
+    public void testIdsAreDenseAndGiveBackTheirKeys() {
+        Map<Key, Entity> wbanMap = maps.get(Constants.WBAN_MASTER_MAP);
+        Map<Key, Entity> statAreaMap = maps.get(Constants.STAT_AREA_MAP_NAME);
+        Assert.assertTrue(dictionary.getWbanCount() >= wbanMap.size());
+        Assert.assertEquals(statAreaMap.size(), dictionary.getAreaCount());
+
+        // The WBANs of the master list come first, in their order
+        int expectedId = 0;
+        for(Key wbanKey : wbanMap.keySet()) {
+            Assert.assertEquals(wbanKey.toString(), expectedId++, dictionary.getWbanId(wbanKey));
+            Assert.assertEquals(wbanKey, dictionary.getWbanKey(dictionary.getWbanId(wbanKey)));
+            int wbanNumber = RainfallRecordParser.parseWbanId(String.valueOf(wbanKey.getKey()));
+            if(wbanNumber >= 0)
+                Assert.assertEquals(wbanKey.toString(), dictionary.getWbanId(wbanKey), dictionary.getWbanIdByNumber(wbanNumber));
+        }
+        for(int wbanId = 0; wbanId < dictionary.getWbanCount(); wbanId++)
+            Assert.assertEquals(wbanId, dictionary.getWbanId(dictionary.getWbanKey(wbanId)));
+
+        Set<Integer> areaIds = new HashSet<>();
+        for(Key areaKey : statAreaMap.keySet()) {
+            int areaId = dictionary.getAreaId(areaKey);
+            Assert.assertTrue(areaKey.toString(), areaId >= 0 && areaId < dictionary.getAreaCount());
+            Assert.assertTrue(areaIds.add(areaId));
+            Assert.assertEquals(areaKey, dictionary.getAreaKey(areaId));
+            Assert.assertSame(statAreaMap.get(areaKey), dictionary.getArea(areaId));
+        }
+        for(int countyId = 0; countyId < dictionary.getCountyCount(); countyId++)
+            Assert.assertEquals(countyId, dictionary.getCountyId(dictionary.getCounty(countyId).key()));
+
+        Assert.assertEquals(ContextDictionary.NO_ID, dictionary.getWbanId(new Key("not a WBAN")));
+        Assert.assertEquals(ContextDictionary.NO_ID, dictionary.getAreaId(new Key("not an area")));
+        Assert.assertEquals(ContextDictionary.NO_ID, dictionary.getWbanIdByNumber(-1));
+        Assert.assertEquals(ContextDictionary.NO_ID, dictionary.getWbanIdByNumber(RainfallRecordParser.WBAN_ID_LIMIT));
+    }
+
+    @Test
+    public void testWbansAreRoutedToTheirAreasCountiesAndStates() {
+        Map<Integer, Set<Key>> expectedAreas = new HashMap<>();
+        for(Entity entity : maps.get(Constants.STAT_AREA_MAP_NAME).values()) {
+            USAStatAreaPopulationRecord record = (USAStatAreaPopulationRecord) entity;
+            for(Key wbanKey : record.getArea().getWeatherStations().keySet()) {
+                int wbanNumber = RainfallRecordParser.parseWbanId(String.valueOf(wbanKey.getKey()));
+                if(wbanNumber >= 0)
+                    expectedAreas.computeIfAbsent(wbanNumber, number -> new HashSet<>()).add(record.key());
+            }
+        }
+        Map<Integer, Integer> expectedCounties = new HashMap<>();
+        Map<Integer, Integer> expectedStates = new HashMap<>();
+        for(Entity entity : maps.get(Constants.WBAN_MASTER_MAP).values()) {
+            WBAN wban = (WBAN) entity;
+            USACounty county = wban.getCounty();
+            int wbanNumber = RainfallRecordParser.parseWbanId(String.valueOf(wban.key().getKey()));
+            if(county == null || wbanNumber < 0)
+                continue;
+            expectedCounties.put(wbanNumber, dictionary.getCountyId(county.key()));
+            if(county.getState() != null)
+                expectedStates.put(wbanNumber, county.getState().ordinal());
+        }
+        Assert.assertFalse(expectedAreas.isEmpty());
+        Assert.assertFalse(expectedStates.isEmpty());
+
+        // Every numeric WBAN id, so that the WBANs in no area or State are checked too
+        for(int wbanNumber = 0; wbanNumber < RainfallRecordParser.WBAN_ID_LIMIT; wbanNumber++) {
+            int[] areaIds = dictionary.getAreaIds(wbanNumber);
+            Set<Key> areas = null;
+            if(areaIds != null) {
+                areas = new HashSet<>();
+                for(int areaId : areaIds)
+                    Assert.assertTrue(areas.add(dictionary.getAreaKey(areaId)));
+            }
+            Assert.assertEquals("WBAN " + wbanNumber, expectedAreas.get(wbanNumber), areas);
+
+            Integer county = expectedCounties.get(wbanNumber);
+            Assert.assertEquals("WBAN " + wbanNumber, county == null ? ContextDictionary.NO_ID : county, dictionary.getCountyIdOfWban(wbanNumber));
+            Integer state = expectedStates.get(wbanNumber);
+            Assert.assertEquals("WBAN " + wbanNumber, state == null ? ContextDictionary.NO_ID : state, dictionary.getStateOfWban(wbanNumber));
+            if(state != null)
+                Assert.assertEquals(dictionary.getState(state), dictionary.getCounty(county).getState());
+        }
+    }
+}
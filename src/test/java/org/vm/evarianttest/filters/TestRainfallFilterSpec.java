@@ -0,0 +1,56 @@
+package org.vm.evarianttest.filters;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.vm.evarianttest.query.TimeWindow;
+import org.vm.evarianttest.reader.RainfallRecordCursor;
+
+/**
+ * Tests that a compiled filter spec keeps the records of every condition, and the window of the days of a spec.
+ */
+public class TestRainfallFilterSpec {
+
+    @Test
+    public void testCompiledFilterChecksEveryCondition() {
+        RainfallFilterSpec spec = RainfallFilterSpec.parse("days=20150510-20150520,20150501-20150505,20150519-20150522;hours=8-23,99;stations=03013,00230;excludeFlags=a");
+        // The spec is printed back in a form that parses to the same spec
+        Assert.assertEquals(spec.toString(), RainfallFilterSpec.parse(spec.toString()).toString());
+        CompiledRainfallFilter filter = spec.compile();
+
+        Assert.assertTrue(filter.test(record(3013, 20150501, 8, RainfallRecordCursor.NO_FLAG)));
+        Assert.assertTrue(filter.test(record(230, 20150522, 99, (byte) 'S')));
+        Assert.assertFalse(filter.test(record(3014, 20150501, 8, RainfallRecordCursor.NO_FLAG)));
+        Assert.assertFalse(filter.test(record(3013, 20150507, 8, RainfallRecordCursor.NO_FLAG)));
+        Assert.assertFalse(filter.test(record(3013, 20150523, 8, RainfallRecordCursor.NO_FLAG)));
+        Assert.assertFalse(filter.test(record(3013, 20150501, 7, RainfallRecordCursor.NO_FLAG)));
+        Assert.assertFalse(filter.test(record(3013, 20150501, 64, RainfallRecordCursor.NO_FLAG)));
+        Assert.assertFalse(filter.test(record(3013, 20150501, 8, (byte) 'A')));
+
+        // Conditions that are left out keep every record
+        CompiledRainfallFilter all = RainfallFilterSpec.parse("").compile();
+        Assert.assertTrue(all.test(record(99999, 19000101, 0, (byte) 'A')));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownConditionIsRejected() {
+        RainfallFilterSpec.parse("months=201505");
+    }
+
+    @Test
+    public void testDaysOfAdjacentMonthsAreOneWindow() {
+        Assert.assertEquals(TimeWindow.days(20150501, 20150630), RainfallFilterSpec.parse("days=20150601-20150630,20150501-20150531").toTimeWindow());
+        Assert.assertEquals(TimeWindow.days(20141201, 20150131), RainfallFilterSpec.parse("days=20141201-20141231,20150101-20150131").toTimeWindow());
+        Assert.assertEquals(TimeWindow.days(20160228, 20160301), RainfallFilterSpec.parse("days=20160228-20160229,20160301").toTimeWindow());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDaysWithAGapAreNotAWindow() {
+        RainfallFilterSpec.parse("days=20150501-20150530,20150601-20150630").toTimeWindow();
+    }
+
+    private static RainfallRecordCursor record(int wbanId, int yearMonthDay, int hour, byte flag) {
+        RainfallRecordCursor cursor = new RainfallRecordCursor();
+        cursor.set(wbanId, yearMonthDay, hour, 1, 1, false, flag);
+        return cursor;
+    }
+}
@@ -0,0 +1,55 @@
+package org.vm.evarianttest.generator;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.vm.evarianttest.aggregation.FixedPointPrecipitationAccumulator;
+import org.vm.evarianttest.query.RainfallTimeRangeIndex;
+import org.vm.evarianttest.query.TimeWindow;
+import org.vm.evarianttest.reader.MappedRainfallFileReader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.YearMonth;
+import java.util.Arrays;
+
+/**
+ * Tests that a generated file reads back to its expected aggregates, malformed lines left out.
+ */
+public class TestSyntheticRainfallGenerator {
+
+    @Test
+    public void testGeneratedFileReadsBackToItsExpectedAggregates() throws IOException {
+        Path file = Files.createTempFile("synthetic", "precip.txt");
+        try {
+            SyntheticRainfallGenerator generator = SyntheticRainfallGenerator.fromContextFiles(Paths.get("./src/main/resources/wbanmasterlist.psv"),
+                    Paths.get("./src/main/resources/201505station.txt"))
+                    .months(YearMonth.of(2015, 4), 2).stations(40).wetHourRatio(0.2).traceRatio(0.1).malformedLineRatio(0.01);
+            SyntheticRainfallSummary expected = generator.generate(file);
+            Assert.assertEquals((30 + 31) * 24 * 40, generator.getLineCount());
+            Assert.assertEquals(generator.getLineCount(), expected.getLineCount());
+            Assert.assertTrue(expected.getMalformedLineCount() > 0);
+
+            RainfallTimeRangeIndex index = RainfallTimeRangeIndex.build(new MappedRainfallFileReader(file));
+            TimeWindow all = TimeWindow.days(0, Integer.MAX_VALUE);
+            long records = 0;
+            for(int wbanId : expected.getStationIds()) {
+                Assert.assertEquals(expected.getCount(wbanId), index.getCount(wbanId, all));
+                Assert.assertEquals(expected.getScaledTotal(wbanId), index.getScaledTotal(wbanId, all));
+                records += index.getCount(wbanId, all);
+            }
+            Assert.assertEquals(expected.getRecordCount(), records);
+
+            // Every station in a slot of its own, over May after 7 AM
+            int[] stationIds = expected.getStationIds();
+            TimeWindow may2015After7AM = TimeWindow.days(20150501, 20150531).withHours(8, TimeWindow.MAX_HOUR);
+            FixedPointPrecipitationAccumulator fromFile = index.aggregate(may2015After7AM, stationIds.length, wbanId -> new int[]{Arrays.binarySearch(stationIds, wbanId)});
+            FixedPointPrecipitationAccumulator fromSummary = expected.aggregate(may2015After7AM, stationIds.length, wbanId -> new int[]{Arrays.binarySearch(stationIds, wbanId)});
+            for(int slot = 0; slot < stationIds.length; slot++)
+                Assert.assertEquals(fromFile.getScaled(slot), fromSummary.getScaled(slot));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
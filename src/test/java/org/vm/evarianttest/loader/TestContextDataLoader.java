@@ -0,0 +1,88 @@
+package org.vm.evarianttest.loader;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.vm.evarianttest.entity.Entity;
+import org.vm.evarianttest.entity.Key;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests that the links of the loaders run after the loaders writing their inputs.
+ */
+public class TestContextDataLoader {
+
+    /**
+     * Loader recording its phases, with its link waiting on the given input.
+     */
+    private static class RecordingLoader implements DataLoader<Key, Entity> {
+        private final String input;
+        private final String output;
+        private final List<String> events;
+
+        RecordingLoader(String input, String output, List<String> events) {
+            this.input = input;
+            this.output = output;
+            this.events = events;
+        }
+
+        @Override
+        public void load() throws DataLoaderException {
+            parse();
+            link(new LinkedHashMap<>());
+        }
+
+        @Override
+        public void link(Map<String, Map<Key, Entity>> maps) throws DataLoaderException {
+            if(input != null && !maps.containsKey(input))
+                throw new DataLoaderException(input + " is not loaded");
+            synchronized (events) {
+                events.add(output);
+            }
+            maps.put(output, new LinkedHashMap<>());
+        }
+
+        @Override
+        public Set<String> getInputs() {
+            return input == null ? Collections.emptySet() : Collections.singleton(input);
+        }
+
+        @Override
+        public Set<String> getOutputs() {
+            return Collections.singleton(output);
+        }
+
+        @Override
+        public Map<String, Map<Key, Entity>> getDataMaps() throws DataLoaderException {
+            return null;
+        }
+    }
+
+    @Test
+    public void testLinksRunInDependencyOrder() throws DataLoaderException {
+        List<String> events = new ArrayList<>();
+        ContextDataLoader context = new ContextDataLoader()
+                .register(new RecordingLoader(null, "A", events))
+                .register(new RecordingLoader("A", "B", events))
+                .register(new RecordingLoader("B", "C", events));
+        context.load();
+
+        Assert.assertEquals(Arrays.asList("A", "B", "C"), events);
+        Assert.assertEquals(3, context.getDataMaps().size());
+    }
+
+    @Test(expected = DataLoaderException.class)
+    public void testLoaderRegisteredBeforeItsInputIsRejected() throws DataLoaderException {
+        List<String> events = new ArrayList<>();
+        new ContextDataLoader()
+                .register(new RecordingLoader("A", "B", events))
+                .register(new RecordingLoader(null, "A", events))
+                .load();
+    }
+}
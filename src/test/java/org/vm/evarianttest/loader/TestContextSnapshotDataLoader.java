@@ -0,0 +1,166 @@
+package org.vm.evarianttest.loader;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.vm.evarianttest.ContextFixture;
+import org.vm.evarianttest.calc.PopulationWetnessCalculator;
+import org.vm.evarianttest.entity.Entity;
+import org.vm.evarianttest.entity.Key;
+import org.vm.evarianttest.entity.census.USACounty;
+import org.vm.evarianttest.entity.census.USAStatAreaPopulationRecord;
+import org.vm.evarianttest.entity.census.USAStatisticalArea;
+import org.vm.evarianttest.entity.weather.WBAN;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests that the context snapshot is read back as written, and only while its source files are unchanged.
+ */
+public class TestContextSnapshotDataLoader {
+
+    @Test
+    public void testSnapshotIsUsedUntilASourceChanges() throws IOException, DataLoaderException {
+        Path source = Files.createTempFile("context", ".psv");
+        Path snapshotFile = Files.createTempFile("context", ".snapshot");
+        try {
+            Files.write(source, "03013|first".getBytes());
+            Files.delete(snapshotFile);
+
+            ContextSnapshotDataLoader snapshot = new ContextSnapshotDataLoader(snapshotFile, Collections.singletonList(source.toUri()), "MSA");
+            Assert.assertFalse(snapshot.isUpToDate());
+
+            Map<Key, Entity> wbanMap = new HashMap<>();
+            WBAN wban = new WBAN("03013", "AUSTIN");
+            wbanMap.put(wban.key(), wban);
+            Map<String, Map<Key, Entity>> maps = new HashMap<>();
+            maps.put(Constants.WBAN_MASTER_MAP, wbanMap);
+            snapshot.write(maps);
+
+            ContextSnapshotDataLoader reopened = new ContextSnapshotDataLoader(snapshotFile, Collections.singletonList(source.toUri()), "MSA");
+            Assert.assertTrue(reopened.isUpToDate());
+            reopened.load();
+            Assert.assertEquals(wbanMap.keySet(), reopened.getDataMaps().get(Constants.WBAN_MASTER_MAP).keySet());
+
+            Assert.assertFalse(new ContextSnapshotDataLoader(snapshotFile, Collections.singletonList(source.toUri()), "CSA").isUpToDate());
+            Files.write(source, "03013|second".getBytes());
+            Assert.assertFalse(new ContextSnapshotDataLoader(snapshotFile, Collections.singletonList(source.toUri()), "MSA").isUpToDate());
+        } finally {
+            Files.deleteIfExists(source);
+            Files.deleteIfExists(snapshotFile);
+        }
+    }
+
+    @Test
+    public void testSourceWithANewTimeIsReadForItsChecksum() throws IOException, DataLoaderException {
+        Path source = Files.createTempFile("context", ".psv");
+        Path snapshotFile = Files.createTempFile("context", ".snapshot");
+        try {
+            Files.write(source, "03013|first".getBytes());
+            Files.setLastModifiedTime(source, FileTime.fromMillis(1000000000000L));
+            ContextSnapshotDataLoader snapshot = new ContextSnapshotDataLoader(snapshotFile, Collections.singletonList(source.toUri()), "MSA");
+            snapshot.write(Collections.singletonMap(Constants.WBAN_MASTER_MAP, Collections.<Key, Entity>emptyMap()));
+
+            // A copy or a touch changes the time only
+            Files.setLastModifiedTime(source, FileTime.fromMillis(2000000000000L));
+            Assert.assertTrue(snapshot.isUpToDate());
+
+            // Same size, new content
+            Files.write(source, "03013|frist".getBytes());
+            Assert.assertFalse(snapshot.isUpToDate());
+        } finally {
+            Files.deleteIfExists(source);
+            Files.deleteIfExists(snapshotFile);
+        }
+    }
+
+    @Test
+    public void testContextDataIsReadBackWithItsLinks() throws IOException, DataLoaderException {
+        Map<String, Map<Key, Entity>> maps = ContextFixture.calculator().getResult();
+        Path snapshotFile = Files.createTempFile("context", ".snapshot");
+        try {
+            ContextSnapshotDataLoader snapshot = new ContextSnapshotDataLoader(snapshotFile, Collections.emptyList(), "MSA");
+            snapshot.write(maps);
+            snapshot.load();
+            Map<String, Map<Key, Entity>> loaded = snapshot.getDataMaps();
+
+            Assert.assertEquals(maps.keySet(), loaded.keySet());
+            for(String name : maps.keySet()) {
+                Assert.assertEquals(name, new ArrayList<>(maps.get(name).keySet()), new ArrayList<>(loaded.get(name).keySet()));
+                Assert.assertEquals(name, new ArrayList<>(maps.get(name).values()), new ArrayList<>(loaded.get(name).values()));
+            }
+            for(Key key : maps.get(Constants.STAT_AREA_MAP_NAME).keySet()) {
+                USAStatisticalArea area = ((USAStatAreaPopulationRecord) maps.get(Constants.STAT_AREA_MAP_NAME).get(key)).getArea();
+                USAStatisticalArea read = ((USAStatAreaPopulationRecord) loaded.get(Constants.STAT_AREA_MAP_NAME).get(key)).getArea();
+                Assert.assertEquals(new ArrayList<>(area.getCounties().keySet()), new ArrayList<>(read.getCounties().keySet()));
+                Assert.assertEquals(new ArrayList<>(area.getWeatherStations().keySet()), new ArrayList<>(read.getWeatherStations().keySet()));
+                for(USACounty county : read.getCounties().values())
+                    Assert.assertSame(read, county.getPartOfAreas().get(read.key()));
+            }
+            Map<USACounty, Boolean> counties = new IdentityHashMap<>(), readCounties = new IdentityHashMap<>();
+            for(Key key : maps.get(Constants.WBAN_MASTER_MAP).keySet()) {
+                WBAN wban = (WBAN) maps.get(Constants.WBAN_MASTER_MAP).get(key);
+                WBAN read = (WBAN) loaded.get(Constants.WBAN_MASTER_MAP).get(key);
+                Assert.assertEquals(wban.getWbanStationName(), read.getWbanStationName());
+                Assert.assertEquals(wban.getStationLocatedAt(), read.getStationLocatedAt());
+                Assert.assertEquals(wban.getCounty(), read.getCounty());
+                Assert.assertEquals(wban.getArea() == null ? null : wban.getArea().key(), read.getArea() == null ? null : read.getArea().key());
+                if(read.getArea() != null)
+                    Assert.assertSame(read.getArea(), ((USAStatAreaPopulationRecord) loaded.get(Constants.STAT_AREA_MAP_NAME).get(read.getArea().key())).getArea());
+                if(wban.getCounty() != null) {
+                    counties.put(wban.getCounty(), true);
+                    readCounties.put(read.getCounty(), true);
+                }
+            }
+            // The County instances of the WBANs are as many, shared or not, as those written
+            Assert.assertEquals(counties.size(), readCounties.size());
+
+            Assert.assertEquals(new PopulationWetnessCalculator(ContextFixture.TEST_DATA, maps).calculate(),
+                    new PopulationWetnessCalculator(ContextFixture.TEST_DATA, loaded).calculate());
+        } finally {
+            Files.deleteIfExists(snapshotFile);
+        }
+    }
+
+    @Test
+    public void testCorruptSnapshotIsRejected() throws IOException, DataLoaderException {
+        Path snapshotFile = Files.createTempFile("context", ".snapshot");
+        try {
+            ContextSnapshotDataLoader snapshot = new ContextSnapshotDataLoader(snapshotFile, Collections.emptyList(), "MSA");
+            snapshot.write(ContextFixture.calculator().getResult());
+            byte[] written = Files.readAllBytes(snapshotFile);
+
+            List<byte[]> corrupt = new ArrayList<>();
+            byte[] truncated = new byte[written.length / 2];
+            System.arraycopy(written, 0, truncated, 0, truncated.length);
+            corrupt.add(truncated);
+            // The number of strings, right after the header
+            byte[] badCount = written.clone();
+            badCount[4 + 4 + 2 + 3 + 4] = (byte) 0x7F;
+            corrupt.add(badCount);
+            for(byte[] bytes : corrupt) {
+                Files.write(snapshotFile, bytes);
+                Assert.assertTrue(snapshot.isUpToDate());
+                try {
+                    snapshot.load();
+                    Assert.fail("Corrupt snapshot was loaded");
+                } catch (DataLoaderException e) {
+                    Assert.assertTrue(e.getMessage(), e.getMessage().contains("corrupt"));
+                }
+            }
+
+            Files.write(snapshotFile, new byte[]{1, 2, 3});
+            Assert.assertFalse(snapshot.isUpToDate());
+        } finally {
+            Files.deleteIfExists(snapshotFile);
+        }
+    }
+}
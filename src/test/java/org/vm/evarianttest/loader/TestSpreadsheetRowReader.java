@@ -0,0 +1,263 @@
+package org.vm.evarianttest.loader;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.vm.evarianttest.ContextFixture;
+import org.vm.evarianttest.entity.Entity;
+import org.vm.evarianttest.entity.Key;
+import org.vm.evarianttest.entity.census.USACounty;
+import org.vm.evarianttest.entity.census.USAStatAreaPopulationRecord;
+import org.vm.evarianttest.entity.census.USAState;
+import org.vm.evarianttest.entity.census.USAStatisticalAreaType;
+import org.vm.evarianttest.util.Util;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests that the streamed rows of the census workbooks, and the Context Data loaded from them, are those of the usermodel (WorkbookFactory) the
+ * loaders were reading before, for the .xls workbooks and for .xlsx copies of them.
+ */
+public class TestSpreadsheetRowReader {
+    private static final int COLUMNS = 10;
+
+    private static Path censusXlsx;
+    private static Path countyXlsx;
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        censusXlsx = toXlsx(ContextFixture.CENSUS_FILE);
+        countyXlsx = toXlsx(ContextFixture.COUNTY_MSA_LINK_FILE);
+    }
+
+    @AfterClass
+    public static void cleanup() throws Exception {
+        Files.deleteIfExists(censusXlsx);
+        Files.deleteIfExists(countyXlsx);
+    }
+
+    @Test
+    public void testRowsAreThoseOfTheUsermodel() throws Exception {
+        for(URI workbook : Arrays.asList(ContextFixture.CENSUS_FILE, ContextFixture.COUNTY_MSA_LINK_FILE, censusXlsx.toUri(), countyXlsx.toUri())) {
+            List<String> expected = usermodelRows(workbook);
+            Assert.assertTrue(workbook.toString(), expected.size() > 10);
+            List<String> streamed = streamedRows(workbook);
+            for(int i = 0; i < Math.min(expected.size(), streamed.size()); i++)
+                Assert.assertEquals(workbook.toString(), expected.get(i), streamed.get(i));
+            Assert.assertEquals(workbook.toString(), expected.size(), streamed.size());
+        }
+    }
+
+    @Test
+    public void testOnlyTheRequestedColumnsAreKept() throws Exception {
+        List<Integer> counted = new ArrayList<>();
+        new SpreadsheetRowReader(ContextFixture.CENSUS_FILE, 0, 4).read(new SpreadsheetRowReader.RowHandler() {
+            @Override
+            public void onRow(SpreadsheetRowReader.SheetRow row) {
+                if(row.hasCell(2) || row.hasCell(3))
+                    Assert.fail("Column not requested at row " + row.getRowNum());
+                if(row.hasCell(4))
+                    counted.add(row.getRowNum());
+            }
+        });
+        Assert.assertFalse(counted.isEmpty());
+    }
+
+    @Test
+    public void testLoadersGiveTheMapsOfTheUsermodel() throws Exception {
+        List<USAStatisticalAreaType> types = Arrays.asList(USAStatisticalAreaType.values());
+        Map<Key, Entity> expected = usermodelStatAreas(ContextFixture.CENSUS_FILE, types);
+        // Read up to the footnotes, after the last area of Puerto Rico
+        List<Entity> areas = new ArrayList<>(expected.values());
+        Assert.assertTrue(((USAStatAreaPopulationRecord) areas.get(areas.size() - 1)).getArea().isPuertoRicoArea());
+        for(URI census : Arrays.asList(ContextFixture.CENSUS_FILE, censusXlsx.toUri())) {
+            Map<Key, Entity> loaded = loadStatAreas(census, types);
+            Assert.assertEquals(census.toString(), new ArrayList<>(expected.keySet()), new ArrayList<>(loaded.keySet()));
+            Assert.assertEquals(census.toString(), new ArrayList<>(expected.values()), new ArrayList<>(loaded.values()));
+        }
+
+        for(boolean stripSuffix : new boolean[]{true, false}) {
+            Map<Key, Entity> reference = usermodelStatAreas(ContextFixture.CENSUS_FILE, ContextFixture.TYPES_TO_LOAD);
+            linkUsermodelCounties(ContextFixture.COUNTY_MSA_LINK_FILE, reference, stripSuffix);
+            List<String> expectedCounties = counties(reference);
+            Assert.assertTrue(expectedCounties.size() > reference.size());
+            for(URI county : Arrays.asList(ContextFixture.COUNTY_MSA_LINK_FILE, countyXlsx.toUri())) {
+                Map<String, Map<Key, Entity>> maps = new LinkedHashMap<>();
+                maps.put(Constants.STAT_AREA_MAP_NAME, loadStatAreas(ContextFixture.CENSUS_FILE, ContextFixture.TYPES_TO_LOAD));
+                DataLoader<Key, Entity> loader = stripSuffix ? new CountyXLSFileDataLoader(county, maps) : new CitiesInMSAXLSFileDataLoader(county, maps);
+                loader.load();
+                Assert.assertEquals(county + " " + loader.getClass().getSimpleName(), expectedCounties,
+                        counties(loader.getDataMaps().get(Constants.STAT_AREA_MAP_NAME)));
+            }
+        }
+    }
+
+    private static Map<Key, Entity> loadStatAreas(URI census, List<USAStatisticalAreaType> types) throws DataLoaderException {
+        CensusPopXLSFileDataLoader loader = new CensusPopXLSFileDataLoader(census, types);
+        loader.load();
+        return loader.getDataMaps().get(Constants.STAT_AREA_MAP_NAME);
+    }
+
+    /**
+     * This method lists the Counties of every area, with the area they are part of.
+     */
+    private static List<String> counties(Map<Key, Entity> statAreaMap) {
+        List<String> counties = new ArrayList<>();
+        for(Entity entity : statAreaMap.values()) {
+            USAStatAreaPopulationRecord rec = (USAStatAreaPopulationRecord) entity;
+            for(USACounty county : rec.getArea().getCounties().values())
+                counties.add(rec.key() + " : " + county.key() + " : " + county.getPartOfAreas().keySet());
+        }
+        return counties;
+    }
+
+    /**
+     * This method reads the rows as the census loader did with the usermodel.
+     */
+    private static Map<Key, Entity> usermodelStatAreas(URI census, List<USAStatisticalAreaType> types) throws Exception {
+        Map<Key, Entity> statAreaMap = new LinkedHashMap<>();
+        USAStatisticalAreaType currentType = null;
+        boolean isPuertoRicoArea = false;
+        int counter = 0;
+        try {
+            for(Row row : firstSheet(census)) {
+                if(row.getRowNum() < CensusPopXLSFileDataLoader.CENSUS_USA_STARTING_ROW)
+                    continue;
+                String title = row.getCell(CensusPopXLSFileDataLoader.CENSUS_TITLE_COL).toString().trim();
+                if(title.isEmpty())
+                    continue;
+                if(USAState.PUERTO_RICO.getName().equalsIgnoreCase(title)) {
+                    isPuertoRicoArea = true;
+                } else if(USAStatisticalAreaType.isValid(title)) {
+                    currentType = USAStatisticalAreaType.findByName(title);
+                } else if(types.contains(currentType)) {
+                    USAStatAreaPopulationRecord rec = CensusPopXLSFileDataLoader.buildPopulationRec(++counter, title, isPuertoRicoArea, currentType,
+                            row.getCell(CensusPopXLSFileDataLoader.CENSUS_2010_POP_COL).getNumericCellValue(),
+                            row.getCell(CensusPopXLSFileDataLoader.CENSUS_POP_CHANGE_PERCENT_COL).getNumericCellValue());
+                    statAreaMap.put(rec.getArea().key(), rec);
+                }
+            }
+        } catch (RuntimeException e) {
+            // The loader stopped at the first row it could not read, like the notes under the table
+        }
+        return statAreaMap;
+    }
+
+    /**
+     * This method links the Counties as the County and City loaders did with the usermodel.
+     */
+    private static void linkUsermodelCounties(URI countyFile, Map<Key, Entity> statAreaMap, boolean stripSuffix) throws Exception {
+        for(Row row : firstSheet(countyFile)) {
+            Cell cell = row.getCell(CountyXLSFileDataLoader.CENSUS_COUNTY_FILE_STAT_AREA_COL);
+            if(row.getRowNum() < CountyXLSFileDataLoader.CENSUS_COUNTY_FILE_STARTING_ROW || cell == null || cell.getCellType() != Cell.CELL_TYPE_STRING)
+                continue;
+            USAStatAreaPopulationRecord rec = (USAStatAreaPopulationRecord) statAreaMap.get(new Key(Util.cleanSAName(cell.getStringCellValue()).toUpperCase()));
+            if(rec == null)
+                continue;
+            String countyName = Util.cleanString(row.getCell(CountyXLSFileDataLoader.CENSUS_COUNTY_FILE_COUNTY_NAME_COL).getStringCellValue());
+            USAState state = USAState.findByName(Util.cleanString(row.getCell(CountyXLSFileDataLoader.CENSUS_COUNTY_FILE_STATE_NAME_COL).getStringCellValue()));
+            if(rec.getArea().getStates().values().contains(state)) {
+                USACounty county = new USACounty(stripSuffix ? CountyXLSFileDataLoader.removeCommonCountySuffix(countyName) : countyName, state);
+                if(stripSuffix)
+                    county.addPartOfArea(rec.getArea());
+                rec.getArea().addCounty(county);
+            }
+        }
+    }
+
+    private static List<String> usermodelRows(URI workbook) throws Exception {
+        List<String> rows = new ArrayList<>();
+        for(Row row : firstSheet(workbook)) {
+            StringBuilder sbr = new StringBuilder().append(row.getRowNum());
+            for(int column = 0; column < COLUMNS; column++) {
+                Cell cell = row.getCell(column);
+                sbr.append(" | ");
+                if(cell != null)
+                    describe(sbr, cell.getCellType(), cell.toString(), cell.getCellType() == Cell.CELL_TYPE_NUMERIC ? null : cell.getStringCellValue(),
+                            cell.getCellType() == Cell.CELL_TYPE_STRING ? 0 : cell.getNumericCellValue());
+            }
+            rows.add(sbr.toString());
+        }
+        return rows;
+    }
+
+    private static List<String> streamedRows(URI workbook) throws Exception {
+        int[] columns = new int[COLUMNS];
+        for(int column = 0; column < COLUMNS; column++)
+            columns[column] = column;
+        List<String> rows = new ArrayList<>();
+        new SpreadsheetRowReader(workbook, columns).read(new SpreadsheetRowReader.RowHandler() {
+            @Override
+            public void onRow(SpreadsheetRowReader.SheetRow row) {
+                StringBuilder sbr = new StringBuilder().append(row.getRowNum());
+                for(int column = 0; column < COLUMNS; column++) {
+                    sbr.append(" | ");
+                    if(row.hasCell(column)) {
+                        int type = row.getCellType(column);
+                        describe(sbr, type, row.getText(column), type == Cell.CELL_TYPE_NUMERIC ? null : row.getStringCellValue(column),
+                                type == Cell.CELL_TYPE_STRING ? 0 : row.getNumericCellValue(column));
+                    }
+                }
+                rows.add(sbr.toString());
+            }
+        });
+        return rows;
+    }
+
+    private static void describe(StringBuilder sbr, int type, String text, String string, double number) {
+        sbr.append(type).append(' ').append(text).append(' ').append(string).append(' ').append(number);
+    }
+
+    private static Sheet firstSheet(URI workbook) throws Exception {
+        try(InputStream in = Files.newInputStream(Paths.get(workbook))) {
+            return WorkbookFactory.create(in).getSheetAt(0);
+        }
+    }
+
+    /**
+     * This method copies the cells of the first sheet of a workbook into a new .xlsx workbook.
+     */
+    private static Path toXlsx(URI workbook) throws Exception {
+        Path xlsx = Files.createTempFile("workbook", ".xlsx");
+        try(Workbook copy = new XSSFWorkbook()) {
+            Sheet sheet = copy.createSheet();
+            for(Row row : firstSheet(workbook)) {
+                Row copied = sheet.createRow(row.getRowNum());
+                for(Iterator<Cell> cells = row.cellIterator(); cells.hasNext(); ) {
+                    Cell cell = cells.next();
+                    Cell target = copied.createCell(cell.getColumnIndex(), cell.getCellType());
+                    if(cell.getCellType() == Cell.CELL_TYPE_STRING)
+                        target.setCellValue(cell.getStringCellValue());
+                    else if(cell.getCellType() == Cell.CELL_TYPE_NUMERIC)
+                        target.setCellValue(cell.getNumericCellValue());
+                    else if(cell.getCellType() == Cell.CELL_TYPE_BOOLEAN)
+                        target.setCellValue(cell.getBooleanCellValue());
+                    else if(cell.getCellType() != Cell.CELL_TYPE_BLANK)
+                        throw new IllegalStateException("Cell type " + cell.getCellType() + " is not copied");
+                }
+            }
+            try(OutputStream out = Files.newOutputStream(xlsx)) {
+                copy.write(out);
+            }
+        }
+        return xlsx;
+    }
+}
@@ -0,0 +1,113 @@
+package org.vm.evarianttest.loader;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.vm.evarianttest.ContextFixture;
+import org.vm.evarianttest.entity.Entity;
+import org.vm.evarianttest.entity.Key;
+import org.vm.evarianttest.entity.census.USAStatAreaPopulationRecord;
+import org.vm.evarianttest.entity.census.USAStatisticalArea;
+import org.vm.evarianttest.entity.weather.WBAN;
+import org.vm.evarianttest.precipitationcalc.RainFallStatsCalculator;
+import org.vm.evarianttest.util.Util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Tests the links of the stations to the Statistical Areas against the full scan of the areas done before the index, and that a load links the
+ * same stations every time.
+ */
+public class TestStationsFile2015DataLoader {
+
+    @Test
+    public void testTokensOfNames() {
+        Assert.assertEquals(Arrays.asList("AU", "US", "ST", "TI", "IN"), new ArrayList<>(StationsFile2015DataLoader.StationAreaIndex.tokens("AUSTIN")));
+        Assert.assertEquals(Arrays.asList("TX"), new ArrayList<>(StationsFile2015DataLoader.StationAreaIndex.tokens("TX")));
+        Assert.assertTrue(StationsFile2015DataLoader.StationAreaIndex.tokens("X").isEmpty());
+        Assert.assertTrue(StationsFile2015DataLoader.StationAreaIndex.tokens("").isEmpty());
+    }
+
+    @Test
+    public void testIndexFindsTheAreasOfAFullScan() throws Exception {
+        Map<String, Map<Key, Entity>> maps = ContextFixture.calculator().getResult();
+        List<USAStatisticalArea> areas = new ArrayList<>();
+        for(Entity entity : maps.get(Constants.STAT_AREA_MAP_NAME).values())
+            areas.add(((USAStatAreaPopulationRecord) entity).getArea());
+        StationsFile2015DataLoader.StationAreaIndex index = new StationsFile2015DataLoader.StationAreaIndex(maps.get(Constants.STAT_AREA_MAP_NAME));
+
+        int links = 0;
+        for(String[] station : stations()) {
+            String locationName = Util.cleanString(station[StationsFile2015DataLoader.STN_2015_FILE_CITY_NAME_COL_IDX]);
+            String stateAbbr = Util.cleanString(station[StationsFile2015DataLoader.STN_2015_FILE_STATE_COL_IDX]);
+            List<USAStatisticalArea> expected = new ArrayList<>();
+            for(USAStatisticalArea area : areas) {
+                String name = String.valueOf(area.key().getKey());
+                // The condition of the baseline full scan
+                if(name.contains(locationName) && name.contains(stateAbbr))
+                    expected.add(area);
+            }
+            List<USAStatisticalArea> found = index.find(locationName, stateAbbr);
+            Assert.assertEquals(locationName + "," + stateAbbr, expected, found);
+            links += found.size();
+        }
+        Assert.assertTrue(links > 0);
+        // The baseline also links PORTLAND,OR to PORTLAND-SOUTH PORTLAND,ME, as OR is found in PORTLAND
+        Assert.assertTrue(index.find("PORTLAND", "OR").stream().anyMatch(area -> String.valueOf(area.key().getKey()).endsWith(",ME")));
+        Assert.assertEquals(areas, index.find("", ""));
+        Assert.assertFalse(index.find("DENVER", "CO").isEmpty());
+    }
+
+    @Test
+    public void testLoadsLinkTheSameStationsEveryTime() throws DataLoaderException {
+        String first = null;
+        for(int run = 0; run < 3; run++) {
+            RainFallStatsCalculator calc = ContextFixture.newCalculator();
+            calc.load();
+            String links = links(calc.getResult());
+            if(first == null)
+                first = links;
+            Assert.assertEquals("Run " + run, first, links);
+        }
+        Assert.assertEquals(first, links(ContextFixture.calculator().getResult()));
+    }
+
+    private static List<String[]> stations() throws IOException {
+        List<String[]> stations = new ArrayList<>();
+        for(String line : Files.readAllLines(Paths.get(ContextFixture.STATIONS_201505_FILE), StandardCharsets.ISO_8859_1)) {
+            String[] fields = Util.splitPSVLine(line);
+            if(fields.length > StationsFile2015DataLoader.STN_2015_FILE_STATE_COL_IDX)
+                stations.add(fields);
+        }
+        return stations;
+    }
+
+    /**
+     * This method lists the WBANs of every Statistical Area and the area every WBAN ended up with, in a stable order.
+     */
+    private static String links(Map<String, Map<Key, Entity>> maps) {
+        Map<String, TreeSet<String>> wbansByArea = new TreeMap<>();
+        for(Entity entity : maps.get(Constants.STAT_AREA_MAP_NAME).values()) {
+            USAStatisticalArea area = ((USAStatAreaPopulationRecord) entity).getArea();
+            TreeSet<String> wbans = new TreeSet<>();
+            for(Key wbanKey : area.getWeatherStations().keySet())
+                wbans.add(String.valueOf(wbanKey.getKey()));
+            wbansByArea.put(String.valueOf(area.key().getKey()), wbans);
+        }
+        Map<String, String> areaByWban = new TreeMap<>();
+        for(Entity entity : maps.get(Constants.WBAN_MASTER_MAP).values()) {
+            WBAN wban = (WBAN) entity;
+            if(wban.getArea() != null)
+                areaByWban.put(String.valueOf(wban.key().getKey()), String.valueOf(wban.getArea().key().getKey()));
+        }
+        return wbansByArea + "\n" + areaByWban;
+    }
+}
@@ -0,0 +1,130 @@
+package org.vm.evarianttest.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.vm.evarianttest.ContextFixture;
+import org.vm.evarianttest.aggregation.AccumulatingRecordHandler;
+import org.vm.evarianttest.aggregation.FixedPointPrecipitationAccumulator;
+import org.vm.evarianttest.calc.RainFallByStateCalculator;
+import org.vm.evarianttest.calc.RainfallFileFollower;
+import org.vm.evarianttest.filters.CompiledRainfallFilter;
+import org.vm.evarianttest.filters.RainfallFilterSpec;
+import org.vm.evarianttest.loader.ContextDataLoader;
+import org.vm.evarianttest.reader.MappedRainfallFileReader;
+import org.vm.evarianttest.reader.RainfallKeyFilter;
+import org.vm.evarianttest.reader.RainfallRecordCursor;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests that a scan counts its lines per outcome and publishes them over JMX.
+ */
+public class TestPipelineMetrics {
+    private static final String LINES = "Wban,YearMonthDay,Hour,Precipitation,PrecipitationFlag\n"
+            + "03013,20150501,01,0.10,\n"       // rejected by hours
+            + "03013,20150501,09,0.20,\n"       // summed
+            + "03013,20150501,10,T,A\n"         // rejected by flags
+            + "03013,20150601,09,0.30,\n"       // rejected by days
+            + "94846,20150501,09,0.40,\n"       // rejected by stations
+            + "03013,20150501,11,0.1.0,\n";     // parse failure, like the header
+
+    private static class FilteringHandler extends AccumulatingRecordHandler {
+        private final CompiledRainfallFilter filter;
+
+        FilteringHandler(CompiledRainfallFilter filter) {
+            super(new FixedPointPrecipitationAccumulator(1));
+            this.filter = filter;
+        }
+
+        @Override
+        public void onRecord(RainfallRecordCursor cursor) {
+            if(accept(filter, cursor))
+                accumulator.add(0, cursor);
+        }
+
+        @Override
+        public RainfallKeyFilter getKeyFilter() {
+            return filter;
+        }
+    }
+
+    @Test
+    public void testScanIsCountedPerOutcomeAndPublished() throws Exception {
+        Path file = Files.createTempFile("metrics", "precip.txt");
+        try {
+            Files.write(file, LINES.getBytes(StandardCharsets.US_ASCII));
+            CompiledRainfallFilter filter = RainfallFilterSpec.parse("days=20150501-20150531;hours=8-99;stations=03013;excludeFlags=A").compile();
+            PipelineMetrics metrics = PipelineMetrics.get();
+            long[] before = counters(metrics);
+            long parsedLines = metrics.parseStage().getItems(), mergedParts = metrics.mergeStage().getItems();
+
+            List<FilteringHandler> handlers = new MappedRainfallFileReader(file).scan(() -> new FilteringHandler(filter));
+            FixedPointPrecipitationAccumulator total = (FixedPointPrecipitationAccumulator) AccumulatingRecordHandler.mergeInto(new FixedPointPrecipitationAccumulator(1), handlers);
+            Assert.assertEquals(200, total.getScaled(0));
+
+            long[] after = counters(metrics);
+            long[] expected = {7, LINES.length(), 2, 2, 0, 1, 1, 1, 1, 1};
+            for(int i = 0; i < expected.length; i++)
+                Assert.assertEquals("Counter " + i, expected[i], after[i] - before[i]);
+            Assert.assertEquals(7, metrics.parseStage().getItems() - parsedLines);
+            Assert.assertEquals(handlers.size(), metrics.mergeStage().getItems() - mergedParts);
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            Assert.assertEquals(metrics.getLinesRead(), server.getAttribute(new ObjectName("org.vm.evarianttest:type=PipelineMetrics"), "LinesRead"));
+            Assert.assertEquals("lines", server.getAttribute(new ObjectName("org.vm.evarianttest:type=PipelineStage,name=parse"), "ItemUnit"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testFollowedFileCountsEveryRecordOnceAndUnlinkedStationsApart() throws Exception {
+        Path file = Files.createTempFile("metrics", "precip.txt");
+        try {
+            // 99999 is not in the WBAN master list, so it is not rejected by a filter condition
+            Files.write(file, ("00230,20150501,09,0.20,\n" + "99999,20150501,09,0.10,\n").getBytes(StandardCharsets.US_ASCII));
+            PipelineMetrics metrics = PipelineMetrics.get();
+            long[] before = counters(metrics);
+            RainfallFileFollower follower = new RainfallFileFollower(file).register(new RainFallByStateCalculator(file.toUri(), ContextFixture.calculator().getResult()));
+            follower.refresh();
+            follower.refresh();
+            Files.write(file, "00230,20150502,09,0.30,\n".getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+            follower.refresh();
+            follower.refresh();
+
+            long[] after = counters(metrics);
+            Assert.assertEquals("Rejected by context", 1, after[4] - before[4]);
+            Assert.assertEquals("Rejected by stations", 0, after[5] - before[5]);
+            Assert.assertEquals("Aggregation updates", 2, after[9] - before[9]);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testContextLoadIsPublishedPerDataLoader() throws Exception {
+        ContextFixture.calculator();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for(String loader : Arrays.asList("CensusPopXLSFileDataLoader", "CountyXLSFileDataLoader", "WBANpsvFileDataLoader", "StationsFile2015DataLoader")) {
+            ObjectName name = new ObjectName("org.vm.evarianttest:type=DataLoaderMetrics,name=" + loader);
+            Assert.assertTrue(loader, (Long) server.getAttribute(name, "LoadCount") >= 1);
+            Assert.assertTrue(loader, (Long) server.getAttribute(name, "RowCount") > 0);
+        }
+        // The loads are counted once, per Data Loader, and not again for the ContextDataLoader running them
+        Assert.assertFalse(PipelineMetrics.get().loaders().containsKey(ContextDataLoader.class.getSimpleName()));
+    }
+
+    private static long[] counters(PipelineMetrics metrics) {
+        return new long[]{metrics.getLinesRead(), metrics.getBytesRead(), metrics.getRecordsParsed(), metrics.getParseFailures(),
+                metrics.getRejectedByContext(), metrics.getRejectedByStations(), metrics.getRejectedByDays(), metrics.getRejectedByHours(), metrics.getRejectedByFlags(),
+                metrics.getAggregationUpdates()};
+    }
+}
@@ -0,0 +1,29 @@
+package org.vm.evarianttest.precipitationcalc;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.vm.evarianttest.ContextFixture;
+import org.vm.evarianttest.entity.Key;
+import org.vm.evarianttest.loader.Constants;
+import org.vm.evarianttest.loader.DataLoaderException;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Tests that the calculator loads only the Context Data its calculations need.
+ */
+public class TestRainFallStatsCalculator {
+    @Test
+    public void testRainfallByStateLoadsOnlyTheWBANs() throws DataLoaderException {
+        RainFallStatsCalculator calc = ContextFixture.calculator();
+        RainFallStatsCalculator lazyCalc = ContextFixture.newCalculator();
+
+        Map<Key, BigDecimal> result = lazyCalc.calculateRainfallByState(ContextFixture.TEST_DATA, null);
+        Assert.assertNull(lazyCalc.getResult().get(Constants.STAT_AREA_MAP_NAME));
+        Assert.assertEquals(calc.calculateRainfallByState(ContextFixture.TEST_DATA, null), result);
+
+        // Asking for the Statistical Areas loads them on first use
+        Assert.assertEquals(calc.calculatePopulationWetnessByMSA(ContextFixture.TEST_DATA, null), lazyCalc.calculatePopulationWetnessByMSA(ContextFixture.TEST_DATA, null));
+    }
+}
@@ -0,0 +1,153 @@
+package org.vm.evarianttest.query;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.vm.evarianttest.ContextFixture;
+import org.vm.evarianttest.calc.PopulationWetnessCalculator;
+import org.vm.evarianttest.calc.RainFallByStateCalculator;
+import org.vm.evarianttest.filters.RainfallFilterSpec;
+import org.vm.evarianttest.loader.DataLoaderException;
+import org.vm.evarianttest.precipitationcalc.RainFallStatsCalculator;
+import org.vm.evarianttest.reader.MappedRainfallFileReader;
+import org.vm.evarianttest.reader.RainfallRecordCursor;
+import org.vm.evarianttest.reader.RainfallRecordHandler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Tests that the totals of the prefix sums are the totals of a scan over the same window.
+ */
+public class TestRainfallTimeRangeIndex {
+
+    @Test
+    public void testWindowTotalsMatchAScan() throws IOException {
+        Path file = Files.createTempFile("rainfall", ".txt");
+        try {
+            StringBuilder content = new StringBuilder("Wban,YearMonthDay,Hour,Precipitation,PrecipitationFlag\n");
+            Random random = new Random(42);
+            for(String wban : new String[]{"00230", "03013", "13904"}) {
+                for(int day = 20150428; day <= 20150430; day++)
+                    appendDay(content, wban, day, random);
+                for(int day = 20150501; day <= 20150531; day += 1 + random.nextInt(3))
+                    appendDay(content, wban, day, random);
+                // Hours past 24 are valid records up to the last hour of the parser
+                for(String hour : new String[]{"63", "64", "70", "99"})
+                    content.append(wban).append(",20150515,").append(hour).append(',').append(random.nextInt(10)).append(".25,\n");
+            }
+            Files.write(file, content.toString().getBytes());
+            MappedRainfallFileReader reader = new MappedRainfallFileReader(file);
+            RainfallTimeRangeIndex index = RainfallTimeRangeIndex.build(reader);
+            Assert.assertEquals(3, index.getStationCount());
+
+            TimeWindow[] windows = {
+                    TimeWindow.days(20150101, 20151231),
+                    TimeWindow.days(20150501, 20150531).withHours(8, TimeWindow.MAX_HOUR),
+                    TimeWindow.days(20150429, 20150502).withHours(0, 7),
+                    TimeWindow.days(20150510, 20150510).withHours(12, 12),
+                    TimeWindow.days(20150601, 20150630),
+                    TimeWindow.days(20150501, 20150531).withHours(64, TimeWindow.MAX_HOUR),
+                    TimeWindow.days(20150515, 20150515).withHours(12, 12).plusHours(63, 70)
+            };
+            for(TimeWindow window : windows) {
+                for(int wbanId : new int[]{230, 3013, 13904, 99999}) {
+                    long[] expected = new long[2];
+                    reader.scan(() -> new RainfallRecordHandler() {
+                        @Override
+                        public void onRecord(RainfallRecordCursor rec) {
+                            if(rec.getWbanId() == wbanId && window.contains(rec.getYearMonthDay(), rec.getHour())) {
+                                synchronized (expected) {
+                                    expected[0] += rec.getScaledPrecipitation();
+                                    expected[1]++;
+                                }
+                            }
+                        }
+                    });
+                    Assert.assertEquals(window + " " + wbanId, expected[0], index.getScaledTotal(wbanId, window));
+                    Assert.assertEquals(window + " " + wbanId, expected[1], index.getCount(wbanId, window));
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testIndexGivesSameResultsAsScans() throws DataLoaderException {
+        RainFallStatsCalculator calc = ContextFixture.calculator();
+        RainfallTimeRangeIndex index = calc.buildTimeRangeIndex(ContextFixture.TEST_DATA);
+        // May 2015 after 7 AM is the window of the PopulationWetnessByMSA filters
+        TimeWindow may2015After7AM = TimeWindow.days(20150501, 20150531).withHours(8, TimeWindow.MAX_HOUR);
+        Assert.assertEquals(calc.calculatePopulationWetnessByMSA(ContextFixture.TEST_DATA, null), calc.calculatePopulationWetnessByMSA(index, may2015After7AM, null));
+        Assert.assertEquals(calc.calculateRainfallByState(ContextFixture.TEST_DATA, null), calc.calculateRainfallByState(index, TimeWindow.days(0, Integer.MAX_VALUE), null));
+        // The records replayed from the index sum to the same totals
+        Assert.assertEquals(calc.calculateRainfallByState(ContextFixture.TEST_DATA, null), calc.calculateRainfallByState(index, null));
+    }
+
+    @Test
+    public void testHoursRunToTheLastHourOfTheParser() {
+        TimeWindow all = TimeWindow.days(20150501, 20150531);
+        Assert.assertTrue(all.containsHour(0));
+        Assert.assertTrue(all.containsHour(TimeWindow.MAX_HOUR));
+        Assert.assertFalse(all.containsHour(TimeWindow.MAX_HOUR + 1));
+        Assert.assertFalse(all.containsHour(-1));
+        Assert.assertEquals("0-99", all.getHours());
+
+        TimeWindow after7AM = all.withHours(8, TimeWindow.MAX_HOUR);
+        Assert.assertFalse(after7AM.containsHour(7));
+        for(int hour = 8; hour <= TimeWindow.MAX_HOUR; hour++)
+            Assert.assertTrue(String.valueOf(hour), after7AM.containsHour(hour));
+        Assert.assertEquals("0,12,63-64", all.withHours(0, 0).plusHours(12, 12).plusHours(63, 64).getHours());
+        Assert.assertEquals(after7AM, all.withHours(8, 63).plusHours(64, TimeWindow.MAX_HOUR));
+
+        try {
+            all.withHours(8, TimeWindow.MAX_HOUR + 1);
+            Assert.fail("Hour past the last hour of the parser");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("Invalid hour range"));
+        }
+    }
+
+    @Test
+    public void testIndexKeepsTheStationsOfTheFilter() throws DataLoaderException {
+        RainFallStatsCalculator calc = ContextFixture.calculator();
+        RainfallTimeRangeIndex index = calc.buildTimeRangeIndex(ContextFixture.TEST_DATA);
+        TimeWindow may2015After7AM = TimeWindow.days(20150501, 20150531).withHours(8, TimeWindow.MAX_HOUR);
+        for(String stations : new String[]{"stations=00230", "stations=03013"}) {
+            PopulationWetnessCalculator scanned = new PopulationWetnessCalculator(new MappedRainfallFileReader(Paths.get(ContextFixture.TEST_DATA)), calc.getResult());
+            scanned.setFilter(RainfallFilterSpec.parse(PopulationWetnessCalculator.DEFAULT_FILTER + ";" + stations));
+            PopulationWetnessCalculator indexed = new PopulationWetnessCalculator(index, calc.getResult());
+            indexed.setFilter(RainfallFilterSpec.parse(stations));
+            Assert.assertEquals(stations, scanned.calculate(), indexed.calculate(index, may2015After7AM));
+
+            RainFallByStateCalculator byStateScanned = new RainFallByStateCalculator(new MappedRainfallFileReader(Paths.get(ContextFixture.TEST_DATA)), calc.getResult());
+            byStateScanned.setFilter(RainfallFilterSpec.parse(stations));
+            RainFallByStateCalculator byStateIndexed = new RainFallByStateCalculator(index, calc.getResult());
+            byStateIndexed.setFilter(RainfallFilterSpec.parse(stations));
+            Assert.assertEquals(stations, byStateScanned.calculate(), byStateIndexed.calculate(index, TimeWindow.days(0, Integer.MAX_VALUE)));
+        }
+        Assert.assertTrue(new RainFallByStateCalculator(index, calc.getResult()).calculate(index, TimeWindow.days(0, Integer.MAX_VALUE)).size() > 0);
+
+        // The index does not keep the flags
+        RainFallByStateCalculator withFlags = new RainFallByStateCalculator(index, calc.getResult());
+        withFlags.setFilter(RainfallFilterSpec.parse("excludeFlags=A"));
+        try {
+            withFlags.calculate(index, TimeWindow.days(0, Integer.MAX_VALUE));
+            Assert.fail("Flags cannot be excluded from the index");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("excludeFlags=A"));
+        }
+    }
+
+    private static void appendDay(StringBuilder content, String wban, int day, Random random) {
+        for(int hour = 1; hour <= 24; hour++) {
+            if(random.nextInt(4) == 0)
+                continue;
+            String amount = random.nextInt(5) == 0 ? "T" : String.format("%d.%02d", random.nextInt(2), random.nextInt(100));
+            content.append(wban).append(',').append(day).append(',').append(String.format("%02d", hour)).append(',').append(amount).append(",\n");
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.vm.evarianttest.reader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Record handler of the tests, keeping every record of its part as text along with the totals of the part.
+ */
+public class RecordCollector implements RainfallRecordHandler {
+    private final boolean wetOnly;
+    private final List<String> records = new ArrayList<>();
+    private long total;
+    private long traces;
+
+    /**
+     * @return - Records of every part of the source as text, in source order
+     */
+    public static List<String> records(RainfallSource source) {
+        return records(source, false);
+    }
+
+    /**
+     * @param wetOnly - true to leave out the records without any rainfall, trace or flag
+     * @return - Records of every part of the source as text, in source order
+     */
+    public static List<String> records(RainfallSource source, boolean wetOnly) {
+        List<String> records = new ArrayList<>();
+        for(RecordCollector collector : source.scan(() -> new RecordCollector(wetOnly)))
+            records.addAll(collector.records);
+        return records;
+    }
+
+    public RecordCollector() {
+        this(false);
+    }
+
+    /**
+     * @param wetOnly - true to leave out the records without any rainfall, trace or flag
+     */
+    public RecordCollector(boolean wetOnly) {
+        this.wetOnly = wetOnly;
+    }
+
+    @Override
+    public void onRecord(RainfallRecordCursor cursor) {
+        if(wetOnly && cursor.getScaledPrecipitation() == 0 && !cursor.isTrace() && cursor.getFlag() == RainfallRecordCursor.NO_FLAG)
+            return;
+        records.add(cursor.getWbanId() + "," + cursor.getYearMonthDay() + "," + cursor.getHour() + "," + cursor.getScaledPrecipitation()
+                + "," + cursor.isTrace() + "," + cursor.getFlag());
+        total += cursor.getScaledPrecipitation();
+        if(cursor.isTrace())
+            traces++;
+    }
+
+    public List<String> getRecords() {
+        return records;
+    }
+
+    /**
+     * @return - Sum of the scaled precipitation of the records
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    public long getTraces() {
+        return traces;
+    }
+}
@@ -0,0 +1,54 @@
+package org.vm.evarianttest.reader;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Tests that the zip and gzip archives of a rainfall file give back the records of the file.
+ */
+public class TestCompressedRainfallFileReader {
+    private static Path testData = Paths.get("./src/test/resources/test_good_wban_bad_wban_one_each.txt");
+
+    @Test
+    public void testArchivesGiveTheRecordsOfTheFile() throws IOException {
+        byte[] content = Files.readAllBytes(testData);
+        List<String> expected = RecordCollector.records(new MappedRainfallFileReader(testData));
+
+        Path gzip = Files.createTempFile("201505precip", ".txt.gz");
+        Path zip = Files.createTempFile("QCLCD201505", ".zip");
+        try {
+            try(OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzip))) {
+                out.write(content);
+            }
+            try(ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+                // Only the precipitation entry is read
+                out.putNextEntry(new ZipEntry("201505station.txt"));
+                out.write("WBAN|WMO|CallSign\n03013|72466|LAA\n".getBytes());
+                out.putNextEntry(new ZipEntry("201505precip.txt"));
+                out.write(content);
+            }
+
+            // Blocks smaller than a line force lines to span blocks, and a single block in flight makes the decompression wait for the parsing
+            for(int blockSize : new int[]{7, 64, CompressedRainfallFileReader.DEFAULT_BLOCK_SIZE}) {
+                for(Path archive : new Path[]{gzip, zip}) {
+                    CompressedRainfallFileReader reader = new CompressedRainfallFileReader(archive, blockSize, 1, ForkJoinPool.commonPool());
+                    Assert.assertEquals(archive + " in blocks of " + blockSize, expected, RecordCollector.records(reader));
+                }
+            }
+        } finally {
+            Files.delete(gzip);
+            Files.delete(zip);
+        }
+    }
+}
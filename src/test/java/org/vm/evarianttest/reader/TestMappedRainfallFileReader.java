@@ -0,0 +1,121 @@
+package org.vm.evarianttest.reader;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tests the chunking of the MappedRainfallFileReader and the key filters pushed down into its parser.
+ */
+public class TestMappedRainfallFileReader {
+    private static Path testData = Paths.get("./src/test/resources/test_good_wban_bad_wban_one_each.txt");
+
+    @Test
+    public void testSmallChunksKeepEveryLineWhole() throws IOException {
+        List<String> expected = Files.readAllLines(testData);
+        // Chunks smaller than a line force a boundary search on every line
+        for(int chunkSize : new int[]{1, 7, 64, MappedRainfallFileReader.DEFAULT_CHUNK_SIZE}){
+            MappedRainfallFileReader reader = new MappedRainfallFileReader(testData, chunkSize, ForkJoinPool.commonPool());
+            List<String> lines = new ArrayList<>();
+            for(LineCollector collector : reader.read(LineCollector::new)){
+                lines.addAll(collector.lines);
+            }
+            Assert.assertEquals("Chunk size " + chunkSize, expected, lines);
+        }
+    }
+
+    @Test
+    public void testSmallChunksOnManyThreadsSumEveryRecordOnce() throws IOException {
+        StringBuilder lines = new StringBuilder("Wban,YearMonthDay,Hour,Precipitation,PrecipitationFlag\n");
+        long expected = 0;
+        for(int i = 0; i < 200; i++) {
+            lines.append("03013,201505").append(String.format("%02d", 1 + i % 31)).append(',').append(i % 24).append(",0.").append(String.format("%02d", i % 100)).append(",\n");
+            expected += 10 * (i % 100);
+        }
+        Path file = Files.createTempFile("rainfall", ".txt");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Files.write(file, lines.toString().getBytes(StandardCharsets.US_ASCII));
+            // Every chunk sums into its own handler, so no record is lost or counted twice on a chunk boundary
+            for(int chunkSize : new int[]{1, 7, 64, 1024, MappedRainfallFileReader.DEFAULT_CHUNK_SIZE}) {
+                long records = 0, total = 0;
+                for(PrecipitationSum sum : new MappedRainfallFileReader(file, chunkSize, pool).scan(PrecipitationSum::new)) {
+                    records += sum.records;
+                    total += sum.total;
+                }
+                Assert.assertEquals("Chunk size " + chunkSize, 200, records);
+                Assert.assertEquals("Chunk size " + chunkSize, expected, total);
+            }
+        } finally {
+            pool.shutdown();
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testKeyFilterDropsLinesBeforeTheyReachTheHandler() {
+        MappedRainfallFileReader reader = new MappedRainfallFileReader(testData);
+        int all = 0, afterNoon = 0;
+        for(HourCollector collector : reader.scan(() -> new HourCollector(null)))
+            all += collector.hours.size();
+        for(HourCollector collector : reader.scan(() -> new HourCollector(new RainfallKeyFilter() {
+            @Override
+            public boolean acceptHour(int hour) {
+                return hour >= 12;
+            }
+        }))) {
+            for(int hour : collector.hours)
+                Assert.assertTrue(hour >= 12);
+            afterNoon += collector.hours.size();
+        }
+        Assert.assertTrue(all > afterNoon && afterNoon > 0);
+    }
+
+    private static class HourCollector implements RainfallRecordHandler {
+        private final RainfallKeyFilter keyFilter;
+        private List<Integer> hours = new ArrayList<>();
+
+        HourCollector(RainfallKeyFilter keyFilter) {
+            this.keyFilter = keyFilter;
+        }
+
+        @Override
+        public void onRecord(RainfallRecordCursor cursor) {
+            hours.add(cursor.getHour());
+        }
+
+        @Override
+        public RainfallKeyFilter getKeyFilter() {
+            return keyFilter;
+        }
+    }
+
+    private static class PrecipitationSum implements RainfallRecordHandler {
+        private long records = 0;
+        private long total = 0;
+
+        @Override
+        public void onRecord(RainfallRecordCursor cursor) {
+            records++;
+            total += cursor.getScaledPrecipitation();
+        }
+    }
+
+    private static class LineCollector implements RainfallLineHandler {
+        private List<String> lines = new ArrayList<>();
+
+        @Override
+        public void onLine(ByteBuffer buffer, int start, int end) {
+            lines.add(MappedRainfallFileReader.decodeLine(buffer, start, end));
+        }
+    }
+}
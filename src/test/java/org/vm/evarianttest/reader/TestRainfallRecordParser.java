@@ -0,0 +1,141 @@
+package org.vm.evarianttest.reader;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests the parsing of QCLCD rainfall lines into the cursor, for the values and the lines it rejects.
+ */
+public class TestRainfallRecordParser {
+
+    @Test
+    public void testValuesOfValidLines() {
+        RainfallRecordCursor cursor = parse("00230,20150501,02, 0.13, ");
+        Assert.assertEquals(230, cursor.getWbanId());
+        Assert.assertEquals(20150501, cursor.getYearMonthDay());
+        Assert.assertEquals(2, cursor.getHour());
+        Assert.assertEquals(0.13d, cursor.getPrecipitation(), 0d);
+        Assert.assertEquals(130, cursor.getScaledPrecipitation());
+        Assert.assertFalse(cursor.isTrace());
+        Assert.assertEquals(RainfallRecordCursor.NO_FLAG, cursor.getFlag());
+
+        // Quotes and blank spaces around the fields are skipped, the flag is upper cased
+        cursor = parse("\"03013\", 20150531 , 24 ,\"2\", s");
+        Assert.assertEquals(3013, cursor.getWbanId());
+        Assert.assertEquals(20150531, cursor.getYearMonthDay());
+        Assert.assertEquals(24, cursor.getHour());
+        Assert.assertEquals(2000, cursor.getScaledPrecipitation());
+        Assert.assertEquals('S', cursor.getFlag());
+
+        // WBAN ids keep their numeric value whatever the leading zeros
+        Assert.assertEquals(94846, parse("94846,20150501,01,0.01,").getWbanId());
+        Assert.assertEquals(23, parse("00023,20150501,01,0.01,").getWbanId());
+        Assert.assertEquals(parse("00230,20150501,01,0.01,").getWbanId(), RainfallRecordParser.parseWbanId("00230"));
+    }
+
+    @Test
+    public void testBlankAndTraceAmountsAreZero() {
+        for(String line : new String[]{"00230,20150501,01, , ", "00230,20150501,01,,", "00230,20150501,01,\"\","}) {
+            RainfallRecordCursor cursor = parse(line);
+            Assert.assertEquals(line, 0, cursor.getScaledPrecipitation());
+            Assert.assertFalse(line, cursor.isTrace());
+        }
+        for(String line : new String[]{"00230,20150501,01,T,", "00230,20150501,01, t ,", "00230,20150501,01,0.00T,"}) {
+            RainfallRecordCursor cursor = parse(line);
+            Assert.assertEquals(line, 0, cursor.getScaledPrecipitation());
+            Assert.assertEquals(line, 0d, cursor.getPrecipitation(), 0d);
+            Assert.assertTrue(line, cursor.isTrace());
+        }
+        // The PrecipitationFlag field is optional
+        Assert.assertEquals(10, parse("00230,20150501,01,0.01").getScaledPrecipitation());
+    }
+
+    @Test
+    public void testHeaderAndMalformedLinesAreRejected() {
+        String[] lines = {
+                "Wban,YearMonthDay,Hour,Precipitation,PrecipitationFlag",
+                "TX,20150501,01,0.10,",
+                "00230,2015050A,01,0.10,",
+                "00230,20150501,1A,0.10,",
+                "00230,20150501,01,0.1.0,",
+                "00230,20150501,01,abc,",
+                "00230,20150501,01,-,",
+                "00230,20150501",
+                "00230",
+                ",20150501,01,0.10,",
+                "1234567890,20150501,01,0.10,"
+        };
+        for(String line : lines)
+            Assert.assertFalse(line, RainfallRecordParser.parse(buffer(line), 0, line.length(), new RainfallRecordCursor()));
+    }
+
+    @Test
+    public void testHourBounds() {
+        Assert.assertEquals(0, parse("00230,20150501,00,0.10,").getHour());
+        Assert.assertEquals(RainfallRecordParser.MAX_HOUR, parse("00230,20150501,99,0.10,").getHour());
+        for(String line : new String[]{"00230,20150501,100,0.10,", "00230,20150501,-1,0.10,", "00230,20150501, ,0.10,"})
+            Assert.assertFalse(line, RainfallRecordParser.parse(buffer(line), 0, line.length(), new RainfallRecordCursor()));
+    }
+
+    @Test
+    public void testCrlfLinesParseLikeLfLines() {
+        String content = "Wban,YearMonthDay,Hour,Precipitation,PrecipitationFlag\r\n00230,20150501,01,0.10,\r\n03013,20150501,02,T,A\r\n\r\n94846,20150501,03,0.20,";
+        ByteBuffer buffer = buffer(content);
+        List<String> records = new ArrayList<>();
+        RainfallRecordCursor cursor = new RainfallRecordCursor();
+        MappedRainfallFileReader.forEachLine(buffer, 0, buffer.limit(), (b, start, end) -> {
+            if(RainfallRecordParser.parse(b, start, end, cursor))
+                records.add(cursor.getWbanId() + " " + cursor.getScaledPrecipitation() + " " + cursor.isTrace() + " " + cursor.getFlag());
+        });
+        List<String> expected = new ArrayList<>();
+        expected.add("230 100 false 0");
+        expected.add("3013 0 true " + (int) 'A');
+        expected.add("94846 200 false 0");
+        Assert.assertEquals(expected, records);
+    }
+
+    @Test
+    public void testKeyFilterStopsAtTheFirstRejectedField() {
+        int[] checked = new int[3];
+        RainfallKeyFilter filter = new RainfallKeyFilter() {
+            @Override
+            public boolean acceptWban(int wbanId) {
+                checked[0]++;
+                return wbanId == 230;
+            }
+
+            @Override
+            public boolean acceptDay(int yearMonthDay) {
+                checked[1]++;
+                return true;
+            }
+
+            @Override
+            public boolean acceptHour(int hour) {
+                checked[2]++;
+                return hour >= 8;
+            }
+        };
+        String[] lines = {"03013,20150501,09,0.10,", "00230,20150501,07,0.10,", "00230,20150501,09,0.10,"};
+        boolean[] accepted = new boolean[lines.length];
+        for(int i = 0; i < lines.length; i++)
+            accepted[i] = RainfallRecordParser.parse(buffer(lines[i]), 0, lines[i].length(), new RainfallRecordCursor(), filter);
+        Assert.assertArrayEquals(new boolean[]{false, false, true}, accepted);
+        Assert.assertArrayEquals(new int[]{3, 2, 2}, checked);
+    }
+
+    private static RainfallRecordCursor parse(String line) {
+        RainfallRecordCursor cursor = new RainfallRecordCursor();
+        Assert.assertTrue(line, RainfallRecordParser.parse(buffer(line), 0, line.length(), cursor));
+        return cursor;
+    }
+
+    private static ByteBuffer buffer(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,94 @@
+package org.vm.evarianttest.server;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.vm.evarianttest.ContextFixture;
+import org.vm.evarianttest.entity.Key;
+import org.vm.evarianttest.entity.census.USAState;
+import org.vm.evarianttest.loader.DataLoaderException;
+import org.vm.evarianttest.precipitationcalc.RainFallStatsCalculator;
+import org.vm.evarianttest.query.RainfallTimeRangeIndex;
+import org.vm.evarianttest.query.TimeWindow;
+import org.vm.evarianttest.util.Util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Tests that the query server answers from the index like the calculators.
+ */
+public class TestRainfallQueryServer {
+    private static RainFallStatsCalculator calc;
+
+    @BeforeClass
+    public static void setup() throws DataLoaderException {
+        calc = ContextFixture.calculator();
+    }
+
+    @Test
+    public void testQueryServerAnswersFromTheIndex() throws IOException {
+        RainfallTimeRangeIndex index = calc.buildTimeRangeIndex(ContextFixture.TEST_DATA);
+        RainfallQueryServer server = new RainfallQueryServer(calc, index, 0, 2);
+        server.start();
+        try {
+            String base = "http://localhost:" + server.getPort();
+            Map<Key, BigDecimal> wetness = calc.calculatePopulationWetnessByMSA(index, TimeWindow.days(20150501, 20150531).withHours(8, TimeWindow.MAX_HOUR), null);
+            Map.Entry<Key, BigDecimal> wettest = Util.topByValue(wetness, 1).get(0);
+            String answer = get(base + "/wetness?from=20150501&to=20150531&hours=8-99&k=1");
+            Assert.assertTrue(answer, answer.contains("\"key\":\"" + wettest.getKey().getKey() + "\""));
+            Assert.assertTrue(answer, answer.contains("\"value\":" + wettest.getValue().toPlainString() + "}"));
+
+            BigDecimal texas = calc.calculateRainfallByState(ContextFixture.TEST_DATA, null).get(USAState.TEXAS.key());
+            Assert.assertTrue(get(base + "/rainfall/state").contains("\"name\":\"Texas\",\"value\":" + texas.toPlainString() + "}"));
+
+            HttpURLConnection badQuery = (HttpURLConnection) new URL(base + "/station?wban=TX").openConnection();
+            Assert.assertEquals(400, badQuery.getResponseCode());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testQueryWindowDefaultsToTheWindowOfTheFilter() throws IOException {
+        RainfallTimeRangeIndex index = calc.buildTimeRangeIndex(ContextFixture.TEST_DATA);
+        RainfallQueryServer server = new RainfallQueryServer(calc, index, 0, 2);
+        server.start();
+        try {
+            String base = "http://localhost:" + server.getPort();
+            // The Population Wetness filter is May 2015 after 7 AM, so the night hours of the test data are left out
+            TimeWindow may2015After7AM = TimeWindow.days(20150501, 20150531).withHours(8, TimeWindow.MAX_HOUR);
+            Map.Entry<Key, BigDecimal> wettest = Util.topByValue(calc.calculatePopulationWetnessByMSA(index, may2015After7AM, null), 1).get(0);
+            String answer = get(base + "/wetness");
+            Assert.assertTrue(answer, answer.contains("\"window\":{\"from\":20150501,\"to\":20150531,\"hours\":\"8-99\"}"));
+            Assert.assertTrue(answer, answer.contains("\"value\":" + wettest.getValue().toPlainString() + "}"));
+            Assert.assertTrue(get(base + "/wetness?hours=0-7").contains("\"from\":20150501,\"to\":20150531,\"hours\":\"0-7\""));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testUnknownStateIsNamedByItsAbbreviation() {
+        Assert.assertEquals("Texas", RainfallQueryServer.stateName("TX"));
+        Assert.assertEquals("XX", RainfallQueryServer.stateName("XX"));
+    }
+
+    private static String get(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        Assert.assertEquals(200, connection.getResponseCode());
+        try(InputStream in = connection.getInputStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for(int read = in.read(buffer); read >= 0; read = in.read(buffer))
+                out.write(buffer, 0, read);
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.vm.evarianttest.store;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.vm.evarianttest.generator.SyntheticRainfallGenerator;
+import org.vm.evarianttest.reader.MappedRainfallFileReader;
+import org.vm.evarianttest.reader.RecordCollector;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tests that the columnar store gives back the records of the text file, whole and in slices.
+ */
+public class TestColumnarRainfallStore {
+
+    @Test
+    public void testLoadAndScanGiveTheRecordsOfTheTextFile() throws IOException {
+        Path file = Files.createTempFile("rainfall", ".txt");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            new SyntheticRainfallGenerator(Arrays.asList("00230", "03013", "13904", "94846")).months(YearMonth.of(2015, 5), 1)
+                    .wetHourRatio(0.3).traceRatio(0.2).malformedLineRatio(0.01).generate(file);
+            // Small chunks so that the store is appended from many parts
+            MappedRainfallFileReader reader = new MappedRainfallFileReader(file, 4096, pool);
+            List<String> expected = RecordCollector.records(reader);
+            ColumnarRainfallStore store = ColumnarRainfallStore.load(reader);
+            Assert.assertEquals(expected.size(), store.size());
+
+            long total = 0, traces = 0;
+            for(RecordCollector collector : reader.scan(RecordCollector::new)) {
+                total += collector.getTotal();
+                traces += collector.getTraces();
+            }
+            long storeTotal = 0, storeTraces = 0;
+            for(int row = 0; row < store.size(); row++) {
+                storeTotal += store.getScaledPrecipitation(row);
+                // The trace bit is held in the flag column but is not part of the flag
+                Assert.assertEquals(0, store.getFlag(row) & ColumnarRainfallStore.TRACE_BIT);
+                if(store.isTrace(row)) {
+                    storeTraces++;
+                    Assert.assertEquals(0, store.getScaledPrecipitation(row));
+                }
+            }
+            Assert.assertTrue(traces > 0);
+            Assert.assertEquals(total, storeTotal);
+            Assert.assertEquals(traces, storeTraces);
+
+            for(int sliceSize : new int[]{1, 7, store.size() - 1, store.size(), store.size() + 1}) {
+                store.setScanParallelism(sliceSize, pool);
+                List<RecordCollector> slices = store.scan(RecordCollector::new);
+                Assert.assertEquals("Slice size " + sliceSize, (store.size() + sliceSize - 1) / sliceSize, slices.size());
+                List<String> records = new ArrayList<>();
+                for(int i = 0; i < slices.size(); i++) {
+                    int expectedSize = Math.min(sliceSize, store.size() - i * sliceSize);
+                    Assert.assertEquals("Slice size " + sliceSize + " slice " + i, expectedSize, slices.get(i).getRecords().size());
+                    records.addAll(slices.get(i).getRecords());
+                }
+                Assert.assertEquals("Slice size " + sliceSize, expected, records);
+            }
+        } finally {
+            pool.shutdown();
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testAmountOutOfTheIntColumnIsRejected() throws IOException {
+        Path file = Files.createTempFile("rainfall", ".txt");
+        try {
+            // The parser takes amounts of up to 18 digits, this one is over 2^31 thousandths of an inch
+            Files.write(file, ("03013,20150501,09,0.20,\n" + "03013,20150501,10,123456789012.5,\n" + "03013,20150501,11,0.30,\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            ColumnarRainfallStore store = ColumnarRainfallStore.load(new MappedRainfallFileReader(file));
+            Assert.assertEquals(2, store.size());
+            Assert.assertEquals(1, store.getRejectedCount());
+            Assert.assertEquals(500, store.getScaledPrecipitation(0) + store.getScaledPrecipitation(1));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
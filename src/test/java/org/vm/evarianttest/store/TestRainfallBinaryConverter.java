@@ -0,0 +1,71 @@
+package org.vm.evarianttest.store;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.vm.evarianttest.reader.MappedRainfallFileReader;
+import org.vm.evarianttest.reader.RecordCollector;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tests that the binary conversion gives back the records of the text file.
+ */
+public class TestRainfallBinaryConverter {
+    private static Path testData = Paths.get("./src/test/resources/test_good_wban_bad_wban_one_each.txt");
+
+    @Test
+    public void testAllRowsAreKept() throws IOException {
+        Path binary = Files.createTempFile("rainfall", RainfallBinaryFormat.FILE_EXTENSION);
+        try {
+            long written = new RainfallBinaryConverter().convert(testData, binary);
+            Assert.assertTrue(MappedRainfallBinaryReader.isBinaryFile(binary));
+            Assert.assertFalse(MappedRainfallBinaryReader.isBinaryFile(testData));
+
+            List<String> expected = RecordCollector.records(new MappedRainfallFileReader(testData), false);
+            Assert.assertEquals(expected.size(), written);
+            Assert.assertFalse(new MappedRainfallBinaryReader(binary).isDryRowsDropped());
+            // Chunks of 5 records so that the file is split in several mappings
+            Assert.assertEquals(expected, RecordCollector.records(new MappedRainfallBinaryReader(binary, 5, ForkJoinPool.commonPool()), false));
+        } finally {
+            Files.delete(binary);
+        }
+    }
+
+    @Test
+    public void testRecordsOutOfTheFormatAreSkipped() throws IOException {
+        Path text = Files.createTempFile("rainfall", ".txt");
+        Path binary = Files.createTempFile("rainfall", RainfallBinaryFormat.FILE_EXTENSION);
+        try {
+            // The parser takes WBANs of up to 9 digits and amounts of up to 18, the binary format 5 digits and 65.535 inches
+            Files.write(text, ("03013,20150501,09,0.20,\n" + "123456,20150501,09,0.10,\n" + "03013,20150501,10,100.00,\n" + "03013,20150501,11,0.30,\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            RainfallBinaryConverter converter = new RainfallBinaryConverter();
+            Assert.assertEquals(2, converter.convert(text, binary));
+            Assert.assertEquals(2, converter.getSkippedRecords());
+            Assert.assertEquals(Arrays.asList("3013,20150501,9,200,false,0", "3013,20150501,11,300,false,0"), RecordCollector.records(new MappedRainfallBinaryReader(binary)));
+        } finally {
+            Files.delete(text);
+            Files.delete(binary);
+        }
+    }
+
+    @Test
+    public void testDryRowsAreDropped() throws IOException {
+        Path binary = Files.createTempFile("rainfall", RainfallBinaryFormat.FILE_EXTENSION);
+        try {
+            new RainfallBinaryConverter(true).convert(testData, binary);
+            MappedRainfallBinaryReader reader = new MappedRainfallBinaryReader(binary);
+            Assert.assertTrue(reader.isDryRowsDropped());
+            Assert.assertEquals(RecordCollector.records(new MappedRainfallFileReader(testData), true), RecordCollector.records(reader, false));
+        } finally {
+            Files.delete(binary);
+        }
+    }
+}
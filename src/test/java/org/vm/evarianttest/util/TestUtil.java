@@ -0,0 +1,44 @@
+package org.vm.evarianttest.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.vm.evarianttest.entity.Key;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests that the rankings by value keep the entries with equal values, ordered by key.
+ */
+public class TestUtil {
+
+    @Test
+    public void testRankingKeepsEqualValuesInKeyOrder() {
+        Map<Key, BigDecimal> values = new HashMap<>();
+        values.put(new Key("DALLAS"), new BigDecimal("2.5"));
+        values.put(new Key("AUSTIN"), new BigDecimal("2.5"));
+        values.put(new Key("HOUSTON"), new BigDecimal("4"));
+        values.put(new Key("EL PASO"), new BigDecimal("0.1"));
+        values.put(new Key("WACO"), new BigDecimal("2.5"));
+
+        Map<Key, BigDecimal> sorted = Util.sortByValue(values);
+        Assert.assertEquals(Arrays.asList("HOUSTON", "AUSTIN", "DALLAS", "WACO", "EL PASO"), keys(new ArrayList<>(sorted.entrySet())));
+        Assert.assertEquals(values, sorted);
+
+        Assert.assertEquals(Arrays.asList("HOUSTON", "AUSTIN", "DALLAS"), keys(Util.topByValue(values, 3)));
+        Assert.assertEquals(Arrays.asList("HOUSTON"), keys(Util.topByValue(values, 1)));
+        Assert.assertEquals(5, Util.topByValue(values, 10).size());
+        Assert.assertTrue(Util.topByValue(values, 0).isEmpty());
+    }
+
+    private static List<String> keys(List<Map.Entry<Key, BigDecimal>> entries) {
+        List<String> keys = new ArrayList<>();
+        for(Map.Entry<Key, BigDecimal> entry : entries)
+            keys.add((String) entry.getKey().getKey());
+        return keys;
+    }
+}